@@ -58,6 +58,18 @@ public class JobsArchive extends BaseEntity {
     @Column(name = "last_trigger_timestamp")
     private Date lastTriggerTimestamp;
 
+    /**
+     * Threshold of the archiving run in progress, null when the last run completed
+     */
+    @Column(name = "archive_threshold_timestamp")
+    private Date archiveThresholdTimestamp;
+
+    @Column(name = "last_archived_job_id")
+    private Long lastArchivedJobId;
+
+    @Column(name = "last_archived_alert_id")
+    private Long lastArchivedAlertId;
+
     public FreqType getFrequency() {
         return this.frequency;
     }
@@ -98,12 +110,39 @@ public class JobsArchive extends BaseEntity {
         this.lastTriggerTimestamp = lastTriggerTimestamp;
     }
 
+    public Date getArchiveThresholdTimestamp() {
+        return this.archiveThresholdTimestamp;
+    }
+
+    public void setArchiveThresholdTimestamp(Date archiveThresholdTimestamp) {
+        this.archiveThresholdTimestamp = archiveThresholdTimestamp;
+    }
+
+    public Long getLastArchivedJobId() {
+        return this.lastArchivedJobId;
+    }
+
+    public void setLastArchivedJobId(Long lastArchivedJobId) {
+        this.lastArchivedJobId = lastArchivedJobId;
+    }
+
+    public Long getLastArchivedAlertId() {
+        return this.lastArchivedAlertId;
+    }
+
+    public void setLastArchivedAlertId(Long lastArchivedAlertId) {
+        this.lastArchivedAlertId = lastArchivedAlertId;
+    }
+
     @Override
     public String toString() {
         return "JobsArchive [frequency=" + this.frequency + ", autoSchedule="
                 + this.autoSchedule + ", thresholdUnit=" + this.thresholdUnit
                 + ", thresholdValue=" + this.thresholdValue
                 + ", lastTriggerTimepstamp=" + this.lastTriggerTimestamp
+                + ", archiveThresholdTimestamp=" + this.archiveThresholdTimestamp
+                + ", lastArchivedJobId=" + this.lastArchivedJobId
+                + ", lastArchivedAlertId=" + this.lastArchivedAlertId
                 + ", getId()=" + getId() + "]";
     }
 }
@@ -47,6 +47,7 @@ import org.osc.core.broker.rest.server.exception.InternalServerErrorExceptionMap
 import org.osc.core.broker.rest.server.exception.JsonProcessingExceptionMapper;
 import org.osc.core.broker.rest.server.exception.NotFoundExceptionMapper;
 import org.osc.core.broker.rest.server.exception.PathParamExceptionMapper;
+import org.osc.core.broker.rest.server.exception.ServiceUnavailableExceptionMapper;
 import org.osc.core.broker.rest.server.exception.XMLParseExceptionMapper;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -115,6 +116,7 @@ public class ApiServletDelegate extends ResourceConfig implements Servlet {
         super.register(JsonProcessingExceptionMapper.class);
         super.register(NotFoundExceptionMapper.class);
         super.register(PathParamExceptionMapper.class);
+        super.register(ServiceUnavailableExceptionMapper.class);
         super.register(XMLParseExceptionMapper.class);
 
         //Properties
@@ -26,7 +26,9 @@ import org.osc.core.broker.service.exceptions.ExceptionConstants;
 import org.osc.core.broker.service.exceptions.OscBadRequestException;
 import org.osc.core.broker.service.exceptions.OscInternalServerErrorException;
 import org.osc.core.broker.service.exceptions.OscNotFoundException;
+import org.osc.core.broker.service.exceptions.OscServiceUnavailableException;
 import org.osc.core.broker.service.exceptions.RestClientException;
+import org.osc.core.broker.service.exceptions.VmidcBrokerBusyException;
 import org.osc.core.broker.service.exceptions.VmidcBrokerInvalidEntryException;
 import org.osc.core.broker.service.exceptions.VmidcBrokerInvalidRequestException;
 import org.osc.core.broker.service.exceptions.VmidcBrokerValidationException;
@@ -40,6 +42,8 @@ import org.osgi.service.component.annotations.Component;
 @Component(service = ApiUtil.class)
 public class ApiUtil implements ExceptionConstants {
 
+    private static final Long BUSY_RETRY_AFTER_SECONDS = 30L;
+
     /**
      * Submits a plain request to the service and return the response or throws a VmidcRestServerException in case of
      * errors.
@@ -60,6 +64,9 @@ public class ApiUtil implements ExceptionConstants {
             throw new OscBadRequestException(expectedException.getMessage(), VMIDC_VALIDATION_EXCEPTION_ERROR_CODE);
         } catch (VmidcBrokerValidationException validationException){
             throw new OscNotFoundException(validationException.getMessage(), VMIDC_VALIDATION_EXCEPTION_ERROR_CODE);
+        } catch (VmidcBrokerBusyException busyException) {
+            throw new OscServiceUnavailableException(busyException.getMessage(), VMIDC_EXCEPTION_ERROR_CODE,
+                    BUSY_RETRY_AFTER_SECONDS);
         } catch (RestClientException | RemoteException remoteException) {
             throw new OscBadRequestException(remoteException.getMessage(), REMOTE_EXCEPTION_ERROR_CODE);
         } catch (VmidcException generalVmidcException) {
@@ -44,8 +44,8 @@ import org.osc.core.broker.service.api.server.UserContextApi;
 import org.osc.core.broker.service.dto.AlertDto;
 import org.osc.core.broker.service.exceptions.ErrorCodeDto;
 import org.osc.core.broker.service.request.AlertRequest;
-import org.osc.core.broker.service.request.BaseRequest;
 import org.osc.core.broker.service.request.GetDtoFromEntityRequest;
+import org.osc.core.broker.service.request.ListAlertRequest;
 import org.osc.core.broker.service.response.BaseResponse;
 import org.osc.core.broker.service.response.ListResponse;
 import org.osc.core.common.job.AcknowledgementStatus;
@@ -100,7 +100,7 @@ public class AlertApis {
 
         @SuppressWarnings("unchecked")
         ListResponse<AlertDto> response = (ListResponse<AlertDto>) this.apiUtil.getListResponse(this.listAlertService,
-                new BaseRequest<>(true));
+                new ListAlertRequest(true));
 
         return response.getList();
     }
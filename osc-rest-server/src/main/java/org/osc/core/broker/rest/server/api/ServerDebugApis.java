@@ -40,6 +40,7 @@ import org.osc.core.broker.rest.server.ServerRestConstants;
 import org.osc.core.broker.rest.server.annotations.LocalHostAuth;
 import org.osc.core.broker.service.api.DBConnectionManagerApi;
 import org.osc.core.broker.service.api.LockInfoServiceApi;
+import org.osc.core.broker.service.api.ServiceMetricsApi;
 import org.osc.core.broker.service.api.server.ServerApi;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
@@ -62,6 +63,9 @@ public class ServerDebugApis {
     @Reference
     private LockInfoServiceApi lockInfoServiceApi;
 
+    @Reference
+    private ServiceMetricsApi serviceMetricsApi;
+
     @Path("/lock")
     @GET
     public Response getCurrentLockInfomation() {
@@ -77,6 +81,17 @@ public class ServerDebugApis {
         }
     }
 
+    @Path("/metrics")
+    @GET
+    public Response getServiceMetrics() {
+        try {
+            return Response.ok(this.serviceMetricsApi.getServiceMetrics()).build();
+        } catch (Exception e) {
+            logger.error("Failed to get service metrics.", e);
+            return Response.status(Status.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @Path("/query")
     @POST
     public Response queryDb(String sql) {
@@ -18,8 +18,10 @@ package org.osc.core.broker.job;
 
 import java.io.Serializable;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -35,7 +37,6 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Multimaps;
 import com.google.common.collect.Sets;
 
 /**
@@ -121,6 +122,18 @@ public class Graph<T> implements Iterable<T>, Serializable {
      */
     private Multimap<T, T> edges;
 
+    /**
+     * Reverse index of {@link #edges} of the form
+     *
+     * <pre>
+     * { dst => { src1, src2, src3} }
+     * </pre>
+     *
+     * Kept in sync with the forward edges so predecessor lookups do not have to
+     * scan the whole edge set.
+     */
+    private Multimap<T, T> reverseEdges;
+
     /*
      * Only used for the external representation of an edge
      */
@@ -150,16 +163,21 @@ public class Graph<T> implements Iterable<T>, Serializable {
     public Graph() {
         this.nodes = new HashSet<T>();
         this.edges = HashMultimap.create();
+        this.reverseEdges = HashMultimap.create();
     }
 
     public Graph(Graph<T> other) {
-        this.nodes = new HashSet<T>(other.nodes);
-        this.edges = HashMultimap.create(other.edges);
+        synchronized (other) {
+            this.nodes = new HashSet<T>(other.nodes);
+            this.edges = HashMultimap.create(other.edges);
+            this.reverseEdges = HashMultimap.create(other.reverseEdges);
+        }
     }
 
-    private Graph(Set<T> nodes, Multimap<T, T> edges) {
+    private Graph(Set<T> nodes, Multimap<T, T> edges, Multimap<T, T> reverseEdges) {
         this.nodes = nodes;
         this.edges = edges;
+        this.reverseEdges = reverseEdges;
     }
 
     private synchronized Set<Edge<T>> getEdges() {
@@ -180,18 +198,15 @@ public class Graph<T> implements Iterable<T>, Serializable {
     }
 
     public synchronized Set<T> getPredecessors(T node) {
-        Set<T> predecessors = new HashSet<T>();
-
-        for (Map.Entry<T, T> edge : this.edges.entries()) {
-            T src = edge.getKey();
-            T dest = edge.getValue();
-
-            if (node.equals(dest)) {
-                predecessors.add(src);
-            }
-        }
+        return ImmutableSet.copyOf(this.reverseEdges.get(node));
+    }
 
-        return Collections.unmodifiableSet(predecessors);
+    /**
+     * Returns the number of edges ending at the given node without copying the
+     * predecessor set.
+     */
+    public synchronized int getPredecessorCount(T node) {
+        return this.reverseEdges.get(node).size();
     }
 
     public Set<T> getDescendants(T node) {
@@ -203,8 +218,22 @@ public class Graph<T> implements Iterable<T>, Serializable {
         return descendants;
     }
 
-    public Set<T> getAncestors(T node) {
-        return this.reverse().getDescendants(node);
+    /**
+     * Walks the reverse edge index directly instead of building a
+     * {@link #reverse()}d copy of the whole graph for every lookup.
+     */
+    public synchronized Set<T> getAncestors(T node) {
+        Set<T> ancestors = Sets.newHashSet();
+        Deque<T> nodesToVisit = new ArrayDeque<T>(this.reverseEdges.get(node));
+
+        while (!nodesToVisit.isEmpty()) {
+            T ancestor = nodesToVisit.pop();
+            if (ancestors.add(ancestor)) {
+                nodesToVisit.addAll(this.reverseEdges.get(ancestor));
+            }
+        }
+
+        return ancestors;
     }
 
     @SuppressWarnings("unchecked")
@@ -218,6 +247,7 @@ public class Graph<T> implements Iterable<T>, Serializable {
         for (T dest : dests) {
             this.addNode(dest);
             this.edges.put(src, dest);
+            this.reverseEdges.put(dest, src);
         }
     }
 
@@ -226,6 +256,7 @@ public class Graph<T> implements Iterable<T>, Serializable {
         for (T src : srcs) {
             this.addNode(src);
             this.edges.put(src, dest);
+            this.reverseEdges.put(dest, src);
         }
     }
 
@@ -242,8 +273,8 @@ public class Graph<T> implements Iterable<T>, Serializable {
         return Collections.unmodifiableSet(this.nodes);
     }
 
-    public Set<T> getSources() {
-        return this.reverse().getSinks();
+    public synchronized Set<T> getSources() {
+        return ImmutableSet.copyOf(Sets.difference(this.nodes, this.reverseEdges.keySet()));
     }
 
     public synchronized Set<T> getSinks() {
@@ -256,26 +287,19 @@ public class Graph<T> implements Iterable<T>, Serializable {
      */
     public synchronized void removeNode(T node) {
         this.nodes.remove(node);
-        this.edges.removeAll(node);
 
-        for (Iterator<Map.Entry<T, T>> i = this.edges.entries().iterator(); i.hasNext();) {
-            Map.Entry<T, T> edge = i.next();
-
-            T dest = edge.getValue();
-
-            if (node.equals(dest)) {
-                i.remove();
-            }
+        for (T successor : this.edges.removeAll(node)) {
+            this.reverseEdges.remove(successor, node);
         }
 
+        for (T predecessor : this.reverseEdges.removeAll(node)) {
+            this.edges.remove(predecessor, node);
+        }
     }
 
     public synchronized void removeEdge(T src, T dest) {
-        for (Iterator<T> i = this.edges.get(src).iterator(); i.hasNext();) {
-            if (i.next().equals(dest)) {
-                i.remove();
-            }
-        }
+        this.edges.remove(src, dest);
+        this.reverseEdges.remove(dest, src);
     }
 
     public void replace(T orig, T replacement) {
@@ -298,10 +322,8 @@ public class Graph<T> implements Iterable<T>, Serializable {
      * @return the reversed graph
      */
     public synchronized Graph<T> reverse() {
-        Multimap<T, T> reverseEdges = HashMultimap.create();
-        Multimaps.invertFrom(this.edges, reverseEdges);
-
-        return new Graph<T>(new HashSet<T>(this.nodes), reverseEdges);
+        return new Graph<T>(new HashSet<T>(this.nodes), HashMultimap.create(this.reverseEdges),
+                HashMultimap.create(this.edges));
     }
 
     public boolean pathExists(T source, T dest) {
@@ -357,37 +379,37 @@ public class Graph<T> implements Iterable<T>, Serializable {
      * The results of this method are unspecified if the graph has cycles.
      */
     public synchronized List<T> topologicalSort() {
-        final Set<T> visited = new HashSet<T>(this.nodes.size());
-        final Deque<T> result = new ArrayDeque<T>(this.nodes.size());
+        final Map<T, Integer> remainingPredecessors = new HashMap<T, Integer>(this.nodes.size());
+        final Deque<T> nodesToVisit = new ArrayDeque<T>();
+        final List<T> result = new ArrayList<T>(this.nodes.size());
 
         /*
-         * The *reverse* of the post-order traversal list represents a
-         * topological sort of a graph.
-         *
-         * Since the graph could contain multiple sources, initiate a
-         * depth-first search from each source short-circuiting each DFS if
-         * we've already hit a node that has been visited by a DFS originated
-         * from a previous source.
+         * Kahn's algorithm: a node is emitted once all of its predecessors
+         * have been emitted. Unlike a recursive depth-first traversal this
+         * does not grow the call stack with the length of the longest path.
          */
-        for (T source : this.getSources()) {
-            this.depthFirstVisit(source, new NodeVisitor<T>() {
-                @Override
-                public boolean preVisit(T node) {
-                    boolean alreadyVisited = visited.contains(node);
-                    visited.add(node);
-
-                    return !alreadyVisited;
-                }
+        for (T node : this.nodes) {
+            int inDegree = this.reverseEdges.get(node).size();
+            if (inDegree == 0) {
+                nodesToVisit.add(node);
+            } else {
+                remainingPredecessors.put(node, inDegree);
+            }
+        }
 
-                @Override
-                public void postVisit(T node) {
-                    /*
-                     * Since we're building up a list in reverse order,
-                     * *prepend* the node to the head of the Deque
-                     */
-                    result.addFirst(node);
+        while (!nodesToVisit.isEmpty()) {
+            T node = nodesToVisit.poll();
+            result.add(node);
+
+            for (T successor : this.edges.get(node)) {
+                int remaining = remainingPredecessors.get(successor) - 1;
+                if (remaining == 0) {
+                    remainingPredecessors.remove(successor);
+                    nodesToVisit.add(successor);
+                } else {
+                    remainingPredecessors.put(successor, remaining);
                 }
-            });
+            }
         }
 
         return ImmutableList.copyOf(result);
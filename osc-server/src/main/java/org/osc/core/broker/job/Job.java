@@ -18,10 +18,14 @@ package org.osc.core.broker.job;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
@@ -41,6 +45,7 @@ import org.osc.core.broker.model.entities.job.TaskRecord;
 import org.osc.core.broker.service.LockUtil;
 import org.osc.core.broker.service.common.VmidcMessages;
 import org.osc.core.broker.service.common.VmidcMessages_;
+import org.osc.core.broker.service.persistence.EntityChangeTracker;
 import org.osc.core.broker.service.persistence.OSCEntityManager;
 import org.osc.core.broker.service.tasks.conformance.UnlockObjectMetaTask;
 import org.osc.core.broker.service.tasks.conformance.UnlockObjectTask;
@@ -67,6 +72,12 @@ public class Job implements Runnable, JobElement {
 
     private static Logger log = LoggerFactory.getLogger(Job.class);
 
+    /**
+     * Spacing between the dependency orders of persisted tasks, leaving room for
+     * tasks merged by meta tasks to be ordered without renumbering.
+     */
+    static final long DEPENDENCY_ORDER_GAP = 1024L;
+
     public interface JobCompletionListener {
         void completed(Job job);
     }
@@ -92,8 +103,22 @@ public class Job implements Runnable, JobElement {
 
     private final BlockingQueue<TaskNode> pendingCompletedTasksQueue = new LinkedBlockingQueue<TaskNode>();
 
-    private final Set<JobCompletionListener> jobCompletionListeners = new HashSet<JobCompletionListener>();
-    private Set<TaskChangeListener> taskChangeListeners = new HashSet<TaskChangeListener>();
+    /*
+     * Execution bookkeeping, only accessed from the job thread in executeGraph().
+     *
+     * completedPredecessorCounts counts, per task, how many of its predecessors
+     * have been taken off the completed queue. A task becomes ready once the
+     * count reaches its in-degree. failedAncestryCache memoizes whether any
+     * ancestor of a completed task did not succeed. Both stay valid across
+     * meta task merges since merged tasks are only ever wired in downstream of
+     * a meta task that has not been processed yet.
+     */
+    private final Map<TaskNode, Integer> completedPredecessorCounts = new HashMap<>();
+    private final Map<TaskNode, Boolean> failedAncestryCache = new HashMap<>();
+
+    // Listeners of a coalesced duplicate are added to a job already queued
+    private final Set<JobCompletionListener> jobCompletionListeners = ConcurrentHashMap.newKeySet();
+    private Set<TaskChangeListener> taskChangeListeners = ConcurrentHashMap.newKeySet();
 
     private final Semaphore jobCompletionSemaphore = new Semaphore(1);
 
@@ -128,29 +153,7 @@ public class Job implements Runnable, JobElement {
         this.status = status;
 
         if (this.jobRecord != null) {
-            persistStatus();
-        }
-    }
-
-    private void persistStatus() {
-
-        try {
-            EntityManager em = HibernateUtil.getTransactionalEntityManager();
-            TransactionControl txControl = HibernateUtil.getTransactionControl();
-            // Use a new transaction to persist this update come what may
-            txControl.requiresNew(() -> {
-                this.jobRecord = em.find(JobRecord.class, this.jobRecord.getId());
-                this.jobRecord.setStatus(this.status);
-                OSCEntityManager.update(em, this.jobRecord, StaticRegistry.transactionalBroadcastUtil());
-                return null;
-            });
-        } catch (ScopedWorkException e) {
-            // Unwrap the ScopedWorkException to get the cause from
-            // the scoped work (i.e. the executeTransaction() call.
-            log.error("Fail to update JobRecord " + this, e.getCause());
-        } catch (Exception e) {
-            // TODO:nbartlex remove when EM and TX are injected in A7
-            log.error("Fail to update JobRecord " + this, e);
+            persistState();
         }
     }
 
@@ -162,6 +165,10 @@ public class Job implements Runnable, JobElement {
         return this.name;
     }
 
+    public Set<LockObjectReference> getObjects() {
+        return this.objects;
+    }
+
     public TaskGraph getTaskGraph() {
         return this.taskGraph;
     }
@@ -204,6 +211,13 @@ public class Job implements Runnable, JobElement {
                     break;
                 }
 
+                /*
+                 * Record the failure ancestry of the completed task now while
+                 * all of its predecessors are known to be recorded already, so
+                 * later lookups from descendants never recurse.
+                 */
+                hasFailedAncestry(completedTask);
+
                 // if one task fails whole job is set to fail
                 if (!((TaskStatusElementImpl)completedTask.getStatus()).getStatus().isSuccessful()) {
                     setFailureReason(VmidcMessages.getString(VmidcMessages_.JOB_TASK_FAILURE));
@@ -307,8 +321,14 @@ public class Job implements Runnable, JobElement {
 
         @Override
         public void run() {
-            for (JobCompletionListener listener : Job.this.jobCompletionListeners) {
-                listener.completed(this.job);
+            // Listeners record the job outcome, which does not make the job objects out of sync
+            boolean wasTracking = EntityChangeTracker.getTracker().setTrackingEnabled(false);
+            try {
+                for (JobCompletionListener listener : Job.this.jobCompletionListeners) {
+                    listener.completed(this.job);
+                }
+            } finally {
+                EntityChangeTracker.getTracker().setTrackingEnabled(wasTracking);
             }
             // If anyone's waiting on waitForJobCompletion() call..
             Job.this.jobCompletionSemaphore.release();
@@ -316,13 +336,12 @@ public class Job implements Runnable, JobElement {
     }
 
     private boolean checkAllPredecessorsCompleted(TaskNode taskNode) {
-        // Check if task's predecessor all completed.
-        for (TaskNode predecessorTaskNode : taskNode.getPredecessors()) {
-            if (!((TaskStateElementImpl)predecessorTaskNode.getState()).getState().isTerminalState()) {
-                return false;
-            }
-        }
-        return true;
+        // Count the completed predecessor and check if it was the last one outstanding
+        Integer completed = this.completedPredecessorCounts.get(taskNode);
+        completed = completed == null ? 1 : completed + 1;
+        this.completedPredecessorCounts.put(taskNode, completed);
+
+        return completed >= this.taskGraph.getGraph().getPredecessorCount(taskNode);
     }
 
     private void markTaskSkipped(TaskNode taskNode) {
@@ -347,14 +366,37 @@ public class Job implements Runnable, JobElement {
     }
 
     private boolean checkAllAncestorsCompletedSuccessfully(TaskNode taskNode) {
-        boolean isAllAncestorsSuccessful = true;
-        for (TaskNode ancestorTaskNode : taskNode.getAncestors()) {
-            if (!((TaskStatusElementImpl)ancestorTaskNode.getStatus()).getStatus().isSuccessful()) {
-                isAllAncestorsSuccessful = false;
-                break;
+        for (TaskNode predecessorTaskNode : taskNode.getPredecessors()) {
+            if (hasFailedAncestry(predecessorTaskNode)) {
+                return false;
             }
         }
-        return isAllAncestorsSuccessful;
+        return true;
+    }
+
+    /**
+     * Returns true if the given completed task or any of its ancestors did not
+     * succeed. Results are memoized per task so every ancestor chain is walked
+     * at most once per job.
+     */
+    private boolean hasFailedAncestry(TaskNode completedTaskNode) {
+        Boolean failed = this.failedAncestryCache.get(completedTaskNode);
+        if (failed != null) {
+            return failed;
+        }
+
+        failed = !((TaskStatusElementImpl)completedTaskNode.getStatus()).getStatus().isSuccessful();
+        if (!failed) {
+            for (TaskNode predecessorTaskNode : completedTaskNode.getPredecessors()) {
+                if (hasFailedAncestry(predecessorTaskNode)) {
+                    failed = true;
+                    break;
+                }
+            }
+        }
+
+        this.failedAncestryCache.put(completedTaskNode, failed);
+        return failed;
     }
 
     BlockingQueue<TaskNode> getPendingCompletedTasksQueue() {
@@ -390,32 +432,35 @@ public class Job implements Runnable, JobElement {
         }
     }
 
+    /**
+     * Records the job change in the {@link JobStateJournal}. Once the job
+     * reached a terminal state the journal is flushed synchronously, so the
+     * final job and task states are persisted before any
+     * {@link JobCompletionListener} is notified, retrying until the journal
+     * writes them or gives up on them.
+     */
     private void persistState() {
-        try {
-            EntityManager em = HibernateUtil.getTransactionalEntityManager();
-            TransactionControl txControl = HibernateUtil.getTransactionControl();
-            // Use a new transaction to persist this update come what may
-            txControl.requiresNew(() -> {
-                this.jobRecord = em.find(JobRecord.class, this.jobRecord.getId());
-
-                this.jobRecord.setState(this.state);
-                this.jobRecord.setQueuedTimestamp(getQueuedTimestamp());
-                this.jobRecord.setStartedTimestamp(getStartedTimestamp());
-                this.jobRecord.setCompletedTimestamp(getCompletedTimestamp());
-                this.jobRecord.setFailureReason(getFailureReason());
-                OSCEntityManager.update(em, this.jobRecord, StaticRegistry.transactionalBroadcastUtil());
-                return null;
-            });
-        } catch (ScopedWorkException e) {
-            // Unwrap the ScopedWorkException to get the cause from
-            // the scoped work (i.e. the executeTransaction() call.
-            log.error("Fail to update JobRecord " + this, e.getCause());
-        } catch (Exception e) {
-            // TODO: nbartlex - remove when EM and TX are injected
-            log.error("Fail to update JobRecord " + this, e);
+        JobStateJournal journal = JobStateJournal.getJournal();
+        journal.record(this);
+
+        if (this.state.isTerminalState() && !journal.flush(this)) {
+            log.error("Fail to persist the final state of " + this);
         }
     }
 
+    /**
+     * Copies the current job state onto the given record. Called by the
+     * {@link JobStateJournal} when flushing.
+     */
+    void writeTo(JobRecord jobRecord) {
+        jobRecord.setState(this.state);
+        jobRecord.setStatus(this.status);
+        jobRecord.setQueuedTimestamp(getQueuedTimestamp());
+        jobRecord.setStartedTimestamp(getStartedTimestamp());
+        jobRecord.setCompletedTimestamp(getCompletedTimestamp());
+        jobRecord.setFailureReason(getFailureReason());
+    }
+
     public Date getStartedTimestamp() {
         return this.startedTimestamp;
     }
@@ -528,11 +573,11 @@ public class Job implements Runnable, JobElement {
 
         this.taskGraph.insertTaskGraph(tg, metaTaskNode.getTask());
 
-        // If task is persisted, need to re-persist calculated order and
+        // If task is persisted, need to persist the merged tasks and their
         // dependencies
         if (metaTaskNode.getTaskRecord() != null) {
             try {
-                persistJob();
+                persistMergedTaskGraph(metaTaskNode);
 
             } catch (Exception e) {
 
@@ -616,12 +661,176 @@ public class Job implements Runnable, JobElement {
         }
     }
 
+    /**
+     * Persists only the tasks a meta task merged into the task graph, along with
+     * their dependency links, instead of re-persisting the whole graph. The new
+     * tasks are given dependency orders in the gap left after the meta task so no
+     * existing task needs to be renumbered. If the gap is exhausted, falls back
+     * to {@link #persistJob()} which renumbers the whole graph.
+     */
+    private void persistMergedTaskGraph(TaskNode metaTaskNode) throws Exception {
+        long lowerOrder = metaTaskNode.getTaskRecord().getDependencyOrder();
+        Long upperOrder = null;
+        List<TaskNode> mergedTaskNodes = new ArrayList<>();
+
+        for (TaskNode taskNode : this.taskGraph.getGraph().topologicalSort()) {
+            if (taskNode.isStartOrEndTask()) {
+                continue;
+            }
+
+            TaskRecord taskRecord = taskNode.getTaskStore();
+            if (taskRecord == null) {
+                mergedTaskNodes.add(taskNode);
+            } else if (taskRecord.getDependencyOrder() > lowerOrder
+                    && (upperOrder == null || taskRecord.getDependencyOrder() < upperOrder)) {
+                upperOrder = taskRecord.getDependencyOrder();
+            }
+        }
+
+        if (mergedTaskNodes.isEmpty()) {
+            return;
+        }
+
+        long[] dependencyOrders = allocateDependencyOrders(lowerOrder, upperOrder, mergedTaskNodes.size());
+        if (dependencyOrders == null) {
+            log.info("No dependency order gap left after " + metaTaskNode + ". Re-persisting job " + this);
+            persistJob();
+            return;
+        }
+
+        try {
+            EntityManager em = HibernateUtil.getTransactionalEntityManager();
+            TransactionControl txControl = HibernateUtil.getTransactionControl();
+            // Use a new transaction to persist the merged tasks come what may
+            txControl.requiresNew(() -> {
+                for (int i = 0; i < mergedTaskNodes.size(); i++) {
+                    TaskNode taskNode = mergedTaskNodes.get(i);
+                    TaskRecord taskRecord = new TaskRecord(getJobRecord());
+                    taskRecord.setCreatedBy(getJobRecord().getCreatedBy());
+                    taskRecord.setCreatedTimestamp(new Date());
+                    taskRecord.setDependencyOrder(dependencyOrders[i]);
+                    populateTaskRecord(taskNode, taskRecord);
+                    addTaskObjects(taskNode, taskRecord);
+
+                    OSCEntityManager.create(em, taskRecord, StaticRegistry.transactionalBroadcastUtil());
+                    taskNode.setTaskStore(taskRecord);
+                }
+
+                /*
+                 * Link merged tasks with each other and with the existing tasks
+                 * they were wired to. Existing tasks are locked like the job
+                 * state journal does before writing them, so neither overwrites
+                 * the other's changes.
+                 */
+                Set<TaskNode> mergedTaskNodeSet = new HashSet<>(mergedTaskNodes);
+                Map<Long, TaskRecord> existingTaskRecords = lockExistingTaskRecords(em, metaTaskNode,
+                        mergedTaskNodeSet);
+                for (TaskNode taskNode : mergedTaskNodes) {
+                    TaskRecord taskRecord = taskNode.getTaskStore();
+
+                    for (TaskNode taskPredecessor : taskNode.getPredecessors()) {
+                        if (taskPredecessor.isStartOrEndTask()) {
+                            continue;
+                        }
+
+                        if (mergedTaskNodeSet.contains(taskPredecessor)) {
+                            taskRecord.addPredecessor(taskPredecessor.getTaskStore());
+                        } else {
+                            TaskRecord predecessorRecord = existingTaskRecords.get(taskPredecessor.getTaskStore().getId());
+                            taskRecord.addPredecessor(predecessorRecord);
+                            predecessorRecord.addSuccessor(taskRecord);
+                        }
+                    }
+
+                    for (TaskNode taskSuccessor : taskNode.getSuccessors()) {
+                        if (taskSuccessor.isStartOrEndTask()) {
+                            continue;
+                        }
+
+                        if (mergedTaskNodeSet.contains(taskSuccessor)) {
+                            taskRecord.addSuccessor(taskSuccessor.getTaskStore());
+                        } else {
+                            TaskRecord successorRecord = existingTaskRecords.get(taskSuccessor.getTaskStore().getId());
+                            taskRecord.addSuccessor(successorRecord);
+                            successorRecord.addPredecessor(taskRecord);
+                        }
+                    }
+
+                    if (taskNode.getProducer() != null) {
+                        existingTaskRecords.get(taskNode.getProducer().getTaskStore().getId()).addChild(taskRecord);
+                    }
+                }
+
+                // Let listeners pick up the meta task's new children
+                OSCEntityManager.update(em, existingTaskRecords.get(metaTaskNode.getTaskStore().getId()),
+                        StaticRegistry.transactionalBroadcastUtil());
+                return null;
+            });
+        } catch (ScopedWorkException e) {
+            // Unwrap the ScopedWorkException to get the cause from
+            // the scoped work (i.e. the executeTransaction() call.
+            throw e.as(Exception.class);
+        }
+    }
+
+    /*
+     * Locks the records of the meta task and of the existing tasks the merged
+     * tasks are wired to, in id order so concurrent journal flushes cannot
+     * deadlock with the merge.
+     */
+    private Map<Long, TaskRecord> lockExistingTaskRecords(EntityManager em, TaskNode metaTaskNode,
+            Set<TaskNode> mergedTaskNodes) {
+        Map<Long, TaskNode> existingTaskNodes = new TreeMap<>();
+        existingTaskNodes.put(metaTaskNode.getTaskStore().getId(), metaTaskNode);
+        for (TaskNode taskNode : mergedTaskNodes) {
+            List<TaskNode> linkedTaskNodes = new ArrayList<>(taskNode.getPredecessors());
+            linkedTaskNodes.addAll(taskNode.getSuccessors());
+            if (taskNode.getProducer() != null) {
+                linkedTaskNodes.add(taskNode.getProducer());
+            }
+            for (TaskNode linkedTaskNode : linkedTaskNodes) {
+                if (!linkedTaskNode.isStartOrEndTask() && !mergedTaskNodes.contains(linkedTaskNode)) {
+                    existingTaskNodes.put(linkedTaskNode.getTaskStore().getId(), linkedTaskNode);
+                }
+            }
+        }
+
+        Map<Long, TaskRecord> existingTaskRecords = new HashMap<>();
+        for (Map.Entry<Long, TaskNode> entry : existingTaskNodes.entrySet()) {
+            TaskRecord taskRecord = em.find(TaskRecord.class, entry.getKey(), LockModeType.PESSIMISTIC_WRITE);
+            entry.getValue().setTaskStore(taskRecord);
+            existingTaskRecords.put(entry.getKey(), taskRecord);
+        }
+        return existingTaskRecords;
+    }
+
+    /**
+     * Allocates {@code count} evenly spaced dependency orders strictly between
+     * {@code lowerOrder} and {@code upperOrder}. A null upper bound means there
+     * are no tasks ordered after the lower bound.
+     *
+     * @return the allocated orders, or null if the gap is too small
+     */
+    static long[] allocateDependencyOrders(long lowerOrder, Long upperOrder, int count) {
+        long upper = upperOrder != null ? upperOrder : lowerOrder + DEPENDENCY_ORDER_GAP * (count + 1);
+        long step = (upper - lowerOrder) / (count + 1);
+        if (step < 1) {
+            return null;
+        }
+
+        long[] orders = new long[count];
+        for (int i = 0; i < count; i++) {
+            orders[i] = lowerOrder + step * (i + 1);
+        }
+        return orders;
+    }
+
     static <T extends Enum<T>> T toEntityType(Class<T> toClass, Enum<?> original) {
         return original == null ? null : (T) Enum.valueOf(toClass, original.name());
     }
 
     private void persistTaskGraph(EntityManager em) {
-        Long i = 1L;
+        long i = 1L;
         for (TaskNode taskNode : this.taskGraph.getGraph().topologicalSort()) {
             if (taskNode.isStartOrEndTask()) {
                 continue;
@@ -640,22 +849,11 @@ public class Job implements Runnable, JobElement {
             }
             taskNode.setTaskStore(taskRecord);
 
-            taskRecord.setName(taskNode.getSafeTaskName());
-            taskRecord.setDependencyOrder(i++);
-            taskRecord.setTaskGaurd(taskNode.getTaskGaurd());
-            taskRecord.setState(((TaskStateElementImpl)taskNode.getState()).getState());
-            taskRecord.setStatus(((TaskStatusElementImpl)taskNode.getStatus()).getStatus());
+            taskRecord.setDependencyOrder(DEPENDENCY_ORDER_GAP * i++);
+            populateTaskRecord(taskNode, taskRecord);
 
             if (taskRecord.getId() == null) {
-                if (taskNode.getTask().getObjects() != null) {
-                    // Add object references only on creation to ensure uniqueness
-                    for (LockObjectReference lor : taskNode.getTask().getObjects()) {
-                        TaskObject taskObject = new TaskObject(taskRecord,
-                                lor.getName(), toEntityType(ObjectType.class, lor.getType()),
-                                lor.getId());
-                        taskRecord.addObject(taskObject);
-                    }
-                }
+                addTaskObjects(taskNode, taskRecord);
 
                 OSCEntityManager.create(em, taskRecord, StaticRegistry.transactionalBroadcastUtil());
             } else {
@@ -703,25 +901,42 @@ public class Job implements Runnable, JobElement {
         }
     }
 
+    private void populateTaskRecord(TaskNode taskNode, TaskRecord taskRecord) {
+        taskRecord.setName(taskNode.getSafeTaskName());
+        taskRecord.setTaskGaurd(taskNode.getTaskGaurd());
+        taskRecord.setState(((TaskStateElementImpl)taskNode.getState()).getState());
+        taskRecord.setStatus(((TaskStatusElementImpl)taskNode.getStatus()).getStatus());
+    }
+
+    private void addTaskObjects(TaskNode taskNode, TaskRecord taskRecord) {
+        if (taskNode.getTask().getObjects() != null) {
+            // Add object references only on creation to ensure uniqueness
+            for (LockObjectReference lor : taskNode.getTask().getObjects()) {
+                TaskObject taskObject = new TaskObject(taskRecord,
+                        lor.getName(), toEntityType(ObjectType.class, lor.getType()),
+                        lor.getId());
+                taskRecord.addObject(taskObject);
+            }
+        }
+    }
+
     /**
-     * Gets all the acquired lock references to objects within the task graph
+     * Gets the unlock tasks of all the acquired locks within the task graph
      *
      */
-    List<LockObjectReference> getCurrentLockReferences() {
-        List<LockObjectReference> lockReferences = new ArrayList<>();
+    List<Task> getUnlockTasks() {
+        List<Task> unlockTasks = new ArrayList<>();
         Set<TaskNode> allNodes = this.taskGraph.getGraph().getNodes();
 
         for (TaskNode node : allNodes) {
             Task task = node.getTask();
             if (task instanceof UnlockObjectTask) {
-                UnlockObjectTask unlockTask = (UnlockObjectTask) task;
-                lockReferences.add(unlockTask.getObjectRef());
+                unlockTasks.add(task);
             } else if (task instanceof UnlockObjectMetaTask) {
-                UnlockObjectMetaTask unlockMetaTask = (UnlockObjectMetaTask) task;
-                lockReferences.addAll(unlockMetaTask.getLockObjectReferences());
+                unlockTasks.addAll(((UnlockObjectMetaTask) task).getUnlockTasks());
             }
         }
-        return lockReferences;
+        return unlockTasks;
     }
 
 }
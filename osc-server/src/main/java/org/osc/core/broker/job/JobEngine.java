@@ -17,23 +17,39 @@
 package org.osc.core.broker.job;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
 
 import org.osc.core.broker.job.Job.JobCompletionListener;
 import org.osc.core.broker.job.Job.TaskChangeListener;
+import org.osc.core.broker.job.lock.DeadlockHandler;
+import org.osc.core.broker.job.lock.LockManager;
 import org.osc.core.broker.job.lock.LockObjectReference;
+import org.osc.core.broker.job.lock.LockRequest;
 import org.osc.core.broker.service.common.VmidcMessages;
 import org.osc.core.broker.service.common.VmidcMessages_;
+import org.osc.core.broker.service.exceptions.VmidcBrokerBusyException;
 import org.osc.core.broker.service.exceptions.VmidcBrokerValidationException;
+import org.osc.core.broker.service.tasks.conformance.UnlockObjectTask;
 import org.slf4j.LoggerFactory;
 import org.osc.core.common.job.JobState;
 import org.slf4j.Logger;
@@ -52,11 +68,17 @@ public final class JobEngine {
 
     private static int jobThreadPoolSize = DEFAULT_JOB_THREAD_POOL_SIZE;
     private static int taskThreadPoolSize = DEFAULT_TASK_THREAD_POOL_SIZE;
+    private static Map<JobPriority, Integer> maxQueuedJobs = new EnumMap<>(JobPriority.class);
+
+    /*
+     * Admission class of the jobs submitted by the current thread
+     */
+    private static final ThreadLocal<JobPriority> submissionPriority = new ThreadLocal<>();
 
     private static Logger logger = LoggerFactory.getLogger(JobEngine.class);
 
     private static JobEngine jobEngine = new JobEngine();
-    List<Job> activeJobs = new ArrayList<Job>();
+    List<Job> activeJobs = new CopyOnWriteArrayList<Job>();
     private boolean initialized = false;
     private boolean isShutdown = false;
 
@@ -71,7 +93,20 @@ public final class JobEngine {
 
     private Set<JobCompletionListener> jobCompletionListeners = new HashSet<JobCompletionListener>();
 
+    /*
+     * Jobs waiting for an execution thread per admission class, along with
+     * the jobs which can be coalesced with later duplicates. Only jobs still
+     * queued are coalesced: a running job may already have read the state the
+     * duplicate was submitted for.
+     */
+    private final Map<JobPriority, AdmissionStats> admissionStats = new EnumMap<>(JobPriority.class);
+    private final Map<JobKey, QueuedJob> coalescableJobs = new ConcurrentHashMap<>();
+    private final AtomicLong submissionSequence = new AtomicLong();
+
     private JobEngine() {
+        for (JobPriority priority : JobPriority.values()) {
+            this.admissionStats.put(priority, new AdmissionStats());
+        }
     }
 
     public synchronized void init(int jobThreadPoolSize, int taskThreadPoolSize) {
@@ -79,14 +114,17 @@ public final class JobEngine {
             return;
         }
 
+        // Queued jobs are started by priority, see QueuedJob
         this.jobExecutor = new ThreadPoolExecutor(jobThreadPoolSize, jobThreadPoolSize, 60, TimeUnit.SECONDS,
-                new LinkedBlockingQueue<Runnable>(), new ThreadFactoryBuilder().setNameFormat("isc-job-pool-%d")
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactoryBuilder().setNameFormat("isc-job-pool-%d")
                 .build(), new RejectedExecutionHandlerImpl());
 
         this.taskExecutor = new ThreadPoolExecutor(taskThreadPoolSize, taskThreadPoolSize, 60, TimeUnit.SECONDS,
                 new LinkedBlockingQueue<Runnable>(), new ThreadFactoryBuilder().setNameFormat("isc-task-pool-%d")
                 .build(), new RejectedExecutionHandlerImpl());
 
+        LockManager.getLockManager().setDeadlockHandler(new JobDeadlockHandler());
+
         jobEngine.initialized = true;
     }
 
@@ -105,6 +143,169 @@ public final class JobEngine {
         }
     }
 
+    /**
+     * A job waiting in the job executor queue. Jobs are ordered by admission
+     * class first and by submission order within a class.
+     */
+    private final class QueuedJob extends FutureTask<Void> implements Comparable<QueuedJob> {
+
+        private final Job job;
+        private final JobPriority priority;
+        private final JobKey key;
+        private final long sequence;
+        private final long queuedTime = System.currentTimeMillis();
+        private final AtomicBoolean dequeued = new AtomicBoolean();
+
+        private QueuedJob(Job job, JobPriority priority, JobKey key) {
+            super(job, null);
+            this.job = job;
+            this.priority = priority;
+            this.key = key;
+            this.sequence = JobEngine.this.submissionSequence.incrementAndGet();
+        }
+
+        @Override
+        public void run() {
+            dequeue();
+            super.run();
+        }
+
+        @Override
+        protected void done() {
+            // Covers jobs aborted before they got to run
+            dequeue();
+        }
+
+        private void dequeue() {
+            if (this.dequeued.compareAndSet(false, true)) {
+                if (this.key != null) {
+                    JobEngine.this.coalescableJobs.remove(this.key, this);
+                }
+                JobEngine.this.admissionStats.get(this.priority).dequeued(System.currentTimeMillis() - this.queuedTime);
+            }
+        }
+
+        @Override
+        public int compareTo(QueuedJob other) {
+            int result = this.priority.compareTo(other.priority);
+            return result != 0 ? result : Long.compare(this.sequence, other.sequence);
+        }
+
+        @Override
+        public String toString() {
+            return this.job.toString();
+        }
+    }
+
+    /**
+     * Identifies duplicate jobs: jobs with the same name submitted against the
+     * same set of objects.
+     */
+    private static final class JobKey {
+
+        private final String name;
+        private final Set<LockObjectReference> objects;
+
+        private JobKey(String name, Set<LockObjectReference> objects) {
+            this.name = name;
+            this.objects = objects;
+        }
+
+        @Override
+        public int hashCode() {
+            return new HashCodeBuilder().append(this.name).append(this.objects).toHashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof JobKey)) {
+                return false;
+            }
+
+            JobKey that = (JobKey) obj;
+            return new EqualsBuilder().append(this.name, that.name).append(this.objects, that.objects).isEquals();
+        }
+    }
+
+    private static final class AdmissionStats {
+
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicLong started = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong coalesced = new AtomicLong();
+        private final AtomicLong totalQueueTimeMs = new AtomicLong();
+        private volatile long maxQueueTimeMs;
+
+        private void dequeued(long queueTimeMs) {
+            this.queued.decrementAndGet();
+            this.started.incrementAndGet();
+            this.totalQueueTimeMs.addAndGet(queueTimeMs);
+            if (queueTimeMs > this.maxQueueTimeMs) {
+                this.maxQueueTimeMs = queueTimeMs;
+            }
+        }
+
+        private double getAverageQueueTimeMs() {
+            long count = this.started.get();
+            return count == 0 ? 0 : (double) this.totalQueueTimeMs.get() / count;
+        }
+    }
+
+    /**
+     * Tracks jobs for the {@link LockManager} wait-for graph. A queued job
+     * waits for a running job to free an execution thread once the job pool
+     * is saturated.
+     */
+    private class JobDeadlockHandler implements DeadlockHandler {
+
+        @Override
+        public boolean isWaitingForExecution(Object owner) {
+            return owner instanceof Job && ((Job) owner).getState().getState() == JobState.QUEUED
+                    && JobEngine.this.jobExecutor.getActiveCount() >= JobEngine.this.jobExecutor.getMaximumPoolSize();
+        }
+
+        @Override
+        public Collection<?> getRunningOwners() {
+            List<Job> runningJobs = new ArrayList<>();
+            for (Job job : JobEngine.this.activeJobs) {
+                if (job.getState().getState() == JobState.RUNNING) {
+                    runningJobs.add(job);
+                }
+            }
+            return runningJobs;
+        }
+
+        @Override
+        public void resolve(Set<Object> cycle) {
+            resolveDeadlock(cycle);
+        }
+    }
+
+    /**
+     * Aborts the youngest job of a wait-for cycle.
+     *
+     * @return the aborted job
+     */
+    private Job resolveDeadlock(Set<Object> cycle) {
+        Job youngest = null;
+        for (Object owner : cycle) {
+            if (owner instanceof Job) {
+                Job job = (Job) owner;
+                if (youngest == null || (job.getQueuedTimestamp() != null
+                        && (youngest.getQueuedTimestamp() == null
+                        || job.getQueuedTimestamp().after(youngest.getQueuedTimestamp())))) {
+                    youngest = job;
+                }
+            }
+        }
+
+        if (youngest != null) {
+            logger.warn("Deadlock detected between jobs " + cycle + ". Aborting " + youngest);
+            youngest.abort(VmidcMessages.getString(VmidcMessages_.JOB_ABORT_DEADLOCK));
+        }
+        return youngest;
+    }
+
     public void shutdown() {
         logger.info("Job Engine Shutdown Requested");
         this.isShutdown = true;
@@ -118,6 +319,7 @@ public final class JobEngine {
         } catch (InterruptedException e) {
             logger.warn("Couldn't wait any longer for job(s) completion. Shutting down job engine.", e);
         }
+        JobStateJournal.getJournal().shutdown();
     }
 
     /**
@@ -142,6 +344,14 @@ public final class JobEngine {
                         this.taskExecutor.getActiveCount(), this.taskExecutor.getCompletedTaskCount(),
                         this.taskExecutor.getTaskCount(), this.taskExecutor.getQueue().size(),
                         this.taskExecutor.isShutdown(), this.taskExecutor.isTerminated()));
+        for (JobPriority priority : JobPriority.values()) {
+            logger.debug(String
+                    .format("[job admission] %s queue-size: %d/%d, avg-queue-time: %.1fms, max-queue-time: %dms, rejected: %d, coalesced: %d",
+                            priority, getQueueDepth(priority), getMaxQueuedJobs(priority),
+                            getAverageQueueTimeMs(priority), getMaxQueueTimeMs(priority),
+                            getRejectedJobCount(priority), getCoalescedJobCount(priority)));
+        }
+        logger.debug(JobStateJournal.getJournal().toString());
     }
 
     public Job submit(String name, TaskGraph taskGraph, JobCompletionListener listener, boolean persistent)
@@ -183,6 +393,37 @@ public final class JobEngine {
                     throws Exception {
         if (!this.isShutdown) {
             Job job = new Job(name, taskGraph, objects, this.taskExecutor);
+
+            JobPriority priority = getSubmissionPriority();
+            AdmissionStats stats = this.admissionStats.get(priority);
+
+            // Background jobs duplicating a job which has not started yet are
+            // served by that job, which takes over their listeners. Running
+            // jobs are never coalesced with.
+            JobKey key = null;
+            if (priority != JobPriority.INTERACTIVE && objects != null && !objects.isEmpty()) {
+                key = new JobKey(name, objects);
+                QueuedJob queuedJob = this.coalescableJobs.get(key);
+                if (queuedJob != null && !queuedJob.dequeued.get()) {
+                    logger.info("Job '" + name + "' coalesced with queued job " + queuedJob.job.getId());
+                    releaseLocks(job);
+                    if (jobCompletionListener != null) {
+                        queuedJob.job.addListener(jobCompletionListener);
+                    }
+                    if (taskChangeListener != null) {
+                        queuedJob.job.addListener(taskChangeListener);
+                    }
+                    stats.coalesced.incrementAndGet();
+                    return queuedJob.job;
+                }
+            }
+
+            if (stats.queued.get() >= getMaxQueuedJobs(priority)) {
+                stats.rejected.incrementAndGet();
+                logger.warn("Rejecting job '" + name + "', " + stats.queued.get() + " " + priority + " jobs are queued");
+                throw new VmidcBrokerBusyException("Too many jobs are queued. Please try again later.");
+            }
+
             if (persistent) {
                 job.persistJob();
             }
@@ -198,34 +439,71 @@ public final class JobEngine {
             }
 
             job.setState(JobState.QUEUED);
-            if (this.jobExecutor.getActiveCount() >= DEFAULT_JOB_THREAD_POOL_SIZE) {
-                // We have no threads to execute this job, see if this job has a lock which the
-                // other jobs are waiting on, and abort if necessary.
-                List<LockObjectReference> currentJobLockReferences = job.getCurrentLockReferences();
-                List<LockObjectReference> activeJobsLockReferences = new ArrayList<>();
-                Iterator<Job> it = this.activeJobs.iterator();
-                while (it.hasNext()) {
-                    Job activeJob = it.next();
-                    activeJobsLockReferences.addAll(activeJob.getCurrentLockReferences());
-                }
 
-                for (LockObjectReference currentJobLockReference : currentJobLockReferences) {
-                    if (activeJobsLockReferences.contains(currentJobLockReference)) {
-                        job.abort(VmidcMessages.getString(VmidcMessages_.JOB_ABORT_DEADLOCK));
-                        throw new VmidcBrokerValidationException("Job will Result in DeadLock. Please try again later.");
-                    }
-                }
+            // Make the job the owner of the locks it will release and check
+            // whether queuing it leaves running jobs waiting on those locks
+            // with no thread left to release them.
+            LockManager lockManager = LockManager.getLockManager();
+            for (Task unlockTask : job.getUnlockTasks()) {
+                lockManager.assignOwner(unlockTask, job);
+            }
+            Set<Object> cycle = lockManager.findDeadlock(job);
+            if (!cycle.isEmpty() && resolveDeadlock(cycle) == job) {
+                throw new VmidcBrokerValidationException("Job will Result in DeadLock. Please try again later.");
             }
             this.activeJobs.add(job);
 
-            Future<?> future = this.jobExecutor.submit(job);
-            job.future = future;
+            QueuedJob queuedJob = new QueuedJob(job, priority, key);
+            stats.queued.incrementAndGet();
+            if (key != null) {
+                this.coalescableJobs.put(key, queuedJob);
+            }
+            job.future = queuedJob;
+            this.jobExecutor.execute(queuedJob);
             return job;
         } else {
             throw new VmidcBrokerValidationException("Cannot process job, job engine is shutting down.");
         }
     }
 
+    /**
+     * Releases the locks placed for a job which is not going to run.
+     */
+    private void releaseLocks(Job job) {
+        for (Task unlockTask : job.getUnlockTasks()) {
+            LockManager.getLockManager().releaseLock(new LockRequest((UnlockObjectTask) unlockTask));
+        }
+    }
+
+    /**
+     * @return true if a job submitted against the given object is queued or
+     *         running
+     */
+    public boolean hasActiveJob(LockObjectReference objectRef) {
+        for (Job job : this.activeJobs) {
+            Set<LockObjectReference> objects = job.getObjects();
+            if (objects != null && objects.contains(objectRef) && !job.getState().getState().isTerminalState()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if a job submitted against the given object is queued and
+     *         has not started running yet
+     */
+    public boolean hasQueuedJob(LockObjectReference objectRef) {
+        for (Job job : this.activeJobs) {
+            Set<LockObjectReference> objects = job.getObjects();
+            JobState state = job.getState().getState();
+            if (objects != null && objects.contains(objectRef) && !state.isRunning() && !state.isTerminalState()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public boolean isActive() {
         return this.jobExecutor.getActiveCount() > 0;
     }
@@ -244,6 +522,79 @@ public final class JobEngine {
         taskThreadPoolSize = Integer.parseInt(value);
     }
 
+    public static void setMaxQueuedJobs(JobPriority priority, String value) {
+        if (value == null) {
+            return;
+        }
+        maxQueuedJobs.put(priority, Integer.parseInt(value));
+    }
+
+    private static int getMaxQueuedJobs(JobPriority priority) {
+        Integer max = maxQueuedJobs.get(priority);
+        return max != null ? max : priority.getDefaultMaxQueuedJobs();
+    }
+
+    /**
+     * Sets the admission class of the jobs submitted by the current thread.
+     * Jobs are submitted as {@link JobPriority#INTERACTIVE} unless told
+     * otherwise.
+     *
+     * @param priority
+     *            the admission class, or null to reset it
+     */
+    public static void setSubmissionPriority(JobPriority priority) {
+        if (priority == null) {
+            submissionPriority.remove();
+        } else {
+            submissionPriority.set(priority);
+        }
+    }
+
+    static JobPriority getSubmissionPriority() {
+        JobPriority priority = submissionPriority.get();
+        return priority != null ? priority : JobPriority.INTERACTIVE;
+    }
+
+    /**
+     * @return the number of jobs of the given class waiting for an execution
+     *         thread
+     */
+    public int getQueueDepth(JobPriority priority) {
+        return this.admissionStats.get(priority).queued.get();
+    }
+
+    /**
+     * @return the average time in milliseconds jobs of the given class waited
+     *         before starting
+     */
+    public double getAverageQueueTimeMs(JobPriority priority) {
+        return this.admissionStats.get(priority).getAverageQueueTimeMs();
+    }
+
+    /**
+     * @return the longest time in milliseconds a job of the given class waited
+     *         before starting
+     */
+    public long getMaxQueueTimeMs(JobPriority priority) {
+        return this.admissionStats.get(priority).maxQueueTimeMs;
+    }
+
+    /**
+     * @return the number of jobs of the given class rejected because their
+     *         queue was full
+     */
+    public long getRejectedJobCount(JobPriority priority) {
+        return this.admissionStats.get(priority).rejected.get();
+    }
+
+    /**
+     * @return the number of jobs of the given class served by an identical
+     *         queued job
+     */
+    public long getCoalescedJobCount(JobPriority priority) {
+        return this.admissionStats.get(priority).coalesced.get();
+    }
+
     private synchronized void abortAllJobs(String reason) {
         // Active jobs will be changing as jobs are completed. Act on snapshot of jobs that we know.
         CopyOnWriteArrayList<Job> activeJobsCopy = new CopyOnWriteArrayList<>(this.activeJobs);
@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.job;
+
+/**
+ * JobPriority is the admission class a {@link Job} is submitted under. Queued
+ * jobs are started in priority order and in submission order within a class,
+ * each class having its own bound on the number of queued jobs.
+ */
+public enum JobPriority {
+    /**
+     * Jobs requested by a user through the REST API or UI.
+     */
+    INTERACTIVE(1000),
+    /**
+     * Jobs triggered by a notification from a virtualization environment.
+     */
+    NOTIFICATION(500),
+    /**
+     * Jobs started by the scheduled syncs.
+     */
+    PERIODIC(200);
+
+    private final int defaultMaxQueuedJobs;
+
+    private JobPriority(int defaultMaxQueuedJobs) {
+        this.defaultMaxQueuedJobs = defaultMaxQueuedJobs;
+    }
+
+    public int getDefaultMaxQueuedJobs() {
+        return this.defaultMaxQueuedJobs;
+    }
+}
@@ -0,0 +1,345 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.job;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+
+import org.osc.core.broker.model.entities.job.JobRecord;
+import org.osc.core.broker.model.entities.job.TaskRecord;
+import org.osc.core.broker.service.persistence.OSCEntityManager;
+import org.osc.core.broker.util.StaticRegistry;
+import org.osc.core.broker.util.db.HibernateUtil;
+import org.osgi.service.transaction.control.ScopedWorkException;
+import org.osgi.service.transaction.control.TransactionControl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Write-behind journal for {@link Job} and {@link TaskNode} state and status
+ * changes.
+ * <p>
+ * Instead of opening a transaction for every transition, jobs and tasks mark
+ * themselves dirty here. Dirty entries are coalesced per job/task and written
+ * in a single transaction every {@link #FLUSH_INTERVAL_MS} or as soon as
+ * {@link #FLUSH_THRESHOLD} entries are pending, whichever comes first. The
+ * values written are read from the job/task at flush time, so any number of
+ * transitions in between cost a single row update.
+ * <p>
+ * If the batch transaction fails, its entries are written one by one so a
+ * single bad entry does not hold up the others. Entries which still fail are
+ * retried by the next flushes and given up after {@link #MAX_WRITE_ATTEMPTS}
+ * attempts.
+ */
+public final class JobStateJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(JobStateJournal.class);
+
+    static final long FLUSH_INTERVAL_MS = 100;
+    static final int FLUSH_THRESHOLD = 100;
+    static final int MAX_WRITE_ATTEMPTS = 5;
+
+    private static JobStateJournal journal = new JobStateJournal();
+
+    /*
+     * Dirty jobs and task nodes in the order they were first marked
+     */
+    private final Set<Object> pending = new LinkedHashSet<>();
+
+    /*
+     * Serializes flushes so entries are never written out of order
+     */
+    private final Object flushLock = new Object();
+
+    /*
+     * Number of failed attempts to write an entry, guarded by the flush lock
+     */
+    private final Map<Object, Integer> failedAttempts = new HashMap<>();
+
+    private ScheduledExecutorService flushExecutor;
+
+    private final AtomicLong changesReceived = new AtomicLong();
+    private final AtomicLong recordsWritten = new AtomicLong();
+    private final AtomicLong recordsDropped = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong totalFlushTimeMs = new AtomicLong();
+    private volatile long lastFlushTimeMs;
+
+    JobStateJournal() {
+    }
+
+    public static JobStateJournal getJournal() {
+        return journal;
+    }
+
+    void record(Job job) {
+        enqueue(job);
+    }
+
+    void record(TaskNode taskNode) {
+        enqueue(taskNode);
+    }
+
+    private void enqueue(Object entry) {
+        boolean flushNow;
+        synchronized (this) {
+            if (this.flushExecutor == null) {
+                this.flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                        .setNameFormat("isc-job-journal-%d").setDaemon(true).build());
+                this.flushExecutor.scheduleWithFixedDelay(this::flushQuietly, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS,
+                        TimeUnit.MILLISECONDS);
+            }
+
+            this.pending.add(entry);
+            flushNow = this.pending.size() == FLUSH_THRESHOLD;
+        }
+        this.changesReceived.incrementAndGet();
+
+        if (flushNow) {
+            this.flushExecutor.execute(this::flushQuietly);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Throwable t) {
+            log.error("Fail to flush job state journal", t);
+        }
+    }
+
+    /**
+     * Synchronously writes all pending job and task changes. Entries that fail
+     * to be written are put back in the journal to be retried on the next
+     * flush.
+     *
+     * @return true if all pending changes were written
+     */
+    public boolean flush() {
+        return flushEntries().isEmpty();
+    }
+
+    /**
+     * Synchronously writes all pending job and task changes, flushing again
+     * until the changes of the given job or task are written or given up.
+     *
+     * @return true if the changes of the given job or task were written
+     */
+    boolean flush(Object entry) {
+        for (;;) {
+            if (!flushEntries().contains(entry)) {
+                return true;
+            }
+            synchronized (this) {
+                if (!this.pending.contains(entry)) {
+                    // Given up after too many attempts
+                    return false;
+                }
+            }
+            try {
+                Thread.sleep(FLUSH_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /*
+     * @return the entries drained from the journal which could not be written
+     */
+    private Set<Object> flushEntries() {
+        synchronized (this.flushLock) {
+            List<Object> entries;
+            synchronized (this) {
+                if (this.pending.isEmpty()) {
+                    return Collections.emptySet();
+                }
+                entries = new ArrayList<>(this.pending);
+                this.pending.clear();
+            }
+
+            long start = System.currentTimeMillis();
+            Set<Object> notWritten = new LinkedHashSet<>();
+            try {
+                write(entries);
+            } catch (Exception e) {
+                log.warn("Fail to flush " + entries.size() + " job/task records, writing them one by one", unwrap(e));
+                for (Object entry : entries) {
+                    try {
+                        write(Collections.singletonList(entry));
+                    } catch (Exception entryException) {
+                        notWritten.add(entry);
+                        writeFailed(entry, unwrap(entryException));
+                    }
+                }
+            }
+
+            List<Object> retries = new ArrayList<>();
+            for (Object entry : entries) {
+                if (!notWritten.contains(entry)) {
+                    this.failedAttempts.remove(entry);
+                } else if (this.failedAttempts.containsKey(entry)) {
+                    retries.add(entry);
+                }
+            }
+            requeue(retries);
+
+            this.lastFlushTimeMs = System.currentTimeMillis() - start;
+            this.totalFlushTimeMs.addAndGet(this.lastFlushTimeMs);
+            this.flushCount.incrementAndGet();
+            this.recordsWritten.addAndGet(entries.size() - notWritten.size());
+            return notWritten;
+        }
+    }
+
+    private void write(List<Object> entries) throws Exception {
+        EntityManager em = HibernateUtil.getTransactionalEntityManager();
+        TransactionControl txControl = HibernateUtil.getTransactionControl();
+        txControl.requiresNew(() -> {
+            for (Object entry : entries) {
+                if (entry instanceof TaskNode) {
+                    writeTaskRecord(em, (TaskNode) entry);
+                } else {
+                    writeJobRecord(em, (Job) entry);
+                }
+            }
+            return null;
+        });
+    }
+
+    /*
+     * Counts the failed attempt, giving up on the entry once it failed too many times
+     */
+    private void writeFailed(Object entry, Throwable cause) {
+        int attempts = this.failedAttempts.getOrDefault(entry, 0) + 1;
+        if (attempts < MAX_WRITE_ATTEMPTS) {
+            this.failedAttempts.put(entry, attempts);
+            log.warn("Fail to write " + entry + " (attempt " + attempts + "), it will be retried", cause);
+        } else {
+            this.failedAttempts.remove(entry);
+            this.recordsDropped.incrementAndGet();
+            log.error("Fail to write " + entry + " after " + attempts + " attempts, its changes are dropped", cause);
+        }
+    }
+
+    private static Throwable unwrap(Exception e) {
+        // Unwrap the ScopedWorkException to get the cause from the scoped work
+        return e instanceof ScopedWorkException ? e.getCause() : e;
+    }
+
+    private void writeTaskRecord(EntityManager em, TaskNode taskNode) {
+        TaskRecord taskRecord = em.find(TaskRecord.class, taskNode.getTaskStore().getId(),
+                LockModeType.PESSIMISTIC_WRITE);
+        if (taskRecord == null) {
+            return;
+        }
+
+        taskNode.writeTo(taskRecord);
+        OSCEntityManager.update(em, taskRecord, StaticRegistry.transactionalBroadcastUtil());
+    }
+
+    private void writeJobRecord(EntityManager em, Job job) {
+        JobRecord jobRecord = em.find(JobRecord.class, job.getJobRecord().getId());
+        if (jobRecord == null) {
+            return;
+        }
+
+        job.writeTo(jobRecord);
+        OSCEntityManager.update(em, jobRecord, StaticRegistry.transactionalBroadcastUtil());
+    }
+
+    private synchronized void requeue(List<Object> entries) {
+        // Keep entries marked since the failed flush ahead of them
+        Set<Object> newer = new LinkedHashSet<>(this.pending);
+        this.pending.clear();
+        this.pending.addAll(entries);
+        this.pending.addAll(newer);
+    }
+
+    void shutdown() {
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            executor = this.flushExecutor;
+            this.flushExecutor = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+        flushQuietly();
+    }
+
+    /**
+     * @return the number of jobs and tasks waiting to be written
+     */
+    public synchronized int getQueueDepth() {
+        return this.pending.size();
+    }
+
+    /**
+     * @return the duration in milliseconds of the last successful flush
+     */
+    public long getLastFlushLatencyMs() {
+        return this.lastFlushTimeMs;
+    }
+
+    /**
+     * @return the average duration in milliseconds of successful flushes
+     */
+    public double getAverageFlushLatencyMs() {
+        long flushes = this.flushCount.get();
+        return flushes == 0 ? 0 : (double) this.totalFlushTimeMs.get() / flushes;
+    }
+
+    /**
+     * @return the number of job and task changes given up after failing to be
+     *         written {@link #MAX_WRITE_ATTEMPTS} times
+     */
+    public long getRecordsDropped() {
+        return this.recordsDropped.get();
+    }
+
+    /**
+     * @return the number of changes recorded per row written, 1.0 meaning no
+     *         coalescing took place
+     */
+    public double getCoalescingRatio() {
+        long written = this.recordsWritten.get();
+        return written == 0 ? 1.0 : (double) this.changesReceived.get() / written;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[job journal] queue-depth: %d, flushes: %d, last-flush: %dms, avg-flush: %.1fms, coalescing-ratio: %.2f, dropped: %d",
+                getQueueDepth(), this.flushCount.get(), getLastFlushLatencyMs(), getAverageFlushLatencyMs(),
+                getCoalescingRatio(), getRecordsDropped());
+    }
+}
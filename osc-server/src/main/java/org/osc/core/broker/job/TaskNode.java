@@ -23,16 +23,12 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.Future;
 
-import javax.persistence.EntityManager;
-import javax.persistence.LockModeType;
-
 import org.joda.time.DateTime;
 import org.osc.core.broker.job.Job.TaskChangeListener;
+import org.osc.core.broker.job.lock.LockManager;
 import org.osc.core.broker.model.entities.job.TaskRecord;
-import org.osc.core.broker.service.persistence.OSCEntityManager;
+import org.osc.core.broker.service.persistence.EntityChangeTracker;
 import org.osc.core.broker.util.SessionUtil;
-import org.osc.core.broker.util.StaticRegistry;
-import org.osc.core.broker.util.db.HibernateUtil;
 import org.slf4j.LoggerFactory;
 import org.osc.core.common.job.TaskGuard;
 import org.osc.core.common.job.TaskState;
@@ -40,8 +36,6 @@ import org.osc.core.common.job.TaskStatus;
 import org.osc.sdk.manager.element.TaskElement;
 import org.osc.sdk.manager.element.TaskStateElement;
 import org.osc.sdk.manager.element.TaskStatusElement;
-import org.osgi.service.transaction.control.ScopedWorkException;
-import org.osgi.service.transaction.control.TransactionControl;
 import org.slf4j.Logger;
 
 /**
@@ -64,6 +58,11 @@ public class TaskNode implements Runnable, TaskElement {
     private DateTime startedTimestamp;
     private DateTime completedTimestamp;
 
+    /*
+     * Guards the state, status and timestamps copied by writeTo() on flush
+     */
+    private final Object stateLock = new Object();
+
     private TaskGraph taskGraph;
 
     private HashMap<String, Object> taskOutputs = new HashMap<String, Object>();
@@ -100,35 +99,33 @@ public class TaskNode implements Runnable, TaskElement {
     }
 
     synchronized void setState(TaskState state) {
-        if (this.state.equals(state)) {
-            return;
-        }
+        synchronized (this.stateLock) {
+            if (this.state.equals(state)) {
+                return;
+            }
 
-        this.state = state;
-
-        DateTime now = new DateTime();
-        switch (state) {
-        case COMPLETED:
-            setCompletedTimestamp(now);
-            break;
-        case PENDING:
-            break;
-        case QUEUED:
-            setQueuedTimestamp(now);
-            break;
-        case RUNNING:
-            setStartedTimestamp(now);
-            break;
-        default:
-            break;
+            this.state = state;
+
+            DateTime now = new DateTime();
+            switch (state) {
+            case COMPLETED:
+                setCompletedTimestamp(now);
+                break;
+            case PENDING:
+                break;
+            case QUEUED:
+                setQueuedTimestamp(now);
+                break;
+            case RUNNING:
+                setStartedTimestamp(now);
+                break;
+            default:
+                break;
+            }
         }
 
         if (this.taskRecord != null) {
-            // Maybe bug on Pessimistic lock
-            // Tracker issue: https://github.com/opensecuritycontroller/osc-core/issues/400
-            synchronized (this.taskGraph.getJob()) {
-                persistState();
-            }
+            JobStateJournal.getJournal().record(this);
         }
 
         // Notify all task state change listeners
@@ -138,32 +135,31 @@ public class TaskNode implements Runnable, TaskElement {
         }
     }
 
-    private void persistState() {
-        try {
-            EntityManager em = HibernateUtil.getTransactionalEntityManager();
-            TransactionControl txControl = HibernateUtil.getTransactionControl();
-            // Use a new transaction to persist this update come what may
-            txControl.requiresNew(() -> {
-                this.taskRecord = em.find(TaskRecord.class, this.taskRecord.getId(),
-                        LockModeType.PESSIMISTIC_WRITE);
-
-                this.taskRecord.setState(this.state);
-                this.taskRecord.setCompletedTimestamp(safeDate(getCompletedTimestamp()));
-                this.taskRecord.setQueuedTimestamp(safeDate(getQueuedTimestamp()));
-                this.taskRecord.setStartedTimestamp(safeDate(getStartedTimestamp()));
-
-                this.taskRecord.setName(getSafeTaskName());
-
-                OSCEntityManager.update(em, this.taskRecord, StaticRegistry.transactionalBroadcastUtil());
-                return null;
-            });
-        } catch (ScopedWorkException e) {
-            // Unwrap the ScopedWorkException to get the cause from
-            // the scoped work (i.e. the executeTransaction() call.
-            log.error("Fail to update TaskRecord " + this, e.getCause());
-        } catch (Exception e) {
-            // TODO: nbartlex - remove when EM and TX are injected
-            log.error("Fail to update TaskRecord " + this, e);
+    /**
+     * Copies the current task state and status onto the given record. Called by
+     * the {@link JobStateJournal} when flushing. Reads under the state lock
+     * rather than this monitor, which {@link #run()} holds for the whole task
+     * execution, so the record never mixes fields of two transitions.
+     */
+    void writeTo(TaskRecord taskRecord) {
+        Throwable failReason;
+        synchronized (this.stateLock) {
+            taskRecord.setState(this.state);
+            taskRecord.setStatus(this.status);
+            taskRecord.setCompletedTimestamp(safeDate(getCompletedTimestamp()));
+            taskRecord.setQueuedTimestamp(safeDate(getQueuedTimestamp()));
+            taskRecord.setStartedTimestamp(safeDate(getStartedTimestamp()));
+            failReason = this.failReason;
+        }
+
+        taskRecord.setName(getSafeTaskName());
+
+        if (failReason != null) {
+            if (failReason.getMessage() != null) {
+                taskRecord.setFailReason(failReason.getMessage());
+            } else {
+                taskRecord.setFailReason(failReason.toString());
+            }
         }
     }
 
@@ -190,19 +186,17 @@ public class TaskNode implements Runnable, TaskElement {
     }
 
     synchronized void setStatus(TaskStatus status, Throwable reason) {
-        if (this.status.equals(status)) {
-            return;
-        }
+        synchronized (this.stateLock) {
+            if (this.status.equals(status)) {
+                return;
+            }
 
-        this.status = status;
-        this.failReason = reason;
+            this.status = status;
+            this.failReason = reason;
+        }
 
         if (this.taskRecord != null) {
-            // Maybe bug on Pessimistic lock
-            // Tracker issue: https://github.com/opensecuritycontroller/osc-core/issues/400
-            synchronized (this.taskGraph.getJob()) {
-                persistStatus();
-            }
+            JobStateJournal.getJournal().record(this);
         }
 
         // Notify all task state change listeners
@@ -227,36 +221,6 @@ public class TaskNode implements Runnable, TaskElement {
         }
     }
 
-    private void persistStatus() {
-        try {
-            EntityManager em = HibernateUtil.getTransactionalEntityManager();
-            TransactionControl txControl = HibernateUtil.getTransactionControl();
-            // Use a new transaction to persist this update come what may
-            txControl.requiresNew(() -> {
-                this.taskRecord = em.find(TaskRecord.class, this.taskRecord.getId(),
-                        LockModeType.PESSIMISTIC_WRITE);
-
-                this.taskRecord.setStatus(this.status);
-                if (this.failReason != null) {
-                    if (this.failReason.getMessage() != null) {
-                        this.taskRecord.setFailReason(this.failReason.getMessage());
-                    } else {
-                        this.taskRecord.setFailReason(this.failReason.toString());
-                    }
-                }
-                OSCEntityManager.update(em, this.taskRecord, StaticRegistry.transactionalBroadcastUtil());
-                return null;
-            });
-        } catch (ScopedWorkException e) {
-            // Unwrap the ScopedWorkException to get the cause from
-            // the scoped work (i.e. the executeTransaction() call.
-            log.error("Fail to update TaskRecord " + this, e.getCause());
-        } catch (Exception e) {
-            // TODO: nbartlex - remove when EM and TX are injected
-            log.error("Fail to update TaskRecord " + this, e);
-        }
-    }
-
     @Override
     public TaskStatusElement getStatus() {
         return new TaskStatusElementImpl(this.status);
@@ -305,6 +269,12 @@ public class TaskNode implements Runnable, TaskElement {
                 SessionUtil.getInstance().setUser(this.taskRecord.getCreatedBy());
             }
 
+            // Locks placed by this task are owned by its job
+            LockManager.getLockManager().setCurrentOwner(getJob());
+
+            // Changes made by tasks are the outcome of a job, not a reason to sync again
+            EntityChangeTracker.getTracker().setTrackingEnabled(false);
+
             this.setStatus(TaskStatus.PASSED);
             setState(TaskState.RUNNING);
 
@@ -346,6 +316,9 @@ public class TaskNode implements Runnable, TaskElement {
 
         } catch (Throwable t) {
             log.error("Fatal error during task execution (" + this + ")", t);
+        } finally {
+            LockManager.getLockManager().setCurrentOwner(null);
+            EntityChangeTracker.getTracker().setTrackingEnabled(true);
         }
     }
 
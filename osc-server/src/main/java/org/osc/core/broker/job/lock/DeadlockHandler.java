@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.job.lock;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Plugged into the {@link LockManager} by the component running lock owners
+ * (typically the job engine) so lock waits that cannot make progress can be
+ * detected and broken.
+ */
+public interface DeadlockHandler {
+
+    /**
+     * @return true if the owner cannot make progress until one of the
+     *         {@link #getRunningOwners()} completes, for instance because it is
+     *         queued for an execution thread.
+     */
+    boolean isWaitingForExecution(Object owner);
+
+    /**
+     * @return the owners currently holding an execution thread
+     */
+    Collection<?> getRunningOwners();
+
+    /**
+     * Breaks the given wait-for cycle, for instance by aborting one of its
+     * owners.
+     *
+     * @param cycle
+     *            the owners forming the cycle, in wait order
+     */
+    void resolve(Set<Object> cycle);
+}
@@ -16,15 +16,25 @@
  *******************************************************************************/
 package org.osc.core.broker.job.lock;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.osc.core.broker.job.Task;
-import org.osc.core.broker.job.lock.LockRequest.LockType;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
 
 public final class LockManager {
 
@@ -39,7 +49,53 @@ public final class LockManager {
         return lockManager;
     }
 
-    private Map<LockObjectReference, ReadWriteLockRecord> lockMap = Maps.newConcurrentMap();
+    /*
+     * Lock records are mapped for as long as a lock request holds or waits
+     * for them. Records are referenced and dereferenced atomically per object
+     * so a record is never discarded while someone is about to lock it.
+     */
+    private final ConcurrentMap<LockObjectReference, ReadWriteLockRecord> lockMap = new ConcurrentHashMap<>();
+
+    /*
+     * Wait-for graph. Lock requests are owned by whoever is responsible for
+     * unlocking them (a job), identified by the request's unlock task. Owners
+     * blocked in acquireLock() are recorded against the objects they wait on.
+     */
+    private Map<Task, Object> lockOwners = Maps.newConcurrentMap();
+    private final Multimap<Object, LockObjectReference> waitingOwners = HashMultimap.create();
+
+    private final ThreadLocal<Object> currentOwner = new ThreadLocal<>();
+
+    private volatile DeadlockHandler deadlockHandler;
+
+    public void setDeadlockHandler(DeadlockHandler deadlockHandler) {
+        this.deadlockHandler = deadlockHandler;
+    }
+
+    /**
+     * Sets the owner on whose behalf locks are acquired by the current thread.
+     * Locks gained by this thread are assigned to the owner and any blocking
+     * wait is tracked in the wait-for graph.
+     *
+     * @param owner
+     *            the owner, or null to clear it
+     */
+    public void setCurrentOwner(Object owner) {
+        if (owner == null) {
+            this.currentOwner.remove();
+        } else {
+            this.currentOwner.set(owner);
+        }
+    }
+
+    /**
+     * Assigns the lock request identified by its unlock task to an owner. Used
+     * for locks which were placed before their owner existed, for example by a
+     * service before submitting the job that releases them.
+     */
+    public void assignOwner(Task unlockTask, Object owner) {
+        this.lockOwners.put(unlockTask, owner);
+    }
 
     /**
      * Try to place a lock on an object. Returns immediately if lock was not
@@ -51,8 +107,16 @@ public final class LockManager {
      * @throws InterruptedException
      */
     public boolean tryAcquireLock(final LockRequest lockRequest) throws InterruptedException {
-        ReadWriteLockRecord lockRecord = getOrAddLockRecord(lockRequest.getObjectRef());
-        return lockRecord.tryLock(lockRequest);
+        ReadWriteLockRecord lockRecord = referenceLockRecord(lockRequest.getObjectRef());
+        boolean locked = false;
+        try {
+            locked = lockRecord.tryLock(lockRequest);
+            return lockGained(lockRequest, locked);
+        } finally {
+            if (!locked) {
+                dereferenceLockRecord(lockRequest.getObjectRef());
+            }
+        }
     }
 
     /**
@@ -68,8 +132,121 @@ public final class LockManager {
      *             if wait operation was interrupted.
      */
     public boolean acquireLock(final LockRequest lockRequest, long timeout) throws InterruptedException {
-        ReadWriteLockRecord lockRecord = getOrAddLockRecord(lockRequest.getObjectRef());
-        return lockRecord.lock(lockRequest, timeout);
+        ReadWriteLockRecord lockRecord = referenceLockRecord(lockRequest.getObjectRef());
+        boolean locked = false;
+        try {
+            locked = waitForLock(lockRecord, lockRequest, timeout);
+            return lockGained(lockRequest, locked);
+        } finally {
+            if (!locked) {
+                dereferenceLockRecord(lockRequest.getObjectRef());
+            }
+        }
+    }
+
+    private boolean waitForLock(ReadWriteLockRecord lockRecord, LockRequest lockRequest, long timeout)
+            throws InterruptedException {
+        Object owner = this.currentOwner.get();
+        if (owner == null) {
+            return lockRecord.lock(lockRequest, timeout);
+        }
+        if (lockRecord.tryLock(lockRequest)) {
+            return true;
+        }
+
+        // We are about to block, check whether this wait closes a cycle
+        synchronized (this.waitingOwners) {
+            this.waitingOwners.put(owner, lockRequest.getObjectRef());
+        }
+        try {
+            Set<Object> cycle = findDeadlock(owner);
+            if (!cycle.isEmpty() && this.deadlockHandler != null) {
+                log.warn("Lock request " + lockRequest + " deadlocks owners " + cycle);
+                this.deadlockHandler.resolve(cycle);
+            }
+
+            return lockRecord.lock(lockRequest, timeout);
+        } finally {
+            synchronized (this.waitingOwners) {
+                this.waitingOwners.remove(owner, lockRequest.getObjectRef());
+            }
+        }
+    }
+
+    private boolean lockGained(LockRequest lockRequest, boolean locked) {
+        Object owner = this.currentOwner.get();
+        if (locked && owner != null) {
+            this.lockOwners.put(lockRequest.getUnlockTask(), owner);
+        }
+        return locked;
+    }
+
+    /**
+     * Looks for a cycle in the wait-for graph going through the given owner.
+     * An owner waits for the owners of the locks it is blocked on and, if it
+     * is waiting for execution, for every running owner. Only the part of the
+     * graph reachable from the owner is visited.
+     *
+     * @return the owners forming the cycle in wait order starting with the
+     *         given owner, or an empty set if there is none
+     */
+    public Set<Object> findDeadlock(Object owner) {
+        Map<Object, Object> waitedBy = new HashMap<>();
+        Set<Object> visited = new HashSet<>();
+        Deque<Object> ownersToVisit = new ArrayDeque<>();
+
+        visited.add(owner);
+        ownersToVisit.add(owner);
+        while (!ownersToVisit.isEmpty()) {
+            Object waiter = ownersToVisit.poll();
+            for (Object waitedOn : getWaitedOnOwners(waiter)) {
+                if (waitedOn.equals(owner)) {
+                    Deque<Object> cycle = new ArrayDeque<>();
+                    for (Object o = waiter; o != null; o = waitedBy.get(o)) {
+                        cycle.addFirst(o);
+                    }
+                    return new LinkedHashSet<>(cycle);
+                }
+                if (visited.add(waitedOn)) {
+                    waitedBy.put(waitedOn, waiter);
+                    ownersToVisit.add(waitedOn);
+                }
+            }
+        }
+
+        return Collections.emptySet();
+    }
+
+    private Set<Object> getWaitedOnOwners(Object waiter) {
+        Set<Object> waitedOn = new HashSet<>();
+
+        Set<LockObjectReference> objectRefs;
+        synchronized (this.waitingOwners) {
+            objectRefs = new HashSet<>(this.waitingOwners.get(waiter));
+        }
+        for (LockObjectReference objectRef : objectRefs) {
+            ReadWriteLockRecord lockRecord = getLockRecord(objectRef);
+            if (lockRecord == null) {
+                continue;
+            }
+            for (Task unlockTask : lockRecord.getLockRequests().keySet()) {
+                Object holder = this.lockOwners.get(unlockTask);
+                if (holder != null && !holder.equals(waiter)) {
+                    waitedOn.add(holder);
+                }
+            }
+        }
+
+        DeadlockHandler handler = this.deadlockHandler;
+        if (handler != null && handler.isWaitingForExecution(waiter)) {
+            for (Object runningOwner : handler.getRunningOwners()) {
+                if (!runningOwner.equals(waiter)) {
+                    waitedOn.add(runningOwner);
+                }
+            }
+        }
+
+        return waitedOn;
     }
 
     /**
@@ -92,7 +269,7 @@ public final class LockManager {
      * @param lockRequest
      *            The {@link LockRequest}
      */
-    public synchronized void releaseLock(LockRequest lockRequest) {
+    public void releaseLock(LockRequest lockRequest) {
         ReadWriteLockRecord lockRecord = getLockRecord(lockRequest.getObjectRef());
         if (lockRecord == null) {
             log.warn("Release lock requested but no active locks found for object "
@@ -100,10 +277,9 @@ public final class LockManager {
             return;
         }
 
-        lockRecord.unlock(lockRequest);
-        if (lockRecord.getLockType() == LockType.UNKNOWN_LOCK && lockRecord.getWaitingWriters() == 0
-                && lockRecord.getReadLockCount() == 0 && lockRecord.getWaitingReaders() == 0) {
-            this.lockMap.remove(lockRequest.getObjectRef());
+        this.lockOwners.remove(lockRequest.getUnlockTask());
+        if (lockRecord.unlock(lockRequest)) {
+            dereferenceLockRecord(lockRequest.getObjectRef());
         }
     }
 
@@ -125,7 +301,15 @@ public final class LockManager {
             return false;
         }
 
-        return lockRecord.upgradeLockWithWait(lockRequest);
+        boolean held = lockRecord.holds(lockRequest);
+        try {
+            return lockRecord.upgradeLockWithWait(lockRequest);
+        } finally {
+            // Upgrading may have to give up the read lock before waiting
+            if (held && !lockRecord.holds(lockRequest)) {
+                dereferenceLockRecord(lockRequest.getObjectRef());
+            }
+        }
     }
 
     /**
@@ -152,17 +336,21 @@ public final class LockManager {
         return this.lockMap.get(objectRef);
     }
 
-    private synchronized ReadWriteLockRecord getOrAddLockRecord(LockObjectReference objectRef) {
-        ReadWriteLockRecord lockRecord = getLockRecord(objectRef);
-        if (lockRecord == null) {
+    private ReadWriteLockRecord referenceLockRecord(LockObjectReference objectRef) {
+        return this.lockMap.compute(objectRef, (ref, lockRecord) -> {
             /*
              * Insert a new lock record, if one doesn't already exist for this
              * object.
              */
-            lockRecord = new ReadWriteLockRecord();
-            this.lockMap.put(objectRef, lockRecord);
-        }
-        return lockRecord;
+            ReadWriteLockRecord referencedRecord = lockRecord == null ? new ReadWriteLockRecord() : lockRecord;
+            referencedRecord.addReference();
+            return referencedRecord;
+        });
+    }
+
+    private void dereferenceLockRecord(LockObjectReference objectRef) {
+        this.lockMap.computeIfPresent(objectRef,
+                (ref, lockRecord) -> lockRecord.removeReference() == 0 ? null : lockRecord);
     }
 
     /**
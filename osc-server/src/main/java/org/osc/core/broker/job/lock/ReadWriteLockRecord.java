@@ -18,8 +18,9 @@ package org.osc.core.broker.job.lock;
 
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
 
-import org.joda.time.DateTime;
 import org.osc.core.broker.job.Task;
 import org.osc.core.broker.job.lock.LockRequest.LockType;
 import org.slf4j.LoggerFactory;
@@ -28,57 +29,135 @@ import org.slf4j.Logger;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 
+/**
+ * Read/write lock placed on a single object.
+ * <p>
+ * Unlike {@link java.util.concurrent.locks.ReentrantReadWriteLock}, locks are
+ * not owned by a thread: they are owned by a {@link LockRequest} and are
+ * usually released by its unlock task running on a different thread. Waiters are queued in FIFO order and only the waiters which can
+ * actually proceed are woken up when a lock is released. Uncontended locks
+ * and unlocks are a single compare-and-set.
+ */
 class ReadWriteLockRecord {
 
     private static final Logger log = LoggerFactory.getLogger(ReadWriteLockRecord.class);
 
-    private LockType lockType = LockType.UNKNOWN_LOCK;
+    private final Sync sync = new Sync();
 
     /*
      * Hold all locks requests placed on this lock record the object mapped by their unlock task
      */
-    private Map<Task, LockRequest> lockRequestsMap = Maps.newConcurrentMap();
+    private final Map<Task, LockRequest> lockRequestsMap = Maps.newConcurrentMap();
 
     /*
-     * Count current reader count
+     * Number of lock requests holding or waiting for this record. Only
+     * modified by the LockManager while (un)mapping the record, so it knows
+     * when the record can be discarded.
      */
-    private int readLockCount = 0;
-    /*
-     * Count write lock waiters
-     */
-    private int waitingWriters = 0;
-    /*
-     * Count read lock waiters
+    private int references = 0;
+
+    /**
+     * Synchronizer state is -1 when write locked, otherwise the number of read
+     * locks held.
      */
-    private int waitingReaders = 0;
-
-    public ReadWriteLockRecord() {
-        // Initially, lock type is unknown till first lock is successfully placed.
-        this.lockType = LockType.UNKNOWN_LOCK;
-        this.readLockCount = 0;
-        this.waitingWriters = 0;
-        this.waitingReaders = 0;
+    private static final class Sync extends AbstractQueuedSynchronizer {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final int WRITE_LOCKED = -1;
+        private static final int DOWNGRADED = 0;
+
+        boolean tryWriteLock() {
+            return compareAndSetState(0, WRITE_LOCKED);
+        }
+
+        boolean tryReadLock() {
+            for (;;) {
+                int state = getState();
+                if (state == WRITE_LOCKED) {
+                    return false;
+                }
+                if (compareAndSetState(state, state + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        boolean tryUpgrade() {
+            return compareAndSetState(1, WRITE_LOCKED);
+        }
+
+        boolean downgrade() {
+            if (!compareAndSetState(WRITE_LOCKED, 1)) {
+                return false;
+            }
+            // Let queued readers in behind us
+            releaseShared(DOWNGRADED);
+            return true;
+        }
+
+        int getReadLockCount() {
+            return Math.max(getState(), 0);
+        }
+
+        boolean isWriteLocked() {
+            return getState() == WRITE_LOCKED;
+        }
+
+        @Override
+        protected boolean tryAcquire(int ignored) {
+            return !hasQueuedPredecessors() && tryWriteLock();
+        }
+
+        @Override
+        protected boolean tryRelease(int ignored) {
+            return compareAndSetState(WRITE_LOCKED, 0);
+        }
+
+        @Override
+        protected int tryAcquireShared(int ignored) {
+            return !hasQueuedPredecessors() && tryReadLock() ? 1 : -1;
+        }
+
+        @Override
+        protected boolean tryReleaseShared(int releases) {
+            if (releases == DOWNGRADED) {
+                return true;
+            }
+            for (;;) {
+                int state = getState();
+                if (state <= 0) {
+                    return false;
+                }
+                if (compareAndSetState(state, state - 1)) {
+                    return state == 1;
+                }
+            }
+        }
     }
 
     /**
-     * Try to gain a lock as defined by {@link LockRequest}
+     * Try to gain a lock as defined by {@link LockRequest}. Like a waiting
+     * request, it fails if other requests are already queued for the lock so
+     * it never gets ahead of them.
      *
      * @param lockRequest
      *            The {@link LockRequest} lock request.
      * @return true if lock was acquired successfully. False if otherwise.
      * @throws InterruptedException
      */
-    public synchronized boolean tryLock(LockRequest lockRequest) throws InterruptedException {
-        log.info("tryLock " + lockRequest);
+    public boolean tryLock(LockRequest lockRequest) throws InterruptedException {
+        log.debug("tryLock " + lockRequest);
 
-        if (lockRequest.getLockType() == LockType.READ_LOCK) {
-            return getReadLock(lockRequest, true, 0);
-        } else {
-            return getWriteLock(lockRequest, true, 0);
+        boolean locked = lockRequest.getLockType() == LockType.READ_LOCK ? this.sync.tryAcquireShared(1) >= 0
+                : this.sync.tryAcquire(1);
+        if (locked) {
+            lockGained(lockRequest);
         }
+        return locked;
     }
 
-    public synchronized boolean lock(LockRequest lockRequest) throws InterruptedException {
+    public boolean lock(LockRequest lockRequest) throws InterruptedException {
         return lock(lockRequest, 0);
     }
 
@@ -87,101 +166,36 @@ class ReadWriteLockRecord {
      *
      * @param lockRequest
      *            The {@link LockRequest} lock request.
+     * @param timeout
+     *            Duration in milliseconds to wait for the lock, 0 to wait
+     *            forever.
      * @throws InterruptedException
      */
-    public synchronized boolean lock(LockRequest lockRequest, long timeout) throws InterruptedException {
-        log.info("Lock " + lockRequest);
-
-        if (lockRequest.getLockType() == LockType.READ_LOCK) {
-            return getReadLock(lockRequest, false, timeout);
-        } else {
-            return getWriteLock(lockRequest, false, timeout);
-        }
-    }
-
-    private synchronized boolean getReadLock(LockRequest lockRequest, boolean tryLock, long timeout) {
-        log.info("Waiting readers: " + this.waitingReaders);
-        this.waitingReaders++;
-
-        DateTime start = new DateTime();
-        long remainingWait = timeout;
-
-        while (this.lockType == LockType.WRITE_LOCK) {
-            if (tryLock) {
-                this.waitingReaders--;
+    public boolean lock(LockRequest lockRequest, long timeout) throws InterruptedException {
+        log.debug("Lock " + lockRequest);
+
+        boolean readLock = lockRequest.getLockType() == LockType.READ_LOCK;
+        if (timeout > 0) {
+            long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+            boolean locked = readLock ? this.sync.tryAcquireSharedNanos(1, timeoutNanos)
+                    : this.sync.tryAcquireNanos(1, timeoutNanos);
+            if (!locked) {
+                log.info("Waiting for lock " + lockRequest + " timed out.");
                 return false;
-            } else if (timeout > 0) {
-                if (new DateTime().getMillis() - start.getMillis() >= timeout) {
-                    this.waitingWriters--;
-                    return false;
-                } else {
-                    remainingWait = timeout - (new DateTime().getMillis() - start.getMillis());
-                }
-            }
-
-            try {
-                if (timeout > 0) {
-                    wait(remainingWait);
-                } else {
-                    wait();
-                }
-            } catch (InterruptedException e) {
-                this.waitingReaders--;
-                throw new RuntimeException(e);
             }
+        } else if (readLock) {
+            this.sync.acquireSharedInterruptibly(1);
+        } else {
+            this.sync.acquireInterruptibly(1);
         }
 
-        this.waitingReaders--;
-        this.readLockCount++;
-
-        log.info("Gained Read lock " + lockRequest);
-        setLockType(LockType.READ_LOCK);
-        this.lockRequestsMap.put(lockRequest.getUnlockTask(), lockRequest);
+        lockGained(lockRequest);
         return true;
     }
 
-    private synchronized boolean getWriteLock(LockRequest lockRequest, boolean tryLock, long timeout)
-            throws InterruptedException {
-        this.waitingWriters++;
-
-        DateTime start = new DateTime();
-        long remainingWait = timeout;
-
-        while (this.lockType == LockType.WRITE_LOCK || this.readLockCount > 0) {
-            log.info("Current read lock count: " + this.readLockCount);
-
-            if (tryLock) {
-                this.waitingWriters--;
-                return false;
-            } else if (timeout > 0) {
-                if (new DateTime().getMillis() - start.getMillis() >= timeout) {
-                    log.info("Waiting for lock " + lockRequest + " timed out.");
-                    this.waitingWriters--;
-                    return false;
-                } else {
-                    remainingWait = timeout - (new DateTime().getMillis() - start.getMillis());
-                }
-            }
-
-            try {
-                log.info("Waiting for lock " + lockRequest);
-                if (timeout > 0) {
-                    wait(remainingWait);
-                } else {
-                    wait();
-                }
-                log.info("Notified of lock release " + lockRequest);
-            } catch (InterruptedException e) {
-                this.waitingWriters--;
-                throw e;
-            }
-        }
-
-        log.info("Gained Write lock " + lockRequest);
-        this.waitingWriters--;
-        setLockType(LockType.WRITE_LOCK);
+    private void lockGained(LockRequest lockRequest) {
+        log.debug("Gained " + lockRequest.getLockType() + " " + lockRequest);
         this.lockRequestsMap.put(lockRequest.getUnlockTask(), lockRequest);
-        return true;
     }
 
     /**
@@ -189,70 +203,62 @@ class ReadWriteLockRecord {
      *
      * @param lockRequest
      *            The {@link LockRequest} used to lock the object
+     * @return true if the request held a lock which got released
      */
-    public synchronized void unlock(LockRequest lockRequest) {
-        log.info("unlock " + lockRequest);
+    public boolean unlock(LockRequest lockRequest) {
+        log.debug("unlock " + lockRequest);
 
         /*
-         * Verify this request holds an active lock.
+         * Verify this request holds an active lock. Removing the request first
+         * makes sure a lock is never released twice.
          */
         LockRequest currentLockRequest = this.lockRequestsMap.get(lockRequest.getUnlockTask());
-        if (currentLockRequest == null || !currentLockRequest.equals(lockRequest)) {
+        if (currentLockRequest == null || !currentLockRequest.equals(lockRequest)
+                || !this.lockRequestsMap.remove(lockRequest.getUnlockTask(), currentLockRequest)) {
             log.warn("unlock " + lockRequest + " has not lock record!!");
-            return;
+            return false;
         }
 
-        if (this.lockType == LockType.READ_LOCK) {
-            /*
-             * This is a reader lock. Just decrease readers lock count
-             */
-            this.readLockCount--;
-
-            /*
-             * Is last read lock removed?
-             */
-            if (this.readLockCount == 0) {
-                setLockType(LockType.UNKNOWN_LOCK);
-            }
+        if (this.sync.isWriteLocked()) {
+            this.sync.release(1);
         } else {
-            /*
-             * This is a write lock. Just reset lock type.
-             */
-            setLockType(LockType.UNKNOWN_LOCK);
+            this.sync.releaseShared(1);
         }
-
-        this.lockRequestsMap.remove(lockRequest.getUnlockTask());
-        notifyAll();
+        return true;
     }
 
     /**
      * Attempts to upgrade a read lock on an object to a write lock. This
      * request should hold at list an active read lock to the object in question
      * before hand. If write lock is already acquired, this will translate to
-     * no-op. Waits until it can upgrade the lock.
+     * no-op. If the request holds the only read lock, it is upgraded in place,
+     * otherwise waits until it can upgrade the lock.
      *
      * @param lockRequest
      *            {@link LockRequest} for the object to be upgraded.
-     * @return true, if there are no read locks other then this request and the
-     *         request happen to hold the only read lock, false otherwise. If
-     *         request already poses a write lock, true is returned.
+     * @return true, if the lock was upgraded or the request already holds a
+     *         write lock, false otherwise.
      * @throws InterruptedException
      */
-    public synchronized boolean upgradeLockWithWait(LockRequest lockRequest) throws InterruptedException {
-        log.info("Upgrade lock with wait requested " + lockRequest);
-        LockRequest currentLockRequest = this.lockRequestsMap.get(lockRequest.getUnlockTask());
+    public boolean upgradeLockWithWait(LockRequest lockRequest) throws InterruptedException {
+        log.debug("Upgrade lock with wait requested " + lockRequest);
         /*
          * If this request does not currently poses an active read lock we
          * cannot upgrade it.
          */
-        if (currentLockRequest == null || !currentLockRequest.equals(lockRequest)) {
+        if (!holds(lockRequest)) {
             return false;
         }
         /*
          * If this lock request already holds a write lock, no further action
          * required.
          */
-        if (this.lockType == LockType.WRITE_LOCK) {
+        if (this.sync.isWriteLocked()) {
+            return true;
+        }
+
+        if (this.sync.tryUpgrade()) {
+            lockRequest.setLockType(LockType.WRITE_LOCK);
             return true;
         }
 
@@ -263,7 +269,8 @@ class ReadWriteLockRecord {
 
     /**
      * Converts a write lock on an object to a read lock. This request must hold
-     * an active write lock to the object in question.
+     * an active write lock to the object in question. The conversion is atomic,
+     * no writer can get in between.
      *
      * @param lockRequest
      *            {@link LockRequest} for an object whose write lock is to be
@@ -272,58 +279,63 @@ class ReadWriteLockRecord {
      *         otherwise.
      * @throws InterruptedException
      */
-    public synchronized boolean downgradeLock(LockRequest lockRequest) throws InterruptedException {
-        log.info("downgrade lock requested " + lockRequest);
-
-        /*
-         * Check current lock type. If it is not write lock, no point to
-         * continue.
-         */
-        if (this.lockType != LockType.WRITE_LOCK) {
-            return false;
-        }
+    public boolean downgradeLock(LockRequest lockRequest) throws InterruptedException {
+        log.debug("downgrade lock requested " + lockRequest);
 
-        LockRequest currentlockRequest = this.lockRequestsMap.get(lockRequest.getUnlockTask());
         /*
-         * Check if this request is the current owner of this write lock. If
-         * not, no point of continuing.
+         * Check current lock type and if this request is the current owner of
+         * this write lock. If not, no point of continuing.
          */
-        if (currentlockRequest == null || !currentlockRequest.equals(lockRequest)) {
+        if (!this.sync.isWriteLocked() || !holds(lockRequest)) {
             return false;
         }
 
-        unlock(lockRequest);
         lockRequest.setLockType(LockType.READ_LOCK);
-        return tryLock(lockRequest);
+        return this.sync.downgrade();
     }
 
-    public final synchronized ImmutableMap<Task, LockRequest> getLockRequests() {
+    /**
+     * @return true if the given request currently holds a lock on this record
+     */
+    boolean holds(LockRequest lockRequest) {
+        LockRequest currentLockRequest = this.lockRequestsMap.get(lockRequest.getUnlockTask());
+        return currentLockRequest != null && currentLockRequest.equals(lockRequest);
+    }
+
+    int addReference() {
+        return ++this.references;
+    }
+
+    int removeReference() {
+        return --this.references;
+    }
+
+    public final ImmutableMap<Task, LockRequest> getLockRequests() {
         return ImmutableMap.copyOf(this.lockRequestsMap);
     }
 
     /**
      * @return the waiting readers count
      */
-    public synchronized int getWaitingReaders() {
-        return this.waitingReaders;
+    public int getWaitingReaders() {
+        return this.sync.getSharedQueuedThreads().size();
     }
 
     /**
      * @return the waiting writers count
      */
-    public synchronized int getWaitingWriters() {
-        return this.waitingWriters;
-    }
-
-    public synchronized void setLockType(LockType lockType) {
-        this.lockType = lockType;
+    public int getWaitingWriters() {
+        return this.sync.getExclusiveQueuedThreads().size();
     }
 
     /**
      * @return the current lock type
      */
-    public synchronized LockType getLockType() {
-        return this.lockType;
+    public LockType getLockType() {
+        if (this.sync.isWriteLocked()) {
+            return LockType.WRITE_LOCK;
+        }
+        return this.sync.getReadLockCount() > 0 ? LockType.READ_LOCK : LockType.UNKNOWN_LOCK;
     }
 
     /**
@@ -331,22 +343,22 @@ class ReadWriteLockRecord {
      *
      * @return read lock count
      */
-    public synchronized int getReadLockCount() {
-        return this.readLockCount;
+    public int getReadLockCount() {
+        return this.sync.getReadLockCount();
     }
 
     /**
      * @return true if current lock type is write lock. False if otherwise.
      */
-    public synchronized boolean isWriteLocked() {
-        return this.lockType == LockType.WRITE_LOCK;
+    public boolean isWriteLocked() {
+        return this.sync.isWriteLocked();
     }
 
     /**
      * @return true if there are any locks placed. False if otherwise.
      */
-    public synchronized boolean isLocked() {
-        return this.lockType != LockType.UNKNOWN_LOCK;
+    public boolean isLocked() {
+        return getLockType() != LockType.UNKNOWN_LOCK;
     }
 
     @Override
@@ -356,8 +368,8 @@ class ReadWriteLockRecord {
             sb.append(entry.getValue() + "\n");
         }
 
-        return "ReadWriteLockRecord [lockType=" + this.lockType + ", readLockCount=" + this.readLockCount
-                + ", waitingWriters=" + this.waitingWriters + ", waitingReaders=" + this.waitingReaders + "\nLocks:\n"
+        return "ReadWriteLockRecord [lockType=" + getLockType() + ", readLockCount=" + getReadLockCount()
+                + ", waitingWriters=" + getWaitingWriters() + ", waitingReaders=" + getWaitingReaders() + "\nLocks:\n"
                 + sb.toString() + "\n]";
     }
 
@@ -89,6 +89,12 @@ public interface ApiFactoryService {
 
     ApplianceManagerConnectorElement getApplianceManagerConnectorElement(VirtualSystem vs) throws EncryptionException;
 
+    /**
+     * Drops all cached manager and virtualization connector elements, e.g.
+     * when the server IP address they carry has changed.
+     */
+    void invalidateConnectorElements();
+
     ManagerWebSocketNotificationApi createManagerWebSocketNotificationApi(ApplianceManagerConnector mc)
             throws Exception;
 
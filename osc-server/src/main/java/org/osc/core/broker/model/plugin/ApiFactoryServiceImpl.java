@@ -20,6 +20,7 @@ import static java.util.Collections.*;
 import static org.osc.sdk.controller.Constants.*;
 import static org.osc.sdk.manager.Constants.*;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -50,6 +51,9 @@ import org.osc.core.broker.service.api.plugin.PluginEvent.Type;
 import org.osc.core.broker.service.api.plugin.PluginListener;
 import org.osc.core.broker.service.api.plugin.PluginService;
 import org.osc.core.broker.service.api.server.EncryptionApi;
+import org.osc.core.broker.service.broadcast.BroadcastListener;
+import org.osc.core.broker.service.broadcast.BroadcastMessage;
+import org.osc.core.broker.service.broadcast.EventType;
 import org.osc.core.broker.service.api.server.EncryptionException;
 import org.osc.core.broker.service.exceptions.VmidcBrokerValidationException;
 import org.osc.core.broker.service.exceptions.VmidcException;
@@ -85,9 +89,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 @Component(immediate = true)
-public class ApiFactoryServiceImpl implements ApiFactoryService, PluginService {
+public class ApiFactoryServiceImpl implements ApiFactoryService, PluginService, BroadcastListener {
 
     private static final String OSC_PLUGIN_NAME = PluginTracker.PROP_PLUGIN_NAME;
+    private static final String MC_RECEIVER = ApplianceManagerConnector.class.getSimpleName();
+    private static final String VC_RECEIVER = VirtualizationConnector.class.getSimpleName();
     private final Logger log = LoggerFactory.getLogger(ApiFactoryServiceImpl.class);
 
     private Map<String, ApplianceManagerApi> managerApis = new ConcurrentHashMap<>();
@@ -97,6 +103,8 @@ public class ApiFactoryServiceImpl implements ApiFactoryService, PluginService {
 
     private List<PluginTracker<?>> pluginTrackers = new LinkedList<>();
 
+    private final ConnectorElementCache elementCache = new ConnectorElementCache();
+
     @GuardedBy("pluginListeners")
     private Map<PluginListener, List<PluginTracker<?>>> pluginListeners = new IdentityHashMap<>();
 
@@ -407,12 +415,15 @@ public class ApiFactoryServiceImpl implements ApiFactoryService, PluginService {
     @Override
     public ApplianceManagerConnectorElement getApplianceManagerConnectorElement(ApplianceManagerConnector mc)
             throws EncryptionException {
-        ApplianceManagerConnector decryptedMc = getDecryptedApplianceManagerConnector(mc);
-
-        // TODO emanoel: This will likely have some performance impact. We need to figure out an approach to keep these values cached on OSC
-        // with some TTL and/or some refreshing mechanism not just for this scenario but potentially also others.
-        decryptedMc.setClientIpAddress(ServerUtil.getServerIP());
-        return new ApplianceManagerConnectorElementImpl(decryptedMc);
+        List<?> fingerprint = Arrays.asList(mc.getName(), mc.getManagerType(), mc.getIpAddress(), mc.getUsername(),
+                mc.getPassword(), mc.getApiKey(), mc.getLastKnownNotificationIpAddress(),
+                mc.getPublicKey() == null ? null : ByteBuffer.wrap(mc.getPublicKey()));
+
+        return this.elementCache.get(MC_RECEIVER, mc, fingerprint, () -> {
+            ApplianceManagerConnector decryptedMc = getDecryptedApplianceManagerConnector(mc);
+            decryptedMc.setClientIpAddress(ServerUtil.getServerIP());
+            return new ApplianceManagerConnectorElementImpl(decryptedMc);
+        });
     }
 
     @Override
@@ -529,12 +540,34 @@ public class ApiFactoryServiceImpl implements ApiFactoryService, PluginService {
 
     private VirtualizationConnectorElement getVirtualizationConnectorElement(VirtualizationConnector vc)
             throws Exception {
-        VirtualizationConnector shallowClone = new VirtualizationConnector(vc);
-        shallowClone.setProviderPassword(this.encrypter.decryptAESCTR(shallowClone.getProviderPassword()));
-        if (!StringUtils.isEmpty(shallowClone.getControllerPassword())) {
-            shallowClone.setControllerPassword(this.encrypter.decryptAESCTR(shallowClone.getControllerPassword()));
+        // Copying the attributes also initializes them so the cached element can outlive the session
+        List<?> fingerprint = Arrays.asList(vc.getName(), vc.getControllerType(), vc.getControllerIpAddress(),
+                vc.getControllerUsername(), vc.getControllerPassword(), vc.getProviderIpAddress(),
+                vc.getProviderUsername(), vc.getProviderPassword(), vc.getAdminProjectName(), vc.getAdminDomainId(),
+                new HashMap<>(vc.getProviderAttributes()));
+
+        return this.elementCache.get(VC_RECEIVER, vc, fingerprint, () -> {
+            VirtualizationConnector shallowClone = new VirtualizationConnector(vc);
+            shallowClone.setProviderPassword(this.encrypter.decryptAESCTR(shallowClone.getProviderPassword()));
+            if (!StringUtils.isEmpty(shallowClone.getControllerPassword())) {
+                shallowClone.setControllerPassword(this.encrypter.decryptAESCTR(shallowClone.getControllerPassword()));
+            }
+            return new VirtualizationConnectorElementImpl(shallowClone);
+        });
+    }
+
+    @Override
+    public void receiveBroadcast(BroadcastMessage msg) {
+        if ((msg.getEventType() == EventType.UPDATED || msg.getEventType() == EventType.DELETED)
+                && (MC_RECEIVER.equals(msg.getReceiver()) || VC_RECEIVER.equals(msg.getReceiver()))) {
+            this.elementCache.invalidate(msg.getReceiver(), msg.getEntityId());
         }
-        return new VirtualizationConnectorElementImpl(shallowClone);
+    }
+
+    @Override
+    public void invalidateConnectorElements() {
+        this.log.info("Invalidating cached connector elements " + this.elementCache);
+        this.elementCache.invalidateAll();
     }
 
     @Override
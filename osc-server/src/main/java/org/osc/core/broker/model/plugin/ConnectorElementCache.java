@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.model.plugin;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.osc.core.broker.model.entities.BaseEntity;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Caches the plugin elements built from connector entities so credentials are
+ * not decrypted on every plugin call.
+ * <p>
+ * Elements are keyed by entity type, id, version and updated timestamp. Each
+ * entry also keeps a fingerprint of the raw entity fields the element was built
+ * from, so an entity modified in memory but not yet committed (e.g. while an
+ * update request is validated) never gets a stale element. Entries expire
+ * {@link #TTL_MINUTES} after being built and are dropped on entity update or
+ * delete broadcasts and on server IP changes.
+ */
+final class ConnectorElementCache {
+
+    static final long TTL_MINUTES = 5;
+    static final int MAX_ELEMENTS = 1000;
+
+    @FunctionalInterface
+    interface ElementBuilder<T, E extends Exception> {
+        T build() throws E;
+    }
+
+    private final Cache<ElementKey, CachedElement> elements = CacheBuilder.newBuilder()
+            .expireAfterWrite(TTL_MINUTES, TimeUnit.MINUTES).maximumSize(MAX_ELEMENTS).build();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong builds = new AtomicLong();
+
+    /**
+     * @param type
+     *            the entity type, as used for broadcast receivers
+     * @param entity
+     *            the entity the element is built from, entities which are not
+     *            persisted yet are never cached
+     * @param fingerprint
+     *            the raw entity fields the element depends on
+     * @param builder
+     *            builds the element on a cache miss
+     */
+    <T, E extends Exception> T get(String type, BaseEntity entity, List<?> fingerprint, ElementBuilder<T, E> builder)
+            throws E {
+        if (entity.getId() == null) {
+            this.builds.incrementAndGet();
+            return builder.build();
+        }
+
+        ElementKey key = new ElementKey(type, entity);
+        CachedElement cached = this.elements.getIfPresent(key);
+        if (cached != null && cached.fingerprint.equals(fingerprint)) {
+            this.hits.incrementAndGet();
+            @SuppressWarnings("unchecked")
+            T element = (T) cached.element;
+            return element;
+        }
+
+        T element = builder.build();
+        this.builds.incrementAndGet();
+        this.elements.put(key, new CachedElement(fingerprint, element));
+        return element;
+    }
+
+    void invalidate(String type, Long id) {
+        this.elements.asMap().keySet().removeIf(key -> key.type.equals(type) && key.id.equals(id));
+    }
+
+    void invalidateAll() {
+        this.elements.invalidateAll();
+    }
+
+    long getHits() {
+        return this.hits.get();
+    }
+
+    long getBuilds() {
+        return this.builds.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[connector elements] size: %d, hits: %d, builds: %d", this.elements.size(), getHits(),
+                getBuilds());
+    }
+
+    private static final class ElementKey {
+        private final String type;
+        private final Long id;
+        private final Long version;
+        private final Long updatedTimestamp;
+
+        ElementKey(String type, BaseEntity entity) {
+            this.type = type;
+            this.id = entity.getId();
+            this.version = entity.getVersion();
+            this.updatedTimestamp = entity.getUpdatedTimestamp() == null ? null
+                    : entity.getUpdatedTimestamp().getTime();
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.type, this.id, this.version, this.updatedTimestamp);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ElementKey)) {
+                return false;
+            }
+            ElementKey other = (ElementKey) obj;
+            return this.type.equals(other.type) && this.id.equals(other.id)
+                    && Objects.equals(this.version, other.version)
+                    && Objects.equals(this.updatedTimestamp, other.updatedTimestamp);
+        }
+    }
+
+    private static final class CachedElement {
+        private final List<?> fingerprint;
+        private final Object element;
+
+        CachedElement(List<?> fingerprint, Object element) {
+            this.fingerprint = fingerprint;
+            this.element = element;
+        }
+    }
+}
@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.slf4j.LoggerFactory;
+import org.osc.core.broker.service.persistence.EntityChangeTracker;
 import org.osc.core.server.installer.InstallableListener;
 import org.osc.core.server.installer.InstallableManager;
 import org.osc.core.server.installer.InstallableUnit;
@@ -198,9 +199,7 @@ public class PluginTracker<T> {
                 }
             }
         }
-        for (PluginEvent<T> event : events) {
-            this.customizer.pluginEvent(event);
-        }
+        firePluginEvents(events);
     }
 
     private void removeServiceForPlugin(String name, T service) {
@@ -217,6 +216,14 @@ public class PluginTracker<T> {
             }
         }
 
+        firePluginEvents(events);
+    }
+
+    private void firePluginEvents(List<PluginEvent<T>> events) {
+        if (!events.isEmpty()) {
+            // A plugin change may affect how any DA or SG is conformed
+            EntityChangeTracker.getTracker().markAllChanged();
+        }
         for (PluginEvent<T> event : events) {
             this.customizer.pluginEvent(event);
         }
@@ -281,9 +288,7 @@ public class PluginTracker<T> {
             }
         }
 
-        for (PluginEvent<T> event : events) {
-            this.customizer.pluginEvent(event);
-        }
+        firePluginEvents(events);
     }
 
 }
@@ -0,0 +1,527 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.rest.client.openstack.discovery;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.openstack4j.model.compute.InterfaceAttachment;
+import org.openstack4j.model.compute.Server;
+import org.openstack4j.model.network.Network;
+import org.openstack4j.model.network.Port;
+import org.openstack4j.model.network.Subnet;
+import org.osc.core.broker.model.entities.virtualization.VirtualizationConnector;
+import org.osc.core.broker.rest.client.openstack.openstack4j.Endpoint;
+import org.osc.core.broker.rest.client.openstack.openstack4j.Openstack4JNeutron;
+import org.osc.core.broker.rest.client.openstack.openstack4j.Openstack4JNova;
+
+/**
+ * Servers, ports, networks and subnets read from OpenStack, shared by all the
+ * conformance tasks and services of a virtualization connector.
+ * <p>
+ * Entries live for {@link #getTtl()} milliseconds and are dropped as soon as a
+ * notification about the object is received, see
+ * {@link #invalidate(Long, Collection, boolean)}. Concurrent lookups of the same
+ * object wait for a single request to OpenStack. Objects which are not found
+ * are not cached. The cache holds at most {@link #MAX_SIZE} entries, the ones
+ * closest to expiry are dropped first.
+ */
+public final class OpenstackInventoryCache {
+
+    static final long DEFAULT_TTL_MS = TimeUnit.MINUTES.toMillis(2);
+
+    static final int MAX_SIZE = 10000;
+
+    private static long ttlMs = DEFAULT_TTL_MS;
+
+    private static OpenstackInventoryCache cache = new OpenstackInventoryCache(new OpenstackLoader());
+
+    enum Kind {
+        SERVER, SERVER_INTERFACES, SERVER_LIST, PORT, NETWORK, SUBNET
+    }
+
+    /**
+     * Reads objects from OpenStack on cache misses
+     */
+    interface Loader {
+        Server getServer(VirtualizationConnector vc, String project, String region, String serverId) throws Exception;
+
+        List<? extends InterfaceAttachment> getServerInterfaces(VirtualizationConnector vc, String project,
+                String region, String serverId) throws Exception;
+
+        List<? extends Server> listServers(VirtualizationConnector vc, String project, String region) throws Exception;
+
+        Port getPort(VirtualizationConnector vc, String project, String region, String portId) throws Exception;
+
+        Network getNetwork(VirtualizationConnector vc, String project,
+                String region, String networkId) throws Exception;
+
+        Subnet getSubnet(VirtualizationConnector vc, String project, String region, String subnetId) throws Exception;
+    }
+
+    private interface Load<T> {
+        T load() throws Exception;
+    }
+
+    private static final class Key {
+        private final Long vcId;
+        private final String project;
+        private final String region;
+        private final Kind kind;
+        private final String id;
+
+        private Key(Long vcId, String project, String region, Kind kind, String id) {
+            this.vcId = vcId;
+            this.project = project;
+            this.region = region;
+            this.kind = kind;
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.vcId, this.project, this.region, this.kind, this.id);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return Objects.equals(this.vcId, other.vcId) && Objects.equals(this.project, other.project)
+                    && Objects.equals(this.region, other.region) && this.kind == other.kind
+                    && Objects.equals(this.id, other.id);
+        }
+    }
+
+    private static final class Entry {
+        private volatile Object value;
+        private volatile long expiryTime;
+        /**
+         * Ids of the ports and networks the cached server interfaces are
+         * attached to
+         */
+        private Set<String> attachedIds = Collections.emptySet();
+    }
+
+    private final Loader loader;
+
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    /*
+     * Keys of the entries by virtualization connector, by object id, and of the
+     * server lists and server interfaces to drop along with them. The indexes
+     * are only updated while holding the lock of the entry in the map, so
+     * notifications only look at the matching entries.
+     */
+    private final ConcurrentMap<Long, Set<Key>> keysByVc = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<Key>> keysById = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Set<Key>> serverListKeysByVc = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<Key>> interfaceKeysByAttachedId = new ConcurrentHashMap<>();
+
+    private volatile long lastPurgeTime = System.currentTimeMillis();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    OpenstackInventoryCache(Loader loader) {
+        this.loader = loader;
+    }
+
+    public static OpenstackInventoryCache getCache() {
+        return cache;
+    }
+
+    public static void setTtl(String value) {
+        if (value == null) {
+            return;
+        }
+        ttlMs = Long.parseLong(value);
+    }
+
+    public static long getTtl() {
+        return ttlMs;
+    }
+
+    /**
+     * @return the server or null if it does not exist
+     */
+    public Server getServer(VirtualizationConnector vc, String project, String region, String serverId)
+            throws Exception {
+        return get(vc, project, region, Kind.SERVER, serverId,
+                () -> this.loader.getServer(vc, project, region, serverId));
+    }
+
+    /**
+     * @return the network interfaces of the server
+     */
+    public List<? extends InterfaceAttachment> getServerInterfaces(VirtualizationConnector vc, String project,
+            String region, String serverId) throws Exception {
+        return get(vc, project, region, Kind.SERVER_INTERFACES, serverId,
+                () -> this.loader.getServerInterfaces(vc, project, region, serverId));
+    }
+
+    /**
+     * @return all the servers of the project in the region
+     */
+    public List<? extends Server> listServers(VirtualizationConnector vc, String project, String region)
+            throws Exception {
+        return get(vc, project, region, Kind.SERVER_LIST, null, () -> this.loader.listServers(vc, project, region));
+    }
+
+    /**
+     * @return the port or null if it does not exist
+     */
+    public Port getPort(VirtualizationConnector vc, String project, String region, String portId) throws Exception {
+        return get(vc, project, region, Kind.PORT, portId, () -> this.loader.getPort(vc, project, region, portId));
+    }
+
+    /**
+     * @return the network or null if it does not exist
+     */
+    public Network getNetwork(VirtualizationConnector vc, String project, String region, String networkId)
+            throws Exception {
+        return get(vc, project, region, Kind.NETWORK, networkId,
+                () -> this.loader.getNetwork(vc, project, region, networkId));
+    }
+
+    /**
+     * @return the subnet or null if it does not exist
+     */
+    public Subnet getSubnet(VirtualizationConnector vc, String project, String region, String subnetId)
+            throws Exception {
+        return get(vc, project, region, Kind.SUBNET, subnetId,
+                () -> this.loader.getSubnet(vc, project, region, subnetId));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(VirtualizationConnector vc, String project, String region, Kind kind, String id,
+            Load<T> load) throws Exception {
+        Key key = new Key(vc.getId(), project, region, kind, id);
+        Entry entry = this.entries.get(key);
+        if (entry == null) {
+            entry = this.entries.computeIfAbsent(key, k -> {
+                index(k);
+                return new Entry();
+            });
+        }
+        Object value = entry.value;
+        if (value != null && System.currentTimeMillis() < entry.expiryTime) {
+            this.hits.incrementAndGet();
+            return (T) value;
+        }
+
+        // Only one caller reads the object from OpenStack, the others wait for it
+        synchronized (entry) {
+            value = entry.value;
+            if (value != null && System.currentTimeMillis() < entry.expiryTime) {
+                this.hits.incrementAndGet();
+                return (T) value;
+            }
+
+            this.misses.incrementAndGet();
+            T loaded;
+            try {
+                loaded = load.load();
+            } catch (Exception e) {
+                Entry failed = entry;
+                remove(key, current -> current == failed && current.value == null);
+                throw e;
+            }
+            if (kind == Kind.SERVER_INTERFACES) {
+                // Indexed before the value is set so a notification received
+                // in between drops the entry rather than miss it
+                indexAttachments(key, entry, (List<?>) loaded);
+            }
+            entry.expiryTime = System.currentTimeMillis() + ttlMs;
+            entry.value = loaded;
+            trim();
+            return loaded;
+        }
+    }
+
+    private void trim() {
+        long now = System.currentTimeMillis();
+        if (now - this.lastPurgeTime >= ttlMs || this.entries.size() > MAX_SIZE) {
+            this.lastPurgeTime = now;
+            // Entries still being read for the first time have no expiry time yet
+            Predicate<Entry> expired = entry -> entry.expiryTime != 0 && now >= entry.expiryTime;
+            for (Map.Entry<Key, Entry> e : this.entries.entrySet()) {
+                if (expired.test(e.getValue())) {
+                    remove(e.getKey(), expired);
+                }
+            }
+        }
+
+        int excess = this.entries.size() - MAX_SIZE;
+        if (excess > 0) {
+            // Make some room so the entries are not sorted again on every read.
+            // Expiry times are copied as they change while sorting.
+            List<Map.Entry<Key, Long>> oldest = this.entries.entrySet().stream()
+                    .filter(e -> e.getValue().expiryTime != 0)
+                    .<Map.Entry<Key, Long>> map(
+                            e -> new AbstractMap.SimpleImmutableEntry<>(e.getKey(), e.getValue().expiryTime))
+                    .sorted(Map.Entry.<Key, Long>comparingByValue())
+                    .limit(excess + MAX_SIZE / 10)
+                    .collect(Collectors.toList());
+            for (Map.Entry<Key, Long> e : oldest) {
+                long expiryTime = e.getValue();
+                remove(e.getKey(), current -> current.expiryTime == expiryTime);
+            }
+        }
+    }
+
+    private void indexAttachments(Key key, Entry entry, List<?> interfaces) {
+        Set<String> attachedIds = new HashSet<>();
+        if (interfaces != null) {
+            for (Object attachment : interfaces) {
+                InterfaceAttachment infs = (InterfaceAttachment) attachment;
+                if (infs.getPortId() != null) {
+                    attachedIds.add(infs.getPortId());
+                }
+                if (infs.getNetId() != null) {
+                    attachedIds.add(infs.getNetId());
+                }
+            }
+        }
+
+        // Entries dropped while their interfaces were read are not indexed again
+        this.entries.computeIfPresent(key, (k, current) -> {
+            if (current == entry) {
+                for (String id : current.attachedIds) {
+                    removeFromIndex(this.interfaceKeysByAttachedId, id, k);
+                }
+                current.attachedIds = attachedIds;
+                for (String id : attachedIds) {
+                    addToIndex(this.interfaceKeysByAttachedId, id, k);
+                }
+            }
+            return current;
+        });
+    }
+
+    private void index(Key key) {
+        addToIndex(this.keysByVc, key.vcId, key);
+        if (key.kind == Kind.SERVER_LIST) {
+            addToIndex(this.serverListKeysByVc, key.vcId, key);
+        } else {
+            addToIndex(this.keysById, key.id, key);
+        }
+    }
+
+    /**
+     * Drops the entry of the key if it matches the condition
+     */
+    private void remove(Key key, Predicate<Entry> condition) {
+        this.entries.computeIfPresent(key, (k, entry) -> {
+            if (!condition.test(entry)) {
+                return entry;
+            }
+            removeFromIndex(this.keysByVc, k.vcId, k);
+            if (k.kind == Kind.SERVER_LIST) {
+                removeFromIndex(this.serverListKeysByVc, k.vcId, k);
+            } else {
+                removeFromIndex(this.keysById, k.id, k);
+            }
+            for (String id : entry.attachedIds) {
+                removeFromIndex(this.interfaceKeysByAttachedId, id, k);
+            }
+            return null;
+        });
+    }
+
+    private static <I> void addToIndex(ConcurrentMap<I, Set<Key>> index, I indexKey, Key key) {
+        if (indexKey == null) {
+            return;
+        }
+        index.compute(indexKey, (k, keys) -> {
+            Set<Key> result = keys != null ? keys : ConcurrentHashMap.newKeySet();
+            result.add(key);
+            return result;
+        });
+    }
+
+    private static <I> void removeFromIndex(ConcurrentMap<I, Set<Key>> index, I indexKey, Key key) {
+        if (indexKey == null) {
+            return;
+        }
+        index.computeIfPresent(indexKey, (k, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    /**
+     * Drops the cached objects of the virtualization connector with any of the
+     * given ids, and the interfaces of the servers attached to any of them.
+     * Lookups in progress complete with the values they read but do not cache
+     * them.
+     *
+     * @param vcId
+     *            the virtualization connector the ids belong to
+     * @param objectIds
+     *            ids of the servers, ports, networks or subnets which changed
+     * @param serversChanged
+     *            true if servers were created or deleted, to drop the server
+     *            lists as well
+     */
+    public void invalidate(Long vcId, Collection<String> objectIds, boolean serversChanged) {
+        List<Key> keys = new ArrayList<>();
+        for (String objectId : objectIds) {
+            if (objectId != null) {
+                addKeysOfVc(keys, this.keysById.get(objectId), vcId);
+                addKeysOfVc(keys, this.interfaceKeysByAttachedId.get(objectId), vcId);
+            }
+        }
+        if (serversChanged && vcId != null) {
+            addKeysOfVc(keys, this.serverListKeysByVc.get(vcId), vcId);
+        }
+        removeAll(keys);
+    }
+
+    /**
+     * Drops all the cached objects of the virtualization connector
+     */
+    public void invalidate(Long vcId) {
+        List<Key> keys = new ArrayList<>();
+        if (vcId != null) {
+            addKeysOfVc(keys, this.keysByVc.get(vcId), vcId);
+        }
+        removeAll(keys);
+    }
+
+    private static void addKeysOfVc(List<Key> keys, Set<Key> indexed, Long vcId) {
+        if (indexed == null) {
+            return;
+        }
+        for (Key key : indexed) {
+            if (Objects.equals(key.vcId, vcId)) {
+                keys.add(key);
+            }
+        }
+    }
+
+    private void removeAll(List<Key> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        for (Key key : keys) {
+            remove(key, entry -> true);
+        }
+        this.invalidations.incrementAndGet();
+    }
+
+    public int getSize() {
+        return this.entries.size();
+    }
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return the number of lookups which had to read from OpenStack
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return the number of notifications or changes which dropped cached
+     *         objects
+     */
+    public long getInvalidations() {
+        return this.invalidations.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[openstack inventory cache] size: %d, hits: %d, misses: %d, invalidations: %d",
+                getSize(), getHits(), getMisses(), getInvalidations());
+    }
+
+    private static final class OpenstackLoader implements Loader {
+
+        @Override
+        public Server getServer(VirtualizationConnector vc, String project,
+                String region, String serverId) throws Exception {
+            try (Openstack4JNova nova = new Openstack4JNova(new Endpoint(vc, project))) {
+                return nova.getServer(region, serverId);
+            }
+        }
+
+        @Override
+        public List<? extends InterfaceAttachment> getServerInterfaces(VirtualizationConnector vc, String project,
+                String region, String serverId) throws Exception {
+            try (Openstack4JNova nova = new Openstack4JNova(new Endpoint(vc, project))) {
+                return nova.getVmAttachedNetworks(region, serverId);
+            }
+        }
+
+        @Override
+        public List<? extends Server> listServers(VirtualizationConnector vc, String project,
+                String region) throws Exception {
+            try (Openstack4JNova nova = new Openstack4JNova(new Endpoint(vc, project))) {
+                return nova.listServers(region);
+            }
+        }
+
+        @Override
+        public Port getPort(VirtualizationConnector vc, String project, String region, String portId) throws Exception {
+            try (Openstack4JNeutron neutron = new Openstack4JNeutron(new Endpoint(vc, project))) {
+                return neutron.getPortById(region, portId);
+            }
+        }
+
+        @Override
+        public Network getNetwork(VirtualizationConnector vc, String project,
+                String region, String networkId) throws Exception {
+            try (Openstack4JNeutron neutron = new Openstack4JNeutron(new Endpoint(vc, project))) {
+                return neutron.getNetworkById(region, networkId);
+            }
+        }
+
+        @Override
+        public Subnet getSubnet(VirtualizationConnector vc, String project,
+                String region, String subnetId) throws Exception {
+            try (Openstack4JNeutron neutron = new Openstack4JNeutron(new Endpoint(vc, project))) {
+                return neutron.getSubnetById(region, subnetId);
+            }
+        }
+    }
+}
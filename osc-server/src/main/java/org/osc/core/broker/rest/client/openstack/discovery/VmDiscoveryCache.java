@@ -16,7 +16,6 @@
  *******************************************************************************/
 package org.osc.core.broker.rest.client.openstack.discovery;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -25,13 +24,15 @@ import java.util.Map;
 import org.openstack4j.model.compute.InterfaceAttachment;
 import org.openstack4j.model.compute.Server;
 import org.osc.core.broker.model.entities.virtualization.VirtualizationConnector;
-import org.osc.core.broker.rest.client.openstack.openstack4j.Endpoint;
-import org.osc.core.broker.rest.client.openstack.openstack4j.Openstack4JNova;
-import org.osc.core.broker.service.api.server.EncryptionException;
 import org.osc.sdk.controller.element.NetworkElement;
 
 import com.google.common.collect.Maps;
 
+/**
+ * VMs and ports discovered by a conformance job, read through the
+ * {@link OpenstackInventoryCache} shared by all jobs of the virtualization
+ * connector.
+ */
 public class VmDiscoveryCache {
 
     private VirtualizationConnector vc;
@@ -113,12 +114,9 @@ public class VmDiscoveryCache {
     private Map<String, PortInfo> osPortIdToPortMap = new HashMap<>();
     private Map<String, PortInfo> macAddressToPortMap = new HashMap<>();
 
-    private Openstack4JNova novaApi;
-
-    public VmDiscoveryCache(VirtualizationConnector vc, String project) throws IOException, EncryptionException {
+    public VmDiscoveryCache(VirtualizationConnector vc, String project) {
         this.vc = vc;
         this.project = project;
-        this.novaApi = new Openstack4JNova(new Endpoint(vc, project));
     }
 
     public VmInfo discover(String region, String vmId) throws Exception {
@@ -133,39 +131,37 @@ public class VmDiscoveryCache {
         vmInfo = new VmInfo();
         vmInfo.vmId = vmId;
 
-        try {
-            Server vm = this.novaApi.getServer(region, vmId);
-            if (vm == null) {
-                return null;
-            }
+        OpenstackInventoryCache inventory = OpenstackInventoryCache.getCache();
+        Server vm = inventory.getServer(this.vc, this.project, region, vmId);
+        if (vm == null) {
+            return null;
+        }
 
-            vmInfo.projectId = vm.getTenantId();
-            vmInfo.name = vm.getName();
-            vmInfo.host = vm.getHypervisorHostname();
-            List<? extends InterfaceAttachment> interfaces = this.novaApi.getVmAttachedNetworks(region, vmId);
-            for (InterfaceAttachment infs : interfaces) {
-                if (infs.getMacAddr() == null) {
-                    continue;
-                }
+        vmInfo.projectId = vm.getTenantId();
+        vmInfo.name = vm.getName();
+        vmInfo.host = vm.getHypervisorHostname();
+        List<? extends InterfaceAttachment> interfaces = inventory.getServerInterfaces(this.vc, this.project, region,
+                vmId);
+        for (InterfaceAttachment infs : interfaces) {
+            if (infs.getMacAddr() == null) {
+                continue;
+            }
 
-                PortInfo portInfo = new PortInfo();
-                portInfo.vm = vmInfo;
-                portInfo.macAddress = infs.getMacAddr();
-                portInfo.osNetworkId = infs.getNetId();
-                portInfo.osPortId = infs.getPortId();
+            PortInfo portInfo = new PortInfo();
+            portInfo.vm = vmInfo;
+            portInfo.macAddress = infs.getMacAddr();
+            portInfo.osNetworkId = infs.getNetId();
+            portInfo.osPortId = infs.getPortId();
 
-                // add IP addresses for give port
-                infs.getFixedIps().forEach(ip -> portInfo.portIPs.add(ip.getIpAddress()));
+            // add IP addresses for give port
+            infs.getFixedIps().forEach(ip -> portInfo.portIPs.add(ip.getIpAddress()));
 
-                vmInfo.macAddressToPortMap.put(infs.getMacAddr(), portInfo);
+            vmInfo.macAddressToPortMap.put(infs.getMacAddr(), portInfo);
 
-                this.osPortIdToPortMap.put(portInfo.osPortId, portInfo);
-                this.macAddressToPortMap.put(portInfo.macAddress, portInfo);
-            }
-            this.vmIdToVmMap.put(vmId, vmInfo);
-        } finally {
-            this.novaApi.close();
+            this.osPortIdToPortMap.put(portInfo.osPortId, portInfo);
+            this.macAddressToPortMap.put(portInfo.macAddress, portInfo);
         }
+        this.vmIdToVmMap.put(vmId, vmInfo);
 
         return vmInfo;
     }
@@ -20,6 +20,7 @@ import java.io.Closeable;
 import java.io.IOException;
 
 import org.openstack4j.api.OSClient;
+import org.openstack4j.model.identity.v3.Token;
 
 /**
  * Designed to be a base class for all openstack4j API wrappers in the code.
@@ -29,17 +30,34 @@ public abstract class BaseOpenstack4jApi implements Closeable {
     protected Endpoint endPoint;
     KeystoneProvider keystoneProvider;
 
+    /*
+     * Last session handed out and the cached token it was created from
+     */
+    private OSClient.OSClientV3 os;
+    private Token token;
+
     BaseOpenstack4jApi(Endpoint endPoint) {
         this.endPoint = endPoint;
         this.keystoneProvider = KeystoneProvider.getInstance();
     }
 
     public OSClient.OSClientV3 getOs() {
-        return this.keystoneProvider.getAvailableSession(this.endPoint);
+        releaseSession();
+        this.os = this.keystoneProvider.getAvailableSession(this.endPoint);
+        this.token = this.os.getToken();
+        return this.os;
     }
 
     @Override
     public void close() throws IOException {
-        this.keystoneProvider.clearConnectionMap(this.endPoint);
+        releaseSession();
+    }
+
+    private void releaseSession() {
+        if (this.os != null) {
+            this.keystoneProvider.sessionClosed(this.endPoint, this.token, this.os.getToken());
+            this.os = null;
+            this.token = null;
+        }
     }
 }
@@ -19,7 +19,12 @@ package org.osc.core.broker.rest.client.openstack.openstack4j;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.HashMap;
+import java.util.Date;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.openstack4j.api.OSClient;
 import org.openstack4j.api.client.IOSClientBuilder;
@@ -31,65 +36,195 @@ import org.openstack4j.openstack.OSFactory;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 
+/**
+ * Provides OpenStack sessions from Keystone tokens cached per {@link Endpoint}.
+ * <p>
+ * A token is used until shortly before it expires, so the OpenStack clients
+ * created by conformance tasks share one token per endpoint instead of
+ * authenticating every time. When the token is due for refresh, concurrent
+ * callers for the same endpoint wait for a single authentication.
+ */
 public final class KeystoneProvider {
 
     private static final Logger log = LoggerFactory.getLogger(KeystoneProvider.class);
 
     private static final String KEYSTONE_VERSION = "v3";
+    private static final int KEYSTONE_PORT = 5000;
 
-    private static KeystoneProvider instance = null;
-    private static HashMap<Endpoint, Token> connectionsMap = new HashMap<>();
+    static final long DEFAULT_REFRESH_MARGIN_MS = TimeUnit.MINUTES.toMillis(5);
+
+    private static KeystoneProvider instance = new KeystoneProvider();
+
+    private final int keystonePort;
+
+    private final ConcurrentMap<Endpoint, CachedToken> tokens = new ConcurrentHashMap<>();
+
+    /*
+     * Tokens are refreshed this long before they expire, or half way through
+     * their lifetime for short lived tokens
+     */
+    private volatile long refreshMarginMs = DEFAULT_REFRESH_MARGIN_MS;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private static final class CachedToken {
+        private volatile Token token;
+        private volatile long refreshTime;
+    }
 
     private KeystoneProvider() {
+        this(KEYSTONE_PORT);
+    }
+
+    KeystoneProvider(int keystonePort) {
+        this.keystonePort = keystonePort;
     }
 
     public static KeystoneProvider getInstance() {
-        if (instance == null) {
-            instance = new KeystoneProvider();
-        }
         return instance;
     }
 
     OSClient.OSClientV3 getAvailableSession(Endpoint endpoint) {
-
-        OSClient.OSClientV3 localOs;
         Config config = Config.newConfig().withSSLContext(endpoint.getSslContext()).withHostnameVerifier((hostname, session) -> true);
-        if (connectionsMap.containsKey(endpoint)) {
-            localOs = OSFactory.clientFromToken(connectionsMap.get(endpoint), Facing.PUBLIC, config);
-        } else {
-            String endpointURL;
-            try {
-                endpointURL = prepareEndpointURL(endpoint);
-            } catch (URISyntaxException | MalformedURLException e) {
-                throw new RuntimeException(e.getMessage(), e);
-            }
+        return OSFactory.clientFromToken(getToken(endpoint, config), Facing.PUBLIC, config);
+    }
 
-            // LOGGER
-            OSFactory.enableHttpLoggingFilter(log.isDebugEnabled() || log.isInfoEnabled());
+    private Token getToken(Endpoint endpoint, Config config) {
+        CachedToken cached = this.tokens.computeIfAbsent(endpoint, e -> new CachedToken());
+        Token token = cached.token;
+        if (token != null && System.currentTimeMillis() < cached.refreshTime) {
+            this.hits.incrementAndGet();
+            return token;
+        }
 
-            Identifier domainIdentifier = Identifier.byId(endpoint.getDomainId());
+        // Only one caller authenticates, the others wait for its token
+        synchronized (cached) {
+            token = cached.token;
+            if (token != null && System.currentTimeMillis() < cached.refreshTime) {
+                this.hits.incrementAndGet();
+                return token;
+            }
 
-            IOSClientBuilder.V3 keystoneV3Builder = OSFactory.builderV3().perspective(Facing.PUBLIC)
-                    .endpoint(endpointURL)
-                    .credentials(endpoint.getUser(), endpoint.getPassword(), domainIdentifier)
-                    .scopeToProject(Identifier.byName(endpoint.getProject()), domainIdentifier)
-                    .withConfig(config);
+            if (token == null) {
+                this.misses.incrementAndGet();
+            } else {
+                this.refreshes.incrementAndGet();
+            }
+            token = authenticate(endpoint, config).getToken();
+            cached.refreshTime = getRefreshTime(token);
+            cached.token = token;
+            return token;
+        }
+    }
 
-            localOs = keystoneV3Builder.authenticate();
-            connectionsMap.put(endpoint, localOs.getToken());
+    private OSClient.OSClientV3 authenticate(Endpoint endpoint, Config config) {
+        String endpointURL;
+        try {
+            endpointURL = prepareEndpointURL(endpoint);
+        } catch (URISyntaxException | MalformedURLException e) {
+            throw new RuntimeException(e.getMessage(), e);
         }
 
-        return localOs;
+        // LOGGER
+        OSFactory.enableHttpLoggingFilter(log.isDebugEnabled() || log.isInfoEnabled());
+
+        Identifier domainIdentifier = Identifier.byId(endpoint.getDomainId());
+
+        IOSClientBuilder.V3 keystoneV3Builder = OSFactory.builderV3().perspective(Facing.PUBLIC)
+                .endpoint(endpointURL)
+                .credentials(endpoint.getUser(), endpoint.getPassword(), domainIdentifier)
+                .scopeToProject(Identifier.byName(endpoint.getProject()), domainIdentifier)
+                .withConfig(config);
+
+        return keystoneV3Builder.authenticate();
+    }
+
+    private long getRefreshTime(Token token) {
+        long now = System.currentTimeMillis();
+        Date expires = token.getExpires();
+        if (expires == null) {
+            return now + this.refreshMarginMs;
+        }
+        long lifetime = expires.getTime() - now;
+        return expires.getTime() - Math.min(this.refreshMarginMs, lifetime / 2);
     }
 
     private String prepareEndpointURL(Endpoint endPoint) throws URISyntaxException, MalformedURLException {
         String schema = endPoint.isHttps() ? "https" : "http";
-        URI uri = new URI(schema, null, endPoint.getEndPointIP(), 5000, "/" + KEYSTONE_VERSION, null, null);
+        URI uri = new URI(schema, null, endPoint.getEndPointIP(), this.keystonePort, "/" + KEYSTONE_VERSION, null,
+                null);
         return uri.toURL().toString();
     }
 
-    void clearConnectionMap(Endpoint endpoint) {
-        connectionsMap.remove(endpoint);
+    /**
+     * Drops the given token of the endpoint, i.e. because it was rejected, so
+     * the next session authenticates again. Does nothing if the endpoint
+     * already got a new token.
+     */
+    void invalidate(Endpoint endpoint, Token token) {
+        CachedToken cached = this.tokens.get(endpoint);
+        if (cached == null) {
+            return;
+        }
+        synchronized (cached) {
+            if (cached.token != null && Objects.equals(cached.token.getId(), token.getId())) {
+                cached.token = null;
+                this.invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Called once done with a session created from the given token. The client
+     * authenticates again on its own when a request is rejected with a 401, in
+     * which case the cached token is no longer valid.
+     */
+    void sessionClosed(Endpoint endpoint, Token token, Token sessionToken) {
+        if (sessionToken != null && !Objects.equals(token.getId(), sessionToken.getId())) {
+            log.info("Keystone token of " + endpoint.getEndPointIP() + " for project " + endpoint.getProject()
+                    + " was rejected");
+            invalidate(endpoint, token);
+        }
+    }
+
+    void setRefreshMargin(long refreshMarginMs) {
+        this.refreshMarginMs = refreshMarginMs;
+    }
+
+    /**
+     * @return the number of sessions created from a cached token
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return the number of authentications for endpoints without a token
+     */
+    public long getMisses() {
+        return this.misses.get();
     }
 
+    /**
+     * @return the number of authentications replacing a token about to expire
+     */
+    public long getRefreshes() {
+        return this.refreshes.get();
+    }
+
+    /**
+     * @return the number of tokens dropped as they were rejected
+     */
+    public long getInvalidations() {
+        return this.invalidations.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[keystone tokens] endpoints: %d, hits: %d, misses: %d, refreshes: %d, invalidations: %d",
+                this.tokens.size(), getHits(), getMisses(), getRefreshes(), getInvalidations());
+    }
 }
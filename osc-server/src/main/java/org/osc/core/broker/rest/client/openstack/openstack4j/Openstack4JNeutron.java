@@ -281,7 +281,13 @@ public class Openstack4JNeutron extends BaseOpenstack4jApi {
         return actionResponse.isSuccess();
     }
 
-    private String getVmIdByPort(Port port) {
+    /**
+     * @return the id of the server the port is attached to or null if the port is not a compute port
+     */
+    public static String getVmIdByPort(Port port) {
+        if (port == null) {
+            return null;
+        }
         String deviceOwner = port.getDeviceOwner();
         if (deviceOwner != null && deviceOwner.startsWith(QUERY_PARAM_COMPUTE_DEVICE_OWNER)) {
             return port.getDeviceId();
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.rest.client.openstack.vmidc.notification;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+/**
+ * A notification message received from OpenStack, parsed once on reception.
+ * <p>
+ * The values of all the {@link OsNotificationKeyType} keys listeners match on
+ * are extracted up front, so listeners never parse the message again and the
+ * message can be routed to the listeners registered for any of those ids.
+ */
+public final class OsNotificationMessage {
+
+    private static final Logger log = LoggerFactory.getLogger(OsNotificationMessage.class);
+
+    private final String message;
+    private final String eventType;
+    private final JsonObject payload;
+    private final Map<OsNotificationKeyType, String> properties = new EnumMap<>(OsNotificationKeyType.class);
+    private final Set<String> objectIds = new HashSet<>();
+
+    private OsNotificationMessage(String message) {
+        this.message = message;
+        this.eventType = OsNotificationUtil.getEventTypeFromMessage(message);
+
+        JsonObject object = null;
+        try {
+            object = OsNotificationUtil.parseMessage(message);
+        } catch (JsonParseException | IllegalStateException e) {
+            log.warn("Fail to parse notification message - " + message, e);
+        }
+        this.payload = object;
+
+        if (object != null) {
+            for (OsNotificationKeyType key : OsNotificationKeyType.values()) {
+                if (key == OsNotificationKeyType.FIXED_IPS) {
+                    continue;
+                }
+                String value = OsNotificationUtil.getPropertyValue(object, key.toString());
+                if (value != null) {
+                    this.properties.put(key, value);
+                    this.objectIds.add(value);
+                }
+            }
+        }
+    }
+
+    public static OsNotificationMessage parse(String message) {
+        return new OsNotificationMessage(message);
+    }
+
+    public String getEventType() {
+        return this.eventType;
+    }
+
+    /**
+     * @return the value of the given key or null if the message does not have
+     *         it
+     */
+    public String getProperty(OsNotificationKeyType key) {
+        return this.properties.get(key);
+    }
+
+    /**
+     * Looks up a key which is not an {@link OsNotificationKeyType}, from the
+     * message parsed on reception.
+     *
+     * @return the value of the given key or null if the message does not have
+     *         it
+     */
+    public String getProperty(String key) {
+        return OsNotificationUtil.getPropertyValue(this.payload, key);
+    }
+
+    /**
+     * @return the value of the given key if it is one of the given object ids,
+     *         null otherwise
+     */
+    public String getRelevantObjectId(List<String> objectIdList, OsNotificationKeyType key) {
+        String value = getProperty(key);
+        return value != null && objectIdList.contains(value) ? value : null;
+    }
+
+    /**
+     * @return all object ids found in the message, used to route it
+     */
+    public Set<String> getObjectIds() {
+        return Collections.unmodifiableSet(this.objectIds);
+    }
+
+    /**
+     * Adds ids of objects the message relates to but does not carry, i.e. the
+     * network of a deleted port, so it is routed to their listeners as well.
+     */
+    void addObjectIds(Collection<String> ids) {
+        this.objectIds.addAll(ids);
+    }
+
+    @Override
+    public String toString() {
+        return this.message;
+    }
+}
@@ -24,7 +24,6 @@ import org.apache.commons.lang.StringUtils;
 import org.osc.core.broker.model.entities.BaseEntity;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.listener.OsNotificationListener;
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
@@ -50,27 +49,55 @@ public class OsNotificationUtil {
      *         Value of the provided Json Key as String or null if the key id not present in the given message
      */
     public static String getPropertyFromNotificationMessage(String message, String key) {
-        String value = null;
+        return getPropertyValue(parseMessage(message), key);
+    }
+
+    /**
+     * Parses the given message into a Json Object, unwrapping the payload of oslo messages
+     *
+     * @param message
+     *            Json Message received from OpenStack Server
+     * @return
+     *         the parsed message
+     */
+    static JsonObject parseMessage(String message) {
         // If message have oslo in it then get the payload..
         if (message.contains("oslo.message")) {
             message = getOsloPayload(message);
         }
 
-        JsonObject object = parser.parse(message).getAsJsonObject();
-        if (object != null) {
-            if (key.equals(OsNotificationKeyType.SUBNET_ID.toString())) {
-                object = getSubnetIdFromFixedIpElement(object);
-            }
-            JsonElement element = getProperty(key, object);
-            value = element.getAsString();
+        return parser.parse(message).getAsJsonObject();
+    }
+
+    /**
+     * This method returns value the given property as String from an already parsed message
+     *
+     * @param object
+     *            parsed Json Message
+     * @param key
+     *            Json Element Key
+     * @return
+     *         Value of the provided Json Key as String or null if the key id not present in the given message
+     */
+    static String getPropertyValue(JsonObject object, String key) {
+        if (object != null && key.equals(OsNotificationKeyType.SUBNET_ID.toString())) {
+            object = getSubnetIdFromFixedIpElement(object);
+        }
+        if (object == null) {
+            return null;
         }
-        return value;
+
+        JsonElement element = getProperty(key, object);
+        return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
     }
 
     private static JsonObject getSubnetIdFromFixedIpElement(JsonObject object) {
         // get Fixed IP element to find Subnet from it..
-        JsonArray fixedIpArray = getProperty(OsNotificationKeyType.FIXED_IPS.toString(), object).getAsJsonArray();
-        JsonObject obj = fixedIpArray.get(0).getAsJsonObject();
+        JsonElement fixedIps = getProperty(OsNotificationKeyType.FIXED_IPS.toString(), object);
+        if (fixedIps == null || !fixedIps.isJsonArray() || fixedIps.getAsJsonArray().size() == 0) {
+            return null;
+        }
+        JsonObject obj = fixedIps.getAsJsonArray().get(0).getAsJsonObject();
         return obj;
     }
 
@@ -113,13 +140,8 @@ public class OsNotificationUtil {
      *         relevant Object ID from the message else return null
      */
     public static String isMessageRelevant(String message, List<String> objectIdList, String property) {
-        for (String objectId : objectIdList) {
-            String value = getPropertyFromNotificationMessage(message, property);
-            if (value != null && objectId.equals(value)) {
-                return objectId;
-            }
-        }
-        return null;
+        String value = getPropertyFromNotificationMessage(message, property);
+        return value != null && objectIdList.contains(value) ? value : null;
     }
 
     /**
@@ -18,22 +18,47 @@ package org.osc.core.broker.rest.client.openstack.vmidc.notification;
 
 import static org.osc.core.common.virtualization.VirtualizationConnectorProperties.*;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.persistence.EntityManager;
+
+import org.osc.core.broker.job.JobEngine;
+import org.osc.core.broker.job.JobPriority;
 import org.osc.core.broker.job.lock.LockObjectReference;
 import org.osc.core.broker.model.entities.events.SystemFailureType;
 import org.osc.core.broker.model.entities.virtualization.VirtualizationConnector;
+import org.osc.core.broker.model.entities.virtualization.openstack.VMPort;
+import org.osc.core.broker.rest.client.openstack.discovery.OpenstackInventoryCache;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.listener.NotificationListener;
+import org.osc.core.broker.rest.client.openstack.vmidc.notification.listener.OsNotificationEventState;
 import org.osc.core.broker.service.api.RestConstants;
 import org.osc.core.broker.service.api.server.EncryptionException;
+import org.osc.core.broker.service.persistence.VMPortEntityManager;
 import org.osc.core.broker.util.SessionUtil;
 import org.osc.core.broker.util.StaticRegistry;
+import org.osc.core.broker.util.db.HibernateUtil;
+import org.osgi.service.transaction.control.ScopedWorkException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.ListMultimap;
+import com.google.common.collect.SetMultimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  *
@@ -46,6 +71,10 @@ public class OsRabbitMQClient extends RabbitMQClient {
 
     private static final Logger log = LoggerFactory.getLogger(OsRabbitMQClient.class);
 
+    static final int DEFAULT_WORKER_COUNT = 4;
+
+    private static int workerCount = DEFAULT_WORKER_COUNT;
+
     private VirtualizationConnector vc;
 
     /*
@@ -57,9 +86,27 @@ public class OsRabbitMQClient extends RabbitMQClient {
             .create();
 
     /*
-     * Singleton for delegating messages to specific listeners
+     * Per Object Type, a Map between the Open stack IDs listeners are interested in and those listeners, so incoming
+     * messages are only delivered to the listeners registered for one of the IDs they carry
      */
-    private final ExecutorService messageListenerService = Executors.newSingleThreadExecutor();
+    private final Map<OsNotificationObjectType, SetMultimap<String, NotificationListener>> listenerIndex = new EnumMap<>(
+            OsNotificationObjectType.class);
+
+    /*
+     * Workers delivering messages to listeners. Listeners are partitioned over the workers by the OSC object they act
+     * upon, so the listeners of the same Security Group or Deployment Spec get their messages one at a time, in the
+     * order they were received, while a slow listener only holds up the listeners of its partition
+     */
+    private ExecutorService[] workers;
+
+    private final AtomicLong messagesReceived = new AtomicLong();
+    private final AtomicLong messagesProcessed = new AtomicLong();
+    private final AtomicLong messagesDispatched = new AtomicLong();
+    private final AtomicLong messagesFailed = new AtomicLong();
+    private final AtomicInteger messagesInProgress = new AtomicInteger();
+    private final AtomicLong totalQueueLagMs = new AtomicLong();
+    private volatile long lastQueueLagMs;
+    private volatile int maxMessagesInProgress;
 
     public OsRabbitMQClient(VirtualizationConnector vc) throws EncryptionException {
         super();
@@ -96,6 +143,7 @@ public class OsRabbitMQClient extends RabbitMQClient {
 
     public synchronized void registerListener(NotificationListener listener, OsNotificationObjectType objectType) {
         this.listenersMap.put(objectType, listener);
+        index(listener, objectType, listener.getObjectIdList());
     }
 
     /**
@@ -109,45 +157,315 @@ public class OsRabbitMQClient extends RabbitMQClient {
 
     public synchronized void removeListener(NotificationListener listener, OsNotificationObjectType objectType) {
         this.listenersMap.remove(objectType, listener);
+        unIndex(listener, objectType, listener.getObjectIdList());
     }
 
     /**
-     * @param message
-     *            Received Json message from Open stack Server
+     * This method updates the IDs a registered listener is routed messages for, after its object ID list changed
+     *
+     * @param listener
+     *            Listener whose object ID list changed
      * @param objectType
-     *            Event Type of the incoming message
+     *            Event Type of the listener
+     * @param oldObjectIdList
+     *            Object ID list of the listener before the change
+     */
+    public synchronized void reindexListener(NotificationListener listener, OsNotificationObjectType objectType,
+            List<String> oldObjectIdList) {
+        if (this.listenersMap.containsEntry(objectType, listener)) {
+            unIndex(listener, objectType, oldObjectIdList);
+            index(listener, objectType, listener.getObjectIdList());
+        }
+    }
+
+    private void index(NotificationListener listener, OsNotificationObjectType objectType,
+            Collection<String> objectIds) {
+        if (objectIds == null) {
+            return;
+        }
+        SetMultimap<String, NotificationListener> index = this.listenerIndex.get(objectType);
+        if (index == null) {
+            index = LinkedHashMultimap.create();
+            this.listenerIndex.put(objectType, index);
+        }
+        for (String objectId : objectIds) {
+            index.put(objectId, listener);
+        }
+    }
+
+    private void unIndex(NotificationListener listener, OsNotificationObjectType objectType,
+            Collection<String> objectIds) {
+        SetMultimap<String, NotificationListener> index = this.listenerIndex.get(objectType);
+        if (index == null || objectIds == null) {
+            return;
+        }
+        for (String objectId : objectIds) {
+            index.remove(objectId, listener);
+        }
+    }
+
+    public static void setWorkerCount(String value) {
+        if (value == null) {
+            return;
+        }
+        workerCount = Integer.parseInt(value);
+    }
+
+    /**
+     * Delivers the message to a listener it is relevant to. The message is acknowledged once it was delivered to all
+     * of them.
+     *
+     * @param listener
+     *            Listener registered for one of the IDs the message carries
+     * @param message
+     *            Received message from Open stack Server
+     * @param remainingListeners
+     *            Number of listeners the message is still to be delivered to
+     * @param deliveryTag
+     *            Delivery tag to acknowledge the message with
      */
-    private synchronized void notifyListeners(final String message, final OsNotificationObjectType objectType) {
-        if (this.listenersMap.get(objectType) != null) {
-            for (final NotificationListener listener : this.listenersMap.get(objectType)) {
-                this.messageListenerService.execute(() -> listener.onMessage(message));
+    private void notifyListener(NotificationListener listener, OsNotificationMessage message,
+            AtomicInteger remainingListeners, DeliveryTag deliveryTag) {
+        SessionUtil.getInstance().setUser(RestConstants.OSC_DEFAULT_LOGIN);
+        // Jobs started by listeners are notification driven
+        JobEngine.setSubmissionPriority(JobPriority.NOTIFICATION);
+        try {
+            listener.onMessage(message);
+        } catch (Exception e) {
+            this.messagesFailed.incrementAndGet();
+            log.error("Listener failed to process notification message - " + message, e);
+        } finally {
+            JobEngine.setSubmissionPriority(null);
+            if (remainingListeners.decrementAndGet() == 0) {
+                // Processed messages are acknowledged even if a listener failed, delivering them again would fail again
+                acknowledge(deliveryTag);
+                this.messagesInProgress.decrementAndGet();
+                this.messagesProcessed.incrementAndGet();
             }
         }
     }
 
+    private synchronized ExecutorService getWorker(NotificationListener listener) {
+        if (this.workers == null) {
+            this.workers = new ExecutorService[Math.max(1, workerCount)];
+            for (int i = 0; i < this.workers.length; i++) {
+                this.workers[i] = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                        .setNameFormat("isc-os-notification-" + this.vc.getName() + "-" + i).setDaemon(true).build());
+            }
+        }
+
+        return this.workers[getPartition(listener.getObjectReference(), this.workers.length)];
+    }
+
+    /**
+     * @return the worker partition of the listeners acting upon the given object. Listeners not tied to an object
+     *         share the first partition.
+     */
+    static int getPartition(LockObjectReference objectReference, int partitionCount) {
+        return objectReference == null ? 0 : Math.floorMod(objectReference.hashCode(), partitionCount);
+    }
+
+    /**
+     * @return the listeners of the given Object Type registered for any of the IDs the message carries, in
+     *         registration order
+     */
+    synchronized Set<NotificationListener> getListeners(OsNotificationMessage message,
+            OsNotificationObjectType objectType) {
+        Set<NotificationListener> listeners = new LinkedHashSet<>();
+        SetMultimap<String, NotificationListener> index = this.listenerIndex.get(objectType);
+        if (index != null) {
+            for (String objectId : message.getObjectIds()) {
+                listeners.addAll(index.get(objectId));
+            }
+        }
+        return listeners;
+    }
+
+    /**
+     * Port deletion messages only carry the port ID while port listeners are registered for the network, VM or
+     * subnet of the port. Add those IDs, as known to us, to the message so it is routed to these listeners.
+     */
+    private void addDeletedPortObjectIds(OsNotificationMessage message) {
+        String portId = message.getProperty(OsNotificationKeyType.PORT_ID);
+        if (portId == null) {
+            return;
+        }
+
+        try {
+            EntityManager em = HibernateUtil.getTransactionalEntityManager();
+            List<String> objectIds = HibernateUtil.getTransactionControl().required(() -> {
+                List<String> ids = new ArrayList<>();
+                VMPort port = VMPortEntityManager.findByOpenstackId(em, portId);
+                if (port != null) {
+                    if (port.getNetwork() != null) {
+                        ids.add(port.getNetwork().getOpenstackId());
+                    }
+                    if (port.getVm() != null) {
+                        ids.add(port.getVm().getOpenstackId());
+                    }
+                    if (port.getSubnet() != null) {
+                        ids.add(port.getSubnet().getOpenstackId());
+                    }
+                }
+                return ids;
+            });
+            message.addObjectIds(objectIds);
+        } catch (ScopedWorkException e) {
+            // Unwrap the ScopedWorkException to get the cause from
+            // the scoped work (i.e. the executeTransaction() call.
+            log.error("Fail to load port " + portId + " of notification message", e.getCause());
+        } catch (Exception e) {
+            log.error("Fail to load port " + portId + " of notification message", e);
+        }
+    }
+
+    private boolean isPortDeletion(String eventType) {
+        return eventType.contains(OsNotificationEventState.DELETE.toString())
+                || eventType.contains(OsNotificationEventState.INTERFACE_DELETE.toString());
+    }
+
     public void destroy() {
-        // Shutdown executor service for this instance
-        this.messageListenerService.shutdown();
-        // cleaning up listener map upon client close
-        this.listenersMap.clear();
+        // Shutdown executor services for this instance
+        synchronized (this) {
+            if (this.workers != null) {
+                for (ExecutorService worker : this.workers) {
+                    worker.shutdown();
+                }
+                this.workers = null;
+            }
+            // cleaning up listener map upon client close
+            this.listenersMap.clear();
+            this.listenerIndex.clear();
+        }
+        log.info(toString());
     }
 
     @Override
-    protected final void receiveMessage(String message) {
-        SessionUtil.getInstance().setUser(RestConstants.OSC_DEFAULT_LOGIN);
+    protected final void receiveMessage(String message, DeliveryTag deliveryTag) {
         log.debug(" [RabbitMQ Client Message Received ]  - " + message);
+        this.messagesReceived.incrementAndGet();
         String eventType = OsNotificationUtil.getEventTypeFromMessage(message);
 
         // delegate message to object specific listener
+        OsNotificationObjectType objectType = null;
+        try {
+            objectType = OsNotificationObjectType.getType(eventType);
+        } catch (IllegalArgumentException e) {
+            if (!this.listenersMap.isEmpty()) {
+                log.error("Disregarding notification message with unknown object type" + eventType);
+            }
+        }
+        if (objectType == null) {
+            acknowledge(deliveryTag);
+            this.messagesProcessed.incrementAndGet();
+            return;
+        }
+
+        // parse the message once for the inventory cache and all listeners
+        OsNotificationMessage notification = OsNotificationMessage.parse(message);
+        OsNotificationObjectType type = objectType;
+
+        // drop what changed before listeners get to read it again
+        invalidateInventory(notification, type);
+
+        Set<NotificationListener> listeners = Collections.emptySet();
         if (!this.listenersMap.isEmpty()) {
+            // Resolved here rather than on the workers, so the listeners get the messages in the order they came in
+            if (type == OsNotificationObjectType.PORT && isPortDeletion(notification.getEventType())) {
+                addDeletedPortObjectIds(notification);
+            }
+            listeners = getListeners(notification, type);
+        }
+        if (listeners.isEmpty()) {
+            acknowledge(deliveryTag);
+            this.messagesProcessed.incrementAndGet();
+            return;
+        }
+        long receivedTime = System.currentTimeMillis();
+
+        int inProgress = this.messagesInProgress.incrementAndGet();
+        if (inProgress > this.maxMessagesInProgress) {
+            this.maxMessagesInProgress = inProgress;
+        }
+        AtomicInteger remainingListeners = new AtomicInteger(listeners.size());
+        for (NotificationListener listener : listeners) {
             try {
-                notifyListeners(message, OsNotificationObjectType.getType(eventType));
-            } catch (IllegalArgumentException e) {
-                log.error("Disregarding notification message with unknown object type" + eventType);
+                getWorker(listener).execute(() -> {
+                    this.lastQueueLagMs = System.currentTimeMillis() - receivedTime;
+                    this.totalQueueLagMs.addAndGet(this.lastQueueLagMs);
+                    this.messagesDispatched.incrementAndGet();
+                    notifyListener(listener, notification, remainingListeners, deliveryTag);
+                });
+            } catch (RejectedExecutionException e) {
+                // Client is being destroyed, the message is never acknowledged and will be delivered again to the
+                // next consumer
+                this.messagesInProgress.decrementAndGet();
+                log.warn("Disregarding notification message received while closing - " + message);
+                return;
             }
         }
     }
 
+    /**
+     * Drops the servers, ports, networks and subnets the message is about from the inventory shared by the
+     * conformance jobs of the virtualization connector
+     */
+    private void invalidateInventory(OsNotificationMessage message, OsNotificationObjectType objectType) {
+        if (objectType != OsNotificationObjectType.VM && objectType != OsNotificationObjectType.PORT
+                && objectType != OsNotificationObjectType.NETWORK) {
+            return;
+        }
+
+        Set<String> objectIds = new HashSet<>(message.getObjectIds());
+        if (objectType != OsNotificationObjectType.VM) {
+            // Port and network creations and updates carry the ID of the object as its ID
+            String id = message.getProperty("id");
+            if (id != null) {
+                objectIds.add(id);
+            }
+        }
+        OpenstackInventoryCache.getCache().invalidate(this.vc.getId(), objectIds,
+                objectType == OsNotificationObjectType.VM);
+    }
+
+    /**
+     * @return the number of messages received from the server
+     */
+    public long getMessagesReceived() {
+        return this.messagesReceived.get();
+    }
+
+    /**
+     * @return the number of messages received and not processed yet. It never exceeds the prefetch count, the server
+     *         holds the other messages until those are acknowledged.
+     */
+    public int getMessagesInProgress() {
+        return this.messagesInProgress.get();
+    }
+
+    /**
+     * @return the time in milliseconds the last delivery of a message to a listener waited for its worker
+     */
+    public long getLastQueueLagMs() {
+        return this.lastQueueLagMs;
+    }
+
+    /**
+     * @return the average time in milliseconds deliveries of messages to listeners waited for their worker
+     */
+    public double getAverageQueueLagMs() {
+        long dispatched = this.messagesDispatched.get();
+        return dispatched == 0 ? 0 : (double) this.totalQueueLagMs.get() / dispatched;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "[notifications %s] received: %d, processed: %d, listener-failures: %d, in-progress: %d (max %d), last-lag: %dms, avg-lag: %.1fms",
+                this.vc.getName(), getMessagesReceived(), this.messagesProcessed.get(), this.messagesFailed.get(),
+                getMessagesInProgress(), this.maxMessagesInProgress, getLastQueueLagMs(), getAverageQueueLagMs());
+    }
+
     @Override
     protected void generateConnectionFailureAlert() {
         StaticRegistry.alertGenerator().processSystemFailureEvent(SystemFailureType.OS_NOTIFICATION_FAILURE, new LockObjectReference(
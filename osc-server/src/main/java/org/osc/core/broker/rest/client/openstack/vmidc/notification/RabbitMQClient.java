@@ -41,6 +41,14 @@ public abstract class RabbitMQClient {
     private static final String NEUTRON_EXCHANGE = "neutron";
     private static final String KEYSTONE_EXCHANGE = "keystone";
 
+    static final int DEFAULT_PREFETCH_COUNT = 100;
+
+    /*
+     * Maximum number of messages delivered to us and not acknowledged yet. As messages are acknowledged once processed,
+     * this bounds the work in progress and makes the server hold the rest of the messages
+     */
+    private static int prefetchCount = DEFAULT_PREFETCH_COUNT;
+
     private Connection connection = null;
     private Channel channel;
     private String consumerTag;
@@ -57,6 +65,25 @@ public abstract class RabbitMQClient {
     protected static final String QUEUE_NAME = "osc_queue";
     protected static final String ROUTING_KEY = "notifications.info";
 
+    /**
+     * Identifies a received message to acknowledge. Delivery tags are only meaningful on the channel the message was
+     * received on, so the tag is kept together with that channel.
+     */
+    protected static final class DeliveryTag {
+        private final Channel channel;
+        private final long tag;
+
+        DeliveryTag(Channel channel, long tag) {
+            this.channel = channel;
+            this.tag = tag;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(this.tag);
+        }
+    }
+
     /**
      *
      * Generic Rabbit MQ client which will open a connections and Subscribe to the provided Queue with given Topic and
@@ -114,11 +141,12 @@ public abstract class RabbitMQClient {
                     public void handleDelivery(String consumerTag, Envelope envelope, BasicProperties properties,
                             byte[] body) throws IOException {
                         super.handleDelivery(consumerTag, envelope, properties, body);
-                        receiveMessage(new String(body));
+                        receiveMessage(new String(body), new DeliveryTag(getChannel(), envelope.getDeliveryTag()));
                     }
 
                 };
-                this.consumerTag = this.channel.basicConsume(this.queue, true, consumer);
+                // Messages are acknowledged once processed, see acknowledge()
+                this.consumerTag = this.channel.basicConsume(this.queue, false, consumer);
                 log.info("Successfully connected to RabbitMQ Server :- " + this.serverIP);
                 return;
             } catch (Exception e) {
@@ -190,8 +218,61 @@ public abstract class RabbitMQClient {
         return this.channel != null && this.channel.isOpen();
     }
 
+    public static void setPrefetchCount(String value) {
+        if (value == null) {
+            return;
+        }
+        prefetchCount = Integer.parseInt(value);
+    }
+
+    /**
+     * Acknowledges a message given to {@link #receiveMessage(String, DeliveryTag)} once it has been processed.
+     * Messages which are never acknowledged are delivered again if the channel is closed. The acknowledgement is
+     * dropped if the channel the message was received on has been closed since, as the server already put the message
+     * back in the queue and would reject the unknown tag.
+     *
+     * @param deliveryTag
+     *            Delivery tag the message was received with
+     */
+    protected void acknowledge(DeliveryTag deliveryTag) {
+        Channel channel = deliveryTag.channel;
+        if (channel == null || !channel.isOpen()) {
+            log.warn("Cannot acknowledge message " + deliveryTag + ", the channel to " + this.serverIP
+                    + " it was received on is closed");
+            return;
+        }
+        try {
+            // Acknowledgements come from several threads
+            synchronized (channel) {
+                channel.basicAck(deliveryTag.tag, false);
+            }
+        } catch (Exception e) {
+            log.error("Failed to acknowledge message " + deliveryTag + " to Rabbit MQ server " + this.serverIP, e);
+        }
+    }
+
+    /**
+     * @return the number of messages waiting in the queue on the server, or -1 if not connected
+     */
+    public long getServerQueueDepth() {
+        Channel channel = this.channel;
+        if (channel == null || !channel.isOpen()) {
+            return -1;
+        }
+        try {
+            return channel.messageCount(this.queue);
+        } catch (Exception e) {
+            log.warn("Failed to get queue depth from Rabbit MQ server " + this.serverIP + " Error:" + e.getMessage());
+            return -1;
+        }
+    }
+
+    ConnectionFactory newConnectionFactory() {
+        return new ConnectionFactory();
+    }
+
     private ConnectionFactory initConnectionFactory() {
-        ConnectionFactory factory = new ConnectionFactory();
+        ConnectionFactory factory = newConnectionFactory();
         // TODO: pawel - Future. use SSL if vc is HTTPS
         factory.setHost(this.serverIP);
         factory.setPort(this.port);
@@ -204,7 +285,7 @@ public abstract class RabbitMQClient {
     }
 
     private void initChannel(Channel channel) throws IOException {
-        channel.basicQos(1);
+        channel.basicQos(prefetchCount);
         // this.channel.exchangeDeclare(this.exchange, TOPIC);
         Map<String, Object> args = new HashMap<>();
         args.put("x-expires", 180000); // Three minutes
@@ -236,7 +317,16 @@ public abstract class RabbitMQClient {
         }
     }
 
-    protected abstract void receiveMessage(String message);
+    /**
+     * Processes a message received from the server. The message must be {@link #acknowledge(DeliveryTag)
+     * acknowledged} once processed.
+     *
+     * @param message
+     *            Received Json message
+     * @param deliveryTag
+     *            Delivery tag to acknowledge the message with
+     */
+    protected abstract void receiveMessage(String message, DeliveryTag deliveryTag);
 
     protected abstract void generateConnectionFailureAlert();
 
@@ -16,7 +16,11 @@
  *******************************************************************************/
 package org.osc.core.broker.rest.client.openstack.vmidc.notification.listener;
 
+import java.util.List;
+
+import org.osc.core.broker.job.lock.LockObjectReference;
 import org.osc.core.broker.model.entities.virtualization.VirtualizationConnector;
+import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationMessage;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationObjectType;
 
 public interface NotificationListener {
@@ -57,6 +61,27 @@ public interface NotificationListener {
      * here
      *
      * @param message
+     *            Notification message, parsed once on reception
+     */
+    void onMessage(OsNotificationMessage message);
+
+    /**
+     *
+     * The Open stack IDs of the objects this listener is interested in. The Rabbit MQ client only delivers messages
+     * which carry one of these IDs
+     *
+     * @return
+     *         List of Open stack object IDs
+     */
+    List<String> getObjectIdList();
+
+    /**
+     *
+     * The OSC object this listener acts upon. Messages are delivered to the listeners of the same object one at a time,
+     * in the order they were received
+     *
+     * @return
+     *         Reference to the object, null if the listener is not tied to an object
      */
-    void onMessage(String message);
+    LockObjectReference getObjectReference();
 }
@@ -25,6 +25,7 @@ import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificati
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.runner.RabbitMQRunner;
 import org.osc.core.broker.service.DeploymentSpecConformJobFactory;
 import org.osc.core.broker.service.SecurityGroupConformJobFactory;
+import org.osc.core.broker.service.SecurityGroupSyncDebouncer;
 import org.osc.core.broker.service.alert.AlertGenerator;
 import org.osc.core.broker.service.exceptions.VmidcBrokerInvalidEntryException;
 import org.osc.core.broker.util.db.DBConnectionManager;
@@ -47,6 +48,9 @@ public class NotificationListenerFactory {
     @Reference
     private SecurityGroupConformJobFactory sgConformJobFactory;
 
+    @Reference
+    private SecurityGroupSyncDebouncer sgSyncDebouncer;
+
     @Reference
     private AlertGenerator alertGenerator;
 
@@ -77,20 +81,20 @@ public class NotificationListenerFactory {
 
         switch (objectType) {
         case PORT:
-            return new OsPortNotificationListener(vc, objectType, objectIdList, entity, this.sgConformJobFactory,
+            return new OsPortNotificationListener(vc, objectType, objectIdList, entity, this.sgSyncDebouncer,
                     this.alertGenerator, this.activeRunner, this.dbMgr);
         case VM:
             return new OsVMNotificationListener(vc, objectType, objectIdList, entity, this.dsConformJobFactory,
-                    this.sgConformJobFactory, this.alertGenerator, this.activeRunner, this.dbMgr);
+                    this.sgConformJobFactory, this.sgSyncDebouncer, this.alertGenerator, this.activeRunner, this.dbMgr);
         case HOST_AGGREGRATE:
             return new OsHostAggregrateNotificationListener(vc, objectType, objectIdList, entity, this.dsConformJobFactory,
                     this.alertGenerator, this.activeRunner, this.dbMgr.getTransactionControl());
         case PROJECT:
             return new OsProjectNotificationListener(vc, objectType, objectIdList, entity, this.dsConformJobFactory,
-                    this.sgConformJobFactory, this.alertGenerator, this.activeRunner, this.dbMgr);
+                    this.sgSyncDebouncer, this.alertGenerator, this.activeRunner, this.dbMgr);
         case NETWORK:
             return new OsNetworkNotificationListener(vc, objectType, objectIdList, entity, this.dsConformJobFactory,
-                    this.sgConformJobFactory, this.alertGenerator, this.activeRunner, this.dbMgr.getTransactionControl());
+                    this.sgSyncDebouncer, this.alertGenerator, this.activeRunner, this.dbMgr.getTransactionControl());
         default:
             break;
         }
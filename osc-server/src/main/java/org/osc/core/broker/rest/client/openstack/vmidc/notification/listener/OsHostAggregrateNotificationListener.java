@@ -24,8 +24,8 @@ import org.osc.core.broker.model.entities.events.SystemFailureType;
 import org.osc.core.broker.model.entities.virtualization.VirtualizationConnector;
 import org.osc.core.broker.model.entities.virtualization.openstack.DeploymentSpec;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationKeyType;
+import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationMessage;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationObjectType;
-import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationUtil;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.runner.RabbitMQRunner;
 import org.osc.core.broker.service.DeploymentSpecConformJobFactory;
 import org.osc.core.broker.service.alert.AlertGenerator;
@@ -54,15 +54,16 @@ public class OsHostAggregrateNotificationListener extends OsNotificationListener
     }
 
     @Override
-    public void onMessage(String message) {
-        String eventType = OsNotificationUtil.getEventTypeFromMessage(message);
+    public void onMessage(OsNotificationMessage message) {
+        String eventType = message.getEventType();
         if (eventType.contains(OsNotificationEventState.UPDATE_PROP.toString())
                 || eventType.contains(OsNotificationEventState.ADD_HOST.toString())
                 || eventType.contains(OsNotificationEventState.REMOVE_HOST.toString())) {
 
-            String keyValue = OsNotificationUtil.isMessageRelevant(message, this.objectIdList,
-                    OsNotificationKeyType.AGGREGRATE_ID.toString());
+            String keyValue = message.getRelevantObjectId(this.objectIdList,
+                    OsNotificationKeyType.AGGREGRATE_ID);
             if (keyValue != null) {
+                markEntityChanged();
                 log.info(" [Aggregrate] : message received - " + message);
                 try {
                     this.txControl.required(() -> {
@@ -25,11 +25,11 @@ import org.osc.core.broker.model.entities.virtualization.SecurityGroup;
 import org.osc.core.broker.model.entities.virtualization.VirtualizationConnector;
 import org.osc.core.broker.model.entities.virtualization.openstack.DeploymentSpec;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationKeyType;
+import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationMessage;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationObjectType;
-import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationUtil;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.runner.RabbitMQRunner;
 import org.osc.core.broker.service.DeploymentSpecConformJobFactory;
-import org.osc.core.broker.service.SecurityGroupConformJobFactory;
+import org.osc.core.broker.service.SecurityGroupSyncDebouncer;
 import org.osc.core.broker.service.alert.AlertGenerator;
 import org.osgi.service.transaction.control.TransactionControl;
 import org.slf4j.Logger;
@@ -40,7 +40,7 @@ public class OsNetworkNotificationListener extends OsNotificationListener {
     private static final Logger log = LoggerFactory.getLogger(OsNetworkNotificationListener.class);
 
     private final DeploymentSpecConformJobFactory dsConformJobFactory;
-    private final SecurityGroupConformJobFactory sgConformJobFactory;
+    private final SecurityGroupSyncDebouncer sgSyncDebouncer;
 
     private final AlertGenerator alertGenerator;
 
@@ -48,31 +48,32 @@ public class OsNetworkNotificationListener extends OsNotificationListener {
 
     public OsNetworkNotificationListener(VirtualizationConnector vc, OsNotificationObjectType objectType,
             List<String> objectIdList, BaseEntity entity, DeploymentSpecConformJobFactory dsConformJobFactory,
-            SecurityGroupConformJobFactory sgConformJobFactory, AlertGenerator alertGenerator, RabbitMQRunner activeRunner,
+            SecurityGroupSyncDebouncer sgSyncDebouncer, AlertGenerator alertGenerator, RabbitMQRunner activeRunner,
             TransactionControl txControl) {
 
         super(vc, OsNotificationObjectType.NETWORK, objectIdList, entity, activeRunner);
         this.dsConformJobFactory = dsConformJobFactory;
-        this.sgConformJobFactory = sgConformJobFactory;
+        this.sgSyncDebouncer = sgSyncDebouncer;
         this.alertGenerator = alertGenerator;
         this.txControl = txControl;
         register(vc, objectType);
     }
 
     @Override
-    public void onMessage(String message) {
-        String eventType = OsNotificationUtil.getEventTypeFromMessage(message);
+    public void onMessage(OsNotificationMessage message) {
+        String eventType = message.getEventType();
 
         // Listen to Network deleted events
         if (eventType.contains(OsNotificationEventState.DELETE.toString())) {
-            String keyValue = OsNotificationUtil.isMessageRelevant(message, this.objectIdList,
-                    OsNotificationKeyType.NETWORK_ID.toString());
+            String keyValue = message.getRelevantObjectId(this.objectIdList,
+                    OsNotificationKeyType.NETWORK_ID);
             if (keyValue != null) {
+                markEntityChanged();
                 log.info(" [Network] : message received - " + message);
                 try {
                     this.txControl.required(() -> {
                         if (this.entity instanceof SecurityGroup) {
-                            this.sgConformJobFactory.startSecurityGroupConformanceJob((SecurityGroup) this.entity);
+                            this.sgSyncDebouncer.requestSync((SecurityGroup) this.entity);
                         }
 
                         if (this.entity instanceof DeploymentSpec) {
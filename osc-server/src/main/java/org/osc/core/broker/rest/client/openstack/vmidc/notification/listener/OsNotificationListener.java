@@ -16,13 +16,16 @@
  *******************************************************************************/
 package org.osc.core.broker.rest.client.openstack.vmidc.notification.listener;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import org.osc.core.broker.job.lock.LockObjectReference;
 import org.osc.core.broker.model.entities.BaseEntity;
 import org.osc.core.broker.model.entities.virtualization.VirtualizationConnector;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationObjectType;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsRabbitMQClient;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.runner.RabbitMQRunner;
+import org.osc.core.broker.service.persistence.EntityChangeTracker;
 
 /**
  * This abstract class implements a generic listener object which will listen to Notifications of the registered type
@@ -39,12 +42,47 @@ public abstract class OsNotificationListener implements NotificationListener {
     protected BaseEntity entity;
     private RabbitMQRunner activeRunner;
 
+    @Override
     public List<String> getObjectIdList() {
         return this.objectIdList;
     }
 
     public void setObjectIdList(List<String> objectIdList) {
+        List<String> oldIdList = this.objectIdList;
         this.objectIdList = objectIdList;
+        reindex(oldIdList);
+    }
+
+    /**
+     * Adds the given Open stack ID to the IDs this listener is interested in
+     */
+    public synchronized void addObjectId(String objectId) {
+        if (!this.objectIdList.contains(objectId)) {
+            List<String> idList = new ArrayList<>(this.objectIdList);
+            idList.add(objectId);
+            setObjectIdList(idList);
+        }
+    }
+
+    /**
+     * Removes the given Open stack ID from the IDs this listener is interested in
+     */
+    public synchronized void removeObjectId(String objectId) {
+        if (this.objectIdList.contains(objectId)) {
+            List<String> idList = new ArrayList<>(this.objectIdList);
+            idList.remove(objectId);
+            setObjectIdList(idList);
+        }
+    }
+
+    /*
+     * The Rabbit MQ client routes messages by object ID, so it has to know whenever the IDs change
+     */
+    private void reindex(List<String> oldIdList) {
+        OsRabbitMQClient client = this.activeRunner.getVcToRabbitMQClientMap().get(this.vc.getId());
+        if (client != null) {
+            client.reindexListener(this, this.objectType, oldIdList);
+        }
     }
 
     public OsNotificationListener(VirtualizationConnector vc, OsNotificationObjectType objectType,
@@ -74,6 +112,14 @@ public abstract class OsNotificationListener implements NotificationListener {
         }
     }
 
+    /**
+     * Records that the entity this listener is tied to is affected by a change
+     * in OpenStack, so the next periodic sync conforms it.
+     */
+    protected void markEntityChanged() {
+        EntityChangeTracker.getTracker().markChanged(this.entity);
+    }
+
     public OsNotificationObjectType getObjectType() {
         return this.objectType;
     }
@@ -82,6 +128,11 @@ public abstract class OsNotificationListener implements NotificationListener {
         this.objectType = objectType;
     }
 
+    @Override
+    public LockObjectReference getObjectReference() {
+        return LockObjectReference.getLockObjectReference(this.entity, new LockObjectReference(this.vc));
+    }
+
     public BaseEntity getEntity() {
         return this.entity;
     }
@@ -27,10 +27,10 @@ import org.osc.core.broker.model.entities.virtualization.SecurityGroup;
 import org.osc.core.broker.model.entities.virtualization.VirtualizationConnector;
 import org.osc.core.broker.model.entities.virtualization.openstack.VMPort;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationKeyType;
+import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationMessage;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationObjectType;
-import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationUtil;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.runner.RabbitMQRunner;
-import org.osc.core.broker.service.SecurityGroupConformJobFactory;
+import org.osc.core.broker.service.SecurityGroupSyncDebouncer;
 import org.osc.core.broker.service.alert.AlertGenerator;
 import org.osc.core.broker.service.persistence.SecurityGroupEntityMgr;
 import org.osc.core.broker.service.persistence.VMPortEntityManager;
@@ -43,25 +43,25 @@ public class OsPortNotificationListener extends OsNotificationListener {
 
     private static final Logger log = LoggerFactory.getLogger(OsPortNotificationListener.class);
 
-    private final SecurityGroupConformJobFactory sgConformJobFactory;
+    private final SecurityGroupSyncDebouncer sgSyncDebouncer;
 
     private final AlertGenerator alertGenerator;
 
     private final DBConnectionManager dbMgr;
 
     public OsPortNotificationListener(VirtualizationConnector vc, OsNotificationObjectType objectType,
-            List<String> objectIdList, BaseEntity entity, SecurityGroupConformJobFactory sgConformJobFactory,
+            List<String> objectIdList, BaseEntity entity, SecurityGroupSyncDebouncer sgSyncDebouncer,
             AlertGenerator alertGenerator, RabbitMQRunner activeRunner, DBConnectionManager dbMgr) {
         super(vc, OsNotificationObjectType.PORT, objectIdList, entity, activeRunner);
-        this.sgConformJobFactory = sgConformJobFactory;
+        this.sgSyncDebouncer = sgSyncDebouncer;
         this.alertGenerator = alertGenerator;
         this.dbMgr = dbMgr;
         register(vc, objectType);
     }
 
     @Override
-    public void onMessage(final String message) {
-        final String eventType = OsNotificationUtil.getEventTypeFromMessage(message);
+    public void onMessage(final OsNotificationMessage message) {
+        final String eventType = message.getEventType();
         if (eventType.contains(OsNotificationEventState.CREATE.toString())
                 || eventType.contains(OsNotificationEventState.DELETE.toString())
                 || eventType.contains(OsNotificationEventState.INTERFACE_DELETE.toString())) {
@@ -79,7 +79,7 @@ public class OsPortNotificationListener extends OsNotificationListener {
         }
     }
 
-    private void doTranscationalAction(final String eventType, final String message) throws Exception {
+    private void doTranscationalAction(final String eventType, final OsNotificationMessage message) throws Exception {
         EntityManager em = this.dbMgr.getTransactionalEntityManager();
         this.dbMgr.getTransactionControl().required(() -> {
             if (eventType.contains(OsNotificationEventState.DELETE.toString())
@@ -99,7 +99,7 @@ public class OsPortNotificationListener extends OsNotificationListener {
                 "Fail to process Openstack Port notification (" + e.getMessage() + ")");
     }
 
-    private void handleSGPortMessages(EntityManager em, String message) throws Exception {
+    private void handleSGPortMessages(EntityManager em, OsNotificationMessage message) throws Exception {
         SecurityGroup sg = (SecurityGroup) this.entity;
         String keyValue;
 
@@ -108,24 +108,24 @@ public class OsPortNotificationListener extends OsNotificationListener {
 
         if (sg.isProtectAll()) {
             // If protect all then check Project id in context
-            keyValue = OsNotificationUtil.isMessageRelevant(message, this.objectIdList,
-                    OsNotificationKeyType.PROJECT_ID.toString());
+            keyValue = message.getRelevantObjectId(this.objectIdList,
+                    OsNotificationKeyType.PROJECT_ID);
 
         } else {
             // check network id in context
 
-            keyValue = OsNotificationUtil.isMessageRelevant(message, this.objectIdList,
-                    OsNotificationKeyType.NETWORK_ID.toString());
+            keyValue = message.getRelevantObjectId(this.objectIdList,
+                    OsNotificationKeyType.NETWORK_ID);
 
             if (keyValue == null) {
                 // If no match on network id then check if the register ID is of VM in context
-                keyValue = OsNotificationUtil.isMessageRelevant(message, this.objectIdList,
-                        OsNotificationKeyType.DEVICE_ID.toString());
+                keyValue = message.getRelevantObjectId(this.objectIdList,
+                        OsNotificationKeyType.DEVICE_ID);
             }
 
             if (keyValue == null) {
-                keyValue = OsNotificationUtil.isMessageRelevant(message, this.objectIdList,
-                        OsNotificationKeyType.SUBNET_ID.toString());
+                keyValue = message.getRelevantObjectId(this.objectIdList,
+                        OsNotificationKeyType.SUBNET_ID);
                 // Add subnet notification snippet back when the OpenStack device_owner issue is fixed.
                 // Related OSC issue: https://github.com/opensecuritycontroller/osc-core/issues/462
             }
@@ -138,12 +138,11 @@ public class OsPortNotificationListener extends OsNotificationListener {
 
     }
 
-    private void handleSGPortDeletionMessages(EntityManager em, String message) throws Exception {
+    private void handleSGPortDeletionMessages(EntityManager em, OsNotificationMessage message) throws Exception {
         SecurityGroup sg = em.find(SecurityGroup.class, this.entity.getId());
         if (!this.objectIdList.isEmpty()) {
             if (!sg.isProtectAll()) {
-                String portId = OsNotificationUtil.getPropertyFromNotificationMessage(message,
-                        OsNotificationKeyType.PORT_ID.toString());
+                String portId = message.getProperty(OsNotificationKeyType.PORT_ID);
                 VMPort port = VMPortEntityManager.findByOpenstackId(em, portId);
                 if (port != null &&
                         ((port.getNetwork() != null && this.objectIdList.contains(port.getNetwork().getOpenstackId()))
@@ -153,8 +152,7 @@ public class OsPortNotificationListener extends OsNotificationListener {
                 }
 
             } else {
-                String projectId = OsNotificationUtil.getPropertyFromNotificationMessage(message,
-                        OsNotificationKeyType.CONTEXT_PROJECT_ID.toString());
+                String projectId = message.getProperty(OsNotificationKeyType.CONTEXT_PROJECT_ID);
                 if (this.objectIdList.contains(projectId)) {
                     triggerSGSync(sg, em);
                 }
@@ -164,8 +162,9 @@ public class OsPortNotificationListener extends OsNotificationListener {
     }
 
     private void triggerSGSync(SecurityGroup sg, EntityManager em) throws Exception {
-        log.info("Running SG sync based on OS Port notification received.");
+        log.info("Requesting SG sync based on OS Port notification received.");
+        markEntityChanged();
         // Message is related to registered Security Group. Trigger sync
-        this.sgConformJobFactory.startSecurityGroupConformanceJob(sg);
+        this.sgSyncDebouncer.requestSync(sg);
     }
 }
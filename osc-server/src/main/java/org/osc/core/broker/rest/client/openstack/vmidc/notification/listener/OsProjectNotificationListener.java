@@ -27,11 +27,11 @@ import org.osc.core.broker.model.entities.virtualization.SecurityGroup;
 import org.osc.core.broker.model.entities.virtualization.VirtualizationConnector;
 import org.osc.core.broker.model.entities.virtualization.openstack.DeploymentSpec;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationKeyType;
+import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationMessage;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationObjectType;
-import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationUtil;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.runner.RabbitMQRunner;
 import org.osc.core.broker.service.DeploymentSpecConformJobFactory;
-import org.osc.core.broker.service.SecurityGroupConformJobFactory;
+import org.osc.core.broker.service.SecurityGroupSyncDebouncer;
 import org.osc.core.broker.service.alert.AlertGenerator;
 import org.osc.core.broker.service.persistence.DeploymentSpecEntityMgr;
 import org.osc.core.broker.service.persistence.SecurityGroupEntityMgr;
@@ -45,30 +45,31 @@ public class OsProjectNotificationListener extends OsNotificationListener {
     private static final Logger log = LoggerFactory.getLogger(OsProjectNotificationListener.class);
 
     private final DeploymentSpecConformJobFactory dsConformJobFactory;
-    private final SecurityGroupConformJobFactory sgConformJobFactory;
+    private final SecurityGroupSyncDebouncer sgSyncDebouncer;
     private final AlertGenerator alertGenerator;
 
     private final DBConnectionManager dbMgr;
 
     public OsProjectNotificationListener(VirtualizationConnector vc, OsNotificationObjectType objectType,
             List<String> objectIdList, BaseEntity entity, DeploymentSpecConformJobFactory dsConformJobFactory,
-            SecurityGroupConformJobFactory sgConformJobFactory, AlertGenerator alertGenerator, RabbitMQRunner activeRunner,
+            SecurityGroupSyncDebouncer sgSyncDebouncer, AlertGenerator alertGenerator, RabbitMQRunner activeRunner,
             DBConnectionManager dbMgr) {
         super(vc, OsNotificationObjectType.PROJECT, objectIdList, entity, activeRunner);
         this.dsConformJobFactory = dsConformJobFactory;
-        this.sgConformJobFactory = sgConformJobFactory;
+        this.sgSyncDebouncer = sgSyncDebouncer;
         this.alertGenerator = alertGenerator;
         this.dbMgr = dbMgr;
         register(vc, objectType);
     }
 
     @Override
-    public void onMessage(String message) {
-        String eventType = OsNotificationUtil.getEventTypeFromMessage(message);
+    public void onMessage(OsNotificationMessage message) {
+        String eventType = message.getEventType();
         if (eventType.contains(OsNotificationEventState.PROJECT_DELETED.toString())) {
-            String keyValue = OsNotificationUtil.isMessageRelevant(message, this.objectIdList,
-                    OsNotificationKeyType.RESOURCE_INFO.toString());
+            String keyValue = message.getRelevantObjectId(this.objectIdList,
+                    OsNotificationKeyType.RESOURCE_INFO);
             if (keyValue != null) {
+                markEntityChanged();
                 log.info(" [Identity] : message received - " + message);
                 try {
                     EntityManager em = this.dbMgr.getTransactionalEntityManager();
@@ -106,7 +107,7 @@ public class OsProjectNotificationListener extends OsNotificationListener {
         for (SecurityGroup securityGroup : SecurityGroupEntityMgr.listByProjectId(em, keyValue)) {
             // trigger sync job for that SG
             if (securityGroup.getId().equals(((SecurityGroup) this.entity).getId())) {
-                this.sgConformJobFactory.startSecurityGroupConformanceJob(securityGroup);
+                this.sgSyncDebouncer.requestSync(securityGroup);
             }
         }
     }
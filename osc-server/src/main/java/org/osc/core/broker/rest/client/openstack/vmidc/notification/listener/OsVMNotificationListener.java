@@ -30,11 +30,12 @@ import org.osc.core.broker.model.entities.virtualization.openstack.VM;
 import org.osc.core.broker.rest.client.openstack.discovery.VmDiscoveryCache;
 import org.osc.core.broker.rest.client.openstack.discovery.VmDiscoveryCache.VmInfo;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationKeyType;
+import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationMessage;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationObjectType;
-import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsNotificationUtil;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.runner.RabbitMQRunner;
 import org.osc.core.broker.service.DeploymentSpecConformJobFactory;
 import org.osc.core.broker.service.SecurityGroupConformJobFactory;
+import org.osc.core.broker.service.SecurityGroupSyncDebouncer;
 import org.osc.core.broker.service.alert.AlertGenerator;
 import org.osc.core.broker.service.api.RestConstants;
 import org.osc.core.broker.service.persistence.SecurityGroupEntityMgr;
@@ -54,34 +55,38 @@ public class OsVMNotificationListener extends OsNotificationListener {
 
     private final SecurityGroupConformJobFactory sgConformJobFactory;
 
+    private final SecurityGroupSyncDebouncer sgSyncDebouncer;
+
     private final AlertGenerator alertGenerator;
 
     private final DBConnectionManager dbMgr;
 
     public OsVMNotificationListener(VirtualizationConnector vc, OsNotificationObjectType objectType,
             List<String> objectIdList, BaseEntity entity, DeploymentSpecConformJobFactory dsConformJobFactory,
-            SecurityGroupConformJobFactory sgConformJobFactory, AlertGenerator alertGenerator, RabbitMQRunner activeRunner,
-            DBConnectionManager dbMgr) {
+            SecurityGroupConformJobFactory sgConformJobFactory, SecurityGroupSyncDebouncer sgSyncDebouncer,
+            AlertGenerator alertGenerator, RabbitMQRunner activeRunner, DBConnectionManager dbMgr) {
         super(vc, OsNotificationObjectType.VM, objectIdList, entity, activeRunner);
         this.dsConformJobFactory = dsConformJobFactory;
         this.sgConformJobFactory = sgConformJobFactory;
+        this.sgSyncDebouncer = sgSyncDebouncer;
         this.alertGenerator = alertGenerator;
         this.dbMgr = dbMgr;
         register(vc, objectType);
     }
 
     @Override
-    public void onMessage(String message) {
+    public void onMessage(OsNotificationMessage message) {
 
-        String eventType = OsNotificationUtil.getEventTypeFromMessage(message);
+        String eventType = message.getEventType();
         if (eventType.contains(OsNotificationEventState.CREATE.toString())
                 || eventType.contains(OsNotificationEventState.DELETE.toString())
                 || eventType.contains(OsNotificationEventState.POWER_OFF.toString())
                 || eventType.contains(OsNotificationEventState.RESIZE_CONFIRM_END.toString())) {
 
-            String vmOpenstackId = OsNotificationUtil.isMessageRelevant(message, this.objectIdList,
-                    OsNotificationKeyType.INSTANCE_ID.toString());
+            String vmOpenstackId = message.getRelevantObjectId(this.objectIdList,
+                    OsNotificationKeyType.INSTANCE_ID);
             if (vmOpenstackId != null) {
+                markEntityChanged();
                 SessionUtil.getInstance().setUser(RestConstants.OSC_DEFAULT_LOGIN);
 
                 log.info(" [Instance] : message received - " + message);
@@ -116,7 +121,7 @@ public class OsVMNotificationListener extends OsNotificationListener {
         }
     }
 
-    private void handleSGMessages(String vmOpenstackId, String message) throws Exception {
+    private void handleSGMessages(String vmOpenstackId, OsNotificationMessage message) throws Exception {
         SecurityGroup securityGroup = (SecurityGroup) this.entity;
         // if the VM changes is part of Security Group
         if (!isVmMigrated(vmOpenstackId, message)) {
@@ -124,7 +129,7 @@ public class OsVMNotificationListener extends OsNotificationListener {
             /*
              * If VM is not migrated then it is deleted we must trigger a SG Sync
              */
-            this.sgConformJobFactory.startSecurityGroupConformanceJob(securityGroup);
+            this.sgSyncDebouncer.requestSync(securityGroup);
         } else {
 
             /*
@@ -155,7 +160,7 @@ public class OsVMNotificationListener extends OsNotificationListener {
         }
     }
 
-    private void handleDAIMessages(String vmOpenstackId, String eventType, String message) throws Exception {
+    private void handleDAIMessages(String vmOpenstackId, String eventType, OsNotificationMessage message) throws Exception {
 
         if (eventType.contains(OsNotificationEventState.RESIZE_CONFIRM_END.toString())) {
             if (isVmMigrated(vmOpenstackId, message)) {
@@ -180,7 +185,7 @@ public class OsVMNotificationListener extends OsNotificationListener {
      *         False: if both IDs are same i.e. VM is not migrated it is just resized
      * @throws Exception
      */
-    private boolean isVmMigrated(String vmOpenstackId, String message) throws Exception {
+    private boolean isVmMigrated(String vmOpenstackId, OsNotificationMessage message) throws Exception {
         /*
          * To verify a VM is migrated we perform the following checks
          * 1. Get Host Id from the VM in context
@@ -195,7 +200,7 @@ public class OsVMNotificationListener extends OsNotificationListener {
             VmDiscoveryCache vmCache = new VmDiscoveryCache(this.vc, this.vc.getProviderAdminProjectName());
 
             // parse Region from incoming Notification message
-            String region = OsNotificationUtil.getPropertyFromNotificationMessage(message, REGION_NOTIFICATION_KEY);
+            String region = message.getProperty(REGION_NOTIFICATION_KEY);
 
             VmInfo vmInfo = vmCache.discover(region, vmOpenstackId);
             if (vmInfo == null) {
@@ -296,7 +296,7 @@ public class OsDeploymentSpecNotificationRunner implements BroadcastListener {
             if (listener.getObjectType() == OsNotificationObjectType.VM) {
                 List<String> idList = listener.getObjectIdList();
                 if (!idList.isEmpty() || idList.contains(daiId)) {
-                    idList.remove(daiId);
+                    listener.removeObjectId(daiId);
                     break;
                 }
             }
@@ -314,7 +314,7 @@ public class OsDeploymentSpecNotificationRunner implements BroadcastListener {
             if (listener.getObjectType() == OsNotificationObjectType.VM) {
                 List<String> idList = listener.getObjectIdList();
                 if (!idList.contains(daiId)) {
-                    idList.add(daiId);
+                    listener.addObjectId(daiId);
                     break;
                 }
             }
@@ -40,7 +40,8 @@ abstract class BackupFileService<I extends Request, O extends Response> extends
 	protected static final String BACKUPS_FOLDER = "backups";
 	protected static final String EXT_ENCRYPTED_BACKUP = ".dbb";
     protected static final String EXT_ZIP_BACKUP = ".zip";
-    protected static final String DATABASE_FILENAME = "vmiDCDB.h2.db";
+    protected static final String PAGE_STORE_DATABASE_FILENAME = "vmiDCDB.h2.db";
+    protected static final String MV_STORE_DATABASE_FILENAME = "vmiDCDB.mv.db";
 
     protected static final int DB_PASSWORD_MAX_LENGTH = 160;
 
@@ -112,7 +112,7 @@ ServiceDispatcher<GetDtoFromEntityRequest, BaseDtoResponse<R>> implements GetDto
         } else if (entityName.equals("TaskRecord")) {
             TaskRecord entity = getEntity(entityId, entityName, TaskRecord.class, em);
             TaskRecordDto dto = new TaskRecordDto();
-            TaskEntityMgr.fromEntity(entity, dto);
+            TaskEntityMgr.fromEntity(entity, dto, em);
             res.setDto((R) dto);
         } else if (entityName.equals("VirtualizationConnector")) {
             VirtualizationConnector entity = getEntity(entityId, entityName, VirtualizationConnector.class, em);
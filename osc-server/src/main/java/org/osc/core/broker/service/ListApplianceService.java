@@ -35,6 +35,11 @@ import org.osgi.service.component.annotations.Component;
 public class ListApplianceService extends ServiceDispatcher<BaseRequest<BaseDto>, ListResponse<ApplianceDto>>
 implements ListApplianceServiceApi {
 
+    @Override
+    protected boolean isReadOnly() {
+        return true;
+    }
+
     @Override
     public ListResponse<ApplianceDto> exec(BaseRequest<BaseDto> request, EntityManager em) {
         ListResponse<ApplianceDto> response = new ListResponse<ApplianceDto>();
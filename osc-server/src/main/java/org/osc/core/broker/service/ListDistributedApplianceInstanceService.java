@@ -18,6 +18,7 @@ package org.osc.core.broker.service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 import javax.persistence.EntityManager;
 
@@ -43,15 +44,25 @@ public class ListDistributedApplianceInstanceService
 
     ListResponse<DistributedApplianceInstanceDto> response = new ListResponse<DistributedApplianceInstanceDto>();
 
+    @Override
+    protected boolean isReadOnly() {
+        return true;
+    }
+
     @Override
     public ListResponse<DistributedApplianceInstanceDto> exec(BaseRequest<BaseDto> request, EntityManager em) throws Exception {
         OSCEntityManager<DistributedApplianceInstance> emgr = new OSCEntityManager<DistributedApplianceInstance>(
                 DistributedApplianceInstance.class, em, this.txBroadcastUtil);
         List<DistributedApplianceInstanceDto> daiList = new ArrayList<DistributedApplianceInstanceDto>();
-        for (DistributedApplianceInstance dai : emgr.listAll("name")) {
-            Boolean providesDeviceStatus = this.apiFactoryService.providesDeviceStatus(dai.getVirtualSystem());
-            DistributedApplianceInstanceDto dto = DistributedApplianceInstanceEntityMgr.fromEntity(dai, providesDeviceStatus);
-            daiList.add(dto);
+        // Stream the DAIs along with their VS and DA, detaching each once mapped so the session stays small
+        try (Stream<DistributedApplianceInstance> dais = emgr.streamAll(OSCEntityManager.DEFAULT_PAGE_SIZE,
+                new String[] { "virtualSystem.distributedAppliance" }, "name")) {
+            for (DistributedApplianceInstance dai : (Iterable<DistributedApplianceInstance>) dais::iterator) {
+                Boolean providesDeviceStatus = this.apiFactoryService.providesDeviceStatus(dai.getVirtualSystem());
+                DistributedApplianceInstanceDto dto = DistributedApplianceInstanceEntityMgr.fromEntity(dai, providesDeviceStatus);
+                daiList.add(dto);
+                em.detach(dai);
+            }
         }
         this.response.setList(daiList);
         return this.response;
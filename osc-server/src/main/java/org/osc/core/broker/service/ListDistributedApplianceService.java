@@ -18,6 +18,7 @@ package org.osc.core.broker.service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 import javax.persistence.EntityManager;
 
@@ -43,6 +44,11 @@ public class ListDistributedApplianceService
     private EncryptionApi encrypter;
 
 
+    @Override
+    protected boolean isReadOnly() {
+        return true;
+    }
+
     @Override
     public ListResponse<DistributedApplianceDto> exec(BaseRequest<BaseDto> request, EntityManager em) throws EncryptionException {
         ListResponse<DistributedApplianceDto> response = new ListResponse<DistributedApplianceDto>();
@@ -52,16 +58,19 @@ public class ListDistributedApplianceService
         // to do mapping
         List<DistributedApplianceDto> dtoList = new ArrayList<DistributedApplianceDto>();
 
-        // mapping all the da objects to da dto objects
-        for (DistributedAppliance da : emgr.listAll("name")) {
+        // mapping all the da objects to da dto objects, loading their last job in the same query
+        try (Stream<DistributedAppliance> das = emgr.streamAll(OSCEntityManager.DEFAULT_PAGE_SIZE,
+                new String[] { "lastJob" }, "name")) {
+            for (DistributedAppliance da : (Iterable<DistributedAppliance>) das::iterator) {
 
-            DistributedApplianceDto dto = new DistributedApplianceDto();
+                DistributedApplianceDto dto = new DistributedApplianceDto();
 
-            DistributedApplianceEntityMgr.fromEntity(da, dto, this.encrypter);
-            if(request.isApi()) {
-                DistributedApplianceDto.sanitizeDistributedAppliance(dto);
+                DistributedApplianceEntityMgr.fromEntity(da, dto, this.encrypter);
+                if(request.isApi()) {
+                    DistributedApplianceDto.sanitizeDistributedAppliance(dto);
+                }
+                dtoList.add(dto);
             }
-            dtoList.add(dto);
         }
 
         response.setList(dtoList);
@@ -18,6 +18,7 @@ package org.osc.core.broker.service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.EntityManager;
 
@@ -28,33 +29,57 @@ import org.osc.core.broker.service.dto.JobRecordDto;
 import org.osc.core.broker.service.persistence.JobEntityManager;
 import org.osc.core.broker.service.persistence.OSCEntityManager;
 import org.osc.core.broker.service.request.ListJobRequest;
-import org.osc.core.broker.service.response.ListResponse;
+import org.osc.core.broker.service.request.PageRequest;
+import org.osc.core.broker.service.response.PageResponse;
+import org.osc.core.broker.service.validator.PageRequestValidator;
 import org.osgi.service.component.annotations.Component;
 
 @Component
-public class ListJobService extends ServiceDispatcher<ListJobRequest, ListResponse<JobRecordDto>>
+public class ListJobService extends ServiceDispatcher<ListJobRequest, PageResponse<JobRecordDto>>
         implements ListJobServiceApi {
 
+    private static final PageRequestValidator PAGE_VALIDATOR = new PageRequestValidator()
+            .sortable("name", "name")
+            .filterable("name", "name")
+            .filterable("state", "state")
+            .filterable("status", "status")
+            .filterable("submittedBy", "submittedBy");
 
     @Override
-    public ListResponse<JobRecordDto> exec(ListJobRequest request, EntityManager em) throws Exception {
-        ListResponse<JobRecordDto> response = new ListResponse<JobRecordDto>();
+    protected boolean isReadOnly() {
+        return true;
+    }
 
+    @Override
+    public PageResponse<JobRecordDto> exec(ListJobRequest request, EntityManager em) throws Exception {
         // Initializing Entity Manager
         OSCEntityManager<JobRecord> emgr = new OSCEntityManager<JobRecord>(JobRecord.class, em, this.txBroadcastUtil);
-        // to do mapping
+
+        PageRequest page = request == null ? null : request.getPage();
+        List<JobRecord> jobs;
+        long totalCount;
+        if (page == null) {
+            jobs = emgr.listAll(false, "id");
+            totalCount = jobs.size();
+        } else {
+            PAGE_VALIDATOR.validate(page);
+            Map<String, Object> filters = PAGE_VALIDATOR.getFilterValues(page);
+            Map<String, Object> equals = PAGE_VALIDATOR.getEqualValues(page);
+            jobs = emgr.listPage(filters, equals, PAGE_VALIDATOR.getSortAttribute(page), page.isAscending(),
+                    page.getAfterId(), page.getPageSize());
+            totalCount = emgr.count(filters, equals);
+        }
 
         List<JobRecordDto> dtoList = new ArrayList<JobRecordDto>();
 
         // mapping all the job objects to job dto objects
-        for (JobRecord j : emgr.listAll(false, "id")) {
+        for (JobRecord j : jobs) {
             JobRecordDto dto = new JobRecordDto();
             JobEntityManager.fromEntity(j, dto);
             dtoList.add(dto);
         }
 
-        response.setList(dtoList);
-        return response;
+        return new PageResponse<JobRecordDto>(dtoList, totalCount);
     }
 
     @Override
@@ -18,6 +18,7 @@ package org.osc.core.broker.service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.EntityManager;
 
@@ -26,27 +27,56 @@ import org.osc.core.broker.service.api.ListTaskServiceApi;
 import org.osc.core.broker.service.dto.TaskRecordDto;
 import org.osc.core.broker.service.persistence.TaskEntityMgr;
 import org.osc.core.broker.service.request.ListTaskRequest;
-import org.osc.core.broker.service.response.ListResponse;
+import org.osc.core.broker.service.request.PageRequest;
+import org.osc.core.broker.service.response.PageResponse;
+import org.osc.core.broker.service.validator.PageRequestValidator;
 import org.osgi.service.component.annotations.Component;
 
 @Component
-public class ListTaskService extends ServiceDispatcher<ListTaskRequest, ListResponse<TaskRecordDto>>
+public class ListTaskService extends ServiceDispatcher<ListTaskRequest, PageResponse<TaskRecordDto>>
         implements ListTaskServiceApi {
 
+    private static final PageRequestValidator PAGE_VALIDATOR = new PageRequestValidator()
+            .sortable("dependencyOrder", "dependencyOrder")
+            .sortable("name", "name")
+            .filterable("name", "name")
+            .filterable("state", "state")
+            .filterable("status", "status");
+
+    @Override
+    protected boolean isReadOnly() {
+        return true;
+    }
+
     @Override
-    public ListResponse<TaskRecordDto> exec(ListTaskRequest request, EntityManager em) throws Exception {
+    public PageResponse<TaskRecordDto> exec(ListTaskRequest request, EntityManager em) throws Exception {
 
         List<TaskRecordDto> dtoList = new ArrayList<TaskRecordDto>();
         TaskEntityMgr emgr = new TaskEntityMgr(em, this.txBroadcastUtil);
 
-        for (TaskRecord tr : emgr.getTasksByJobId(request.getJobId())) {
+        PageRequest page = request.getPage();
+        List<TaskRecord> tasks;
+        long totalCount;
+        if (page == null) {
+            tasks = emgr.getTasksByJobId(request.getJobId());
+            totalCount = tasks.size();
+        } else {
+            PAGE_VALIDATOR.validate(page);
+            Map<String, Object> filters = PAGE_VALIDATOR.getFilterValues(page);
+            Map<String, Object> equals = PAGE_VALIDATOR.getEqualValues(page);
+            equals.put("job.id", request.getJobId());
+            tasks = emgr.listPage(filters, equals, PAGE_VALIDATOR.getSortAttribute(page), page.isAscending(),
+                    page.getAfterId(), page.getPageSize());
+            totalCount = emgr.count(filters, equals);
+        }
+
+        Map<Long, Long> dependencyRanks = TaskEntityMgr.getDependencyRanks(em, request.getJobId());
+        for (TaskRecord tr : tasks) {
             TaskRecordDto dto = new TaskRecordDto();
-            TaskEntityMgr.fromEntity(tr, dto);
+            TaskEntityMgr.fromEntity(tr, dto, dependencyRanks);
             dtoList.add(dto);
         }
 
-        ListResponse<TaskRecordDto> response = new ListResponse<TaskRecordDto>();
-        response.setList(dtoList);
-        return response;
+        return new PageResponse<TaskRecordDto>(dtoList, totalCount);
     }
 }
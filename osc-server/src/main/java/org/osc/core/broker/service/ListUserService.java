@@ -39,6 +39,11 @@ public class ListUserService extends ServiceDispatcher<ListUserRequest, ListResp
     @Reference
     EncryptionApi encrypter;
 
+    @Override
+    protected boolean isReadOnly() {
+        return true;
+    }
+
     @Override
     public ListResponse<UserDto> exec(ListUserRequest request, EntityManager em) throws Exception {
         // Initializing Entity Manager
@@ -32,6 +32,11 @@ public class ListVirtualSystemService
 
     ListResponse<VirtualSystemDto> response = new ListResponse<VirtualSystemDto>();
 
+    @Override
+    protected boolean isReadOnly() {
+        return true;
+    }
+
     @Override
     public ListResponse<VirtualSystemDto> exec(ListVirtualSystemRequest request, EntityManager em) {
 
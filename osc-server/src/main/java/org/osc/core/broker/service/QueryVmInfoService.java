@@ -16,24 +16,22 @@
  *******************************************************************************/
 package org.osc.core.broker.service;
 
-import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.persistence.EntityManager;
 
-import org.openstack4j.model.compute.Server;
 import org.osc.core.broker.model.entities.appliance.DistributedApplianceInstance;
 import org.osc.core.broker.model.entities.virtualization.VirtualizationConnector;
-import org.osc.core.broker.model.entities.virtualization.openstack.VM;
 import org.osc.core.broker.model.plugin.ApiFactoryService;
-import org.osc.core.broker.rest.client.openstack.openstack4j.Endpoint;
-import org.osc.core.broker.rest.client.openstack.openstack4j.Openstack4JNeutron;
-import org.osc.core.broker.rest.client.openstack.openstack4j.Openstack4JNova;
 import org.osc.core.broker.service.api.QueryVmInfoServiceApi;
 import org.osc.core.broker.service.api.server.EncryptionApi;
 import org.osc.core.broker.service.exceptions.VmidcBrokerValidationException;
 import org.osc.core.broker.service.persistence.OSCEntityManager;
-import org.osc.core.broker.service.persistence.VMPortEntityManager;
 import org.osc.core.broker.service.request.QueryVmInfoRequest;
 import org.osc.core.broker.service.response.QueryVmInfoResponse;
 import org.osc.core.broker.service.response.QueryVmInfoResponse.FlowVmInfo;
@@ -42,11 +40,15 @@ import org.osc.core.broker.util.ValidateUtil;
 import org.osc.core.common.virtualization.VirtualizationType;
 import org.osc.sdk.controller.FlowInfo;
 import org.osc.sdk.controller.FlowPortInfo;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 @Component
 public class QueryVmInfoService extends ServiceDispatcher<QueryVmInfoRequest, QueryVmInfoResponse>
         implements QueryVmInfoServiceApi {
@@ -54,12 +56,31 @@ public class QueryVmInfoService extends ServiceDispatcher<QueryVmInfoRequest, Qu
     private static final Logger log =
             LoggerFactory.getLogger(QueryVmInfoService.class);
 
+    /*
+     * Bounds the number of concurrent OpenStack lookups of all the VM info
+     * queries together
+     */
+    private static final int LOOKUP_PARALLELISM = 8;
+
     @Reference
     EncryptionApi encryption;
 
     @Reference
     private ApiFactoryService apiFactoryService;
 
+    private ExecutorService lookupExecutor;
+
+    @Activate
+    void activate() {
+        this.lookupExecutor = Executors.newFixedThreadPool(LOOKUP_PARALLELISM,
+                new ThreadFactoryBuilder().setNameFormat("isc-query-vm-info-%d").setDaemon(true).build());
+    }
+
+    @Deactivate
+    void deactivate() {
+        this.lookupExecutor.shutdownNow();
+    }
+
     @Override
     public QueryVmInfoResponse exec(QueryVmInfoRequest request, EntityManager em) throws Exception {
 
@@ -70,140 +91,91 @@ public class QueryVmInfoService extends ServiceDispatcher<QueryVmInfoRequest, Qu
         QueryVmInfoResponse response = new QueryVmInfoResponse();
 
         if (vc.getVirtualizationType() == VirtualizationType.OPENSTACK) {
+            VmInfoResolver resolver = new VmInfoResolver(em, dai, this.lookupExecutor);
 
             if (request.ipAddress != null && !request.ipAddress.isEmpty()) {
-                try (Openstack4JNeutron neutron = new Openstack4JNeutron(new Endpoint(vc));
-                     Openstack4JNova nova = new Openstack4JNova(new Endpoint(vc))) {
-                    for (String ipAddress : request.ipAddress) {
-                        VM vm = VMPortEntityManager.findByIpAddress(em, dai, ipAddress);
-                        VmInfo vmInfo;
-                        if (vm != null) {
-                            vmInfo = newVmInfo(vm);
-                            vmInfo.vmIpAddress = ipAddress;
-                        } else {
-                            vmInfo = findVmByIpAddress(nova, neutron, dai, ipAddress);
-                        }
-
-                        response.vmInfo.put(ipAddress, vmInfo);
-                    }
-                }
-
+                response.vmInfo.putAll(resolver.resolveIpAddresses(request.ipAddress));
             }
             if (request.macAddress != null && !request.macAddress.isEmpty()) {
-                try (Openstack4JNeutron neutron = new Openstack4JNeutron(new Endpoint(vc));
-                     Openstack4JNova nova = new Openstack4JNova(new Endpoint(vc))) {
-                    for (String macAddress : request.macAddress) {
-                        VM vm = VMPortEntityManager.findByMacAddress(em, macAddress);
-                        VmInfo vmInfo;
-                        if (vm != null) {
-                            vmInfo = newVmInfo(vm);
-                            vmInfo.vmMacAddress = macAddress;
-                        } else {
-                            vmInfo = findVmByMacAddress(nova, neutron, dai, macAddress);
+                response.vmInfo.putAll(resolver.resolveMacAddresses(request.macAddress));
+            }
+
+            if (request.flow != null && !request.flow.isEmpty()) {
+                if (this.apiFactoryService.providesTrafficPortInfo(vc.getControllerType())) {
+                    // Search using SDN controller
+                    Map<String, FlowPortInfo> flowPortInfo = this.apiFactoryService.queryPortInfo(vc, null, request.flow);
+
+                    log.info("SDN Controller Response: " + flowPortInfo);
+                    Set<String> portIds = new LinkedHashSet<>();
+                    for (FlowPortInfo portInfo : flowPortInfo.values()) {
+                        if (portInfo.getSourcePortId() != null) {
+                            portIds.add(portInfo.getSourcePortId());
+                        }
+                        if (portInfo.getDestinationPortId() != null) {
+                            portIds.add(portInfo.getDestinationPortId());
                         }
-                        response.vmInfo.put(macAddress, vmInfo);
                     }
-                }
+                    Map<String, VmInfo> vmInfoByPortId = resolver.resolvePortIds(portIds);
 
-            }
+                    for (String requestId : flowPortInfo.keySet()) {
+                        FlowPortInfo portInfo = flowPortInfo.get(requestId);
 
-            if (request.flow != null && !request.flow.isEmpty()) {
-                try (Openstack4JNeutron neutron = new Openstack4JNeutron(new Endpoint(vc));
-                     Openstack4JNova nova = new Openstack4JNova(new Endpoint(vc))) {
-                    if (this.apiFactoryService.providesTrafficPortInfo(vc.getControllerType())) {
-                        // Search using SDN controller
-                        Map<String, FlowPortInfo> flowPortInfo = this.apiFactoryService.queryPortInfo(vc, null, request.flow);
-
-                        log.info("SDN Controller Response: " + flowPortInfo);
-                        for (String requestId : flowPortInfo.keySet()) {
-                            FlowPortInfo portInfo = flowPortInfo.get(requestId);
-
-                            FlowVmInfo flowVmInfo = new FlowVmInfo();
-                            flowVmInfo.flow = portInfo.getFlow();
-                            flowVmInfo.requestId = requestId;
-
-                            if (portInfo.getSourcePortId() != null) {
-                                flowVmInfo.sourceVmInfo = findVmByPortId(nova, neutron, dai, portInfo.getSourcePortId());
-                            }
-                            if (portInfo.getDestinationPortId() != null) {
-                                flowVmInfo.destinationVmInfo = findVmByPortId(nova, neutron, dai,
-                                        portInfo.getDestinationPortId());
-                            }
-                            response.flowVmInfo.put(requestId, flowVmInfo);
+                        FlowVmInfo flowVmInfo = new FlowVmInfo();
+                        flowVmInfo.flow = portInfo.getFlow();
+                        flowVmInfo.requestId = requestId;
+
+                        if (portInfo.getSourcePortId() != null) {
+                            flowVmInfo.sourceVmInfo = vmInfoByPortId.get(portInfo.getSourcePortId());
                         }
-                    } else {
-                        // Search using DB or openstack
-                        for (String requestId : request.flow.keySet()) {
-                            FlowInfo flowInfo = request.flow.get(requestId);
-
-                            FlowVmInfo flowVmInfo = new FlowVmInfo();
-                            flowVmInfo.requestId = requestId;
-                            flowVmInfo.flow = flowInfo;
-                            flowVmInfo.sourceVmInfo = findVmByMacOrIp(em, nova, neutron, dai,
-                                    flowInfo.getSourceMacAddress(), flowInfo.getSourceIpAddress());
-                            flowVmInfo.destinationVmInfo = findVmByMacOrIp(em, nova, neutron, dai,
-                                    flowInfo.getDestinationMacAddress(), flowInfo.getDestinationIpAddress());
-
-                            response.flowVmInfo.put(requestId, flowVmInfo);
+                        if (portInfo.getDestinationPortId() != null) {
+                            flowVmInfo.destinationVmInfo = vmInfoByPortId.get(portInfo.getDestinationPortId());
                         }
+                        response.flowVmInfo.put(requestId, flowVmInfo);
+                    }
+                } else {
+                    // Search using DB or openstack, by MAC address when known, by IP address otherwise
+                    Set<String> macAddresses = new LinkedHashSet<>();
+                    Set<String> ipAddresses = new LinkedHashSet<>();
+                    for (FlowInfo flowInfo : request.flow.values()) {
+                        addMacOrIp(macAddresses, ipAddresses, flowInfo.getSourceMacAddress(),
+                                flowInfo.getSourceIpAddress());
+                        addMacOrIp(macAddresses, ipAddresses, flowInfo.getDestinationMacAddress(),
+                                flowInfo.getDestinationIpAddress());
+                    }
+                    Map<String, VmInfo> vmInfoByMac = macAddresses.isEmpty() ? Collections.emptyMap()
+                            : resolver.resolveMacAddresses(macAddresses);
+                    Map<String, VmInfo> vmInfoByIp = ipAddresses.isEmpty() ? Collections.emptyMap()
+                            : resolver.resolveIpAddresses(ipAddresses);
+
+                    for (String requestId : request.flow.keySet()) {
+                        FlowInfo flowInfo = request.flow.get(requestId);
+
+                        FlowVmInfo flowVmInfo = new FlowVmInfo();
+                        flowVmInfo.requestId = requestId;
+                        flowVmInfo.flow = flowInfo;
+                        flowVmInfo.sourceVmInfo = flowInfo.getSourceMacAddress() != null
+                                ? vmInfoByMac.get(flowInfo.getSourceMacAddress())
+                                : vmInfoByIp.get(flowInfo.getSourceIpAddress());
+                        flowVmInfo.destinationVmInfo = flowInfo.getDestinationMacAddress() != null
+                                ? vmInfoByMac.get(flowInfo.getDestinationMacAddress())
+                                : vmInfoByIp.get(flowInfo.getDestinationIpAddress());
+
+                        response.flowVmInfo.put(requestId, flowVmInfo);
                     }
                 }
-
             }
         }
 
         return response;
     }
 
-    private VmInfo findVmByPortId(Openstack4JNova nova, Openstack4JNeutron neutron, DistributedApplianceInstance dai,
-                                  String portId) throws IOException, VmidcBrokerValidationException {
-        String region = dai.getDeploymentSpec().getRegion();
-        String vmId = neutron.getVmIdByPortId(region, portId);
-        if (vmId == null) {
-            throw new VmidcBrokerValidationException(
-                    String.format("Unable to find Server attached to the port: %s", portId));
-        }
-        Server vm = nova.getServer(region, vmId);
-        if (vm == null) {
-            throw new VmidcBrokerValidationException(
-                    String.format("Unable to find Server with Id: %s in region: %s ", vmId, region));
-        }
-        return newVmInfo(vm);
-    }
-
-    private VmInfo findVmByMacOrIp(EntityManager em, Openstack4JNova nova, Openstack4JNeutron neutron,
-            DistributedApplianceInstance dai, String macAddress, String ipAddress)
-            throws IOException, VmidcBrokerValidationException {
-        VmInfo vmInfo;
+    private void addMacOrIp(Set<String> macAddresses, Set<String> ipAddresses, String macAddress,
+            String ipAddress) {
         if (macAddress != null) {
-            VM vm = VMPortEntityManager.findByMacAddress(em, macAddress);
-            if (vm != null) {
-                // From local cache
-                vmInfo = newVmInfo(vm);
-                vmInfo.vmMacAddress = macAddress;
-            } else {
-                // From openstack
-                vmInfo = findVmByMacAddress(nova, neutron, dai, macAddress);
-            }
-        } else {
-            // By IP
-            VM vm = VMPortEntityManager.findByIpAddress(em, dai, ipAddress);
-            if (vm != null) {
-                // From local cache
-                vmInfo = newVmInfo(vm);
-                vmInfo.vmIpAddress = ipAddress;
-            } else {
-                // From openstack
-                vmInfo = findVmByIpAddress(nova, neutron, dai, ipAddress);
-            }
+            macAddresses.add(macAddress);
+        } else if (ipAddress != null) {
+            ipAddresses.add(ipAddress);
         }
-        return vmInfo;
-    }
-
-    private VmInfo findVmByIpAddress(Openstack4JNova nova, Openstack4JNeutron neutron, DistributedApplianceInstance dai,
-                                     String ipAddress) {
-        // TODO: Future. Locate VM by IP.
-        return null;
     }
 
     private DistributedApplianceInstance validate(EntityManager em, QueryVmInfoRequest request) throws Exception {
@@ -244,42 +216,4 @@ public class QueryVmInfoService extends ServiceDispatcher<QueryVmInfoRequest, Qu
 
         return dai;
     }
-
-    private VmInfo findVmByMacAddress(Openstack4JNova nova, Openstack4JNeutron neutron, DistributedApplianceInstance dai,
-                                      String macAddress) throws IOException, VmidcBrokerValidationException {
-        String region = dai.getDeploymentSpec().getRegion();
-        String vmId = neutron.getVmIdByMacAddress(region, macAddress);
-        if (vmId == null) {
-            throw new VmidcBrokerValidationException(
-                    String.format("Unable to find Server with mac address: %s ", macAddress));
-        }
-        Server server = nova.getServer(region, vmId);
-        if (server == null) {
-            throw new VmidcBrokerValidationException(
-                    String.format("Unable to find Server with Id: %s in region: %s ", vmId, region));
-        }
-        return newVmInfo(server);
-    }
-
-    private VmInfo newVmInfo(VM vm) {
-        VmInfo vmi = new VmInfo();
-        vmi.vmName = vm.getName();
-        vmi.vmId = vm.getId().toString();
-        vmi.vmUuid = vm.getOpenstackId();
-        vmi.hostName = vm.getHost();
-        vmi.hostId = vm.getHost();
-        return vmi;
-    }
-
-    private VmInfo newVmInfo(Server vm) {
-        VmInfo vmi = new VmInfo();
-        vmi.vmName = vm.getName();
-        vmi.vmId = vm.getId();
-        vmi.vmUuid = vm.getId();
-        // TODO: Future Maybe add comma seperated list of ip addresses
-        vmi.vmIpAddress = "";
-        vmi.hostName = vm.getHostId();
-        vmi.hostId = vm.getHostId();
-        return vmi;
-    }
 }
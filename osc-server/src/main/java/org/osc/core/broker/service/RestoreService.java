@@ -20,6 +20,9 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.persistence.EntityManager;
 
@@ -88,7 +91,10 @@ public class RestoreService extends BackupFileService<RestoreRequest, EmptySucce
     	RestoreUtil.restoreDataBase(backupFile, new File("tmp" + File.separator + ".").getAbsolutePath());
     	backupFile.delete();
 
-    	File newDBFileTemp = new File("tmp" + File.separator + DATABASE_FILENAME);
+    	// the backup holds either a PageStore or an MVStore database file
+    	File pageStoreTemp = new File("tmp" + File.separator + PAGE_STORE_DATABASE_FILENAME);
+    	File mvStoreTemp = new File("tmp" + File.separator + MV_STORE_DATABASE_FILENAME);
+    	File newDBFileTemp = mvStoreTemp.exists() ? mvStoreTemp : pageStoreTemp;
         try {
         	// check if one can access db and get db version
             RestoreUtil.validateRestoreBundle(newDBFileTemp);
@@ -96,22 +102,31 @@ public class RestoreService extends BackupFileService<RestoreRequest, EmptySucce
         	// restore old DB password
         	connectionParams.updatePassword(oldDBPassword);
             Server.setInMaintenance(false);
+            pageStoreTemp.delete();
+            mvStoreTemp.delete();
             throw ex;
         }
 
-        boolean successRename = false;
-        File originalDBFile = new File(DATABASE_FILENAME + ".bkp");
+        // both engines' files are moved away so the restored one is the only database left to open
+        List<String> renamedDBFiles = new ArrayList<>();
         try {
-            originalDBFile.delete();
-            // Temporary rename existing file to make room for new file
             log.info("Restore (pid:" + ServerUtil.getCurrentPid() + "): Renaming existing database File.");
-            successRename = new File(DATABASE_FILENAME).renameTo(originalDBFile);
-            if (!successRename) {
-                // File was not successfully renamed
-                throw new VmidcException("Fail to backup existing database file before restoring.");
+            for (String dbFileName : Arrays.asList(PAGE_STORE_DATABASE_FILENAME, MV_STORE_DATABASE_FILENAME)) {
+                File dbFile = new File(dbFileName);
+                if (!dbFile.exists()) {
+                    continue;
+                }
+                File originalDBFile = new File(dbFileName + ".bkp");
+                originalDBFile.delete();
+                // Temporary rename existing file to make room for new file
+                if (!dbFile.renameTo(originalDBFile)) {
+                    // File was not successfully renamed
+                    throw new VmidcException("Fail to backup existing database file before restoring.");
+                }
+                renamedDBFiles.add(dbFileName);
             }
             log.info("Restore (pid:" + ServerUtil.getCurrentPid() + "): Restoring DataBase file.");
-            FileUtils.copyFile(newDBFileTemp, new File(DATABASE_FILENAME));
+            FileUtils.copyFile(newDBFileTemp, new File(newDBFileTemp.getName()));
 
             log.info("Restore: Starting restored Database server.");
             boolean successStarted = startNewServer();
@@ -119,26 +134,26 @@ public class RestoreService extends BackupFileService<RestoreRequest, EmptySucce
                 throw new Exception("Fail to verify newly restored server is running.");
             }
             log.info("Restore (pid:" + ServerUtil.getCurrentPid() + "): Deleting original file.");
-            // cleaning up tmp folder
-            originalDBFile.delete();
+            for (String dbFileName : renamedDBFiles) {
+                new File(dbFileName + ".bkp").delete();
+            }
 
         } catch (Exception ex) {
         	// restore old DB password
         	connectionParams.updatePassword(oldDBPassword);
             Server.setInMaintenance(false);
-            if (successRename) {
-            	newDBFileTemp.delete();
-                originalDBFile.renameTo(newDBFileTemp);
+            // put the original database files back in place
+            new File(newDBFileTemp.getName()).delete();
+            for (String dbFileName : renamedDBFiles) {
+                new File(dbFileName + ".bkp").renameTo(new File(dbFileName));
             }
             log.error("Restore (pid:" + ServerUtil.getCurrentPid() + "): Error restoring Database.", ex);
             throw new VmidcException(ex.getMessage());
         } finally {
             request.getBkpFile().delete();
-            File f = new File("tmp" + File.separator + DATABASE_FILENAME);
-            if (f.exists()) {
-                // deleting trace file generated during validation
-                f.delete();
-            }
+            // cleaning up tmp folder
+            pageStoreTemp.delete();
+            mvStoreTemp.delete();
         }
         return new EmptySuccessResponse();
     }
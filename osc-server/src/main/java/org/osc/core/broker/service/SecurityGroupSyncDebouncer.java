@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManager;
+
+import org.osc.core.broker.job.Job;
+import org.osc.core.broker.job.Job.JobCompletionListener;
+import org.osc.core.broker.job.JobEngine;
+import org.osc.core.broker.job.JobPriority;
+import org.osc.core.broker.job.lock.LockObjectReference;
+import org.osc.core.broker.model.entities.events.SystemFailureType;
+import org.osc.core.broker.model.entities.virtualization.SecurityGroup;
+import org.osc.core.broker.service.alert.AlertGenerator;
+import org.osc.core.broker.service.api.RestConstants;
+import org.osc.core.broker.service.persistence.SecurityGroupEntityMgr;
+import org.osc.core.broker.util.SessionUtil;
+import org.osc.core.broker.util.db.DBConnectionManager;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.transaction.control.ScopedWorkException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Coalesces the Security Group syncs requested by OpenStack notifications.
+ * <p>
+ * A burst of notifications for the same Security Group (i.e. the port
+ * creations of a stack deployment) results in a single conformance job,
+ * started once no new notification arrived for the quiet window, or at the
+ * latest the max delay after the first one. The sync is skipped if a
+ * conformance job for the Security Group is already queued, as it will see
+ * the changes anyway, and postponed until the running one completes.
+ */
+@Component(service = SecurityGroupSyncDebouncer.class)
+public class SecurityGroupSyncDebouncer {
+
+    private static final Logger log = LoggerFactory.getLogger(SecurityGroupSyncDebouncer.class);
+
+    static final long DEFAULT_QUIET_WINDOW_MS = 2000;
+    static final long DEFAULT_MAX_DELAY_MS = 30000;
+
+    private static long quietWindowMs = DEFAULT_QUIET_WINDOW_MS;
+    private static long maxDelayMs = DEFAULT_MAX_DELAY_MS;
+
+    @Reference
+    private SecurityGroupConformJobFactory sgConformJobFactory;
+
+    @Reference
+    private AlertGenerator alertGenerator;
+
+    @Reference
+    private DBConnectionManager dbMgr;
+
+    private ScheduledExecutorService executor;
+
+    private final JobCompletionListener jobCompletionListener = this::jobCompleted;
+
+    /*
+     * Syncs waiting for their Security Group to quiet down, by Security Group id
+     */
+    private final Map<Long, PendingSync> pendingSyncs = new HashMap<>();
+
+    private final AtomicLong eventsReceived = new AtomicLong();
+    private final AtomicLong syncsTriggered = new AtomicLong();
+    private final AtomicLong syncsSkipped = new AtomicLong();
+    private final AtomicLong syncsFailed = new AtomicLong();
+
+    private static class PendingSync {
+        private SecurityGroup sg;
+        private final long firstEventTime;
+        private int events;
+        private boolean waitingForJob;
+        private ScheduledFuture<?> future;
+
+        private PendingSync(long firstEventTime) {
+            this.firstEventTime = firstEventTime;
+        }
+    }
+
+    @Activate
+    void activate() {
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("isc-sg-sync-debounce-%d").setDaemon(true).build());
+        JobEngine.getEngine().addJobCompletionListener(this.jobCompletionListener);
+    }
+
+    @Deactivate
+    void deactivate() {
+        JobEngine.getEngine().removeJobCompletionListener(this.jobCompletionListener);
+        synchronized (this) {
+            this.pendingSyncs.clear();
+        }
+        this.executor.shutdownNow();
+        log.info(toString());
+    }
+
+    public static void setQuietWindow(String value) {
+        if (value == null) {
+            return;
+        }
+        quietWindowMs = Long.parseLong(value);
+    }
+
+    public static void setMaxDelay(String value) {
+        if (value == null) {
+            return;
+        }
+        maxDelayMs = Long.parseLong(value);
+    }
+
+    /**
+     * Requests a conformance job for the given Security Group once its
+     * notifications quiet down.
+     */
+    public void requestSync(SecurityGroup sg) {
+        this.eventsReceived.incrementAndGet();
+        long now = System.currentTimeMillis();
+
+        synchronized (this) {
+            PendingSync pending = this.pendingSyncs.get(sg.getId());
+            if (pending == null) {
+                pending = new PendingSync(now);
+                this.pendingSyncs.put(sg.getId(), pending);
+            } else if (pending.waitingForJob) {
+                // Picked up once the running job completes
+                pending.events++;
+                return;
+            } else {
+                pending.future.cancel(false);
+            }
+            pending.sg = sg;
+            pending.events++;
+            schedule(pending, now);
+        }
+    }
+
+    private void schedule(PendingSync pending, long now) {
+        scheduleAfter(pending, Math.max(0, Math.min(quietWindowMs, pending.firstEventTime + maxDelayMs - now)));
+    }
+
+    private void scheduleAfter(PendingSync pending, long delay) {
+        Long sgId = pending.sg.getId();
+        pending.future = this.executor.schedule(() -> fire(sgId), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * Releases the syncs postponed for the objects of the completed job
+     */
+    private synchronized void jobCompleted(Job job) {
+        if (job.getObjects() == null) {
+            return;
+        }
+        for (PendingSync pending : this.pendingSyncs.values()) {
+            if (pending.waitingForJob && job.getObjects().contains(new LockObjectReference(pending.sg))) {
+                pending.waitingForJob = false;
+                pending.future.cancel(false);
+                scheduleAfter(pending, quietWindowMs);
+            }
+        }
+    }
+
+    private void fire(Long sgId) {
+        PendingSync pending;
+        synchronized (this) {
+            pending = this.pendingSyncs.get(sgId);
+            if (pending == null) {
+                return;
+            }
+
+            LockObjectReference sgRef = new LockObjectReference(pending.sg);
+            if (JobEngine.getEngine().hasQueuedJob(sgRef)) {
+                this.pendingSyncs.remove(sgId);
+                this.syncsSkipped.incrementAndGet();
+                log.info(String.format("Skipping sync of Security Group '%s' for %d notification(s), a sync is already queued",
+                        pending.sg.getName(), pending.events));
+                return;
+            }
+            if (JobEngine.getEngine().hasActiveJob(sgRef)) {
+                // The running job may have missed these changes, try again once it completes. The max delay
+                // re-check only covers jobs whose completion is not reported to us.
+                pending.waitingForJob = true;
+                scheduleAfter(pending, Math.max(quietWindowMs, maxDelayMs));
+                return;
+            }
+            this.pendingSyncs.remove(sgId);
+        }
+
+        log.info(String.format("Running sync of Security Group '%s' for %d notification(s)", pending.sg.getName(),
+                pending.events));
+        SessionUtil.getInstance().setUser(RestConstants.OSC_DEFAULT_LOGIN);
+        // Jobs started for notifications are notification driven
+        JobEngine.setSubmissionPriority(JobPriority.NOTIFICATION);
+        try {
+            EntityManager em = this.dbMgr.getTransactionalEntityManager();
+            this.dbMgr.getTransactionControl().required(() -> {
+                // load the Security Group in this transaction rather than using the notification's detached copy
+                SecurityGroup sg = SecurityGroupEntityMgr.findById(em, sgId);
+                if (sg != null) {
+                    this.sgConformJobFactory.startSecurityGroupConformanceJob(sg);
+                }
+                return null;
+            });
+            this.syncsTriggered.incrementAndGet();
+        } catch (Exception e) {
+            // Unwrap the ScopedWorkException to get the cause from the scoped work
+            Throwable cause = e instanceof ScopedWorkException ? e.getCause() : e;
+            this.syncsFailed.incrementAndGet();
+            log.error("Failed to trigger Security Group Sync on notifications received!", cause);
+            this.alertGenerator.processSystemFailureEvent(SystemFailureType.OS_NOTIFICATION_FAILURE,
+                    new LockObjectReference(pending.sg),
+                    "Fail to process Openstack notifications for Security Group '" + pending.sg.getName() + "' ("
+                            + cause.getMessage() + ")");
+        } finally {
+            JobEngine.setSubmissionPriority(null);
+        }
+    }
+
+    /**
+     * @return the number of sync requests received from notifications
+     */
+    public long getEventsReceived() {
+        return this.eventsReceived.get();
+    }
+
+    /**
+     * @return the number of conformance jobs started for those requests
+     */
+    public long getSyncsTriggered() {
+        return this.syncsTriggered.get();
+    }
+
+    /**
+     * @return the number of syncs skipped as a conformance job was already
+     *         queued
+     */
+    public long getSyncsSkipped() {
+        return this.syncsSkipped.get();
+    }
+
+    /**
+     * @return the number of Security Groups waiting to be synced
+     */
+    public synchronized int getPendingSyncs() {
+        return this.pendingSyncs.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[sg sync debouncer] events: %d, triggered: %d, skipped: %d, failed: %d, pending: %d",
+                getEventsReceived(), getSyncsTriggered(), getSyncsSkipped(), this.syncsFailed.get(), getPendingSyncs());
+    }
+}
@@ -17,11 +17,15 @@
 package org.osc.core.broker.service;
 
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.Callable;
 
 import javax.persistence.EntityManager;
 
+import org.apache.commons.lang.StringUtils;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
 import org.hibernate.StaleObjectStateException;
 import org.hibernate.exception.ConstraintViolationException;
 import org.osc.core.broker.service.api.ServiceDispatcherApi;
@@ -29,7 +33,10 @@ import org.osc.core.broker.service.api.server.UserContextApi;
 import org.osc.core.broker.service.exceptions.VmidcDbConcurrencyException;
 import org.osc.core.broker.service.exceptions.VmidcDbConstraintViolationException;
 import org.osc.core.broker.service.exceptions.VmidcException;
+import org.osc.core.broker.service.metrics.ServiceMetrics;
+import org.osc.core.broker.service.metrics.ServiceMetricsRegistry;
 import org.osc.core.broker.service.request.Request;
+import org.osc.core.broker.service.response.ListResponse;
 import org.osc.core.broker.service.response.Response;
 import org.osc.core.broker.service.ssl.SslCertificatesExtendedException;
 import org.osc.core.broker.util.ServerUtil;
@@ -47,6 +54,7 @@ import com.google.common.annotations.VisibleForTesting;
 public abstract class ServiceDispatcher<I extends Request, O extends Response> implements ServiceDispatcherApi<I, O> {
 
     private static final Logger log = LoggerFactory.getLogger(ServiceDispatcher.class);
+    private static final int MAX_LOGGED_RESPONSE_LENGTH = 1024;
     private EntityManager em = null;
 
     /**
@@ -81,6 +89,19 @@ public abstract class ServiceDispatcher<I extends Request, O extends Response> i
             throw new VmidcException(Server.PRODUCT_NAME + " server is in maintenance mode.");
         }
 
+        ServiceMetrics metrics = ServiceMetricsRegistry.getRegistry().getMetrics(this.getClass().getSimpleName());
+        long start = System.currentTimeMillis();
+        boolean failed = true;
+        try {
+            O response = dispatchInTransaction(request);
+            failed = false;
+            return response;
+        } finally {
+            metrics.record(System.currentTimeMillis() - start, failed);
+        }
+    }
+
+    private O dispatchInTransaction(I request) throws Exception {
         if (this.em == null) {
             this.em = getEntityManager();
         }
@@ -89,8 +110,13 @@ public abstract class ServiceDispatcher<I extends Request, O extends Response> i
 
         O response = null;
         try {
-            // calling service in a transaction
-            response = txControl.required(() -> exec(request, this.em));
+            if (isReadOnly()) {
+                // calling service without a transaction, nothing is flushed
+                response = txControl.supports(() -> execReadOnly(txControl, request));
+            } else {
+                // calling service in a transaction
+                response = txControl.required(() -> exec(request, this.em));
+            }
         } catch (ScopedWorkException e) {
             handleException(e.getCause());
         }
@@ -106,10 +132,56 @@ public abstract class ServiceDispatcher<I extends Request, O extends Response> i
 			}
 		}
 
-        log.info("Service response: " + response);
+        if (log.isInfoEnabled()) {
+            log.info("Service response: " + describe(response));
+        }
         return response;
     }
 
+    /**
+     * Services which only read from the database can override this to run
+     * outside of a transaction with Hibernate flushing and dirty checking
+     * turned off. When called within a transaction the service joins it
+     * unchanged. Chained dispatches always run in their own transaction.
+     *
+     * @return true if {@link #exec(Request, EntityManager)} never writes to
+     *         the database
+     */
+    protected boolean isReadOnly() {
+        return false;
+    }
+
+    private O execReadOnly(TransactionControl txControl, I request) throws Exception {
+        Session session = this.em.unwrap(Session.class);
+        if (session == null || txControl.activeTransaction()) {
+            // Joined an enclosing transaction, which must still flush its own changes
+            return exec(request, this.em);
+        }
+
+        FlushMode flushMode = session.getHibernateFlushMode();
+        boolean defaultReadOnly = session.isDefaultReadOnly();
+        session.setHibernateFlushMode(FlushMode.MANUAL);
+        session.setDefaultReadOnly(true);
+        try {
+            return exec(request, this.em);
+        } finally {
+            session.setHibernateFlushMode(flushMode);
+            session.setDefaultReadOnly(defaultReadOnly);
+        }
+    }
+
+    /**
+     * List responses are logged by size only, anything else is truncated to
+     * {@link #MAX_LOGGED_RESPONSE_LENGTH} characters.
+     */
+    private static String describe(Response response) {
+        if (response instanceof ListResponse) {
+            List<?> list = ((ListResponse<?>) response).getList();
+            return response.getClass().getSimpleName() + " [size=" + (list == null ? 0 : list.size()) + "]";
+        }
+        return StringUtils.abbreviate(String.valueOf(response), MAX_LOGGED_RESPONSE_LENGTH);
+    }
+
     private ChainedDispatch<O> popChain() {
     	synchronized (this.chainedDispatches) {
     		return this.chainedDispatches.poll();
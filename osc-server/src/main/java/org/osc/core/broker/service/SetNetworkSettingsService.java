@@ -21,6 +21,7 @@ import javax.persistence.EntityManager;
 import org.osc.core.broker.job.Job;
 import org.osc.core.broker.job.JobEngine;
 import org.osc.core.broker.job.TaskGraph;
+import org.osc.core.broker.model.plugin.ApiFactoryService;
 import org.osc.core.broker.service.api.SetNetworkSettingsServiceApi;
 import org.osc.core.broker.service.dto.NetworkSettingsDto;
 import org.osc.core.broker.service.request.SetNetworkSettingsRequest;
@@ -53,6 +54,9 @@ public class SetNetworkSettingsService extends ServiceDispatcher<SetNetworkSetti
     @Reference
     private IpChangePropagateMetaTask ipChangePropagateMetaTask;
 
+    @Reference
+    private ApiFactoryService apiFactoryService;
+
     @Override
     public SetNetworkSettingsResponse exec(SetNetworkSettingsRequest request, EntityManager em) throws Exception {
 
@@ -99,6 +103,9 @@ public class SetNetworkSettingsService extends ServiceDispatcher<SetNetworkSetti
 
         log.info("Start propagating new IP(" + NetworkUtil.getHostIpAddress() + ") to all managers");
 
+        // Cached manager elements still carry the old IP
+        this.apiFactoryService.invalidateConnectorElements();
+
         TaskGraph tg = new TaskGraph();
 
         tg.addTask(this.ipChangePropagateMetaTask.create());
@@ -0,0 +1,296 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.openstack4j.model.compute.Server;
+import org.osc.core.broker.model.entities.appliance.DistributedApplianceInstance;
+import org.osc.core.broker.model.entities.virtualization.VirtualizationConnector;
+import org.osc.core.broker.model.entities.virtualization.openstack.VM;
+import org.osc.core.broker.rest.client.openstack.discovery.OpenstackInventoryCache;
+import org.osc.core.broker.rest.client.openstack.openstack4j.Endpoint;
+import org.osc.core.broker.rest.client.openstack.openstack4j.Openstack4JNeutron;
+import org.osc.core.broker.service.exceptions.VmidcBrokerValidationException;
+import org.osc.core.broker.service.persistence.VMPortEntityManager;
+import org.osc.core.broker.service.response.QueryVmInfoResponse.VmInfo;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Resolves the VMs of the addresses of a VM info query in bulk.
+ * <p>
+ * Addresses are looked up in the database with a single query per kind of
+ * address. Only the addresses not found there are looked up in OpenStack, in
+ * parallel on the given bounded executor, one port query filtered by MAC
+ * address per MAC address, reading ports and servers through the
+ * {@link OpenstackInventoryCache}. Addresses OpenStack does not know about are
+ * not looked up again for {@link #NEGATIVE_CACHE_TTL_MS}, so appliances asking
+ * for them over and over do not reach OpenStack every time.
+ */
+final class VmInfoResolver {
+
+    static final long NEGATIVE_CACHE_TTL_MS = 30000;
+
+    private static final int NEGATIVE_CACHE_MAX_SIZE = 10000;
+
+    /*
+     * Addresses unknown to OpenStack, by virtualization connector
+     */
+    private static final Cache<String, Boolean> unknownAddresses = CacheBuilder.newBuilder()
+            .expireAfterWrite(NEGATIVE_CACHE_TTL_MS, TimeUnit.MILLISECONDS).maximumSize(NEGATIVE_CACHE_MAX_SIZE)
+            .build();
+
+    private interface Lookup<T> {
+        T find(String key) throws Exception;
+    }
+
+    private final EntityManager em;
+    private final DistributedApplianceInstance dai;
+    private final VirtualizationConnector vc;
+    private final String region;
+    private final ExecutorService executor;
+
+    VmInfoResolver(EntityManager em, DistributedApplianceInstance dai, ExecutorService executor) {
+        this.em = em;
+        this.dai = dai;
+        this.vc = dai.getVirtualSystem().getVirtualizationConnector();
+        this.region = dai.getDeploymentSpec().getRegion();
+        this.executor = executor;
+    }
+
+    /**
+     * @return the VM info by IP address, null for the IP addresses of no VM
+     *         protected by the appliance instance
+     */
+    Map<String, VmInfo> resolveIpAddresses(Collection<String> ipAddresses) {
+        Map<String, VM> vms = VMPortEntityManager.findByIpAddresses(this.em, this.dai, ipAddresses);
+
+        Map<String, VmInfo> vmInfos = new LinkedHashMap<>();
+        for (String ipAddress : ipAddresses) {
+            VM vm = vms.get(ipAddress);
+            VmInfo vmInfo = null;
+            if (vm != null) {
+                vmInfo = newVmInfo(vm);
+                vmInfo.vmIpAddress = ipAddress;
+            }
+            // TODO: Future. Locate VM by IP.
+            vmInfos.put(ipAddress, vmInfo);
+        }
+        return vmInfos;
+    }
+
+    /**
+     * @return the VM info by MAC address
+     * @throws VmidcBrokerValidationException
+     *             if any of the MAC addresses is not the one of a server
+     */
+    Map<String, VmInfo> resolveMacAddresses(Collection<String> macAddresses) throws Exception {
+        Map<String, VM> vms = VMPortEntityManager.findByMacAddresses(this.em, macAddresses);
+
+        Map<String, VmInfo> vmInfos = new LinkedHashMap<>();
+        Set<String> misses = new LinkedHashSet<>();
+        for (String macAddress : macAddresses) {
+            VM vm = vms.get(macAddress);
+            if (vm != null) {
+                VmInfo vmInfo = newVmInfo(vm);
+                vmInfo.vmMacAddress = macAddress;
+                vmInfos.put(macAddress, vmInfo);
+            } else {
+                // Keep the requested order, resolved from OpenStack below
+                vmInfos.put(macAddress, null);
+                misses.add(macAddress);
+            }
+        }
+        if (misses.isEmpty()) {
+            return vmInfos;
+        }
+
+        Map<String, String> vmIds = findVmIdsByMacAddress(misses);
+        for (String macAddress : misses) {
+            if (vmIds.get(macAddress) == null) {
+                throw new VmidcBrokerValidationException(
+                        String.format("Unable to find Server with mac address: %s ", macAddress));
+            }
+        }
+        Map<String, Server> servers = getServers(vmIds.values());
+        for (String macAddress : misses) {
+            vmInfos.put(macAddress, newVmInfo(servers.get(vmIds.get(macAddress))));
+        }
+        return vmInfos;
+    }
+
+    /**
+     * @return the VM info by port id
+     * @throws VmidcBrokerValidationException
+     *             if any of the ports is not attached to a server
+     */
+    Map<String, VmInfo> resolvePortIds(Collection<String> portIds) throws Exception {
+        OpenstackInventoryCache inventory = OpenstackInventoryCache.getCache();
+        String project = this.vc.getProviderAdminProjectName();
+
+        Set<String> lookups = new LinkedHashSet<>();
+        for (String portId : portIds) {
+            if (isUnknown(portId)) {
+                throw new VmidcBrokerValidationException(
+                        String.format("Unable to find Server attached to the port: %s", portId));
+            }
+            lookups.add(portId);
+        }
+
+        Map<String, String> vmIds = fanOut(lookups, portId -> Openstack4JNeutron.getVmIdByPort(
+                inventory.getPort(this.vc, project, this.region, portId)));
+        for (String portId : lookups) {
+            if (vmIds.get(portId) == null) {
+                markUnknown(portId);
+                throw new VmidcBrokerValidationException(
+                        String.format("Unable to find Server attached to the port: %s", portId));
+            }
+        }
+
+        Map<String, Server> servers = getServers(vmIds.values());
+        Map<String, VmInfo> vmInfos = new LinkedHashMap<>();
+        for (String portId : lookups) {
+            vmInfos.put(portId, newVmInfo(servers.get(vmIds.get(portId))));
+        }
+        return vmInfos;
+    }
+
+    private Map<String, String> findVmIdsByMacAddress(Set<String> macAddresses) throws Exception {
+        Set<String> lookups = new LinkedHashSet<>();
+        for (String macAddress : macAddresses) {
+            if (!isUnknown(macAddress)) {
+                lookups.add(macAddress);
+            }
+        }
+
+        Map<String, String> vmIds = fanOut(lookups, macAddress -> {
+            try (Openstack4JNeutron neutron = new Openstack4JNeutron(new Endpoint(this.vc))) {
+                return neutron.getVmIdByMacAddress(this.region, macAddress);
+            }
+        });
+
+        for (String macAddress : lookups) {
+            if (!vmIds.containsKey(macAddress)) {
+                markUnknown(macAddress);
+            }
+        }
+        return vmIds;
+    }
+
+    private Map<String, Server> getServers(Collection<String> vmIds) throws Exception {
+        OpenstackInventoryCache inventory = OpenstackInventoryCache.getCache();
+        String project = this.vc.getProviderAdminProjectName();
+
+        Set<String> lookups = new LinkedHashSet<>(vmIds);
+        Map<String, Server> servers = fanOut(lookups,
+                vmId -> inventory.getServer(this.vc, project, this.region, vmId));
+        for (String vmId : lookups) {
+            if (servers.get(vmId) == null) {
+                throw new VmidcBrokerValidationException(
+                        String.format("Unable to find Server with Id: %s in region: %s ", vmId, this.region));
+            }
+        }
+        return servers;
+    }
+
+    /**
+     * Looks up the given keys in parallel
+     *
+     * @return the values found by key
+     */
+    private <T> Map<String, T> fanOut(Collection<String> keys, Lookup<T> lookup) throws Exception {
+        Map<String, T> results = new HashMap<>();
+        if (keys.size() == 1) {
+            String key = keys.iterator().next();
+            T value = lookup.find(key);
+            if (value != null) {
+                results.put(key, value);
+            }
+            return results;
+        }
+
+        Map<String, Future<T>> futures = new LinkedHashMap<>();
+        for (String key : keys) {
+            futures.put(key, this.executor.submit(() -> lookup.find(key)));
+        }
+        try {
+            for (Map.Entry<String, Future<T>> future : futures.entrySet()) {
+                T value = future.getValue().get();
+                if (value != null) {
+                    results.put(future.getKey(), value);
+                }
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        } finally {
+            for (Future<T> future : futures.values()) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    private boolean isUnknown(String address) {
+        return unknownAddresses.getIfPresent(unknownAddressKey(address)) != null;
+    }
+
+    private void markUnknown(String address) {
+        unknownAddresses.put(unknownAddressKey(address), Boolean.TRUE);
+    }
+
+    private String unknownAddressKey(String address) {
+        return this.vc.getId() + ":" + address;
+    }
+
+    static VmInfo newVmInfo(VM vm) {
+        VmInfo vmi = new VmInfo();
+        vmi.vmName = vm.getName();
+        vmi.vmId = vm.getId().toString();
+        vmi.vmUuid = vm.getOpenstackId();
+        vmi.hostName = vm.getHost();
+        vmi.hostId = vm.getHost();
+        return vmi;
+    }
+
+    static VmInfo newVmInfo(Server vm) {
+        VmInfo vmi = new VmInfo();
+        vmi.vmName = vm.getName();
+        vmi.vmId = vm.getId();
+        vmi.vmUuid = vm.getId();
+        // TODO: Future Maybe add comma seperated list of ip addresses
+        vmi.vmIpAddress = "";
+        vmi.hostName = vm.getHostId();
+        vmi.hostId = vm.getHostId();
+        return vmi;
+    }
+}
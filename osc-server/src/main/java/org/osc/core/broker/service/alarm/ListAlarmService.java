@@ -36,6 +36,11 @@ import org.osgi.service.component.annotations.Component;
 public class ListAlarmService extends ServiceDispatcher<BaseRequest<BaseDto>, ListResponse<AlarmDto>>
         implements ListAlarmServiceApi {
 
+    @Override
+    protected boolean isReadOnly() {
+        return true;
+    }
+
     @Override
     public ListResponse<AlarmDto> exec(BaseRequest<BaseDto> request, EntityManager em) throws Exception {
         // Initializing Entity Manager
@@ -18,6 +18,7 @@ package org.osc.core.broker.service.alert;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.EntityManager;
 
@@ -25,32 +26,61 @@ import org.osc.core.broker.model.entities.events.Alert;
 import org.osc.core.broker.service.ServiceDispatcher;
 import org.osc.core.broker.service.api.ListAlertServiceApi;
 import org.osc.core.broker.service.dto.AlertDto;
-import org.osc.core.broker.service.dto.BaseDto;
 import org.osc.core.broker.service.persistence.AlertEntityMgr;
 import org.osc.core.broker.service.persistence.OSCEntityManager;
-import org.osc.core.broker.service.request.BaseRequest;
-import org.osc.core.broker.service.response.ListResponse;
+import org.osc.core.broker.service.request.ListAlertRequest;
+import org.osc.core.broker.service.request.PageRequest;
+import org.osc.core.broker.service.response.PageResponse;
+import org.osc.core.broker.service.validator.PageRequestValidator;
 import org.osgi.service.component.annotations.Component;
 
 @Component
-public class ListAlertService extends ServiceDispatcher<BaseRequest<BaseDto>, ListResponse<AlertDto>>
+public class ListAlertService extends ServiceDispatcher<ListAlertRequest, PageResponse<AlertDto>>
         implements ListAlertServiceApi {
 
+    private static final PageRequestValidator PAGE_VALIDATOR = new PageRequestValidator()
+            .sortable("timeCreatedTimestamp", "createdTimestamp")
+            .sortable("name", "name")
+            .sortable("severity", "severity")
+            .filterable("name", "name")
+            .filterable("severity", "severity")
+            .filterable("message", "message")
+            .filterable("status", "status")
+            .filterable("acknowledgedUser", "acknowledgedBy");
+
+    @Override
+    protected boolean isReadOnly() {
+        return true;
+    }
+
     @Override
-    public ListResponse<AlertDto> exec(BaseRequest<BaseDto> request, EntityManager em) throws Exception {
+    public PageResponse<AlertDto> exec(ListAlertRequest request, EntityManager em) throws Exception {
 
         // Initializing Entity Manager
         OSCEntityManager<Alert> emgr = new OSCEntityManager<Alert>(Alert.class, em, this.txBroadcastUtil);
 
+        PageRequest page = request.getPage();
+        List<Alert> alerts;
+        long totalCount;
+        if (page == null) {
+            alerts = emgr.listAll(false, "createdTimestamp");
+            totalCount = alerts.size();
+        } else {
+            PAGE_VALIDATOR.validate(page);
+            Map<String, Object> filters = PAGE_VALIDATOR.getFilterValues(page);
+            Map<String, Object> equals = PAGE_VALIDATOR.getEqualValues(page);
+            alerts = emgr.listPage(filters, equals, PAGE_VALIDATOR.getSortAttribute(page), page.isAscending(),
+                    page.getAfterId(), page.getPageSize());
+            totalCount = emgr.count(filters, equals);
+        }
+
         List<AlertDto> alertList = new ArrayList<AlertDto>();
 
-        for (Alert alert : emgr.listAll(false, "createdTimestamp")) {
+        for (Alert alert : alerts) {
             AlertDto dto = new AlertDto();
             AlertEntityMgr.fromEntity(alert, dto);
             alertList.add(dto);
         }
-        ListResponse<AlertDto> response = new ListResponse<AlertDto>();
-        response.setList(alertList);
-        return response;
+        return new PageResponse<AlertDto>(alertList, totalCount);
     }
 }
@@ -18,17 +18,11 @@ package org.osc.core.broker.service.archive;
 
 import static org.osc.core.server.scheduler.ArchiveScheduledJob.*;
 
-import java.io.File;
-import java.sql.SQLException;
 import java.sql.Timestamp;
-import java.util.Arrays;
 import java.util.Date;
-import java.util.List;
 
 import javax.persistence.EntityManager;
-import javax.persistence.Query;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.time.DateUtils;
 import org.joda.time.DateTime;
 import org.joda.time.Period;
@@ -42,7 +36,6 @@ import org.osc.core.broker.service.ServiceDispatcher;
 import org.osc.core.broker.service.alert.AlertGenerator;
 import org.osc.core.broker.service.api.ArchiveServiceApi;
 import org.osc.core.broker.service.api.GetJobsArchiveServiceApi;
-import org.osc.core.broker.service.api.server.ArchiveApi;
 import org.osc.core.broker.service.dto.JobsArchiveDto;
 import org.osc.core.broker.service.persistence.OSCEntityManager;
 import org.osc.core.broker.service.request.BaseRequest;
@@ -54,6 +47,7 @@ import org.osc.core.common.job.ThresholdType;
 import org.osc.core.server.scheduler.ArchiveScheduledJob;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.transaction.control.ScopedWorkException;
 import org.quartz.JobBuilder;
 import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
@@ -66,7 +60,7 @@ import org.quartz.impl.StdSchedulerFactory;
 import org.slf4j.Logger;
 
 /**
- * Archive service which performs job archive to CSV files.
+ * Archive service which performs job archive to a zip of CSV files.
  */
 @Component
 public class ArchiveService extends ServiceDispatcher<BaseRequest<JobsArchiveDto>, Response>
@@ -74,15 +68,16 @@ implements ArchiveServiceApi {
 
     private static final Logger log = LoggerFactory.getLogger(ArchiveService.class);
 
-    @Reference
-    private GetJobsArchiveServiceApi jobsArchiveService;
+    private static final String ARCHIVE_DIR = "archive";
 
     @Reference
-    private ArchiveApi archiver;
+    private GetJobsArchiveServiceApi jobsArchiveService;
 
     @Reference
     private AlertGenerator alertGenerator;
 
+    private volatile JobArchiver lastArchiver;
+
     @Override
     public Response exec(final BaseRequest<JobsArchiveDto> request, EntityManager em) throws Exception {
         try {
@@ -102,59 +97,28 @@ implements ArchiveServiceApi {
                 // calculate threshold date
                 Period period = getPeriod(request);
                 Timestamp sqlTimeString = Timestamp.valueOf(calculateThresholdDate(period, "yyyy-MM-dd HH:mm:ss"));
-                String archiveFileName = calculateThresholdDate(period, "yyyy-MM-dd_HH-mm-ss");
-
-                String dir = "archive/" + archiveFileName + "/";
-                FileUtils.forceMkdir(new File(dir));
-
-
-                //prepare callable statements to export files as .csv
-                List<Query> cStatements = Arrays.asList(
-                        getCallableStatementForJob(em, sqlTimeString, dir),
-                        getCallableStatementJobObject(em, sqlTimeString, dir),
-                        getCallableStatementTask(em, sqlTimeString, dir),
-                        getCallableStatementTaskPredecessor(em, sqlTimeString, dir),
-                        getCallableStatementTaskSuccessor(em, sqlTimeString, dir),
-                        getCallableStatementTaskChild(em, sqlTimeString, dir),
-                        getCallableStatementTaskObject(em, sqlTimeString, dir),
-                        getCallableStatementReleaseInfo(em, sqlTimeString, dir),
-                        getCallableStatementAlert(em, sqlTimeString, dir)
-                        );
-
-                //prepare statements to clear tables
-                List<Query> pStatements = Arrays.asList(
-                        getPreparedStatementDeleteTaskObject(em, sqlTimeString),
-                        getPreparedStatementDeleteTaskSuccessor(em, sqlTimeString),
-                        getPreparedStatementDeleteTaskPredecessor(em, sqlTimeString),
-                        getPreparedStatementDeleteTaskChild(em, sqlTimeString),
-                        getPreparedStatementDeleteTask(em, sqlTimeString),
-                        getPreparedStatementDeleteJobObject(em, sqlTimeString),
-                        getPreparedStatementDeleteJob(em, sqlTimeString),
-                        getPreparedStatementDeleteAlert(em, sqlTimeString)
-                        );
-
-                //Execute callable and then prepared statements
-                for (Query spq : cStatements) {
-                    archive(spq);
-                }
-                for (Query q : pStatements) {
-                    delete(q);
-                }
 
-                this.archiver.archive(dir, "archive/osc-archive-" + archiveFileName + ".zip");
-                FileUtils.deleteDirectory(new File(dir));
+                JobArchiver jobArchiver = new JobArchiver(getTransactionControl(), em, JobArchiver.BATCH_SIZE);
+                this.lastArchiver = jobArchiver;
+                jobArchiver.archive(sqlTimeString, ARCHIVE_DIR);
 
+            } catch (ScopedWorkException e) {
+                // Unwrap the ScopedWorkException to get the cause from
+                // the failed batch transaction
+                archiveFailed(e.getCause());
             } catch (Exception e) {
-                log.error("Error while archiving jobs", e);
-                this.alertGenerator.processSystemFailureEvent(SystemFailureType.ARCHIVE_FAILURE,
-                        new LockObjectReference(1L, "Archive Settings", ObjectType.ARCHIVE),
-                        "Failure during archiving operation " + e.getMessage());
+                archiveFailed(e);
             }
 
 
             if (jobsArchive != null) {
-                jobsArchive.setLastTriggerTimestamp(new Date());
-                OSCEntityManager.update(em, jobsArchive, this.txBroadcastUtil);
+                // The archiver updated the record in its own transactions, update the latest version of it
+                getTransactionControl().requiresNew(() -> {
+                    JobsArchive latest = em.find(JobsArchive.class, 1L);
+                    latest.setLastTriggerTimestamp(new Date());
+                    OSCEntityManager.update(em, latest, this.txBroadcastUtil);
+                    return null;
+                });
             }
 
         } catch (Exception e) {
@@ -165,152 +129,20 @@ implements ArchiveServiceApi {
         };
     }
 
-    private Query getPreparedStatementDeleteTaskObject(EntityManager em, Timestamp sqlTimeString) throws SQLException {
-        Query query = em.createNativeQuery("DELETE FROM TASK_OBJECT WHERE task_fk IN "
-                + "(SELECT ID FROM TASK WHERE job_fk IN "
-                + "(SELECT ID FROM JOB WHERE completed_timestamp <= ?)) ");
-        query.setParameter(1, sqlTimeString);
-        return query;
-    }
-
-    private Query getPreparedStatementDeleteTaskSuccessor(EntityManager em, Timestamp sqlTimeString) throws SQLException {
-        Query query = em.createNativeQuery("DELETE FROM TASK_SUCCESSOR WHERE task_id IN "
-                + "(SELECT ID FROM TASK WHERE job_fk IN "
-                + "(SELECT ID FROM JOB WHERE completed_timestamp <= ?)) ");
-        query.setParameter(1, sqlTimeString);
-        return query;
-    }
-
-    private Query getPreparedStatementDeleteTaskPredecessor(EntityManager em, Timestamp sqlTimeString) throws SQLException {
-        Query query = em.createNativeQuery("DELETE FROM TASK_PREDECESSOR WHERE task_id IN "
-                + "(SELECT ID FROM TASK WHERE job_fk IN "
-                + "(SELECT ID FROM JOB WHERE completed_timestamp <= ?))");
-        query.setParameter(1, sqlTimeString);
-        return query;
-    }
-
-    private Query getPreparedStatementDeleteTaskChild(EntityManager em, Timestamp sqlTimeString) throws SQLException {
-        Query query = em.createNativeQuery("DELETE FROM TASK_CHILD WHERE task_id IN "
-                + "(SELECT ID FROM TASK WHERE job_fk IN "
-                + "(SELECT ID FROM JOB WHERE completed_timestamp <= ?))");
-        query.setParameter(1, sqlTimeString);
-        return query;
-    }
-
-    private Query getPreparedStatementDeleteTask(EntityManager em, Timestamp sqlTimeString) throws SQLException {
-        Query query = em.createNativeQuery("DELETE FROM TASK WHERE id IN (SELECT ID FROM TASK WHERE job_fk IN "
-                + "(SELECT ID FROM JOB WHERE completed_timestamp <= ?))");
-        query.setParameter(1, sqlTimeString);
-        return query;
-    }
-
-    private Query getPreparedStatementDeleteJobObject(EntityManager em, Timestamp sqlTimeString) throws SQLException {
-        Query query = em.createNativeQuery("DELETE FROM JOB_OBJECT WHERE job_fk IN (SELECT ID FROM JOB WHERE completed_timestamp <= ?)");
-        query.setParameter(1, sqlTimeString);
-        return query;
-    }
-
-    private Query getPreparedStatementDeleteJob(EntityManager em, Timestamp sqlTimeString) throws SQLException {
-        Query query = em.createNativeQuery("DELETE FROM JOB WHERE completed_timestamp <= ?");
-        query.setParameter(1, sqlTimeString);
-        return query;
-    }
-
-    private Query getPreparedStatementDeleteAlert(EntityManager em, Timestamp sqlTimeString) throws SQLException {
-        Query query = em.createNativeQuery("DELETE FROM ALERT WHERE created_timestamp <= ?");
-        query.setParameter(1, sqlTimeString);
-        return query;
-    }
-
-    private Query getCallableStatementAlert(EntityManager em, Timestamp sqlTimeString, String dir) throws SQLException {
-        File cvsFile = new File(dir + "alert.csv");
-        Query spq = em.createNativeQuery("{CALL CSVWRITE(?, ?, ?)}");
-        spq.setParameter(1, String.valueOf(cvsFile.getAbsoluteFile()));
-        spq.setParameter(2, "SELECT * FROM ALERT WHERE created_timestamp <= '"+sqlTimeString+"'");
-        spq.setParameter(3,"charset=UTF-8 fieldSeparator=,");
-        return spq;
-    }
-
-    private Query getCallableStatementReleaseInfo(EntityManager em, Timestamp sqlTimeString, String dir) throws SQLException {
-        File cvsFile = new File(dir + "release_info.csv");
-        Query spq = em.createNativeQuery("{CALL CSVWRITE(?, ?, ?)}");
-        spq.setParameter(1, String.valueOf(cvsFile.getAbsoluteFile()));
-        spq.setParameter(2, "SELECT * FROM RELEASE_INFO");
-        spq.setParameter(3,"charset=UTF-8 fieldSeparator=,");
-        return spq;
-    }
-
-    private Query getCallableStatementTaskObject(EntityManager em, Timestamp sqlTimeString, String dir) throws SQLException {
-        File cvsFile = new File(dir + "task_object.csv");
-        Query spq = em.createNativeQuery("{CALL CSVWRITE(?, ?, ?)}");
-        spq.setParameter(1, String.valueOf(cvsFile.getAbsoluteFile()));
-        spq.setParameter(2, "SELECT * FROM TASK_OBJECT WHERE task_fk IN (SELECT ID FROM TASK WHERE job_fk IN (SELECT ID FROM JOB WHERE completed_timestamp <= '"+sqlTimeString+"'))");
-        spq.setParameter(3,"charset=UTF-8 fieldSeparator=,");
-        return spq;
-    }
-
-    private Query getCallableStatementTaskChild(EntityManager em, Timestamp sqlTimeString, String dir) throws SQLException {
-        File cvsFile = new File(dir + "task_child.csv");
-        Query spq = em.createNativeQuery("{CALL CSVWRITE(?, ?, ?)}");
-        spq.setParameter(1, String.valueOf(cvsFile.getAbsoluteFile()));
-        spq.setParameter(2, "SELECT * FROM TASK_CHILD WHERE task_id IN (SELECT ID FROM TASK WHERE job_fk IN (SELECT ID FROM JOB WHERE completed_timestamp <= '"+sqlTimeString+"'))");
-        spq.setParameter(3,"charset=UTF-8 fieldSeparator=,");
-        return spq;
-    }
-
-    private Query getCallableStatementTaskSuccessor(EntityManager em, Timestamp sqlTimeString, String dir) throws SQLException {
-        File cvsFile = new File(dir + "task_successor.csv");
-        Query spq = em.createNativeQuery("{CALL CSVWRITE(?, ?, ?)}");
-        spq.setParameter(1, String.valueOf(cvsFile.getAbsoluteFile()));
-        spq.setParameter(2, "SELECT * FROM TASK_SUCCESSOR WHERE task_id IN (SELECT ID FROM TASK WHERE job_fk IN (SELECT ID FROM JOB WHERE completed_timestamp <= '"+sqlTimeString+"'))");
-        spq.setParameter(3,"charset=UTF-8 fieldSeparator=,");
-        return spq;
-    }
-
-    private Query getCallableStatementTaskPredecessor(EntityManager em, Timestamp sqlTimeString, String dir) throws SQLException {
-        File cvsFile = new File(dir + "task_predecessor.csv");
-        Query spq = em.createNativeQuery("{CALL CSVWRITE(?, ?, ?)}");
-        spq.setParameter(1, String.valueOf(cvsFile.getAbsoluteFile()));
-        spq.setParameter(2, "SELECT * FROM TASK_PREDECESSOR WHERE task_id IN (SELECT ID FROM TASK WHERE job_fk IN (SELECT ID FROM JOB WHERE completed_timestamp <= '"+sqlTimeString+"'))");
-        spq.setParameter(3,"charset=UTF-8 fieldSeparator=,");
-        return spq;
+    private void archiveFailed(Throwable e) {
+        log.error("Error while archiving jobs", e);
+        this.alertGenerator.processSystemFailureEvent(SystemFailureType.ARCHIVE_FAILURE,
+                new LockObjectReference(1L, "Archive Settings", ObjectType.ARCHIVE),
+                "Failure during archiving operation " + e.getMessage());
     }
 
-    private Query getCallableStatementTask(EntityManager em, Timestamp sqlTimeString, String dir) throws SQLException {
-        File cvsFile = new File(dir + "task.csv");
-        Query spq = em.createNativeQuery("{CALL CSVWRITE(?, ?, ?)}");
-        spq.setParameter(1, String.valueOf(cvsFile.getAbsoluteFile()));
-        spq.setParameter(2, "SELECT * FROM TASK WHERE job_fk IN (SELECT ID FROM JOB WHERE completed_timestamp <= '"+sqlTimeString+"')");
-        spq.setParameter(3,"charset=UTF-8 fieldSeparator=,");
-        return spq;
-    }
-
-    private Query getCallableStatementJobObject(EntityManager em, Timestamp sqlTimeString, String dir) throws SQLException {
-        File cvsFile = new File(dir + "job_object.csv");
-        Query spq = em.createNativeQuery("{CALL CSVWRITE(?, ?, ?)}");
-        spq.setParameter(1, String.valueOf(cvsFile.getAbsoluteFile()));
-        spq.setParameter(2, "SELECT * FROM JOB_OBJECT WHERE job_fk IN (SELECT ID FROM JOB WHERE completed_timestamp <= '"+sqlTimeString+"')");
-        spq.setParameter(3,"charset=UTF-8 fieldSeparator=,");
-        return spq;
-    }
-
-    private Query getCallableStatementForJob(EntityManager em, Timestamp sqlTimeString, String dir) throws SQLException {
-        File cvsFile = new File(dir + "job.csv");
-        Query spq = em.createNativeQuery("{CALL CSVWRITE(?, ?, ?)}");
-        spq.setParameter(1, String.valueOf(cvsFile.getAbsoluteFile()));
-        spq.setParameter(2, "SELECT * FROM JOB WHERE completed_timestamp <= '" + sqlTimeString+"'");
-        spq.setParameter(3,"charset=UTF-8 fieldSeparator=,");
-        return spq;
-    }
-
-    private void archive(Query spq) throws SQLException {
-        log.info("Execute sql: " + spq.toString());
-        log.info("Rows archived: " + spq.executeUpdate());
-    }
-
-    private void delete(Query q) throws SQLException {
-        log.info("Execute sql: " + q.toString());
-        log.info("Rows deleted: " + q.executeUpdate());
+    /**
+     * @return the progress and throughput of the running or last archiving run,
+     *         null if none ran since the server started
+     */
+    public String getArchiveProgress() {
+        JobArchiver jobArchiver = this.lastArchiver;
+        return jobArchiver == null ? null : jobArchiver.toString();
     }
 
     private String calculateThresholdDate(Period period, String datePattern){
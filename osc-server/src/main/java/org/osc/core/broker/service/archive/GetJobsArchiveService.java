@@ -30,6 +30,11 @@ import org.osgi.service.component.annotations.Component;
 public class GetJobsArchiveService extends ServiceDispatcher<Request, BaseDtoResponse<JobsArchiveDto>>
         implements GetJobsArchiveServiceApi {
 
+    @Override
+    protected boolean isReadOnly() {
+        return true;
+    }
+
     @Override
     public BaseDtoResponse<JobsArchiveDto> exec(Request request, EntityManager em) throws Exception {
         JobsArchive jobsArchive = em.find(JobsArchive.class, 1L);
@@ -0,0 +1,371 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.service.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.lang.StringUtils;
+import org.h2.tools.Csv;
+import org.hibernate.Session;
+import org.joda.time.format.DateTimeFormat;
+import org.osc.core.broker.model.entities.archive.JobsArchive;
+import org.osgi.service.transaction.control.TransactionControl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Archives completed jobs with their tasks, and old alerts, to CSV entries of
+ * a zip file and deletes them from the database.
+ * <p>
+ * Jobs and alerts are archived by batches of at most {@link #BATCH_SIZE} ids
+ * in increasing order. Each batch is read and streamed into the zip in its own
+ * transaction, so no temporary file is written. Rows are only deleted once the
+ * zip is complete and synced to disk, again one batch per transaction so
+ * tables are only ever locked for one batch. The threshold of the run and the
+ * ids of the last deleted job and alert are persisted in {@link JobsArchive}
+ * with each batch: a run which did not complete is resumed where it left off,
+ * with the same threshold, into a new zip file.
+ */
+final class JobArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(JobArchiver.class);
+
+    static final int BATCH_SIZE = 500;
+
+    private static final String CSV_OPTIONS = "charset=UTF-8 fieldSeparator=,";
+
+    private final TransactionControl txControl;
+    private final EntityManager em;
+    private final int batchSize;
+
+    private ZipOutputStream zos;
+    private FileOutputStream fileOut;
+    private CountingOutputStream countingOut;
+
+    private Timestamp threshold;
+    private long lastJobId;
+    private long lastAlertId;
+
+    /*
+     * Id of the last job and alert of each batch written to the zip
+     */
+    private final List<Long> jobBatchEnds = new ArrayList<>();
+    private final List<Long> alertBatchEnds = new ArrayList<>();
+
+    private volatile long startTime;
+    private volatile long jobsTotal;
+    private volatile long alertsTotal;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong jobsArchived = new AtomicLong();
+    private final AtomicLong alertsArchived = new AtomicLong();
+    private final AtomicLong rowsArchived = new AtomicLong();
+
+    JobArchiver(TransactionControl txControl, EntityManager em, int batchSize) {
+        this.txControl = txControl;
+        this.em = em;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Archives the jobs completed and the alerts created before the given
+     * threshold, unless a previous run did not complete in which case that run
+     * is resumed with its own threshold.
+     *
+     * @return the zip file written
+     */
+    File archive(Timestamp requestedThreshold, String archiveDir) throws Exception {
+        this.startTime = System.currentTimeMillis();
+        startOrResume(requestedThreshold);
+
+        String archiveName = DateTimeFormat.forPattern("yyyy-MM-dd_HH-mm-ss").print(this.threshold.getTime());
+        FileUtils.forceMkdir(new File(archiveDir));
+        File zipFile = new File(archiveDir, "osc-archive-" + archiveName + ".zip");
+        for (int part = 1; zipFile.exists(); part++) {
+            zipFile = new File(archiveDir, "osc-archive-" + archiveName + "-" + part + ".zip");
+        }
+        log.info("Archiving jobs and alerts older than {} to {}", this.threshold, zipFile);
+
+        this.fileOut = new FileOutputStream(zipFile);
+        this.countingOut = new CountingOutputStream(new BufferedOutputStream(this.fileOut));
+        try (ZipOutputStream zipOut = new ZipOutputStream(this.countingOut)) {
+            this.zos = zipOut;
+
+            this.txControl.required(() -> {
+                this.em.unwrap(Session.class).doWork(connection -> writeCsv(connection, "release_info.csv",
+                        "SELECT * FROM RELEASE_INFO"));
+                return null;
+            });
+
+            while (this.txControl.requiresNew(this::writeJobBatch) > 0) {
+                log.info(toString());
+            }
+            while (this.txControl.requiresNew(this::writeAlertBatch) > 0) {
+                log.info(toString());
+            }
+
+            // The zip must be complete and safely on disk before any row is deleted
+            zipOut.finish();
+            sync();
+        }
+
+        long afterId = this.lastJobId;
+        for (Long lastId : this.jobBatchEnds) {
+            long firstId = afterId;
+            this.txControl.requiresNew(() -> deleteJobBatch(firstId, lastId));
+            afterId = lastId;
+        }
+        afterId = this.lastAlertId;
+        for (Long lastId : this.alertBatchEnds) {
+            long firstId = afterId;
+            this.txControl.requiresNew(() -> deleteAlertBatch(firstId, lastId));
+            afterId = lastId;
+        }
+
+        this.txControl.requiresNew(() -> {
+            JobsArchive jobsArchive = this.em.find(JobsArchive.class, 1L);
+            jobsArchive.setArchiveThresholdTimestamp(null);
+            jobsArchive.setLastArchivedJobId(null);
+            jobsArchive.setLastArchivedAlertId(null);
+            return null;
+        });
+        log.info("Archiving completed: " + toString());
+
+        return zipFile;
+    }
+
+    private void startOrResume(Timestamp requestedThreshold) {
+        this.txControl.requiresNew(() -> {
+            JobsArchive jobsArchive = this.em.find(JobsArchive.class, 1L);
+            if (jobsArchive.getArchiveThresholdTimestamp() != null) {
+                this.threshold = new Timestamp(jobsArchive.getArchiveThresholdTimestamp().getTime());
+                this.lastJobId = valueOf(jobsArchive.getLastArchivedJobId());
+                this.lastAlertId = valueOf(jobsArchive.getLastArchivedAlertId());
+                log.info("Resuming archiving of jobs and alerts older than {} after job {} and alert {}",
+                        this.threshold, this.lastJobId, this.lastAlertId);
+            } else {
+                this.threshold = requestedThreshold;
+                jobsArchive.setArchiveThresholdTimestamp(new Date(requestedThreshold.getTime()));
+                jobsArchive.setLastArchivedJobId(0L);
+                jobsArchive.setLastArchivedAlertId(0L);
+            }
+
+            this.jobsTotal = count("SELECT COUNT(*) FROM JOB WHERE completed_timestamp <= ? AND id > ?",
+                    this.lastJobId);
+            this.alertsTotal = count("SELECT COUNT(*) FROM ALERT WHERE created_timestamp <= ? AND id > ?",
+                    this.lastAlertId);
+            return null;
+        });
+    }
+
+    private int writeJobBatch() throws Exception {
+        List<Long> ids = selectIds("SELECT id FROM JOB WHERE completed_timestamp <= ? AND id > ? ORDER BY id",
+                lastOf(this.jobBatchEnds, this.lastJobId));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        String jobIds = "(" + StringUtils.join(ids, ',') + ")";
+        String taskIds = "(SELECT id FROM TASK WHERE job_fk IN " + jobIds + ")";
+        long batch = this.batches.incrementAndGet();
+        this.em.unwrap(Session.class).doWork(connection -> {
+            writeCsv(connection, entryName("job", batch), "SELECT * FROM JOB WHERE id IN " + jobIds);
+            writeCsv(connection, entryName("job_object", batch), "SELECT * FROM JOB_OBJECT WHERE job_fk IN " + jobIds);
+            writeCsv(connection, entryName("task", batch), "SELECT * FROM TASK WHERE job_fk IN " + jobIds);
+            writeCsv(connection, entryName("task_predecessor", batch),
+                    "SELECT * FROM TASK_PREDECESSOR WHERE task_id IN " + taskIds);
+            writeCsv(connection, entryName("task_successor", batch),
+                    "SELECT * FROM TASK_SUCCESSOR WHERE task_id IN " + taskIds);
+            writeCsv(connection, entryName("task_child", batch), "SELECT * FROM TASK_CHILD WHERE task_id IN " + taskIds);
+            writeCsv(connection, entryName("task_object", batch),
+                    "SELECT * FROM TASK_OBJECT WHERE task_fk IN " + taskIds);
+        });
+
+        this.jobBatchEnds.add(ids.get(ids.size() - 1));
+        this.jobsArchived.addAndGet(ids.size());
+        return ids.size();
+    }
+
+    private int writeAlertBatch() throws Exception {
+        List<Long> ids = selectIds("SELECT id FROM ALERT WHERE created_timestamp <= ? AND id > ? ORDER BY id",
+                lastOf(this.alertBatchEnds, this.lastAlertId));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        String alertIds = "(" + StringUtils.join(ids, ',') + ")";
+        long batch = this.batches.incrementAndGet();
+        this.em.unwrap(Session.class).doWork(connection -> writeCsv(connection, entryName("alert", batch),
+                "SELECT * FROM ALERT WHERE id IN " + alertIds));
+
+        this.alertBatchEnds.add(ids.get(ids.size() - 1));
+        this.alertsArchived.addAndGet(ids.size());
+        return ids.size();
+    }
+
+    private Void deleteJobBatch(long afterId, long lastId) {
+        List<Long> ids = selectIds(
+                "SELECT id FROM JOB WHERE completed_timestamp <= ? AND id > ? AND id <= " + lastId + " ORDER BY id",
+                afterId);
+        if (!ids.isEmpty()) {
+            String jobIds = "(" + StringUtils.join(ids, ',') + ")";
+            String taskIds = "(SELECT id FROM TASK WHERE job_fk IN " + jobIds + ")";
+            delete("DELETE FROM TASK_OBJECT WHERE task_fk IN " + taskIds);
+            delete("DELETE FROM TASK_SUCCESSOR WHERE task_id IN " + taskIds);
+            delete("DELETE FROM TASK_PREDECESSOR WHERE task_id IN " + taskIds);
+            delete("DELETE FROM TASK_CHILD WHERE task_id IN " + taskIds);
+            delete("DELETE FROM TASK WHERE job_fk IN " + jobIds);
+            delete("DELETE FROM JOB_OBJECT WHERE job_fk IN " + jobIds);
+            delete("DELETE FROM JOB WHERE id IN " + jobIds);
+        }
+
+        this.em.find(JobsArchive.class, 1L).setLastArchivedJobId(lastId);
+        return null;
+    }
+
+    private Void deleteAlertBatch(long afterId, long lastId) {
+        List<Long> ids = selectIds(
+                "SELECT id FROM ALERT WHERE created_timestamp <= ? AND id > ? AND id <= " + lastId + " ORDER BY id",
+                afterId);
+        if (!ids.isEmpty()) {
+            delete("DELETE FROM ALERT WHERE id IN (" + StringUtils.join(ids, ',') + ")");
+        }
+
+        this.em.find(JobsArchive.class, 1L).setLastArchivedAlertId(lastId);
+        return null;
+    }
+
+    private List<Long> selectIds(String sql, long afterId) {
+        Query query = this.em.createNativeQuery(sql);
+        query.setParameter(1, this.threshold);
+        query.setParameter(2, afterId);
+        query.setMaxResults(this.batchSize);
+
+        List<Long> ids = new ArrayList<>();
+        for (Object id : query.getResultList()) {
+            ids.add(((Number) id).longValue());
+        }
+        return ids;
+    }
+
+    private long count(String sql, long afterId) {
+        Query query = this.em.createNativeQuery(sql);
+        query.setParameter(1, this.threshold);
+        query.setParameter(2, afterId);
+        return ((Number) query.getSingleResult()).longValue();
+    }
+
+    private void delete(String sql) {
+        int rows = this.em.createNativeQuery(sql).executeUpdate();
+        log.debug("Rows deleted: {} by {}", rows, sql);
+    }
+
+    private void writeCsv(Connection connection, String entryName, String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            ResultSet rs = stmt.executeQuery(sql);
+            this.zos.putNextEntry(new ZipEntry(entryName));
+
+            Csv csv = new Csv();
+            csv.setOptions(CSV_OPTIONS);
+            // The CSV writer closes its output, the zip stream must stay open
+            int rows = csv.write(new OutputStreamWriter(new CloseShieldOutputStream(this.zos), StandardCharsets.UTF_8),
+                    rs);
+            this.zos.closeEntry();
+            this.rowsArchived.addAndGet(rows);
+        } catch (IOException e) {
+            throw new SQLException("Fail to write archive entry " + entryName, e);
+        }
+    }
+
+    private void sync() throws IOException {
+        this.zos.flush();
+        this.fileOut.getFD().sync();
+    }
+
+    private static String entryName(String table, long batch) {
+        return String.format("%s-%05d.csv", table, batch);
+    }
+
+    private static long lastOf(List<Long> batchEnds, long defaultId) {
+        return batchEnds.isEmpty() ? defaultId : batchEnds.get(batchEnds.size() - 1);
+    }
+
+    private static long valueOf(Long id) {
+        return id == null ? 0 : id;
+    }
+
+    /**
+     * @return the percentage of the jobs and alerts of the run archived so far
+     */
+    public double getProgress() {
+        long total = this.jobsTotal + this.alertsTotal;
+        return total == 0 ? 100 : 100.0 * (this.jobsArchived.get() + this.alertsArchived.get()) / total;
+    }
+
+    /**
+     * @return the number of rows of all tables archived per second since the
+     *         run started
+     */
+    public double getRowsPerSecond() {
+        long elapsed = System.currentTimeMillis() - this.startTime;
+        return elapsed <= 0 ? 0 : this.rowsArchived.get() * 1000.0 / elapsed;
+    }
+
+    public long getJobsArchived() {
+        return this.jobsArchived.get();
+    }
+
+    public long getAlertsArchived() {
+        return this.alertsArchived.get();
+    }
+
+    /**
+     * @return the number of bytes of the zip file written so far
+     */
+    public long getBytesWritten() {
+        CountingOutputStream out = this.countingOut;
+        return out == null ? 0 : out.getByteCount();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[archive] progress: %.1f%%, batches: %d, jobs: %d/%d, alerts: %d/%d, rows: %d, rows/s: %.0f, bytes: %d",
+                getProgress(), this.batches.get(), this.jobsArchived.get(), this.jobsTotal, this.alertsArchived.get(),
+                this.alertsTotal, this.rowsArchived.get(), getRowsPerSecond(), getBytesWritten());
+    }
+}
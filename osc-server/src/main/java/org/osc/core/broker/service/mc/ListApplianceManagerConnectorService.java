@@ -46,6 +46,11 @@ implements ListApplianceManagerConnectorServiceApi {
     @Reference
     private ApiFactoryService apiFactoryService;
 
+    @Override
+    protected boolean isReadOnly() {
+        return true;
+    }
+
     @Override
     public ListResponse<ApplianceManagerConnectorDto> exec(BaseRequest<BaseDto> request, EntityManager em) throws Exception {
         ListResponse<ApplianceManagerConnectorDto> response = new ListResponse<>();
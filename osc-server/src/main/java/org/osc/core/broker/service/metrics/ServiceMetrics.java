@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.service.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram and error counter for a single service dispatcher.
+ * <p>
+ * Latencies are counted in fixed millisecond buckets so recording is lock free
+ * and constant in memory; percentiles are approximated by the upper bound of
+ * the bucket they fall in.
+ */
+public final class ServiceMetrics {
+
+    static final long[] BUCKET_BOUNDS_MS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000 };
+
+    private final String name;
+
+    /*
+     * One counter per bucket bound plus one for anything above the last bound
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_MS.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong totalTimeMs = new AtomicLong();
+    private final AtomicLong maxTimeMs = new AtomicLong();
+
+    ServiceMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records a single dispatch.
+     *
+     * @param elapsedMs
+     *            the time the dispatch took
+     * @param failed
+     *            whether the dispatch ended with an exception
+     */
+    public void record(long elapsedMs, boolean failed) {
+        this.buckets.incrementAndGet(bucketOf(elapsedMs));
+        this.count.incrementAndGet();
+        this.totalTimeMs.addAndGet(elapsedMs);
+        if (failed) {
+            this.errors.incrementAndGet();
+        }
+
+        long max;
+        while (elapsedMs > (max = this.maxTimeMs.get())) {
+            if (this.maxTimeMs.compareAndSet(max, elapsedMs)) {
+                break;
+            }
+        }
+    }
+
+    private static int bucketOf(long elapsedMs) {
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            if (elapsedMs <= BUCKET_BOUNDS_MS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS_MS.length;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    public long getErrors() {
+        return this.errors.get();
+    }
+
+    public long getMaxLatencyMs() {
+        return this.maxTimeMs.get();
+    }
+
+    public double getAverageLatencyMs() {
+        long dispatches = this.count.get();
+        return dispatches == 0 ? 0 : (double) this.totalTimeMs.get() / dispatches;
+    }
+
+    /**
+     * @param percentile
+     *            a value between 0 and 100
+     * @return the upper bound in milliseconds of the bucket holding the given
+     *         percentile, or the maximum latency if it falls above the last
+     *         bucket
+     */
+    public long getLatencyPercentileMs(double percentile) {
+        long dispatches = this.count.get();
+        if (dispatches == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(dispatches * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            seen += this.buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(BUCKET_BOUNDS_MS[i], getMaxLatencyMs());
+            }
+        }
+        return getMaxLatencyMs();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%s] count: %d, errors: %d, avg: %.1fms, p50: %dms, p95: %dms, p99: %dms, max: %dms",
+                this.name, getCount(), getErrors(), getAverageLatencyMs(), getLatencyPercentileMs(50),
+                getLatencyPercentileMs(95), getLatencyPercentileMs(99), getMaxLatencyMs());
+    }
+}
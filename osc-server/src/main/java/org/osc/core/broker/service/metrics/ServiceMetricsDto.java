@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.service.metrics;
+
+public class ServiceMetricsDto {
+
+    private String service;
+    private long count;
+    private long errors;
+    private double averageLatencyMs;
+    private long p50LatencyMs;
+    private long p95LatencyMs;
+    private long p99LatencyMs;
+    private long maxLatencyMs;
+
+    ServiceMetricsDto() {
+    }
+
+    public ServiceMetricsDto(ServiceMetrics metrics) {
+        this.service = metrics.getName();
+        this.count = metrics.getCount();
+        this.errors = metrics.getErrors();
+        this.averageLatencyMs = metrics.getAverageLatencyMs();
+        this.p50LatencyMs = metrics.getLatencyPercentileMs(50);
+        this.p95LatencyMs = metrics.getLatencyPercentileMs(95);
+        this.p99LatencyMs = metrics.getLatencyPercentileMs(99);
+        this.maxLatencyMs = metrics.getMaxLatencyMs();
+    }
+
+    public String getService() {
+        return this.service;
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public long getErrors() {
+        return this.errors;
+    }
+
+    public double getAverageLatencyMs() {
+        return this.averageLatencyMs;
+    }
+
+    public long getP50LatencyMs() {
+        return this.p50LatencyMs;
+    }
+
+    public long getP95LatencyMs() {
+        return this.p95LatencyMs;
+    }
+
+    public long getP99LatencyMs() {
+        return this.p99LatencyMs;
+    }
+
+    public long getMaxLatencyMs() {
+        return this.maxLatencyMs;
+    }
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.service.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-process registry of {@link ServiceMetrics}, one per service dispatcher
+ * class.
+ */
+public final class ServiceMetricsRegistry {
+
+    private static ServiceMetricsRegistry registry = new ServiceMetricsRegistry();
+
+    private final ConcurrentMap<String, ServiceMetrics> metrics = new ConcurrentHashMap<>();
+
+    private ServiceMetricsRegistry() {
+    }
+
+    public static ServiceMetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @return the metrics for the given service, created on first use
+     */
+    public ServiceMetrics getMetrics(String serviceName) {
+        return this.metrics.computeIfAbsent(serviceName, ServiceMetrics::new);
+    }
+
+    /**
+     * @return the metrics of all services which were dispatched at least
+     *         once, sorted by name
+     */
+    public List<ServiceMetrics> getAllMetrics() {
+        List<ServiceMetrics> all = new ArrayList<>(this.metrics.values());
+        all.sort(Comparator.comparing(ServiceMetrics::getName));
+        return all;
+    }
+
+    void reset() {
+        this.metrics.clear();
+    }
+}
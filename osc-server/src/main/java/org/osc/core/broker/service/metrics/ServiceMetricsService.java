@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.service.metrics;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.osc.core.broker.service.api.ServiceMetricsApi;
+import org.osc.core.broker.util.log.LoggingUtil;
+import org.osgi.service.component.annotations.Component;
+
+@Component
+public class ServiceMetricsService implements ServiceMetricsApi {
+    @Override
+    public String getServiceMetrics() {
+        ServiceMetricsInformation metricsInfo = new ServiceMetricsInformation();
+        metricsInfo.serviceMetrics = ServiceMetricsRegistry.getRegistry().getAllMetrics().stream()
+                .map(ServiceMetricsDto::new).collect(Collectors.toList());
+        return LoggingUtil.pojoToJsonPrettyString(metricsInfo);
+    }
+
+    private static class ServiceMetricsInformation {
+        private List<ServiceMetricsDto> serviceMetrics;
+    }
+}
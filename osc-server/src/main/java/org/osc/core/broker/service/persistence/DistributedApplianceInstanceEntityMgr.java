@@ -17,10 +17,14 @@
 package org.osc.core.broker.service.persistence;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
+import javax.persistence.Query;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
@@ -131,6 +135,43 @@ public class DistributedApplianceInstanceEntityMgr {
         return daiList;
     }
 
+    /**
+     * Records the agent status reported for the given DAIs with a single versioned bulk update: it sets the last
+     * status time of all of them and, through a CASE expression, the new packet count of those whose count changed.
+     * The DAIs are not loaded and no broadcast is sent, callers are expected to notify the change.
+     *
+     * @param daiIds
+     *            the DAIs whose agent reported a status
+     * @param changedPackets
+     *            the new packet count of the DAIs whose count changed, by DAI id
+     */
+    public static void updateAgentStatus(EntityManager em, Collection<Long> daiIds, Date lastStatus,
+            Map<Long, Long> changedPackets, String user) {
+        if (daiIds.isEmpty()) {
+            return;
+        }
+
+        StringBuilder hqlUpdate = new StringBuilder("update versioned DistributedApplianceInstance dai set "
+                + "dai.lastStatus = :lastStatus, dai.updatedTimestamp = :lastStatus, dai.updatedBy = :user");
+        List<Map.Entry<Long, Long>> packets = new ArrayList<>(changedPackets.entrySet());
+        if (!packets.isEmpty()) {
+            hqlUpdate.append(", dai.packets = case");
+            for (int i = 0; i < packets.size(); i++) {
+                hqlUpdate.append(" when dai.id = :id").append(i).append(" then :packets").append(i);
+            }
+            hqlUpdate.append(" else dai.packets end");
+        }
+        hqlUpdate.append(" where dai.id in :daiIds");
+
+        Query query = em.createQuery(hqlUpdate.toString()).setParameter("lastStatus", lastStatus)
+                .setParameter("user", user).setParameter("daiIds", daiIds);
+        for (int i = 0; i < packets.size(); i++) {
+            query.setParameter("id" + i, packets.get(i).getKey()).setParameter("packets" + i,
+                    packets.get(i).getValue());
+        }
+        query.executeUpdate();
+    }
+
     public static List<Long> listByMcId(EntityManager em, Long mcId) {
 
         CriteriaBuilder cb = em.getCriteriaBuilder();
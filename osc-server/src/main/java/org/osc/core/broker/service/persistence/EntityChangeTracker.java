@@ -0,0 +1,302 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.service.persistence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.osc.core.broker.job.lock.LockObjectReference;
+import org.osc.core.broker.job.lock.LockObjectReference.ObjectType;
+import org.osc.core.broker.model.entities.IscEntity;
+import org.osc.core.broker.model.entities.appliance.DistributedAppliance;
+import org.osc.core.broker.model.entities.appliance.DistributedApplianceInstance;
+import org.osc.core.broker.model.entities.appliance.VirtualSystem;
+import org.osc.core.broker.model.entities.management.ApplianceManagerConnector;
+import org.osc.core.broker.model.entities.virtualization.SecurityGroup;
+import org.osc.core.broker.model.entities.virtualization.SecurityGroupInterface;
+import org.osc.core.broker.model.entities.virtualization.SecurityGroupMember;
+import org.osc.core.broker.model.entities.virtualization.VirtualizationConnector;
+import org.osc.core.broker.model.entities.virtualization.openstack.DeploymentSpec;
+import org.osc.core.broker.model.entities.virtualization.openstack.Network;
+import org.osc.core.broker.model.entities.virtualization.openstack.Subnet;
+import org.osc.core.broker.model.entities.virtualization.openstack.VM;
+import org.osc.core.broker.model.entities.virtualization.openstack.VMPort;
+import org.osgi.service.transaction.control.TransactionContext;
+import org.osgi.service.transaction.control.TransactionStatus;
+
+/**
+ * Keeps track of which distributed appliances and security groups changed
+ * since they were last synced, so the periodic syncs only conform those.
+ * <p>
+ * Every change is stamped with a version taken from a single sequence. A change
+ * to an entity is recorded against the distributed appliance and/or security
+ * group whose conformance covers it. A change to a connector or a plugin
+ * can affect any of them and bumps a global version instead. An entity is dirty
+ * when its last change, or the last global change, is newer than the version
+ * it was last synced at. Entities never synced are always dirty.
+ * <p>
+ * Changes made in a transaction are recorded once it commits, so a sync which
+ * reads the database before the commit cannot mark them as synced.
+ * <p>
+ * Changes made while tracking is disabled for the current thread, such as the
+ * changes made by conformance jobs themselves, are not recorded.
+ */
+public final class EntityChangeTracker {
+
+    private static EntityChangeTracker tracker = new EntityChangeTracker();
+
+    private final AtomicLong versionSequence = new AtomicLong();
+    private final Map<LockObjectReference, Long> changeVersions = new ConcurrentHashMap<>();
+    private final Map<LockObjectReference, Long> syncedVersions = new ConcurrentHashMap<>();
+    private volatile long globalChangeVersion;
+
+    private final ThreadLocal<Boolean> trackingDisabled = new ThreadLocal<>();
+
+    private EntityChangeTracker() {
+    }
+
+    public static EntityChangeTracker getTracker() {
+        return tracker;
+    }
+
+    /**
+     * Enables or disables the recording of changes made by the current thread.
+     *
+     * @return whether tracking was enabled before the call, to be restored
+     *         once done
+     */
+    public boolean setTrackingEnabled(boolean enabled) {
+        boolean wasEnabled = isTrackingEnabled();
+        if (enabled) {
+            this.trackingDisabled.remove();
+        } else {
+            this.trackingDisabled.set(Boolean.TRUE);
+        }
+        return wasEnabled;
+    }
+
+    public boolean isTrackingEnabled() {
+        return this.trackingDisabled.get() == null;
+    }
+
+    /**
+     * Records a change of the given entity against the distributed appliance
+     * and/or security group it belongs to.
+     */
+    public void markChanged(IscEntity entity) {
+        markChanged(entity, null);
+    }
+
+    /**
+     * Records a change of the given entity made in the given transaction once
+     * the transaction commits. The owners of the entity are resolved right
+     * away, while the entity is still attached.
+     *
+     * @param transaction the active transaction, null to record the change
+     *            right away
+     */
+    public void markChanged(IscEntity entity, TransactionContext transaction) {
+        if (!isTrackingEnabled() || entity == null) {
+            return;
+        }
+
+        Runnable change;
+        if (entity instanceof VirtualizationConnector || entity instanceof ApplianceManagerConnector) {
+            change = this::recordAllChanged;
+        } else {
+            List<LockObjectReference> roots = getSyncRoots(entity);
+            if (roots.isEmpty()) {
+                return;
+            }
+            change = () -> roots.forEach(this::markChanged);
+        }
+        afterCommit(transaction, change);
+    }
+
+    /**
+     * Records a change of the given distributed appliance or security group.
+     * References to any other type of object are ignored.
+     */
+    public void markChanged(LockObjectReference objectRef) {
+        if (isSyncRoot(objectRef)) {
+            this.changeVersions.put(objectRef, this.versionSequence.incrementAndGet());
+        }
+    }
+
+    /**
+     * Records a change which may affect every distributed appliance and
+     * security group.
+     */
+    public void markAllChanged() {
+        if (isTrackingEnabled()) {
+            recordAllChanged();
+        }
+    }
+
+    /**
+     * Drops whatever is tracked for the given entity, once it is deleted.
+     */
+    public void forget(IscEntity entity) {
+        forget(entity, null);
+    }
+
+    /**
+     * Drops whatever is tracked for the given entity once the transaction
+     * deleting it commits.
+     *
+     * @param transaction the active transaction, null to drop it right away
+     */
+    public void forget(IscEntity entity, TransactionContext transaction) {
+        if (entity instanceof DistributedAppliance || entity instanceof SecurityGroup) {
+            List<LockObjectReference> roots = getSyncRoots(entity);
+            afterCommit(transaction, () -> {
+                for (LockObjectReference root : roots) {
+                    this.changeVersions.remove(root);
+                    this.syncedVersions.remove(root);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return the latest version handed out. Take it before syncing an entity
+     *         and pass it to {@link #markSynced} once the sync is submitted.
+     */
+    public long getCurrentVersion() {
+        return this.versionSequence.get();
+    }
+
+    /**
+     * Records that the given entity was synced with all changes up to the
+     * given version.
+     */
+    public void markSynced(LockObjectReference objectRef, long version) {
+        if (isSyncRoot(objectRef)) {
+            this.syncedVersions.merge(objectRef, version, Math::max);
+        }
+    }
+
+    /**
+     * @return true if the given entity changed since it was last synced or was
+     *         never synced
+     */
+    public boolean isDirty(LockObjectReference objectRef) {
+        Long syncedVersion = this.syncedVersions.get(objectRef);
+        if (syncedVersion == null) {
+            return true;
+        }
+        Long changeVersion = this.changeVersions.get(objectRef);
+        return this.globalChangeVersion > syncedVersion
+                || (changeVersion != null && changeVersion > syncedVersion);
+    }
+
+    private void recordAllChanged() {
+        this.globalChangeVersion = this.versionSequence.incrementAndGet();
+    }
+
+    private static void afterCommit(TransactionContext transaction, Runnable action) {
+        if (transaction == null) {
+            action.run();
+            return;
+        }
+        transaction.postCompletion(status -> {
+            if (status == TransactionStatus.COMMITTED) {
+                action.run();
+            }
+        });
+    }
+
+    private static boolean isSyncRoot(LockObjectReference objectRef) {
+        return objectRef != null && objectRef.getId() != null
+                && (objectRef.getType() == ObjectType.DISTRIBUTED_APPLIANCE
+                        || objectRef.getType() == ObjectType.SECURITY_GROUP);
+    }
+
+    private static List<LockObjectReference> getSyncRoots(IscEntity entity) {
+        List<LockObjectReference> roots = new ArrayList<>(2);
+        if (entity instanceof DistributedAppliance) {
+            addRoot(roots, (DistributedAppliance) entity);
+        } else if (entity instanceof VirtualSystem) {
+            addRoot(roots, (VirtualSystem) entity);
+        } else if (entity instanceof DeploymentSpec) {
+            addRoot(roots, ((DeploymentSpec) entity).getVirtualSystem());
+        } else if (entity instanceof DistributedApplianceInstance) {
+            addRoot(roots, ((DistributedApplianceInstance) entity).getVirtualSystem());
+        } else if (entity instanceof SecurityGroup) {
+            addRoot(roots, (SecurityGroup) entity);
+        } else if (entity instanceof SecurityGroupMember) {
+            addRoot(roots, ((SecurityGroupMember) entity).getSecurityGroup());
+        } else if (entity instanceof SecurityGroupInterface) {
+            SecurityGroupInterface sgi = (SecurityGroupInterface) entity;
+            addRoot(roots, sgi.getSecurityGroup());
+            addRoot(roots, sgi.getVirtualSystem());
+        } else if (entity instanceof VM) {
+            addRoots(roots, ((VM) entity).getSecurityGroupMembers());
+        } else if (entity instanceof Network) {
+            addRoots(roots, ((Network) entity).getSecurityGroupMembers());
+        } else if (entity instanceof Subnet) {
+            addRoots(roots, ((Subnet) entity).getSecurityGroupMembers());
+        } else if (entity instanceof VMPort) {
+            // A port is a member through its VM, network or subnet and is protected by appliance instances
+            VMPort port = (VMPort) entity;
+            if (port.getVm() != null) {
+                addRoots(roots, port.getVm().getSecurityGroupMembers());
+            }
+            if (port.getNetwork() != null) {
+                addRoots(roots, port.getNetwork().getSecurityGroupMembers());
+            }
+            if (port.getSubnet() != null) {
+                addRoots(roots, port.getSubnet().getSecurityGroupMembers());
+            }
+            for (DistributedApplianceInstance dai : port.getDais()) {
+                addRoot(roots, dai.getVirtualSystem());
+            }
+        }
+        return roots;
+    }
+
+    private static void addRoots(List<LockObjectReference> roots, Collection<SecurityGroupMember> members) {
+        if (members == null) {
+            return;
+        }
+        for (SecurityGroupMember member : members) {
+            addRoot(roots, member.getSecurityGroup());
+        }
+    }
+
+    private static void addRoot(List<LockObjectReference> roots, VirtualSystem vs) {
+        if (vs != null) {
+            addRoot(roots, vs.getDistributedAppliance());
+        }
+    }
+
+    private static void addRoot(List<LockObjectReference> roots, DistributedAppliance da) {
+        if (da != null && da.getId() != null) {
+            roots.add(new LockObjectReference(da));
+        }
+    }
+
+    private static void addRoot(List<LockObjectReference> roots, SecurityGroup sg) {
+        if (sg != null && sg.getId() != null) {
+            roots.add(new LockObjectReference(sg));
+        }
+    }
+}
@@ -17,18 +17,29 @@
 package org.osc.core.broker.service.persistence;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.persistence.EntityManager;
 import javax.persistence.LockModeType;
 import javax.persistence.NoResultException;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.FetchParent;
+import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
+import org.hibernate.query.Query;
+
 import org.osc.core.broker.model.entities.IscEntity;
 import org.osc.core.broker.model.entities.User;
 import org.osc.core.broker.model.entities.appliance.VirtualSystem;
@@ -40,6 +51,8 @@ import org.osc.core.broker.service.dto.UserDto;
 import org.osc.core.broker.util.SessionUtil;
 import org.osc.core.broker.util.StaticRegistry;
 import org.osc.core.broker.util.TransactionalBroadcastUtil;
+import org.osgi.service.transaction.control.TransactionContext;
+import org.osgi.service.transaction.control.TransactionControl;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 
@@ -52,6 +65,15 @@ public class OSCEntityManager<T extends IscEntity> {
 
     private static final Logger log = LoggerFactory.getLogger(OSCEntityManager.class);
 
+    /**
+     * Page and fetch size used when going through a whole table
+     */
+    public static final int DEFAULT_PAGE_SIZE = 500;
+
+    public interface PageAction<T> {
+        void process(List<T> page) throws Exception;
+    }
+
     protected EntityManager em;
     private Class<T> clazz;
     protected TransactionalBroadcastUtil txBroadcastUtil;
@@ -87,6 +109,257 @@ public class OSCEntityManager<T extends IscEntity> {
         return ls;
     }
 
+    /**
+     * Lists one page of entities ordered by id (keyset pagination). Unlike an
+     * offset, the cost of a page does not grow with its position.
+     *
+     * @param afterId
+     *            id of the last entity of the previous page, null for the first
+     *            page
+     * @param pageSize
+     *            maximum number of entities returned
+     * @param fetchJoins
+     *            single valued associations, possibly nested (i.e.
+     *            "virtualSystem.distributedAppliance"), loaded by the same
+     *            query
+     */
+    public List<T> listPage(Long afterId, int pageSize, String... fetchJoins) {
+        return listPageByFieldName(null, null, afterId, pageSize, fetchJoins);
+    }
+
+    /**
+     * Same as {@link #listPage} but only lists the entities whose field has
+     * the given value.
+     */
+    public List<T> listPageByFieldName(String entityClassFieldName, Object fieldValue, Long afterId, int pageSize,
+            String... fetchJoins) {
+        CriteriaBuilder cb = this.em.getCriteriaBuilder();
+
+        CriteriaQuery<T> query = cb.createQuery(this.clazz);
+        Root<T> root = query.from(this.clazz);
+        addFetchJoins(root, fetchJoins);
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (entityClassFieldName != null) {
+            predicates.add(cb.equal(root.get(entityClassFieldName), fieldValue));
+        }
+        if (afterId != null) {
+            predicates.add(cb.greaterThan(root.get("id"), afterId));
+        }
+        query = query.select(root)
+                .where(predicates.toArray(new Predicate[predicates.size()]))
+                .orderBy(cb.asc(root.get("id")));
+
+        return this.em.createQuery(query).setMaxResults(pageSize).getResultList();
+    }
+
+    /**
+     * Lists one page of the entities matching the given filters, sorted by the
+     * given attribute then by id (keyset pagination). The page starts right
+     * after the entity with the given id: its sort value is looked up and the
+     * query seeks past that (sort value, id) pair. The first page is returned
+     * if that entity no longer exists.
+     *
+     * @param filters
+     *            value of each attribute, possibly nested (i.e. "job.id").
+     *            String values match string attributes containing them and
+     *            enum attributes whose constant name contains them, ignoring
+     *            case. Other values must be equal.
+     * @param equals
+     *            value each attribute, possibly nested, must be equal to.
+     *            String values of enum attributes are the constant names.
+     * @param sortBy
+     *            non nullable attribute to sort by, null to sort by id only
+     * @param afterId
+     *            id of the last entity of the previous page, null for the first
+     *            page
+     */
+    public List<T> listPage(Map<String, ?> filters, Map<String, ?> equals, String sortBy, boolean asc, Long afterId,
+            int pageSize, String... fetchJoins) {
+        CriteriaBuilder cb = this.em.getCriteriaBuilder();
+
+        CriteriaQuery<T> query = cb.createQuery(this.clazz);
+        Root<T> root = query.from(this.clazz);
+        addFetchJoins(root, fetchJoins);
+
+        List<Predicate> predicates = toPredicates(cb, root, filters, equals);
+        List<Order> orders = new ArrayList<>();
+        Path<Long> id = root.get("id");
+        if (sortBy != null) {
+            Path<Comparable<Object>> sort = getPath(root, sortBy);
+            Comparable<Object> afterValue = afterId == null ? null : findAttributeValue(sortBy, afterId);
+            if (afterValue != null) {
+                predicates.add(cb.or(
+                        asc ? cb.greaterThan(sort, afterValue) : cb.lessThan(sort, afterValue),
+                        cb.and(cb.equal(sort, afterValue),
+                                asc ? cb.greaterThan(id, afterId) : cb.lessThan(id, afterId))));
+            }
+            orders.add(asc ? cb.asc(sort) : cb.desc(sort));
+        } else if (afterId != null) {
+            predicates.add(asc ? cb.greaterThan(id, afterId) : cb.lessThan(id, afterId));
+        }
+        orders.add(asc ? cb.asc(id) : cb.desc(id));
+
+        query = query.select(root)
+                .where(predicates.toArray(new Predicate[predicates.size()]))
+                .orderBy(orders);
+
+        return this.em.createQuery(query).setMaxResults(pageSize).getResultList();
+    }
+
+    /**
+     * Counts the entities matching the given filters, see
+     * {@link #listPage(Map, Map, String, boolean, Long, int, String...)}.
+     */
+    public long count(Map<String, ?> filters, Map<String, ?> equals) {
+        CriteriaBuilder cb = this.em.getCriteriaBuilder();
+
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<T> root = query.from(this.clazz);
+        List<Predicate> predicates = toPredicates(cb, root, filters, equals);
+        query = query.select(cb.count(root))
+                .where(predicates.toArray(new Predicate[predicates.size()]));
+
+        return this.em.createQuery(query).getSingleResult();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Comparable<Object> findAttributeValue(String attribute, Long id) {
+        CriteriaBuilder cb = this.em.getCriteriaBuilder();
+
+        CriteriaQuery<Object> query = cb.createQuery();
+        Root<T> root = query.from(this.clazz);
+        query = query.select(getPath(root, attribute))
+                .where(cb.equal(root.get("id"), id));
+
+        List<Object> values = this.em.createQuery(query).getResultList();
+        return values.isEmpty() ? null : (Comparable<Object>) values.get(0);
+    }
+
+    private static List<Predicate> toPredicates(CriteriaBuilder cb, Root<?> root, Map<String, ?> filters,
+            Map<String, ?> equals) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (equals != null) {
+            for (Entry<String, ?> filter : equals.entrySet()) {
+                Path<Object> path = getPath(root, filter.getKey());
+                Class<?> type = path.getJavaType();
+                Object value = filter.getValue();
+                if (value instanceof String && type.isEnum()) {
+                    Object constant = Arrays.stream(type.getEnumConstants())
+                            .filter(c -> ((Enum<?>) c).name().equals(value))
+                            .findFirst().orElse(null);
+                    predicates.add(constant == null ? cb.disjunction() : cb.equal(path, constant));
+                } else {
+                    predicates.add(cb.equal(path, value));
+                }
+            }
+        }
+        if (filters == null) {
+            return predicates;
+        }
+
+        for (Entry<String, ?> filter : filters.entrySet()) {
+            Path<Object> path = getPath(root, filter.getKey());
+            Class<?> type = path.getJavaType();
+            Object value = filter.getValue();
+            if (value instanceof String && type.isEnum()) {
+                String text = ((String) value).toUpperCase();
+                List<Object> constants = Arrays.stream(type.getEnumConstants())
+                        .filter(c -> ((Enum<?>) c).name().contains(text))
+                        .collect(Collectors.toList());
+                predicates.add(constants.isEmpty() ? cb.disjunction() : path.in(constants));
+            } else if (value instanceof String && type == String.class) {
+                String pattern = "%" + escapeLikePattern(((String) value).toLowerCase()) + "%";
+                predicates.add(cb.like(cb.lower(path.as(String.class)), pattern, '\\'));
+            } else {
+                predicates.add(cb.equal(path, value));
+            }
+        }
+        return predicates;
+    }
+
+    private static String escapeLikePattern(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <Y> Path<Y> getPath(Root<?> root, String attribute) {
+        Path<?> path = root;
+        for (String name : attribute.split("\\.")) {
+            path = path.get(name);
+        }
+        return (Path<Y>) path;
+    }
+
+    /**
+     * Streams all entities without materializing the result list, reading
+     * them from the database fetchSize rows at a time. The entities are loaded
+     * read only and stay in the persistence context until detached, callers
+     * going through large tables should detach them once processed. The
+     * stream must be closed.
+     *
+     * @param fetchJoins
+     *            single valued associations, possibly nested, loaded by the
+     *            same query
+     */
+    public Stream<T> streamAll(int fetchSize, String[] fetchJoins, String... orderByAsc) {
+        CriteriaBuilder cb = this.em.getCriteriaBuilder();
+
+        CriteriaQuery<T> query = cb.createQuery(this.clazz);
+        Root<T> root = query.from(this.clazz);
+        addFetchJoins(root, fetchJoins);
+        query = query.select(root);
+
+        if (orderByAsc != null) {
+            query = query.orderBy(Arrays.stream(orderByAsc)
+                    .map(f -> cb.asc(root.get(f)))
+                    .toArray(i -> new Order[i]));
+        }
+
+        @SuppressWarnings("unchecked")
+        Query<T> hibernateQuery = this.em.createQuery(query).unwrap(Query.class);
+        return hibernateQuery.setFetchSize(fetchSize).setReadOnly(true).stream();
+    }
+
+    /**
+     * Goes through all entities of the given type page by page, each page
+     * loaded and processed in its own transaction so neither the persistence
+     * context nor the transaction grow with the size of the table.
+     */
+    public static <T extends IscEntity> void forEachPage(Class<T> clazz, EntityManager em,
+            TransactionControl txControl, TransactionalBroadcastUtil txBroadcastUtil, int pageSize,
+            PageAction<T> action, String... fetchJoins) {
+        Long lastId = null;
+        do {
+            Long afterId = lastId;
+            lastId = txControl.required(() -> {
+                List<T> page = new OSCEntityManager<T>(clazz, em, txBroadcastUtil).listPage(afterId, pageSize,
+                        fetchJoins);
+                action.process(page);
+                return page.size() < pageSize ? null : page.get(page.size() - 1).getId();
+            });
+        } while (lastId != null);
+    }
+
+    /*
+     * Records the change for the periodic syncs once the transaction commits
+     */
+    private static void markChanged(IscEntity entity, TransactionalBroadcastUtil txBroadcastUtil) {
+        EntityChangeTracker.getTracker().markChanged(entity, txBroadcastUtil.getActiveTransaction());
+    }
+
+    private static void addFetchJoins(Root<?> root, String... fetchJoins) {
+        if (fetchJoins == null) {
+            return;
+        }
+        for (String fetchJoin : fetchJoins) {
+            FetchParent<?, ?> parent = root;
+            for (String attribute : fetchJoin.split("\\.")) {
+                parent = parent.fetch(attribute, JoinType.LEFT);
+            }
+        }
+    }
+
     public T findByPrimaryKey(Serializable id) {
         return this.em.find(this.clazz, id);
     }
@@ -124,10 +397,11 @@ public class OSCEntityManager<T extends IscEntity> {
         entity.setCreatedTimestamp(new Date());
 
         em.persist(entity);
+        markChanged(entity, txBroadcastUtil);
 
         BaseDto dto = null;
         if (entity instanceof TaskRecord) {
-            dto = TaskEntityMgr.fromEntity((TaskRecord) entity);
+            dto = TaskEntityMgr.fromEntity((TaskRecord) entity, em);
         }
 
         // Broadcasting changes to UI
@@ -144,10 +418,11 @@ public class OSCEntityManager<T extends IscEntity> {
         entity.setUpdatedTimestamp(new Date());
 
         em.merge(entity);
+        markChanged(entity, txBroadcastUtil);
 
         BaseDto dto = null;
         if (entity instanceof TaskRecord) {
-            dto = TaskEntityMgr.fromEntity((TaskRecord) entity);
+            dto = TaskEntityMgr.fromEntity((TaskRecord) entity, em);
         }
 
         // Broadcasting changes to UI
@@ -163,6 +438,7 @@ public class OSCEntityManager<T extends IscEntity> {
         entity.setDeletedTimestamp(new Date());
 
         em.merge(entity);
+        markChanged(entity, txBroadcastUtil);
 
         // Broadcasting changes to UI
         txBroadcastUtil.addMessageToMap(entity.getId(), entity.getClass().getSimpleName(),
@@ -176,6 +452,7 @@ public class OSCEntityManager<T extends IscEntity> {
         entity.setDeletedTimestamp(null);
 
         em.merge(entity);
+        markChanged(entity, txBroadcastUtil);
 
         // Broadcasting changes to UI
         txBroadcastUtil.addMessageToMap(entity.getId(), entity.getClass().getSimpleName(),
@@ -185,6 +462,9 @@ public class OSCEntityManager<T extends IscEntity> {
     public static void delete(EntityManager em, IscEntity entity,
             TransactionalBroadcastUtil txBroadcastUtil) {
         em.remove(entity);
+        TransactionContext transaction = txBroadcastUtil.getActiveTransaction();
+        EntityChangeTracker.getTracker().markChanged(entity, transaction);
+        EntityChangeTracker.getTracker().forget(entity, transaction);
 
         BaseDto dto = null;
         if (entity instanceof User) {
@@ -20,8 +20,10 @@ import static org.osc.core.common.job.TaskState.COMPLETED;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -45,13 +47,34 @@ public class TaskEntityMgr extends OSCEntityManager<TaskRecord> {
         super(TaskRecord.class, em, txBroadcastUtil);
     }
 
-    public static TaskRecordDto fromEntity(TaskRecord tr) {
+    public static TaskRecordDto fromEntity(TaskRecord tr, EntityManager em) {
         TaskRecordDto taskDto = new TaskRecordDto();
-        fromEntity(tr, taskDto);
+        fromEntity(tr, taskDto, em);
         return taskDto;
     }
 
-    public static void fromEntity(TaskRecord tr, TaskRecordDto taskDto) {
+    /**
+     * Converts a single task, counting the ranks of the dependency orders it
+     * shows in the database. Use {@link #getDependencyRanks(EntityManager, Long)}
+     * with {@link #fromEntity(TaskRecord, TaskRecordDto, Map)} to convert
+     * many tasks of a job.
+     */
+    public static void fromEntity(TaskRecord tr, TaskRecordDto taskDto, EntityManager em) {
+        Set<Long> orders = new HashSet<>();
+        addDependencyOrders(tr, orders);
+
+        Map<Long, Long> ranks = new HashMap<>();
+        for (Long order : orders) {
+            ranks.put(order, getDependencyRank(em, tr.getJob().getId(), order));
+        }
+        fromEntity(tr, taskDto, ranks);
+    }
+
+    /**
+     * @param dependencyRanks the rank of the dependency orders of the job, see
+     *            {@link #getDependencyRanks(EntityManager, Long)}
+     */
+    public static void fromEntity(TaskRecord tr, TaskRecordDto taskDto, Map<Long, Long> dependencyRanks) {
         taskDto.setId(tr.getId());
         taskDto.setParentId(tr.getJob().getId());
         taskDto.setName(tr.getName());
@@ -60,14 +83,20 @@ public class TaskEntityMgr extends OSCEntityManager<TaskRecord> {
         taskDto.setQueued(tr.getQueuedTimestamp());
         taskDto.setStarted(tr.getStartedTimestamp());
         taskDto.setCompleted(tr.getCompletedTimestamp());
-        taskDto.setDependencyOrder(tr.getDependencyOrder());
+        taskDto.setDependencyOrder(dependencyRanks.get(tr.getDependencyOrder()));
         taskDto.setFailReason(tr.getFailReason());
-        taskDto.setPredecessors(tr.getPredecessorsOrderIds());
+        taskDto.setPredecessors(tr.getPredecessors().stream()
+                .map(p -> String.valueOf(dependencyRanks.get(p.getDependencyOrder())))
+                .collect(Collectors.joining(",", "[", "]")));
         taskDto.setObjects(getJobObjects(tr));
 
         // Set the child tasks in the Dto
         taskDto.setChildren(tr.getChildren().stream()
-                .map(TaskEntityMgr::fromEntity)
+                .map(child -> {
+                    TaskRecordDto childDto = new TaskRecordDto();
+                    fromEntity(child, childDto, dependencyRanks);
+                    return childDto;
+                })
                 .collect(Collectors.toList()));
 
         // Set the Task Guard in the Dto
@@ -76,6 +105,56 @@ public class TaskEntityMgr extends OSCEntityManager<TaskRecord> {
         taskDto.setPredecessorIds(tr.getPredecessorsIds());
     }
 
+    /**
+     * Dependency orders are spaced out so merged tasks fit in between, users
+     * see the rank of each order among the tasks of the job instead.
+     *
+     * @return the rank of each dependency order among the tasks of the job
+     */
+    public static Map<Long, Long> getDependencyRanks(EntityManager em, Long jobId) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<TaskRecord> from = query.from(TaskRecord.class);
+        query = query.select(from.<Long>get("dependencyOrder")).distinct(true)
+                .where(cb.equal(from.join("job").get("id"), jobId),
+                        cb.isNotNull(from.get("dependencyOrder")))
+                .orderBy(cb.asc(from.get("dependencyOrder")));
+
+        Map<Long, Long> ranks = new HashMap<>();
+        long rank = 1L;
+        for (Long order : em.createQuery(query).getResultList()) {
+            ranks.put(order, rank++);
+        }
+        return ranks;
+    }
+
+    private static Long getDependencyRank(EntityManager em, Long jobId, Long order) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<TaskRecord> from = query.from(TaskRecord.class);
+        query = query.select(cb.countDistinct(from.get("dependencyOrder")))
+                .where(cb.equal(from.join("job").get("id"), jobId),
+                        cb.le(from.<Long>get("dependencyOrder"), order));
+
+        return em.createQuery(query).getSingleResult();
+    }
+
+    private static void addDependencyOrders(TaskRecord tr, Set<Long> orders) {
+        if (tr.getDependencyOrder() != null) {
+            orders.add(tr.getDependencyOrder());
+        }
+        for (TaskRecord predecessor : tr.getPredecessors()) {
+            if (predecessor.getDependencyOrder() != null) {
+                orders.add(predecessor.getDependencyOrder());
+            }
+        }
+        for (TaskRecord child : tr.getChildren()) {
+            addDependencyOrders(child, orders);
+        }
+    }
+
     private static Set<LockObjectDto> getJobObjects(TaskRecord task) {
         if (task.getObjects() == null) {
             return null;
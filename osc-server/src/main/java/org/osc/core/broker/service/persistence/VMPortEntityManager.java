@@ -16,7 +16,10 @@
  *******************************************************************************/
 package org.osc.core.broker.service.persistence;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
@@ -34,10 +37,17 @@ import org.osc.core.broker.model.entities.virtualization.openstack.VMPort;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 
+import com.google.common.collect.Iterables;
+
 public class VMPortEntityManager {
 
     private static final Logger log = LoggerFactory.getLogger(VMPortEntityManager.class);
 
+    /*
+     * Maximum number of values bound to a single IN clause
+     */
+    private static final int IN_CLAUSE_BATCH_SIZE = 500;
+
     public static VMPort findByOpenstackId(EntityManager em, String id) {
 
         CriteriaBuilder cb = em.getCriteriaBuilder();
@@ -142,4 +152,47 @@ public class VMPortEntityManager {
         }
     }
 
+    /**
+     * Bulk version of {@link #findByIpAddress(EntityManager, DistributedApplianceInstance, String)}
+     *
+     * @return the VMs protected by the DAI by IP address, for the IP addresses found
+     */
+    public static Map<String, VM> findByIpAddresses(EntityManager em, DistributedApplianceInstance dai,
+            Collection<String> ipAddresses) {
+        String hql = "SELECT ip, VM FROM" + " DistributedApplianceInstance DAI" + " JOIN DAI.protectedPorts port"
+                + " JOIN port.vm VM" + " JOIN port.ipAddresses ip" + " WHERE DAI.id = :daiId"
+                + " AND ip IN :ipAddresses";
+
+        Map<String, VM> vms = new HashMap<>();
+        for (List<String> batch : Iterables.partition(ipAddresses, IN_CLAUSE_BATCH_SIZE)) {
+            TypedQuery<Object[]> query = em.createQuery(hql, Object[].class);
+            query.setParameter("daiId", dai.getId());
+            query.setParameter("ipAddresses", batch);
+            for (Object[] row : query.getResultList()) {
+                vms.putIfAbsent((String) row[0], (VM) row[1]);
+            }
+        }
+        return vms;
+    }
+
+    /**
+     * Bulk version of {@link #findByMacAddress(EntityManager, String)}
+     *
+     * @return the VMs by MAC address, for the MAC addresses found
+     */
+    public static Map<String, VM> findByMacAddresses(EntityManager em, Collection<String> macAddresses) {
+        String hql = "SELECT port.macAddress, VM FROM" + " VM VM" + " JOIN VM.ports port"
+                + " WHERE port.macAddress IN :macs";
+
+        Map<String, VM> vms = new HashMap<>();
+        for (List<String> batch : Iterables.partition(macAddresses, IN_CLAUSE_BATCH_SIZE)) {
+            TypedQuery<Object[]> query = em.createQuery(hql, Object[].class);
+            query.setParameter("macs", batch);
+            for (Object[] row : query.getResultList()) {
+                vms.putIfAbsent((String) row[0], (VM) row[1]);
+            }
+        }
+        return vms;
+    }
+
 }
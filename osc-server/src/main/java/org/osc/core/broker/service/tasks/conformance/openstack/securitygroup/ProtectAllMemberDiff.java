@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.service.tasks.conformance.openstack.securitygroup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.osc.core.broker.model.entities.virtualization.SecurityGroupMember;
+import org.osc.core.broker.model.entities.virtualization.SecurityGroupMemberType;
+import org.osc.core.broker.service.dto.SecurityGroupMemberItemDto;
+
+/**
+ * Difference between the members of a protect all Security Group and the
+ * servers of its project, computed in memory so only the members which
+ * changed are written.
+ */
+final class ProtectAllMemberDiff {
+
+    private final List<SecurityGroupMemberItemDto> addedServers = new ArrayList<>();
+    private final List<SecurityGroupMemberItemDto> restoredServers = new ArrayList<>();
+    private final List<SecurityGroupMember> removedMembers = new ArrayList<>();
+    private int unchangedCount;
+
+    private ProtectAllMemberDiff() {
+    }
+
+    /**
+     * @param members
+     *            the current members of the Security Group
+     * @param servers
+     *            the servers to protect by OpenStack id, without the
+     *            appliance instances
+     */
+    static ProtectAllMemberDiff compute(Collection<SecurityGroupMember> members,
+            Map<String, SecurityGroupMemberItemDto> servers) {
+        ProtectAllMemberDiff diff = new ProtectAllMemberDiff();
+
+        Map<String, SecurityGroupMember> vmMembers = new HashMap<>();
+        for (SecurityGroupMember sgm : members) {
+            if (sgm.getType() == SecurityGroupMemberType.VM) {
+                vmMembers.put(sgm.getVm().getOpenstackId(), sgm);
+            } else {
+                // Protect all Security Groups only protect servers
+                diff.remove(sgm);
+            }
+        }
+
+        for (Map.Entry<String, SecurityGroupMemberItemDto> server : servers.entrySet()) {
+            SecurityGroupMember sgm = vmMembers.remove(server.getKey());
+            if (sgm == null) {
+                diff.addedServers.add(server.getValue());
+            } else if (sgm.getMarkedForDeletion()) {
+                diff.restoredServers.add(server.getValue());
+            } else {
+                diff.unchangedCount++;
+            }
+        }
+
+        for (SecurityGroupMember sgm : vmMembers.values()) {
+            diff.remove(sgm);
+        }
+
+        return diff;
+    }
+
+    private void remove(SecurityGroupMember sgm) {
+        if (!sgm.getMarkedForDeletion()) {
+            this.removedMembers.add(sgm);
+        }
+    }
+
+    /**
+     * @return the servers which are not members yet
+     */
+    List<SecurityGroupMemberItemDto> getAddedServers() {
+        return this.addedServers;
+    }
+
+    /**
+     * @return the servers whose member is marked for deletion
+     */
+    List<SecurityGroupMemberItemDto> getRestoredServers() {
+        return this.restoredServers;
+    }
+
+    /**
+     * @return the members whose server is gone or no longer to be protected
+     */
+    List<SecurityGroupMember> getRemovedMembers() {
+        return this.removedMembers;
+    }
+
+    int getUnchangedCount() {
+        return this.unchangedCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("added: %d, restored: %d, removed: %d, unchanged: %d", this.addedServers.size(),
+                this.restoredServers.size(), this.removedMembers.size(), this.unchangedCount);
+    }
+}
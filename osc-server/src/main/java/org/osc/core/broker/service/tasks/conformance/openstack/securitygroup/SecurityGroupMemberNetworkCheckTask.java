@@ -23,9 +23,8 @@ import org.osc.core.broker.model.entities.virtualization.SecurityGroup;
 import org.osc.core.broker.model.entities.virtualization.SecurityGroupMember;
 import org.osc.core.broker.model.entities.virtualization.openstack.Network;
 import org.osc.core.broker.model.plugin.ApiFactoryService;
+import org.osc.core.broker.rest.client.openstack.discovery.OpenstackInventoryCache;
 import org.osc.core.broker.rest.client.openstack.discovery.VmDiscoveryCache;
-import org.osc.core.broker.rest.client.openstack.openstack4j.Endpoint;
-import org.osc.core.broker.rest.client.openstack.openstack4j.Openstack4JNeutron;
 import org.osc.core.broker.service.tasks.TransactionalMetaTask;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
@@ -84,20 +83,18 @@ public class SecurityGroupMemberNetworkCheckTask extends TransactionalMetaTask {
         boolean shouldHandleHooks = sg.getVirtualizationConnector().isControllerDefined()
                 && !this.apiFactoryService.supportsPortGroup(sg);
 
-        Endpoint endPoint = new Endpoint(sg.getVirtualizationConnector(), sg.getProjectName());
-        try (Openstack4JNeutron neutron = new Openstack4JNeutron(endPoint)) {
-            org.openstack4j.model.network.Network neutronNetwork = neutron.getNetworkById(this.network.getRegion(),
-                    this.network.getOpenstackId());
-            if (neutronNetwork == null || this.sgm.getMarkedForDeletion()) {
-                if (shouldHandleHooks) {
-                    this.tg.addTask(this.securityGroupMemberAllHooksRemoveTask.create(this.sgm));
-                }
-                this.tg.appendTask(this.securityGroupMemberDeleteTask.create(this.sgm));
-            } else {
-                this.tg.addTask(this.securityGroupMemberNetworkUpdateTask.create(this.sgm, neutronNetwork.getName()));
-                if (shouldHandleHooks) {
-                    this.tg.appendTask(this.securityGroupMemberHookCheckTask.create(this.sgm, this.vdc));
-                }
+        org.openstack4j.model.network.Network neutronNetwork = OpenstackInventoryCache.getCache().getNetwork(
+                sg.getVirtualizationConnector(), sg.getProjectName(), this.network.getRegion(),
+                this.network.getOpenstackId());
+        if (neutronNetwork == null || this.sgm.getMarkedForDeletion()) {
+            if (shouldHandleHooks) {
+                this.tg.addTask(this.securityGroupMemberAllHooksRemoveTask.create(this.sgm));
+            }
+            this.tg.appendTask(this.securityGroupMemberDeleteTask.create(this.sgm));
+        } else {
+            this.tg.addTask(this.securityGroupMemberNetworkUpdateTask.create(this.sgm, neutronNetwork.getName()));
+            if (shouldHandleHooks) {
+                this.tg.appendTask(this.securityGroupMemberHookCheckTask.create(this.sgm, this.vdc));
             }
         }
     }
@@ -23,9 +23,8 @@ import org.osc.core.broker.model.entities.virtualization.SecurityGroup;
 import org.osc.core.broker.model.entities.virtualization.SecurityGroupMember;
 import org.osc.core.broker.model.entities.virtualization.openstack.Subnet;
 import org.osc.core.broker.model.plugin.ApiFactoryService;
+import org.osc.core.broker.rest.client.openstack.discovery.OpenstackInventoryCache;
 import org.osc.core.broker.rest.client.openstack.discovery.VmDiscoveryCache;
-import org.osc.core.broker.rest.client.openstack.openstack4j.Endpoint;
-import org.osc.core.broker.rest.client.openstack.openstack4j.Openstack4JNeutron;
 import org.osc.core.broker.service.tasks.TransactionalMetaTask;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
@@ -85,21 +84,19 @@ public class SecurityGroupMemberSubnetCheckTask extends TransactionalMetaTask {
                 && !this.apiFactoryService.supportsPortGroup(sg);
 
 
-        Endpoint endPoint = new Endpoint(sg.getVirtualizationConnector(), sg.getProjectName());
-        try (Openstack4JNeutron neutron = new Openstack4JNeutron(endPoint)) {
-            org.openstack4j.model.network.Subnet subnet = neutron.getSubnetById(this.subnet.getRegion(),
-                    this.subnet.getOpenstackId());
-
-            if (subnet == null || this.sgm.getMarkedForDeletion()) {
-                if (shouldHandleHooks) {
-                    this.tg.addTask(this.securityGroupMemberAllHooksRemoveTask.create(this.sgm));
-                }
-                this.tg.appendTask(this.securityGroupMemberDeleteTask.create(this.sgm));
-            } else {
-                this.tg.addTask(this.securityGroupMemberSubnetUpdateTask.create(this.sgm, this.subnet.getName()));
-                if (shouldHandleHooks) {
-                    this.tg.appendTask(this.securityGroupMemberHookCheckTask.create(this.sgm, this.vdc));
-                }
+        org.openstack4j.model.network.Subnet subnet = OpenstackInventoryCache.getCache().getSubnet(
+                sg.getVirtualizationConnector(), sg.getProjectName(), this.subnet.getRegion(),
+                this.subnet.getOpenstackId());
+
+        if (subnet == null || this.sgm.getMarkedForDeletion()) {
+            if (shouldHandleHooks) {
+                this.tg.addTask(this.securityGroupMemberAllHooksRemoveTask.create(this.sgm));
+            }
+            this.tg.appendTask(this.securityGroupMemberDeleteTask.create(this.sgm));
+        } else {
+            this.tg.addTask(this.securityGroupMemberSubnetUpdateTask.create(this.sgm, this.subnet.getName()));
+            if (shouldHandleHooks) {
+                this.tg.appendTask(this.securityGroupMemberHookCheckTask.create(this.sgm, this.vdc));
             }
         }
     }
@@ -18,7 +18,10 @@ package org.osc.core.broker.service.tasks.conformance.openstack.securitygroup;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -34,9 +37,11 @@ import org.osc.core.broker.model.entities.virtualization.SecurityGroup;
 import org.osc.core.broker.model.entities.virtualization.SecurityGroupInterface;
 import org.osc.core.broker.model.entities.virtualization.SecurityGroupMember;
 import org.osc.core.broker.model.entities.virtualization.SecurityGroupMemberType;
+import org.osc.core.broker.model.entities.virtualization.VirtualizationConnector;
 import org.osc.core.broker.model.entities.virtualization.openstack.VMPort;
 import org.osc.core.broker.model.plugin.ApiFactoryService;
 import org.osc.core.broker.model.sdn.NetworkElementImpl;
+import org.osc.core.broker.rest.client.openstack.discovery.OpenstackInventoryCache;
 import org.osc.core.broker.rest.client.openstack.discovery.VmDiscoveryCache;
 import org.osc.core.broker.rest.client.openstack.openstack4j.Endpoint;
 import org.osc.core.broker.rest.client.openstack.openstack4j.Openstack4JNova;
@@ -199,42 +204,59 @@ public class SecurityGroupUpdateOrDeleteMetaTask extends TransactionalMetaTask {
             this.log.info("Checking Security Group " + this.sg.getName());
 
             if (this.sg.isProtectAll()) {
-                // Mark all current entities as deleted, as we read them they will get unmarked for deletion.
-                for (SecurityGroupMember sgm : this.sg.getSecurityGroupMembers()) {
-                    OSCEntityManager.markDeleted(em, sgm, this.txBroadcastUtil);
-                }
-                List<String> excludedMembers = DistributedApplianceInstanceEntityMgr.listOsServerIdByVcId(em,
-                        this.sg.getVirtualizationConnector().getId());
-
-                Endpoint endPoint = new Endpoint(this.sg.getVirtualizationConnector(), this.sg.getProjectName());
-                try (Openstack4JNova nova = new Openstack4JNova(endPoint)) {
-                    Set<String> regions = nova.listRegions();
-                    for (String region : regions) {
-                        List<? extends Server> servers = nova.listServers(region);
-                        for (Server server : servers) {
-                            if (!excludedMembers.contains(server.getId())) {
-                                try {
-                                    this.addSecurityGroupService.addSecurityGroupMember(em, this.sg,
-                                            new SecurityGroupMemberItemDto(region, server.getName(), server.getId(),
-                                                    SecurityGroupMemberType.VM.toString(), false));
-                                    // Once the VM is part of the security group, dont try to add it again.
-                                    excludedMembers.add(server.getId());
-                                } catch (SecurityGroupMemberPartOfAnotherSecurityGroupException e) {
-                                    this.log.warn(String.format(
-                                            "Member '%s' belonging to Security Group '%s' with protect all results in a conflict",
-                                            e.getMemberName(), this.sg.getName()), e);
-                                    this.tg.addTask(new FailedWithObjectInfoTask(
-                                            String.format("Validating Security Group Member '%s'", e.getMemberName()),
-                                            e, LockObjectReference.getObjectReferences(this.sg)));
-                                }
-                            }
-                        }
+                syncProtectAllMembers(em);
+            }
+            buildTaskGraph(em, false, null);
+        }
+
+    }
+
+    /**
+     * Makes every server of the project, except our appliance instances, a member of the protect all Security
+     * Group. Only the members which changed since the last sync are written.
+     */
+    private void syncProtectAllMembers(EntityManager em) throws Exception {
+        VirtualizationConnector vc = this.sg.getVirtualizationConnector();
+        Set<String> excludedMembers = new HashSet<>(
+                DistributedApplianceInstanceEntityMgr.listOsServerIdByVcId(em, vc.getId()));
+
+        Map<String, SecurityGroupMemberItemDto> servers = new LinkedHashMap<>();
+        Endpoint endPoint = new Endpoint(vc, this.sg.getProjectName());
+        try (Openstack4JNova nova = new Openstack4JNova(endPoint)) {
+            Set<String> regions = nova.listRegions();
+            for (String region : regions) {
+                List<? extends Server> regionServers = OpenstackInventoryCache.getCache().listServers(vc,
+                        this.sg.getProjectName(), region);
+                for (Server server : regionServers) {
+                    if (!excludedMembers.contains(server.getId()) && !servers.containsKey(server.getId())) {
+                        servers.put(server.getId(), new SecurityGroupMemberItemDto(region, server.getName(),
+                                server.getId(), SecurityGroupMemberType.VM.toString(), false));
                     }
                 }
             }
-            buildTaskGraph(em, false, null);
         }
 
+        ProtectAllMemberDiff diff = ProtectAllMemberDiff.compute(this.sg.getSecurityGroupMembers(), servers);
+        this.log.info("Protect all Security Group " + this.sg.getName() + " members " + diff);
+
+        for (SecurityGroupMember sgm : diff.getRemovedMembers()) {
+            OSCEntityManager.markDeleted(em, sgm, this.txBroadcastUtil);
+        }
+        // Adding a member again unmarks it for deletion, once checked it is not protected by another group
+        List<SecurityGroupMemberItemDto> addedServers = new ArrayList<>(diff.getRestoredServers());
+        addedServers.addAll(diff.getAddedServers());
+        for (SecurityGroupMemberItemDto server : addedServers) {
+            try {
+                this.addSecurityGroupService.addSecurityGroupMember(em, this.sg, server);
+            } catch (SecurityGroupMemberPartOfAnotherSecurityGroupException e) {
+                this.log.warn(String.format(
+                        "Member '%s' belonging to Security Group '%s' with protect all results in a conflict",
+                        e.getMemberName(), this.sg.getName()), e);
+                this.tg.addTask(new FailedWithObjectInfoTask(
+                        String.format("Validating Security Group Member '%s'", e.getMemberName()),
+                        e, LockObjectReference.getObjectReferences(this.sg)));
+            }
+        }
     }
 
     private void buildTaskGraph(EntityManager em, boolean isDeleteTg, String domainId) throws Exception {
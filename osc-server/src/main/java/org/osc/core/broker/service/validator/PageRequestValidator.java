@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.service.validator;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.lang.StringUtils;
+import org.osc.core.broker.service.exceptions.VmidcBrokerValidationException;
+import org.osc.core.broker.service.request.PageRequest;
+
+/**
+ * Validates the {@link PageRequest} of a list request and maps the dto
+ * properties it refers to onto the entity attributes to query. Items can
+ * always be sorted by id, other properties have to be declared sortable or
+ * filterable.
+ */
+public class PageRequestValidator {
+
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private static final String ID_PROPERTY = "id";
+
+    private final Map<String, String> sortAttributes = new HashMap<>();
+    private final Map<String, String> filterAttributes = new HashMap<>();
+
+    /**
+     * Allows sorting by the given dto property. The entity attribute must not
+     * be nullable.
+     */
+    public PageRequestValidator sortable(String property, String attribute) {
+        this.sortAttributes.put(property, attribute);
+        return this;
+    }
+
+    public PageRequestValidator filterable(String property, String attribute) {
+        this.filterAttributes.put(property, attribute);
+        return this;
+    }
+
+    public void validate(PageRequest page) throws VmidcBrokerValidationException {
+        if (page.getPageSize() <= 0 || page.getPageSize() > MAX_PAGE_SIZE) {
+            throw new VmidcBrokerValidationException(
+                    "Invalid page size " + page.getPageSize() + ". It must be between 1 and " + MAX_PAGE_SIZE + ".");
+        }
+
+        String sortBy = page.getSortBy();
+        if (sortBy != null && !sortBy.equals(ID_PROPERTY) && !this.sortAttributes.containsKey(sortBy)) {
+            throw new VmidcBrokerValidationException("Sorting by '" + sortBy + "' is not supported.");
+        }
+
+        validateFilters(page.getFilters());
+        validateFilters(page.getEquals());
+    }
+
+    private void validateFilters(Map<String, String> filters) throws VmidcBrokerValidationException {
+        if (filters != null) {
+            for (String property : filters.keySet()) {
+                if (!this.filterAttributes.containsKey(property)) {
+                    throw new VmidcBrokerValidationException("Filtering by '" + property + "' is not supported.");
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the entity attribute to sort by, null to sort by id
+     */
+    public String getSortAttribute(PageRequest page) {
+        return page.getSortBy() == null ? null : this.sortAttributes.get(page.getSortBy());
+    }
+
+    /**
+     * @return the text each entity attribute must contain, blank filters being
+     *         ignored
+     */
+    public Map<String, Object> getFilterValues(PageRequest page) {
+        return toAttributeValues(page.getFilters());
+    }
+
+    /**
+     * @return the value each entity attribute must be equal to, blank values
+     *         being ignored
+     */
+    public Map<String, Object> getEqualValues(PageRequest page) {
+        return toAttributeValues(page.getEquals());
+    }
+
+    private Map<String, Object> toAttributeValues(Map<String, String> filters) {
+        Map<String, Object> values = new HashMap<>();
+        if (filters != null) {
+            for (Entry<String, String> filter : filters.entrySet()) {
+                if (!StringUtils.isBlank(filter.getValue())) {
+                    values.put(this.filterAttributes.get(filter.getKey()), filter.getValue());
+                }
+            }
+        }
+        return values;
+    }
+}
@@ -20,6 +20,7 @@ import javax.persistence.EntityManager;
 
 import org.osc.core.broker.job.lock.LockRequest.LockType;
 import org.osc.core.broker.model.entities.virtualization.VirtualizationConnector;
+import org.osc.core.broker.rest.client.openstack.discovery.OpenstackInventoryCache;
 import org.osc.core.broker.service.LockUtil;
 import org.osc.core.broker.service.ServiceDispatcher;
 import org.osc.core.broker.service.api.vc.DeleteVirtualizationConnectorServiceApi;
@@ -50,6 +51,7 @@ public class DeleteVirtualizationConnectorService extends ServiceDispatcher<Base
 			SslCertificateAttrEntityMgr sslCertificateAttrEntityMgr = new SslCertificateAttrEntityMgr(em, this.txBroadcastUtil);
 			sslCertificateAttrEntityMgr.removeCertificateList(vc.getSslCertificateAttrSet());
 			vcEntityMgr.delete(request.getId());
+			OpenstackInventoryCache.getCache().invalidate(request.getId());
 		} finally {
 			LockUtil.releaseLocks(vcUnlock);
 		}
@@ -44,6 +44,11 @@ public class ListVirtualizationConnectorService
     @Reference
     private EncryptionApi encryption;
 
+    @Override
+    protected boolean isReadOnly() {
+        return true;
+    }
+
     @Override
     public ListResponse<VirtualizationConnectorDto> exec(BaseRequest<BaseDto> request, EntityManager em) throws EncryptionException {
         // Initializing Entity Manager
@@ -32,6 +32,7 @@ import org.osc.core.broker.model.entities.appliance.DistributedApplianceInstance
 import org.osc.core.broker.model.entities.appliance.VirtualSystem;
 import org.osc.core.broker.model.entities.virtualization.VirtualizationConnector;
 import org.osc.core.broker.model.plugin.ApiFactoryService;
+import org.osc.core.broker.rest.client.openstack.discovery.OpenstackInventoryCache;
 import org.osc.core.broker.service.LockUtil;
 import org.osc.core.broker.service.ServiceDispatcher;
 import org.osc.core.broker.service.api.UpdateVirtualizationConnectorServiceApi;
@@ -119,6 +120,8 @@ implements UpdateVirtualizationConnectorServiceApi {
                     .collect(toSet()),
                     request.getDto().getId(), persistentSslCertificatesSet));
             vcEntityMgr.update(vc);
+            // The provider credentials or address may have changed
+            OpenstackInventoryCache.getCache().invalidate(vc.getId());
 
             // Broadcast notifications to UI if VC name has changed, so that Appliance Instances view and Virtual System
             // view are refreshed to reflect the correct VC name
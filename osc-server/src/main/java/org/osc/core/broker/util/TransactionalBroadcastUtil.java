@@ -54,6 +54,20 @@ public class TransactionalBroadcastUtil {
         }
     }
 
+    /**
+     * @return the context of the active transaction, null outside of a transaction
+     */
+    public TransactionContext getActiveTransaction() {
+        TransactionControl txControl;
+        try {
+            txControl = this.dbConnectionManager.getTransactionControl();
+        } catch (Exception e) {
+            log.error("Unable to acquire the current transaction context", e);
+            throw new RuntimeException(e);
+        }
+        return txControl.activeTransaction() ? txControl.getCurrentContext() : null;
+    }
+
     public synchronized void addMessageToMap(final Long entityId, String receiver,
             EventType eventType) {
         addMessageToMap(entityId, receiver, eventType, null);
@@ -18,9 +18,13 @@ package org.osc.core.broker.util.crypto;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
@@ -34,12 +38,20 @@ import org.osc.core.broker.service.api.server.EncryptionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 public class AESCTREncryption {
     private static final Logger LOG = LoggerFactory.getLogger(AESCTREncryption.class);
     private static final int IV_BYTES = 16;
     private static final String AESCTR_ALGORITHM = "AES/CTR/PKCS5Padding";
     private static final int IV_INDEX = 0;
     private static final int AES_INDEX = 1;
+    private static final int PLAIN_TEXT_CACHE_SIZE = 256;
+    private static final long PLAIN_TEXT_CACHE_EXPIRY_MINUTES = 10;
 
     public static final String PROPS_AESCTR_PASSWORD = "aesctr.password";
 
@@ -71,13 +83,14 @@ public class AESCTREncryption {
             byte[] iv = DatatypeConverter.parseHexBinary(params[IV_INDEX]);
             byte[] hash = DatatypeConverter.parseHexBinary(params[AES_INDEX]);
 
-            SecretKey key = new SecretKeySpec(DatatypeConverter.parseHexBinary(keyProvider.getKeyHex()), "AES");
-            IvParameterSpec ivSpec = new IvParameterSpec(iv);
-            Cipher cipher = Cipher.getInstance(AESCTR_ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, key, ivSpec);
-            byte[] result = cipher.doFinal(DatatypeConverter.parseHexBinary(DatatypeConverter.printHexBinary(hash)));
-
-            return new String(result, "UTF-8");
+            return plainTextCache.get(Hashing.sha256().hashString(cipherText, StandardCharsets.UTF_8), () -> {
+                Cipher cipher = CIPHER.get();
+                cipher.init(Cipher.DECRYPT_MODE, getKey(), new IvParameterSpec(iv));
+                return new String(cipher.doFinal(hash), "UTF-8");
+            });
+        } catch (ExecutionException | UncheckedExecutionException ex) {
+            LOG.error("Error decrypting message", ex.getCause());
+            throw new EncryptionException("Failed to decrypt cipher with AES-CTR", ex.getCause());
         } catch (Exception ex) {
             LOG.error("Error decrypting message", ex);
             throw new EncryptionException("Failed to decrypt cipher with AES-CTR", ex);
@@ -106,11 +119,9 @@ public class AESCTREncryption {
 
     private byte[] encryptAesCtr(byte[] passwordBytes, byte[] iv) throws EncryptionException {
         try {
-            SecretKey key = new SecretKeySpec(DatatypeConverter.parseHexBinary(keyProvider.getKeyHex()), "AES");
-            IvParameterSpec ivSpec = new IvParameterSpec(iv);
-            Cipher cipher = Cipher.getInstance(AESCTR_ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, key, ivSpec);
-            byte[] result = cipher.doFinal(DatatypeConverter.parseHexBinary(DatatypeConverter.printHexBinary(passwordBytes)));
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.ENCRYPT_MODE, getKey(), new IvParameterSpec(iv));
+            byte[] result = cipher.doFinal(passwordBytes);
 
             Arrays.fill(passwordBytes, (byte)0);
 
@@ -128,11 +139,54 @@ public class AESCTREncryption {
         return iv;
     }
 
+    private static SecretKey getKey() throws EncryptionException {
+        SecretKey key = cachedKey;
+        if (key == null) {
+            synchronized (AESCTREncryption.class) {
+                key = cachedKey;
+                if (key == null) {
+                    key = new SecretKeySpec(DatatypeConverter.parseHexBinary(keyProvider.getKeyHex()), "AES");
+                    cachedKey = key;
+                }
+            }
+        }
+        return key;
+    }
+
+    private static synchronized void invalidateKey() {
+        cachedKey = null;
+        plainTextCache.invalidateAll();
+    }
+
     // KEY PROVIDING STRATEGY
     private static KeyProvider keyProvider;
 
+    /*
+     * Unwrapping the key means reading the security properties and recovering
+     * the PBE keystore entry, so it is done once and kept until the key or
+     * the key provider changes
+     */
+    private static volatile SecretKey cachedKey;
+
+    /*
+     * Recently decrypted values keyed by the SHA-256 of their cipher text.
+     * The same few credentials are decrypted on every plugin API creation.
+     */
+    private static final Cache<HashCode, String> plainTextCache = CacheBuilder.newBuilder()
+            .maximumSize(PLAIN_TEXT_CACHE_SIZE).expireAfterAccess(PLAIN_TEXT_CACHE_EXPIRY_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(AESCTR_ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to create " + AESCTR_ALGORITHM + " cipher", e);
+        }
+    });
+
     public static void setKeyProvider(KeyProvider provider){
         keyProvider = provider;
+        invalidateKey();
     }
 
     public interface KeyProvider {
@@ -197,6 +251,10 @@ public class AESCTREncryption {
     }
 
     public void updateAESCTRKey(String keyHex) throws EncryptionException {
-        keyProvider.updateKey(keyHex);
+        try {
+            keyProvider.updateKey(keyHex);
+        } finally {
+            invalidateKey();
+        }
     }
 }
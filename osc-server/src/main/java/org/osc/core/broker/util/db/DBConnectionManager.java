@@ -26,10 +26,12 @@ import java.util.Properties;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.PersistenceException;
+import javax.sql.ConnectionPoolDataSource;
 import javax.sql.DataSource;
 
 import org.apache.commons.lang.RandomStringUtils;
 import org.osc.core.broker.service.api.DBConnectionManagerApi;
+import org.osc.core.broker.util.db.upgrade.ReleaseUpgradeMgr;
 import org.slf4j.LoggerFactory;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -46,6 +48,20 @@ import org.slf4j.Logger;
  * This component provides a single OSGi service which offers access to
  * ready-configured database resources. Database access must not be set
  * up manually by other components.
+ * <p>
+ * Besides the JPA properties, the configuration accepts the following
+ * settings, all optional:
+ * <ul>
+ * <li>{@value #POOL_ENABLED}: pool the database connections, defaults to false</li>
+ * <li>{@value #POOL_MAX_SIZE}: maximum number of pooled connections</li>
+ * <li>{@value #POOL_IDLE_TIMEOUT_MS}: time after which idle connections are closed, 0 to keep them</li>
+ * <li>{@value #POOL_CONNECTION_TIMEOUT_MS}: maximum wait for a connection when all are in use</li>
+ * <li>{@value #POOL_LEAK_DETECTION_THRESHOLD_MS}: time after which a connection in use is logged as a
+ * possible leak, 0 to disable</li>
+ * <li>{@value #MV_STORE_ENABLED}: run the database on the H2 MVStore engine, migrating the existing
+ * PageStore database on first start, defaults to false. An existing MVStore database is opened as such
+ * even when disabled, so backups of either engine can be restored</li>
+ * </ul>
  */
 @Component(service={DBConnectionManager.class, DBConnectionManagerApi.class},
 configurationPid="org.osc.core.broker.util.db",
@@ -54,6 +70,17 @@ public class DBConnectionManager implements DBConnectionManagerApi {
 
     private static final Logger log = LoggerFactory.getLogger(DBConnectionManager.class);
 
+    static final String POOL_ENABLED = "db.pool.enabled";
+    static final String POOL_MAX_SIZE = "db.pool.maxSize";
+    static final String POOL_IDLE_TIMEOUT_MS = "db.pool.idleTimeoutMs";
+    static final String POOL_CONNECTION_TIMEOUT_MS = "db.pool.connectionTimeoutMs";
+    static final String POOL_LEAK_DETECTION_THRESHOLD_MS = "db.pool.leakDetectionThresholdMs";
+    static final String MV_STORE_ENABLED = "db.mvStore.enabled";
+
+    private static final int DEFAULT_POOL_MAX_SIZE = 10;
+    private static final long DEFAULT_POOL_IDLE_TIMEOUT_MS = 600000;
+    private static final long DEFAULT_POOL_CONNECTION_TIMEOUT_MS = 30000;
+
     @Reference
     DBConnectionParameters connectionParams;
 
@@ -81,15 +108,39 @@ public class DBConnectionManager implements DBConnectionManagerApi {
     void start(Map<String, Object> properties) throws Exception {
 
         this.properties = properties;
+        String connectionUrl = this.connectionParams.getConnectionURL();
+        if (Boolean.parseBoolean(getProperty(properties, MV_STORE_ENABLED, "false"))) {
+            connectionUrl = ReleaseUpgradeMgr.migrateToMVStore(this.dsf, connectionUrl,
+                    this.connectionParams.getLogin(), this.connectionParams.getPassword());
+        } else {
+            connectionUrl = ReleaseUpgradeMgr.withExistingStore(connectionUrl);
+        }
+
         Properties jdbcProps = new Properties();
-        jdbcProps.setProperty(DataSourceFactory.JDBC_URL, this.connectionParams.getConnectionURL());
+        jdbcProps.setProperty(DataSourceFactory.JDBC_URL, connectionUrl);
         jdbcProps.setProperty(DataSourceFactory.JDBC_USER, this.connectionParams.getLogin());
         jdbcProps.setProperty(DataSourceFactory.JDBC_PASSWORD, this.connectionParams.getPassword());
 
-        this.ds = this.dsf.createDataSource(jdbcProps);
-
+        if (Boolean.parseBoolean(getProperty(properties, POOL_ENABLED, "false"))) {
+            ConnectionPoolDataSource cpds = this.dsf.createConnectionPoolDataSource(jdbcProps);
+            this.ds = new PooledDataSource(cpds,
+                    Integer.parseInt(getProperty(properties, POOL_MAX_SIZE, String.valueOf(DEFAULT_POOL_MAX_SIZE))),
+                    Long.parseLong(getProperty(properties, POOL_IDLE_TIMEOUT_MS,
+                            String.valueOf(DEFAULT_POOL_IDLE_TIMEOUT_MS))),
+                    Long.parseLong(getProperty(properties, POOL_CONNECTION_TIMEOUT_MS,
+                            String.valueOf(DEFAULT_POOL_CONNECTION_TIMEOUT_MS))),
+                    Long.parseLong(getProperty(properties, POOL_LEAK_DETECTION_THRESHOLD_MS, "0")));
+        } else {
+            this.ds = this.dsf.createDataSource(jdbcProps);
+        }
 
-        Map<String, Object> jpaProps = new HashMap<>(properties);
+        Map<String, Object> jpaProps = new HashMap<>();
+        for (Map.Entry<String, Object> property : properties.entrySet()) {
+            // Connection settings are ours, not the persistence provider's
+            if (!property.getKey().startsWith("db.")) {
+                jpaProps.put(property.getKey(), property.getValue());
+            }
+        }
 
         jpaProps.put("javax.persistence.dataSource", this.ds);
 
@@ -99,6 +150,11 @@ public class DBConnectionManager implements DBConnectionManagerApi {
                 .getProviderFor(this.emf, null).getResource(this.txControl);
     }
 
+    private static String getProperty(Map<String, Object> properties, String key, String defaultValue) {
+        Object value = properties.get(key);
+        return value == null ? defaultValue : value.toString().trim();
+    }
+
     @Deactivate
     void shutdown() {
         // Close caches and connection pools
@@ -115,6 +171,14 @@ public class DBConnectionManager implements DBConnectionManagerApi {
             log.error("Error during shutdown of DB.", e);
             // Ignore errors
         }
+
+        closePool(this.ds);
+    }
+
+    private static void closePool(DataSource dataSource) {
+        if (dataSource instanceof PooledDataSource) {
+            ((PooledDataSource) dataSource).close();
+        }
     }
 
     @Override
@@ -159,6 +223,7 @@ public class DBConnectionManager implements DBConnectionManagerApi {
                 throw ex;
             }
             EntityManagerFactory oldEmf = this.emf;
+            DataSource oldDs = this.ds;
             // reinitialize session factory
             start(this.properties);
 
@@ -167,6 +232,7 @@ public class DBConnectionManager implements DBConnectionManagerApi {
             } catch (PersistenceException pe) {
                 // Ignore this
             }
+            closePool(oldDs);
         }
     }
 }
@@ -0,0 +1,398 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.util.db;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.DataSource;
+import javax.sql.PooledConnection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Bounded pool of the physical connections of a {@link ConnectionPoolDataSource}.
+ * <p>
+ * Connections are handed out most recently used first so the least used ones
+ * stay idle and get closed once idle for longer than the idle timeout. When
+ * all connections are in use callers wait up to the connection timeout for one
+ * to be returned. Connections held for longer than the leak detection
+ * threshold are logged once, along with the stack of the code which borrowed
+ * them.
+ */
+final class PooledDataSource implements DataSource, ConnectionEventListener {
+
+    private static final Logger log = LoggerFactory.getLogger(PooledDataSource.class);
+
+    private static final long HOUSEKEEPING_INTERVAL_MS = 30000;
+
+    private static class IdleConnection {
+        private final PooledConnection connection;
+        private final long idleSince;
+
+        private IdleConnection(PooledConnection connection, long idleSince) {
+            this.connection = connection;
+            this.idleSince = idleSince;
+        }
+    }
+
+    private static class Lease {
+        private final long borrowTime;
+        private final Throwable borrower;
+        private boolean reported;
+
+        private Lease(long borrowTime, Throwable borrower) {
+            this.borrowTime = borrowTime;
+            this.borrower = borrower;
+        }
+    }
+
+    private final ConnectionPoolDataSource source;
+    private final int maxSize;
+    private final long idleTimeoutMs;
+    private final long connectionTimeoutMs;
+    private final long leakDetectionThresholdMs;
+
+    private final Deque<IdleConnection> idle = new ArrayDeque<>();
+    private final Map<PooledConnection, Lease> active = new IdentityHashMap<>();
+
+    /*
+     * Idle, active and being opened connections
+     */
+    private int size;
+    private boolean closed;
+
+    private final ScheduledExecutorService housekeeper;
+
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+
+    /**
+     * @param maxSize
+     *            the maximum number of physical connections
+     * @param idleTimeoutMs
+     *            the time after which idle connections are closed, 0 to keep
+     *            them open
+     * @param connectionTimeoutMs
+     *            the maximum time to wait for a connection when all are in use
+     * @param leakDetectionThresholdMs
+     *            the time after which a connection still in use is reported
+     *            as a possible leak, 0 to disable leak detection
+     */
+    PooledDataSource(ConnectionPoolDataSource source, int maxSize, long idleTimeoutMs, long connectionTimeoutMs,
+            long leakDetectionThresholdMs) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Invalid connection pool size: " + maxSize);
+        }
+        this.source = source;
+        this.maxSize = maxSize;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.connectionTimeoutMs = connectionTimeoutMs;
+        this.leakDetectionThresholdMs = leakDetectionThresholdMs;
+
+        long interval = HOUSEKEEPING_INTERVAL_MS;
+        if (idleTimeoutMs > 0) {
+            interval = Math.min(interval, Math.max(1, idleTimeoutMs / 2));
+        }
+        if (leakDetectionThresholdMs > 0) {
+            interval = Math.min(interval, Math.max(1, leakDetectionThresholdMs / 2));
+        }
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("isc-db-pool-%d").setDaemon(true).build());
+        this.housekeeper.scheduleWithFixedDelay(this::housekeep, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long deadline = System.currentTimeMillis() + this.connectionTimeoutMs;
+        PooledConnection pooledConnection = null;
+
+        synchronized (this) {
+            boolean waited = false;
+            while (pooledConnection == null) {
+                if (this.closed) {
+                    throw new SQLException("The database connection pool is closed");
+                }
+                if (!this.idle.isEmpty()) {
+                    pooledConnection = this.idle.pop().connection;
+                } else if (this.size < this.maxSize) {
+                    // Reserve the slot, the connection is opened outside of the lock
+                    this.size++;
+                    break;
+                } else {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        this.timeouts.incrementAndGet();
+                        throw new SQLTimeoutException(String.format(
+                                "Timed out after %dms waiting for a database connection, all %d connections are in use",
+                                this.connectionTimeoutMs, this.maxSize));
+                    }
+                    if (!waited) {
+                        waited = true;
+                        this.waits.incrementAndGet();
+                    }
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a database connection", e);
+                    }
+                }
+            }
+        }
+
+        if (pooledConnection == null) {
+            try {
+                pooledConnection = this.source.getPooledConnection();
+            } catch (SQLException | RuntimeException e) {
+                release();
+                throw e;
+            }
+            pooledConnection.addConnectionEventListener(this);
+            this.connectionsOpened.incrementAndGet();
+        }
+
+        Connection connection;
+        try {
+            connection = pooledConnection.getConnection();
+        } catch (SQLException e) {
+            closeQuietly(pooledConnection);
+            release();
+            throw e;
+        }
+
+        Throwable borrower = this.leakDetectionThresholdMs > 0
+                ? new Throwable("Database connection borrowed by " + Thread.currentThread().getName()) : null;
+        synchronized (this) {
+            this.active.put(pooledConnection, new Lease(System.currentTimeMillis(), borrower));
+        }
+        return connection;
+    }
+
+    @Override
+    public void connectionClosed(ConnectionEvent event) {
+        PooledConnection pooledConnection = (PooledConnection) event.getSource();
+        synchronized (this) {
+            if (this.active.remove(pooledConnection) == null) {
+                return;
+            }
+            if (!this.closed) {
+                this.idle.push(new IdleConnection(pooledConnection, System.currentTimeMillis()));
+                notifyAll();
+                return;
+            }
+        }
+        // Returned after the pool was closed
+        closeQuietly(pooledConnection);
+        release();
+    }
+
+    @Override
+    public void connectionErrorOccurred(ConnectionEvent event) {
+        PooledConnection pooledConnection = (PooledConnection) event.getSource();
+        log.warn("Discarding database connection after error", event.getSQLException());
+        discard(pooledConnection);
+    }
+
+    /**
+     * Closes the idle connections. Connections in use are closed as they are
+     * returned.
+     */
+    public void close() {
+        List<PooledConnection> toClose = new ArrayList<>();
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            for (IdleConnection idleConnection : this.idle) {
+                toClose.add(idleConnection.connection);
+            }
+            this.idle.clear();
+            this.size -= toClose.size();
+            notifyAll();
+        }
+        this.housekeeper.shutdown();
+        for (PooledConnection pooledConnection : toClose) {
+            closeQuietly(pooledConnection);
+        }
+        log.info(toString());
+    }
+
+    /**
+     * Closes the connections idle for longer than the idle timeout and reports
+     * the connections in use for longer than the leak detection threshold
+     */
+    void housekeep() {
+        long now = System.currentTimeMillis();
+        List<PooledConnection> expired = new ArrayList<>();
+        List<Lease> leaked = new ArrayList<>();
+        synchronized (this) {
+            if (this.idleTimeoutMs > 0) {
+                for (Iterator<IdleConnection> it = this.idle.iterator(); it.hasNext();) {
+                    IdleConnection idleConnection = it.next();
+                    if (now - idleConnection.idleSince >= this.idleTimeoutMs) {
+                        it.remove();
+                        expired.add(idleConnection.connection);
+                    }
+                }
+                this.size -= expired.size();
+            }
+            if (this.leakDetectionThresholdMs > 0) {
+                for (Lease lease : this.active.values()) {
+                    if (!lease.reported && now - lease.borrowTime >= this.leakDetectionThresholdMs) {
+                        lease.reported = true;
+                        leaked.add(lease);
+                    }
+                }
+            }
+        }
+
+        for (PooledConnection pooledConnection : expired) {
+            closeQuietly(pooledConnection);
+        }
+        for (Lease lease : leaked) {
+            this.leaks.incrementAndGet();
+            log.warn(String.format("Possible database connection leak, connection in use for %dms",
+                    now - lease.borrowTime), lease.borrower);
+        }
+    }
+
+    private void discard(PooledConnection pooledConnection) {
+        synchronized (this) {
+            boolean pooled = this.active.remove(pooledConnection) != null;
+            for (Iterator<IdleConnection> it = this.idle.iterator(); !pooled && it.hasNext();) {
+                if (it.next().connection == pooledConnection) {
+                    it.remove();
+                    pooled = true;
+                }
+            }
+            if (!pooled) {
+                return;
+            }
+        }
+        closeQuietly(pooledConnection);
+        release();
+    }
+
+    private synchronized void release() {
+        this.size--;
+        notifyAll();
+    }
+
+    private void closeQuietly(PooledConnection pooledConnection) {
+        pooledConnection.removeConnectionEventListener(this);
+        try {
+            pooledConnection.close();
+        } catch (SQLException e) {
+            log.warn("Fail to close database connection", e);
+        }
+    }
+
+    /**
+     * @return the number of connections in use
+     */
+    public synchronized int getActiveCount() {
+        return this.active.size();
+    }
+
+    /**
+     * @return the number of open connections not in use
+     */
+    public synchronized int getIdleCount() {
+        return this.idle.size();
+    }
+
+    /**
+     * @return the number of connections reported as possible leaks
+     */
+    public long getLeakCount() {
+        return this.leaks.get();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections all use the configured credentials");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return this.source.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        this.source.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        this.source.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return this.source.getLoginTimeout();
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[db pool] active: %d, idle: %d, max: %d, opened: %d, waits: %d, timeouts: %d, leaks: %d",
+                getActiveCount(), getIdleCount(), this.maxSize, this.connectionsOpened.get(), this.waits.get(),
+                this.timeouts.get(), this.leaks.get());
+    }
+}
@@ -35,7 +35,8 @@ import org.slf4j.Logger;
 public class RestoreUtil {
 
     private static final Logger log = LoggerFactory.getLogger(RestoreUtil.class);
-    private static final String H2_DATABASE_NAME = "vmiDCDB.h2.db";
+    private static final String PAGE_STORE_DATABASE_NAME = "vmiDCDB.h2.db";
+    private static final String MV_STORE_DATABASE_NAME = "vmiDCDB.mv.db";
 
     public static void restoreDataBase(File backupZipFile, String restoreLocation) {
         try {
@@ -47,10 +48,12 @@ public class RestoreUtil {
     }
 
     public static void validateRestoreBundle(File bkpFile) throws VmidcException {
-        if (!H2_DATABASE_NAME.equals(bkpFile.getName())) {
+        boolean mvStore = MV_STORE_DATABASE_NAME.equals(bkpFile.getName());
+        if (!mvStore && !PAGE_STORE_DATABASE_NAME.equals(bkpFile.getName()) || !bkpFile.exists()) {
             throw new VmidcException("Restored Database backup does not contain expected files in the uploaded zip file.");
         }
-        String connectionUrl = "jdbc:h2:./tmp/vmiDCDB;AUTO_SERVER=TRUE;LOCK_TIMEOUT=10000;MV_STORE=FALSE;";
+        String connectionUrl = ReleaseUpgradeMgr.withMVStore(
+                "jdbc:h2:./tmp/vmiDCDB;AUTO_SERVER=TRUE;LOCK_TIMEOUT=10000;", mvStore);
         log.info("Restoring from database: " + connectionUrl);
 
         Properties props = new Properties();
@@ -26,6 +26,8 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Pattern;
 
 import org.apache.commons.io.FileUtils;
 import org.h2.util.StringUtils;
@@ -37,6 +39,7 @@ import org.osc.core.broker.util.db.DBConnectionManager;
 import org.osc.core.broker.util.db.DBConnectionParameters;
 import org.osc.core.common.job.FreqType;
 import org.osc.core.common.job.ThresholdType;
+import org.osgi.service.jdbc.DataSourceFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,6 +55,12 @@ public class ReleaseUpgradeMgr {
 
     private static final String DB_UPGRADE_IN_PROGRESS_MARKER_FILE = "dbUpgradeInProgressMarker";
 
+    private static final String PAGE_STORE_DB_FILE = "vmiDCDB.h2.db";
+    private static final String MV_STORE_DB_FILE = "vmiDCDB.mv.db";
+
+    private static final String H2_URL_PREFIX = "jdbc:h2:";
+    private static final Pattern MV_STORE_SETTING = Pattern.compile("(?i);MV_STORE=[^;]*");
+
     private static final Logger log = LoggerFactory.getLogger(ReleaseUpgradeMgr.class);
 
     public static void initDb(EncryptionApi encrypter, DBConnectionParameters params,
@@ -262,6 +271,10 @@ public class ReleaseUpgradeMgr {
             	upgrade93to94(stmt);
             case 94:
             	upgrade94to95(stmt);
+            case 95:
+                upgrade95to96(stmt);
+            case 96:
+                upgrade96to97(stmt);
             case TARGET_DB_VERSION:
                 if (curDbVer < TARGET_DB_VERSION) {
                     execSql(stmt, "UPDATE RELEASE_INFO SET db_version = " + TARGET_DB_VERSION + " WHERE id = 1;");
@@ -273,6 +286,18 @@ public class ReleaseUpgradeMgr {
         }
     }
 
+    private static void upgrade96to97(Statement stmt) throws SQLException {
+        for (String statement : Schema.getIndexStatements(97)) {
+            execSql(stmt, statement);
+        }
+    }
+
+    private static void upgrade95to96(Statement stmt) throws SQLException {
+        execSql(stmt, "alter table JOBS_ARCHIVE add column archive_threshold_timestamp timestamp;");
+        execSql(stmt, "alter table JOBS_ARCHIVE add column last_archived_job_id bigint;");
+        execSql(stmt, "alter table JOBS_ARCHIVE add column last_archived_alert_id bigint;");
+    }
+
     private static void upgrade94to95(Statement stmt) throws SQLException {
 		execSql(stmt, "alter table VIRTUALIZATION_CONNECTOR drop constraint FK_VC_LAST_JOB;");
 		execSql(stmt, "alter table VIRTUALIZATION_CONNECTOR drop constraint FK_VC_LAST_JOB_UNIQUE;");
@@ -2047,11 +2072,122 @@ public class ReleaseUpgradeMgr {
     }
 
     private static void backupDbFile() throws IOException {
-        FileUtils.copyFile(new File("vmiDCDB.h2.db"), new File("vmiDCDB.h2.db.bak"));
+        String dbFile = getDbFileName();
+        FileUtils.copyFile(new File(dbFile), new File(dbFile + ".bak"));
     }
 
     private static void revertToBackupDbFile() throws IOException {
-        FileUtils.copyFile(new File("vmiDCDB.h2.db.bak"), new File("vmiDCDB.h2.db"));
+        String dbFile = getDbFileName();
+        FileUtils.copyFile(new File(dbFile + ".bak"), new File(dbFile));
+    }
+
+    private static String getDbFileName() {
+        return new File(MV_STORE_DB_FILE).exists() ? MV_STORE_DB_FILE : PAGE_STORE_DB_FILE;
+    }
+
+    /**
+     * Moves a file database from the H2 PageStore engine to the MVStore engine,
+     * which locks rows instead of tables. The PageStore database is exported
+     * to a script which is run against a new MVStore database, then renamed
+     * with a {@code .migrated} suffix and kept as a backup.
+     * <p>
+     * Nothing is done if the MVStore database already exists or there is no
+     * PageStore database to migrate. If the migration fails the PageStore
+     * database is left untouched and keeps being used.
+     *
+     * @return the connection URL of the database to use
+     */
+    public static String migrateToMVStore(DataSourceFactory dsf, String url, String user, String password) {
+        String mvStoreUrl = withMVStore(url, true);
+        String dbPath = getDbPath(url);
+        if (dbPath == null) {
+            return mvStoreUrl;
+        }
+
+        File pageStoreFile = new File(dbPath + ".h2.db");
+        File mvStoreFile = new File(dbPath + ".mv.db");
+        if (mvStoreFile.exists() || !pageStoreFile.exists()) {
+            return mvStoreUrl;
+        }
+
+        File script = new File(dbPath + ".migration.sql");
+        String scriptPath = script.getAbsolutePath().replace("'", "''");
+        log.info("Migrating database {} from PageStore to MVStore", pageStoreFile);
+        long start = System.currentTimeMillis();
+        try {
+            execSql(dsf, withMVStore(url, false), user, password, "SCRIPT TO '" + scriptPath + "';", "SHUTDOWN;");
+            execSql(dsf, mvStoreUrl, user, password, "RUNSCRIPT FROM '" + scriptPath + "';");
+            FileUtils.moveFile(pageStoreFile, new File(pageStoreFile.getPath() + ".migrated"));
+        } catch (Exception e) {
+            log.error("Fail to migrate database to MVStore, keep using PageStore", e);
+            FileUtils.deleteQuietly(mvStoreFile);
+            return withMVStore(url, false);
+        } finally {
+            FileUtils.deleteQuietly(script);
+        }
+        log.info("Migrated database {} to MVStore in {}ms", mvStoreFile, System.currentTimeMillis() - start);
+
+        return mvStoreUrl;
+    }
+
+    /**
+     * Keeps opening a file database on the MVStore engine when MVStore is not
+     * enabled but only an MVStore database exists, i.e. it was migrated before
+     * or restored from an MVStore backup. H2 would otherwise create a new
+     * empty PageStore database next to it.
+     *
+     * @return the connection URL of the database to use
+     */
+    public static String withExistingStore(String url) {
+        String dbPath = getDbPath(url);
+        if (dbPath != null && new File(dbPath + ".mv.db").exists() && !new File(dbPath + ".h2.db").exists()) {
+            log.warn("Opening MVStore database {}.mv.db although MVStore is not enabled", dbPath);
+            return withMVStore(url, true);
+        }
+        return url;
+    }
+
+    /*
+     * @return the path of the database files without extension, null if not a file database
+     */
+    private static String getDbPath(String url) {
+        if (!url.startsWith(H2_URL_PREFIX)) {
+            return null;
+        }
+        String dbPath = url.substring(H2_URL_PREFIX.length()).split(";")[0];
+        if (dbPath.startsWith("file:")) {
+            return dbPath.substring("file:".length());
+        } else if (dbPath.startsWith("mem:") || dbPath.startsWith("tcp:") || dbPath.startsWith("ssl:")) {
+            return null;
+        }
+        return dbPath;
+    }
+
+    /**
+     * @return the given H2 connection URL with the MV_STORE setting replaced
+     */
+    public static String withMVStore(String url, boolean mvStore) {
+        String setting = ";MV_STORE=" + (mvStore ? "TRUE" : "FALSE");
+        String replaced = MV_STORE_SETTING.matcher(url).replaceAll(setting);
+        if (replaced.equals(url) && !url.toUpperCase().contains(setting)) {
+            replaced = url.endsWith(";") ? url + setting.substring(1) + ";" : url + setting + ";";
+        }
+        return replaced;
+    }
+
+    private static void execSql(DataSourceFactory dsf, String url, String user, String password, String... sqls)
+            throws SQLException {
+        Properties jdbcProps = new Properties();
+        jdbcProps.setProperty(DataSourceFactory.JDBC_URL, url);
+        jdbcProps.setProperty(DataSourceFactory.JDBC_USER, user);
+        jdbcProps.setProperty(DataSourceFactory.JDBC_PASSWORD, password);
+
+        try (Connection connection = dsf.createDataSource(jdbcProps).getConnection();
+             Statement stmt = connection.createStatement()) {
+            for (String sql : sqls) {
+                execSql(stmt, sql);
+            }
+        }
     }
 
     private static ReleaseInfo getCurrentReleaseInfo(DBConnectionManager dbMgr) throws Exception {
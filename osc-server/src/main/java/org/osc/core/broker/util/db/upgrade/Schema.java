@@ -21,6 +21,12 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.apache.commons.io.FileUtils;
 import org.osc.core.broker.service.exceptions.VmidcException;
@@ -733,6 +739,9 @@ public class Schema {
                 "threshold_unit varchar(255) not null," +
                 "threshold_value int not null," +
                 "last_trigger_timestamp timestamp," +
+                "archive_threshold_timestamp timestamp," +
+                "last_archived_job_id bigint," +
+                "last_archived_alert_id bigint," +
                 "primary key (id)" +
 	            ");",
 
@@ -1255,6 +1264,25 @@ public class Schema {
                 "references POLICY;",
 
         }; // end of schema array
+
+    /*
+     * Secondary indexes on the non-key columns used by hot lookups, keyed by the db version which introduced
+     * them. A fresh install creates all of them, each upgrade step creates the ones of its target version.
+     */
+    private final static Map<Integer, String[]> indexStatements = new TreeMap<>();
+
+    static {
+        indexStatements.put(97, new String[] {
+            "create index if not exists IDX_JOB_COMPLETED_TIMESTAMP on JOB (" +
+                "completed_timestamp, id);",
+
+            "create index if not exists IDX_ALERT_CREATED_TIMESTAMP on ALERT (" +
+                "created_timestamp, id);",
+
+            "create index if not exists IDX_VM_PORT_IP_ADDRESS on VM_PORT_IP_ADDRESS (" +
+                "ip_address, vm_port_fk);"
+        });
+    }
     // @formatter:on
 
 //    public static void generateDdlFile(Configuration configuration, String outputFile) {
@@ -1279,6 +1307,11 @@ public class Schema {
                     stmt.execute(statement);
                 }
 
+                for (String statement : getIndexStatements()) {
+                    log.info("Execute sql: " + statement);
+                    stmt.execute(statement);
+                }
+
                 // Stamp db version
                 stmt.execute("INSERT INTO release_info (id, version, db_version) VALUES (1, 0, " + ReleaseUpgradeMgr.TARGET_DB_VERSION + ");");
 
@@ -1307,4 +1340,23 @@ public class Schema {
             }
         }
     }
+
+    /**
+     * @return the statements creating every secondary index of the target db version
+     */
+    public static List<String> getIndexStatements() {
+        List<String> statements = new ArrayList<>();
+        for (Integer dbVersion : indexStatements.keySet()) {
+            statements.addAll(getIndexStatements(dbVersion));
+        }
+        return statements;
+    }
+
+    /**
+     * @return the statements creating the secondary indexes introduced by the given db version, if any
+     */
+    public static List<String> getIndexStatements(int dbVersion) {
+        String[] versionStatements = indexStatements.get(dbVersion);
+        return versionStatements == null ? Collections.<String>emptyList() : Arrays.asList(versionStatements);
+    }
 }
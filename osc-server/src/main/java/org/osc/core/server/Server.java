@@ -30,9 +30,13 @@ import java.util.Properties;
 import java.util.concurrent.CopyOnWriteArrayList;
 import org.apache.commons.lang.time.DurationFormatUtils;
 import org.osc.core.broker.job.JobEngine;
+import org.osc.core.broker.job.JobPriority;
 import org.osc.core.broker.model.entities.events.SystemFailureType;
 import org.osc.core.broker.model.plugin.ApiFactoryService;
 import org.osc.core.broker.rest.client.RestBaseClient;
+import org.osc.core.broker.rest.client.openstack.discovery.OpenstackInventoryCache;
+import org.osc.core.broker.rest.client.openstack.vmidc.notification.OsRabbitMQClient;
+import org.osc.core.broker.rest.client.openstack.vmidc.notification.RabbitMQClient;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.runner.OsDeploymentSpecNotificationRunner;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.runner.OsSecurityGroupNotificationRunner;
 import org.osc.core.broker.rest.client.openstack.vmidc.notification.runner.RabbitMQRunner;
@@ -40,6 +44,7 @@ import org.osc.core.broker.service.DeploymentSpecConformJobFactory;
 import org.osc.core.broker.service.DistributedApplianceConformJobFactory;
 import org.osc.core.broker.service.ManagerConnectorConformJobFactory;
 import org.osc.core.broker.service.SecurityGroupConformJobFactory;
+import org.osc.core.broker.service.SecurityGroupSyncDebouncer;
 import org.osc.core.broker.service.alert.AlertGenerator;
 import org.osc.core.broker.service.api.ArchiveServiceApi;
 import org.osc.core.broker.service.api.GetJobsArchiveServiceApi;
@@ -59,6 +64,7 @@ import org.osc.core.broker.util.db.DBConnectionManager;
 import org.osc.core.broker.util.db.DBConnectionParameters;
 import org.osc.core.broker.util.db.upgrade.ReleaseUpgradeMgr;
 import org.osc.core.broker.util.log.LogUtil;
+import org.osc.core.server.scheduler.SyncDispatcher;
 import org.osc.core.server.scheduler.SyncDistributedApplianceJob;
 import org.osc.core.server.scheduler.SyncSecurityGroupJob;
 import org.osc.core.server.websocket.WebSocketRunner;
@@ -324,6 +330,7 @@ public class Server implements ServerApi {
 
             // and start it off
             scheduler.shutdown();
+            SyncDispatcher.getDispatcher().shutdown();
 
         } catch (SchedulerException se) {
             log.error("Scheduler fail to stop", se);
@@ -347,6 +354,15 @@ public class Server implements ServerApi {
             ServerUtil.setServerIP(prop.getProperty(ISC_PUBLIC_IP, ""));
             JobEngine.setJobThreadPoolSize(prop.getProperty("server.jobThreadPoolSize"));
             JobEngine.setTaskThreadPoolSize(prop.getProperty("server.taskThreadPoolSize"));
+            for (JobPriority priority : JobPriority.values()) {
+                JobEngine.setMaxQueuedJobs(priority,
+                        prop.getProperty("server.jobQueueSize." + priority.name().toLowerCase()));
+            }
+            SecurityGroupSyncDebouncer.setQuietWindow(prop.getProperty("server.sgSyncQuietWindowMs"));
+            SecurityGroupSyncDebouncer.setMaxDelay(prop.getProperty("server.sgSyncMaxDelayMs"));
+            RabbitMQClient.setPrefetchCount(prop.getProperty("server.notificationPrefetchCount"));
+            OsRabbitMQClient.setWorkerCount(prop.getProperty("server.notificationWorkerCount"));
+            OpenstackInventoryCache.setTtl(prop.getProperty("server.openstackInventoryTtlMs"));
         } catch (Exception e) {
             log.error("Warning: Parsing file failed " + Server.CONFIG_PROPERTIES_FILE + " (Error:" + e.getMessage()
                     + ")");
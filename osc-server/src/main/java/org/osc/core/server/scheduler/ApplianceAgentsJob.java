@@ -16,25 +16,33 @@
  *******************************************************************************/
 package org.osc.core.server.scheduler;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import javax.persistence.EntityManager;
 
-import org.osc.core.broker.model.entities.appliance.DistributedAppliance;
 import org.osc.core.broker.model.entities.appliance.DistributedApplianceInstance;
 import org.osc.core.broker.model.entities.appliance.VirtualSystem;
 import org.osc.core.broker.model.entities.management.ApplianceManagerConnector;
 import org.osc.core.broker.model.plugin.ApiFactoryService;
 import org.osc.core.broker.model.plugin.manager.DistributedApplianceInstanceElementImpl;
+import org.osc.core.broker.service.broadcast.EventType;
+import org.osc.core.broker.service.persistence.DistributedApplianceInstanceEntityMgr;
+import org.osc.core.broker.service.persistence.EntityChangeTracker;
 import org.osc.core.broker.service.persistence.OSCEntityManager;
+import org.osc.core.broker.util.SessionUtil;
 import org.osc.core.broker.util.StaticRegistry;
+import org.osc.core.broker.util.TransactionalBroadcastUtil;
 import org.osc.core.broker.util.db.HibernateUtil;
 import org.slf4j.LoggerFactory;
 import org.osc.sdk.manager.api.ManagerDeviceMemberApi;
 import org.osc.sdk.manager.element.ManagerDeviceMemberStatusElement;
 import org.osgi.service.transaction.control.ScopedWorkException;
+import org.osgi.service.transaction.control.TransactionControl;
 import org.quartz.Job;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
@@ -52,69 +60,100 @@ public class ApplianceAgentsJob implements Job {
     public void execute(JobExecutionContext context) throws JobExecutionException {
         ApiFactoryService apiFactoryService =  (ApiFactoryService) context.get(ApiFactoryService.class.getName());
 
+        // Agent status updates do not make the DAs out of sync
+        boolean wasTracking = EntityChangeTracker.getTracker().setTrackingEnabled(false);
         try {
             EntityManager em = HibernateUtil.getTransactionalEntityManager();
-            List<DistributedAppliance> das = HibernateUtil.getTransactionControl().required(() -> {
-                OSCEntityManager<DistributedAppliance> emgr = new OSCEntityManager<DistributedAppliance>(
-                        DistributedAppliance.class, em, StaticRegistry.transactionalBroadcastUtil());
+            TransactionControl txControl = HibernateUtil.getTransactionControl();
+            List<VirtualSystem> vss = txControl.required(() -> {
+                OSCEntityManager<VirtualSystem> emgr = new OSCEntityManager<VirtualSystem>(
+                        VirtualSystem.class, em, StaticRegistry.transactionalBroadcastUtil());
 
                 return emgr.listAll();
             });
 
-            for (DistributedAppliance da : das) {
-                for (VirtualSystem vs : da.getVirtualSystems()) {
-
-                    ApplianceManagerConnector apmc = vs.getDistributedAppliance().getApplianceManagerConnector();
-                    ManagerDeviceMemberApi agentApi =  apiFactoryService.createManagerDeviceMemberApi(apmc, vs);
+            for (VirtualSystem vs : vss) {
+                if (!apiFactoryService.providesDeviceStatus(vs)) {
+                    continue;
+                }
 
-                    if (apiFactoryService.providesDeviceStatus(vs)) {
-                        List<ManagerDeviceMemberStatusElement> agentElems = agentApi.getFullStatus(
-                                vs.getDistributedApplianceInstances().stream()
-                                .map(DistributedApplianceInstanceElementImpl::new)
-                                .collect(Collectors.toList()));
-                        for (DistributedApplianceInstance dai : vs.getDistributedApplianceInstances()) {
-                            getAgentFullStatus(dai, agentElems);
-                        }
+                ApplianceManagerConnector apmc = vs.getDistributedAppliance().getApplianceManagerConnector();
+                ManagerDeviceMemberApi agentApi =  apiFactoryService.createManagerDeviceMemberApi(apmc, vs);
+
+                // Query the agents a page of DAIs at a time rather than loading the whole virtual system
+                List<DistributedApplianceInstance> dais;
+                Long lastId = null;
+                do {
+                    Long afterId = lastId;
+                    dais = txControl.required(() -> new OSCEntityManager<DistributedApplianceInstance>(
+                            DistributedApplianceInstance.class, em, StaticRegistry.transactionalBroadcastUtil())
+                            .listPageByFieldName("virtualSystem", vs, afterId, OSCEntityManager.DEFAULT_PAGE_SIZE));
+                    if (dais.isEmpty()) {
+                        break;
                     }
-                }
+
+                    List<ManagerDeviceMemberStatusElement> agentElems = agentApi.getFullStatus(
+                            dais.stream()
+                            .map(DistributedApplianceInstanceElementImpl::new)
+                            .collect(Collectors.toList()));
+                    updateAgentStatus(vs, dais, agentElems);
+                    lastId = dais.get(dais.size() - 1).getId();
+                } while (dais.size() == OSCEntityManager.DEFAULT_PAGE_SIZE);
             }
 
         } catch (Exception ex) {
             log.error("Fail to sync DAs", ex);
+        } finally {
+            EntityChangeTracker.getTracker().setTrackingEnabled(wasTracking);
         }
     }
 
-    private void getAgentFullStatus(DistributedApplianceInstance dai, List<ManagerDeviceMemberStatusElement> statusList) throws Exception {
+    private void updateAgentStatus(VirtualSystem vs, List<DistributedApplianceInstance> dais,
+            List<ManagerDeviceMemberStatusElement> statusList) {
+        Map<Long, ManagerDeviceMemberStatusElement> statusByDaiId = new HashMap<>();
+        for (ManagerDeviceMemberStatusElement memberStatus : statusList) {
+            if (memberStatus.getDistributedApplianceInstanceElement() != null) {
+                statusByDaiId.put(memberStatus.getDistributedApplianceInstanceElement().getId(), memberStatus);
+            }
+        }
+
+        // Only the DAIs an agent reported on change, and only some of them have a new packet count
+        List<Long> reportedDaiIds = new ArrayList<>();
+        Map<Long, Long> changedPackets = new HashMap<>();
+        for (DistributedApplianceInstance dai : dais) {
+            ManagerDeviceMemberStatusElement memberStatus = statusByDaiId.get(dai.getId());
+            if (memberStatus != null) {
+                reportedDaiIds.add(dai.getId());
+                if (memberStatus.getRx() != null && !memberStatus.getRx().equals(dai.getPackets())) {
+                    changedPackets.put(dai.getId(), memberStatus.getRx());
+                }
+            }
+        }
+        if (reportedDaiIds.isEmpty()) {
+            return;
+        }
+
         try {
             EntityManager em = HibernateUtil.getTransactionalEntityManager();
             HibernateUtil.getTransactionControl().required(() -> {
-                ManagerDeviceMemberStatusElement memberStatus = findDeviceMemberStatus(dai, statusList);
-
-                if (memberStatus != null) {
-                    dai.setLastStatus(new Date());
-                    if (memberStatus.getRx() != null) {
-                        dai.setPackets(memberStatus.getRx());
-                    }
+                DistributedApplianceInstanceEntityMgr.updateAgentStatus(em, reportedDaiIds, new Date(), changedPackets,
+                        SessionUtil.getInstance().getCurrentUser());
+
+                // The bulk update bypasses the entity manager, notify the views showing these DAIs
+                TransactionalBroadcastUtil txBroadcastUtil = StaticRegistry.transactionalBroadcastUtil();
+                for (Long daiId : reportedDaiIds) {
+                    txBroadcastUtil.addMessageToMap(daiId, DistributedApplianceInstance.class.getSimpleName(),
+                            EventType.UPDATED);
                 }
-
-                OSCEntityManager.update(em, dai, StaticRegistry.transactionalBroadcastUtil());
                 return null;
             });
 
         } catch (ScopedWorkException ex) {
-            log.error("Fail to get full status for dai '" + dai.getName() + "'. " + ex.getCause().getMessage());
+            log.error("Fail to update agent status for the DAIs of virtual system '" + vs.getName() + "'. "
+                    + ex.getCause().getMessage());
         } catch (Exception ex) {
-            log.error("Fail to get full status for dai '" + dai.getName() + "'. " + ex.getMessage());
+            log.error("Fail to update agent status for the DAIs of virtual system '" + vs.getName() + "'. "
+                    + ex.getMessage());
         }
     }
-
-    private ManagerDeviceMemberStatusElement findDeviceMemberStatus(DistributedApplianceInstance dai, List<ManagerDeviceMemberStatusElement> statusList) {
-        for (ManagerDeviceMemberStatusElement memberStatus : statusList) {
-            if (memberStatus.getDistributedApplianceInstanceElement().getId().equals(dai.getId())) {
-                return memberStatus;
-            }
-        }
-
-        return null;
-    }
 }
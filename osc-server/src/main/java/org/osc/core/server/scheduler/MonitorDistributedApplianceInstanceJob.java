@@ -17,7 +17,6 @@
 package org.osc.core.server.scheduler;
 
 import java.util.Date;
-import java.util.List;
 
 import javax.persistence.EntityManager;
 
@@ -49,11 +48,9 @@ public class MonitorDistributedApplianceInstanceJob implements Job {
 
         try {
             EntityManager em = HibernateUtil.getTransactionalEntityManager();
-            HibernateUtil.getTransactionControl().required(() -> {
-                OSCEntityManager<DistributedApplianceInstance> emgr = new OSCEntityManager<DistributedApplianceInstance>(
-                        DistributedApplianceInstance.class, em, StaticRegistry.transactionalBroadcastUtil());
-                List<DistributedApplianceInstance> dais = emgr.listAll();
-
+            // Go through the DAIs a page at a time, so neither the session nor the transaction grow with them
+            OSCEntityManager.forEachPage(DistributedApplianceInstance.class, em, HibernateUtil.getTransactionControl(),
+                    StaticRegistry.transactionalBroadcastUtil(), OSCEntityManager.DEFAULT_PAGE_SIZE, dais -> {
                 for (DistributedApplianceInstance dai : dais) {
                     Date date = null;
                     if (dai.getLastStatus() != null) {
@@ -73,8 +70,7 @@ public class MonitorDistributedApplianceInstanceJob implements Job {
                         dai.setInspectionReady(null);
                     }
                 }
-                return null;
-            });
+            }, "virtualSystem.distributedAppliance");
 
         } catch (Exception ex) {
             log.error("Exception iterating over DAIs", ex);
@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.server.scheduler;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.osc.core.broker.job.Job;
+import org.osc.core.broker.job.JobEngine;
+import org.osc.core.broker.job.JobPriority;
+import org.osc.core.broker.job.lock.LockObjectReference;
+import org.osc.core.broker.model.entities.BaseEntity;
+import org.osc.core.broker.service.persistence.EntityChangeTracker;
+import org.quartz.JobExecutionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Dispatches the per entity work of the scheduled syncs on a small pool of
+ * threads shared by all the sync jobs.
+ * <p>
+ * The dispatches of a run are spread randomly over part of the sync period, so
+ * a run does not submit a conformance job for every entity at once. Entities
+ * which already have a queued or running job are skipped when their turn
+ * comes.
+ * <p>
+ * Only the entities the {@link EntityChangeTracker} reports as changed since
+ * their last sync are dispatched, along with a rolling slice of the others so
+ * that every entity is still fully audited once every {@link #AUDIT_SLICES}
+ * runs.
+ */
+public final class SyncDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(SyncDispatcher.class);
+
+    static final int DISPATCH_THREAD_POOL_SIZE = 4;
+
+    /*
+     * Dispatches are spread over this fraction of the sync period, capped to
+     * MAX_STAGGER_MS.
+     */
+    static final double STAGGER_RATIO = 0.5;
+    static final long MAX_STAGGER_MS = TimeUnit.MINUTES.toMillis(10);
+
+    /*
+     * Unchanged entities are split by id in this many slices, one of which is
+     * synced on each run.
+     */
+    static final int AUDIT_SLICES = 24;
+
+    private static SyncDispatcher dispatcher = new SyncDispatcher();
+
+    private ScheduledThreadPoolExecutor executor;
+
+    private final Map<String, SyncRun> lastRuns = new ConcurrentHashMap<>();
+    private final Map<String, Long> runCounts = new HashMap<>();
+
+    public interface SyncAction<T> {
+        /**
+         * @return true if the sync of the entity was submitted, false if it
+         *         failed and the failure was reported
+         */
+        boolean sync(T entity) throws Exception;
+    }
+
+    private SyncDispatcher() {
+    }
+
+    public static SyncDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * Schedules the sync of each entity which changed since its last sync or
+     * falls in the audit slice of this run.
+     *
+     * @param name
+     *            name of the sync, used to report the run
+     * @param entities
+     *            entities to sync
+     * @param periodMs
+     *            sync period in milliseconds, 0 to dispatch right away
+     * @param action
+     *            submits the sync of an entity
+     * @return the run, completed once all entities are dispatched or skipped
+     */
+    public synchronized <T extends BaseEntity> SyncRun dispatch(String name, List<T> entities, long periodMs,
+            SyncAction<T> action) {
+        if (this.executor == null) {
+            this.executor = new ScheduledThreadPoolExecutor(DISPATCH_THREAD_POOL_SIZE,
+                    new ThreadFactoryBuilder().setNameFormat("isc-sync-dispatch-%d").setDaemon(true).build());
+            JobEngine.getEngine().addJobCompletionListener(SyncDispatcher::jobCompleted);
+        }
+
+        long runCount = this.runCounts.merge(name, 1L, Long::sum);
+        EntityChangeTracker tracker = EntityChangeTracker.getTracker();
+        List<T> selected = new ArrayList<>();
+        for (T entity : entities) {
+            LockObjectReference objectRef = LockObjectReference.getLockObjectReference(entity);
+            if (objectRef == null || tracker.isDirty(objectRef)
+                    || entity.getId() % AUDIT_SLICES == runCount % AUDIT_SLICES) {
+                selected.add(entity);
+            }
+        }
+
+        SyncRun run = new SyncRun(name, entities.size(), selected.size());
+        this.lastRuns.put(name, run);
+        if (selected.isEmpty()) {
+            run.finish();
+            return run;
+        }
+
+        long window = Math.min((long) (periodMs * STAGGER_RATIO), MAX_STAGGER_MS);
+        for (T entity : selected) {
+            long delay = window > 0 ? ThreadLocalRandom.current().nextLong(window) : 0;
+            this.executor.schedule(() -> run.dispatch(entity, action), delay, TimeUnit.MILLISECONDS);
+        }
+        return run;
+    }
+
+    /*
+     * A failed job leaves its objects out of sync, have them synced again on
+     * the next run
+     */
+    private static void jobCompleted(Job job) {
+        if (!job.getStatus().getStatus().isSuccessful() && job.getObjects() != null) {
+            for (LockObjectReference objectRef : job.getObjects()) {
+                EntityChangeTracker.getTracker().markChanged(objectRef);
+            }
+        }
+    }
+
+    /**
+     * @return the period of the trigger which fired the given job, 0 if it
+     *         does not repeat
+     */
+    public static long getSyncPeriodMs(JobExecutionContext context) {
+        Date nextFireTime = context.getNextFireTime();
+        Date fireTime = context.getScheduledFireTime();
+        if (nextFireTime == null || fireTime == null) {
+            return 0;
+        }
+        return Math.max(nextFireTime.getTime() - fireTime.getTime(), 0);
+    }
+
+    /**
+     * @return the current or last run of the named sync, null if it never ran
+     */
+    public SyncRun getLastRun(String name) {
+        return this.lastRuns.get(name);
+    }
+
+    public synchronized void shutdown() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+    }
+
+    /**
+     * Tracks the dispatches of one run of a sync.
+     */
+    public static final class SyncRun {
+
+        private final String name;
+        private final int scanned;
+        private final int clean;
+        private final long startTime = System.currentTimeMillis();
+        private final AtomicInteger pending;
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicInteger dispatched = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private volatile long durationMs = -1;
+
+        private SyncRun(String name, int scanned, int selected) {
+            this.name = name;
+            this.scanned = scanned;
+            this.clean = scanned - selected;
+            this.pending = new AtomicInteger(selected);
+        }
+
+        private <T extends BaseEntity> void dispatch(T entity, SyncAction<T> action) {
+            JobEngine.setSubmissionPriority(JobPriority.PERIODIC);
+            // The sync itself records its job on the entity, which is not a change to sync again
+            EntityChangeTracker tracker = EntityChangeTracker.getTracker();
+            tracker.setTrackingEnabled(false);
+            try {
+                LockObjectReference objectRef = LockObjectReference.getLockObjectReference(entity);
+                if (objectRef != null && JobEngine.getEngine().hasActiveJob(objectRef)) {
+                    log.debug(this.name + " skipped " + objectRef + ", a job is already queued or running");
+                    this.skipped.incrementAndGet();
+                    return;
+                }
+
+                long version = tracker.getCurrentVersion();
+                if (action.sync(entity)) {
+                    tracker.markSynced(objectRef, version);
+                    this.dispatched.incrementAndGet();
+                } else {
+                    this.failed.incrementAndGet();
+                }
+            } catch (Exception ex) {
+                log.error(this.name + " failed to dispatch " + entity.getId(), ex);
+                this.failed.incrementAndGet();
+            } finally {
+                JobEngine.setSubmissionPriority(null);
+                tracker.setTrackingEnabled(true);
+                if (this.pending.decrementAndGet() == 0) {
+                    finish();
+                }
+            }
+        }
+
+        private void finish() {
+            this.durationMs = System.currentTimeMillis() - this.startTime;
+            log.info(toString());
+        }
+
+        public int getScanned() {
+            return this.scanned;
+        }
+
+        /**
+         * @return the number of entities left out of the run as they did not
+         *         change since their last sync
+         */
+        public int getClean() {
+            return this.clean;
+        }
+
+        public int getSkipped() {
+            return this.skipped.get();
+        }
+
+        public int getDispatched() {
+            return this.dispatched.get();
+        }
+
+        public int getFailed() {
+            return this.failed.get();
+        }
+
+        /**
+         * @return the time in milliseconds it took to go through all entities,
+         *         -1 if the run is still in progress
+         */
+        public long getDurationMs() {
+            return this.durationMs;
+        }
+
+        public boolean isCompleted() {
+            return this.durationMs >= 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[%s] scanned: %d, clean: %d, skipped: %d, dispatched: %d, failed: %d, duration: %dms",
+                    this.name, this.scanned, this.clean, getSkipped(), getDispatched(), getFailed(), this.durationMs);
+        }
+    }
+}
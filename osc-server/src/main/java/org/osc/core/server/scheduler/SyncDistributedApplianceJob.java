@@ -57,38 +57,26 @@ public class SyncDistributedApplianceJob implements Job {
                 return emgr.listAll();
             });
 
-            // Iterate on all DAs and execute a sync on a separate thread as we are placing lock and want to avoid
+            // Sync the DAs from the shared dispatcher as we are placing locks and want to avoid
             // delays for following DAs
-            for (final DistributedAppliance da : das) {
-                Thread daSync = new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            HibernateUtil.getTransactionControl().required(() -> {
-                                SessionUtil.getInstance().setUser(RestConstants.OSC_DEFAULT_LOGIN);
-                                EntityManager em = HibernateUtil.getTransactionalEntityManager();
-                                try {
-                                    DistributedAppliance found = em.find(DistributedAppliance.class, da.getId());
-                                    daConformJobFactory.startDAConformJob(em, found, null, false);
-                                } catch (Exception ex) {
-                                    StaticRegistry.alertGenerator().processSystemFailureEvent(
-                                            SystemFailureType.SCHEDULER_FAILURE,
-                                            new LockObjectReference(da),
-                                            "Failure during scheduling of Distributed Appliance Sync. "
-                                                    + ex.getMessage());
-                                    log.error("Fail to sync DA " + da.getName(), ex);
-                                }
-                                return null;
-                            });
-                        } catch (Exception e) {
-                            // Just let the thread finish
-                        }
+            SyncDispatcher.getDispatcher().dispatch("DA sync", das, SyncDispatcher.getSyncPeriodMs(context), da ->
+                HibernateUtil.getTransactionControl().required(() -> {
+                    SessionUtil.getInstance().setUser(RestConstants.OSC_DEFAULT_LOGIN);
+                    EntityManager daEm = HibernateUtil.getTransactionalEntityManager();
+                    try {
+                        DistributedAppliance found = daEm.find(DistributedAppliance.class, da.getId());
+                        daConformJobFactory.startDAConformJob(daEm, found, null, false);
+                    } catch (Exception ex) {
+                        StaticRegistry.alertGenerator().processSystemFailureEvent(
+                                SystemFailureType.SCHEDULER_FAILURE,
+                                new LockObjectReference(da),
+                                "Failure during scheduling of Distributed Appliance Sync. "
+                                        + ex.getMessage());
+                        log.error("Fail to sync DA " + da.getName(), ex);
+                        return false;
                     }
-                }, "Scheduled-DA-Sync-runner-Thread-" + System.currentTimeMillis());
-
-                daSync.start();
-
-            }
+                    return true;
+                }));
 
         } catch (ScopedWorkException ex) {
             StaticRegistry.alertGenerator().processSystemFailureEvent(SystemFailureType.SCHEDULER_FAILURE, null,
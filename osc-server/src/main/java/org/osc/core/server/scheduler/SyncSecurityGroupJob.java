@@ -16,6 +16,7 @@
  *******************************************************************************/
 package org.osc.core.server.scheduler;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.persistence.EntityManager;
@@ -56,39 +57,30 @@ public class SyncSecurityGroupJob implements Job {
                 return emgr.listAll();
             });
 
-            for (final SecurityGroup sg : sgs) {
+            List<SecurityGroup> syncedSgs = new ArrayList<>();
+            for (SecurityGroup sg : sgs) {
                 // TODO emanoel: remove this condition once SG sync is implemented.
-                if (sg.getVirtualizationConnector().getVirtualizationType().isKubernetes()) {
-                    continue;
+                if (!sg.getVirtualizationConnector().getVirtualizationType().isKubernetes()) {
+                    syncedSgs.add(sg);
                 }
+            }
 
-                Thread sgSync = new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            HibernateUtil.getTransactionControl().required(() -> {
-                                SessionUtil.getInstance().setUser(RestConstants.OSC_DEFAULT_LOGIN);
-                                EntityManager em = HibernateUtil.getTransactionalEntityManager();
-                                try {
-                                    SecurityGroup found = em.find(SecurityGroup.class, sg.getId());
-                                    sgConformJobFactory.startSecurityGroupConformanceJob(found);
-                                } catch (Exception ex) {
-                                    StaticRegistry.alertGenerator().processSystemFailureEvent(SystemFailureType.SCHEDULER_FAILURE,
-                                            new LockObjectReference(sg),
-                                            "Failure during scheduling of Security Group Sync. " + ex.getMessage());
-                                    log.error("Fail to sync SG " + sg.getName(), ex);
-                                }
-                                return null;
-
-                            });
-                        } catch (Exception e) {
-                            // Just let the thread finish
-                        }
+            SyncDispatcher.getDispatcher().dispatch("SG sync", syncedSgs, SyncDispatcher.getSyncPeriodMs(context), sg ->
+                HibernateUtil.getTransactionControl().required(() -> {
+                    SessionUtil.getInstance().setUser(RestConstants.OSC_DEFAULT_LOGIN);
+                    EntityManager sgEm = HibernateUtil.getTransactionalEntityManager();
+                    try {
+                        SecurityGroup found = sgEm.find(SecurityGroup.class, sg.getId());
+                        sgConformJobFactory.startSecurityGroupConformanceJob(found);
+                    } catch (Exception ex) {
+                        StaticRegistry.alertGenerator().processSystemFailureEvent(SystemFailureType.SCHEDULER_FAILURE,
+                                new LockObjectReference(sg),
+                                "Failure during scheduling of Security Group Sync. " + ex.getMessage());
+                        log.error("Fail to sync SG " + sg.getName(), ex);
+                        return false;
                     }
-                }, "Scheduled-SG-Sync-runner-Thread-" + System.currentTimeMillis());
-
-                sgSync.start();
-            }
+                    return true;
+                }));
         } catch (ScopedWorkException ex) {
             StaticRegistry.alertGenerator().processSystemFailureEvent(SystemFailureType.SCHEDULER_FAILURE, null,
                     "Failure during scheduling of Security Groups Sync. " + ex.getCause().getMessage());
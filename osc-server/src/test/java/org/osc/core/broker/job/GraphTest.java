@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.job;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+public class GraphTest {
+
+    private Graph<String> graph;
+
+    @Before
+    public void setUp() {
+        // a -> b -> d, a -> c -> d, x -> d
+        this.graph = new Graph<String>();
+        this.graph.addEdge("a", "b");
+        this.graph.addEdge("a", "c");
+        this.graph.addEdge("b", "d");
+        this.graph.addEdge("c", "d");
+        this.graph.addEdge("x", "d");
+    }
+
+    @Test
+    public void testGetPredecessors_ReturnsIncomingEdgeSources() {
+        assertEquals(ImmutableSet.of("b", "c", "x"), this.graph.getPredecessors("d"));
+        assertEquals(ImmutableSet.of("a"), this.graph.getPredecessors("b"));
+        assertTrue(this.graph.getPredecessors("a").isEmpty());
+        assertEquals(3, this.graph.getPredecessorCount("d"));
+    }
+
+    @Test
+    public void testGetAncestors_ReturnsAllTransitivePredecessors() {
+        assertEquals(ImmutableSet.of("a", "b", "c", "x"), this.graph.getAncestors("d"));
+        assertEquals(ImmutableSet.of("a"), this.graph.getAncestors("c"));
+        assertEquals(this.graph.reverse().getDescendants("d"), this.graph.getAncestors("d"));
+    }
+
+    @Test
+    public void testGetSourcesAndSinks() {
+        assertEquals(ImmutableSet.of("a", "x"), this.graph.getSources());
+        assertEquals(ImmutableSet.of("d"), this.graph.getSinks());
+    }
+
+    @Test
+    public void testRemoveEdge_UpdatesPredecessors() {
+        this.graph.removeEdge("x", "d");
+
+        assertEquals(ImmutableSet.of("b", "c"), this.graph.getPredecessors("d"));
+        assertTrue(this.graph.getSuccessors("x").isEmpty());
+    }
+
+    @Test
+    public void testRemoveNode_RemovesIncomingAndOutgoingEdges() {
+        this.graph.removeNode("b");
+
+        assertEquals(ImmutableSet.of("c", "x"), this.graph.getPredecessors("d"));
+        assertEquals(ImmutableSet.of("c"), this.graph.getSuccessors("a"));
+        assertEquals(ImmutableSet.of("a", "c", "x"), this.graph.getAncestors("d"));
+    }
+
+    @Test
+    public void testReplace_RewiresPredecessorsAndSuccessors() {
+        this.graph.replace("c", "y");
+
+        assertEquals(ImmutableSet.of("b", "x", "y"), this.graph.getPredecessors("d"));
+        assertEquals(ImmutableSet.of("a"), this.graph.getPredecessors("y"));
+    }
+
+    @Test
+    public void testReverse_SwapsEdgeDirection() {
+        Graph<String> reversed = this.graph.reverse();
+
+        assertEquals(ImmutableSet.of("b", "c", "x"), reversed.getSuccessors("d"));
+        assertEquals(ImmutableSet.of("b", "c"), reversed.getPredecessors("a"));
+        assertEquals(ImmutableSet.of("d"), reversed.getSources());
+    }
+
+    @Test
+    public void testCopyConstructor_CopiesReverseIndex() {
+        Graph<String> copy = new Graph<String>(this.graph);
+        copy.removeEdge("x", "d");
+
+        assertEquals(ImmutableSet.of("b", "c"), copy.getPredecessors("d"));
+        assertEquals(ImmutableSet.of("b", "c", "x"), this.graph.getPredecessors("d"));
+        assertEquals(this.graph.getAncestors("b"), copy.getAncestors("b"));
+    }
+
+    @Test
+    public void testTopologicalSort_OnLargeChain() {
+        Graph<Integer> chain = new Graph<Integer>();
+        for (int i = 1; i < 10000; i++) {
+            chain.addEdge(i - 1, i);
+        }
+
+        List<Integer> sorted = chain.topologicalSort();
+
+        assertEquals(10000, sorted.size());
+        assertEquals(Integer.valueOf(0), sorted.get(0));
+        assertEquals(9999, chain.getAncestors(9999).size());
+        assertEquals(1, chain.getPredecessorCount(9999));
+    }
+}
@@ -18,11 +18,17 @@ package org.osc.core.broker.job;
 
 import static java.util.Collections.emptySet;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
@@ -41,13 +47,16 @@ import org.mockito.Mockito;
 import org.mockito.stubbing.Answer;
 import org.osc.core.broker.job.Job.JobCompletionListener;
 import org.osc.core.broker.job.lock.LockObjectReference;
+import org.osc.core.broker.job.lock.LockObjectReference.ObjectType;
 import org.osc.core.broker.model.entities.job.JobRecord;
 import org.osc.core.broker.model.entities.job.TaskRecord;
+import org.osc.core.broker.service.exceptions.VmidcBrokerBusyException;
 import org.osc.core.broker.service.tasks.BaseTask;
 import org.osc.core.broker.service.test.InMemDB;
 import org.osc.core.broker.util.StaticRegistry;
 import org.osc.core.broker.util.TransactionalBroadcastUtil;
 import org.osc.core.broker.util.db.HibernateUtil;
+import org.osc.core.common.job.JobState;
 import org.osc.core.common.job.JobStatus;
 import org.osc.core.common.job.TaskGuard;
 import org.osc.core.common.job.TaskStatus;
@@ -637,4 +646,81 @@ public class JobEngineTest {
         this.job = this.je.submit("Job-meta-task-wiring", this.tg, true);
         this.job.waitForCompletion();
     }
+
+    @Test
+    public void testSubmit_PeriodicJobsQueued_CoalescesDuplicatesAndRejectsWhenFull() throws Exception {
+        // Arrange.
+        CountDownLatch release = new CountDownLatch(1);
+        List<Job> blockers = new ArrayList<>();
+        for (int i = 0; i < JobEngine.DEFAULT_JOB_THREAD_POOL_SIZE; i++) {
+            TaskGraph blockerGraph = new TaskGraph();
+            blockerGraph.addTask(new BlockingTask("Blocker-" + i, release));
+            blockers.add(this.je.submit("Job-blocker-" + i, blockerGraph, false));
+        }
+        for (Job blocker : blockers) {
+            while (blocker.getState().getState() != JobState.RUNNING) {
+                Thread.sleep(10);
+            }
+        }
+
+        Set<LockObjectReference> objectsX = Collections
+                .singleton(new LockObjectReference(1L, "X", ObjectType.DISTRIBUTED_APPLIANCE));
+        Set<LockObjectReference> objectsY = Collections
+                .singleton(new LockObjectReference(2L, "Y", ObjectType.DISTRIBUTED_APPLIANCE));
+
+        JobEngine.setMaxQueuedJobs(JobPriority.PERIODIC, "1");
+        JobEngine.setSubmissionPriority(JobPriority.PERIODIC);
+        try {
+            Job queued = this.je.submit("Job-sync-X", emptyGraph(), objectsX, null, null, false);
+
+            CountDownLatch duplicateCompleted = new CountDownLatch(1);
+
+            // Act.
+            Job duplicate = this.je.submit("Job-sync-X", emptyGraph(), objectsX, job -> duplicateCompleted.countDown(),
+                    null, false);
+            boolean rejected = false;
+            try {
+                this.je.submit("Job-sync-Y", emptyGraph(), objectsY, null, null, false);
+            } catch (VmidcBrokerBusyException e) {
+                rejected = true;
+            }
+
+            // Assert.
+            assertSame(queued, duplicate);
+            assertTrue(rejected);
+            assertEquals(1, this.je.getQueueDepth(JobPriority.PERIODIC));
+
+            release.countDown();
+            queued.waitForCompletion();
+            assertEquals(0, this.je.getQueueDepth(JobPriority.PERIODIC));
+            assertTrue("The duplicate's listener was not notified",
+                    duplicateCompleted.await(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            JobEngine.setSubmissionPriority(null);
+            JobEngine.setMaxQueuedJobs(JobPriority.PERIODIC,
+                    String.valueOf(JobPriority.PERIODIC.getDefaultMaxQueuedJobs()));
+        }
+    }
+
+    private TaskGraph emptyGraph() {
+        TaskGraph taskGraph = new TaskGraph();
+        taskGraph.addTask(new EmptyTask("Empty"));
+        return taskGraph;
+    }
+
+    static class BlockingTask extends BaseTask {
+
+        private final CountDownLatch release;
+
+        BlockingTask(String name, CountDownLatch release) {
+            super(name);
+            this.release = release;
+        }
+
+        @Override
+        public void execute() throws Exception {
+            this.release.await();
+        }
+    }
 }
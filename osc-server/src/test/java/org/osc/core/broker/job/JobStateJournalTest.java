@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.job;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.osc.core.broker.model.entities.job.JobRecord;
+import org.osc.core.broker.util.StaticRegistry;
+import org.osc.core.broker.util.TransactionalBroadcastUtil;
+import org.osc.core.broker.util.db.HibernateUtil;
+import org.osc.core.test.util.TestTransactionControl;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({HibernateUtil.class, StaticRegistry.class})
+public class JobStateJournalTest {
+
+    @Mock
+    private EntityManager em;
+
+    @Mock
+    private EntityTransaction tx;
+
+    @Mock
+    private TransactionalBroadcastUtil broadcastUtil;
+
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
+    private TestTransactionControl txControl;
+
+    private JobStateJournal journal;
+
+    private long nextJobId = 1L;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        Mockito.when(this.em.getTransaction()).thenReturn(this.tx);
+        this.txControl.setEntityManager(this.em);
+
+        PowerMockito.mockStatic(StaticRegistry.class);
+        Mockito.when(StaticRegistry.transactionalBroadcastUtil()).thenReturn(this.broadcastUtil);
+
+        PowerMockito.mockStatic(HibernateUtil.class);
+        Mockito.when(HibernateUtil.getTransactionalEntityManager()).thenReturn(this.em);
+        Mockito.when(HibernateUtil.getTransactionControl()).thenReturn(this.txControl);
+
+        this.journal = new JobStateJournal();
+    }
+
+    @After
+    public void tearDown() {
+        this.journal.shutdown();
+    }
+
+    @Test
+    public void testRecord_WithRepeatedChanges_CoalescedIntoSingleWrite() {
+        // Arrange.
+        Job job = createJob();
+        JobRecord jobRecord = job.getJobRecord();
+
+        // Act.
+        for (int i = 0; i < 10; i++) {
+            this.journal.record(job);
+        }
+        boolean flushed = this.journal.flush();
+
+        // Assert.
+        assertTrue("All the changes should have been written.", flushed);
+        Mockito.verify(job).writeTo(jobRecord);
+        Mockito.verify(this.em).merge(jobRecord);
+        assertEquals(10.0, this.journal.getCoalescingRatio(), 0);
+        assertEquals(0, this.journal.getQueueDepth());
+    }
+
+    @Test
+    public void testFlush_WithFailingEntry_OtherEntriesWrittenAndFailingEntryRequeued() {
+        // Arrange.
+        Job badJob = createJob();
+        Job goodJob = createJob();
+        JobRecord badJobRecord = badJob.getJobRecord();
+        JobRecord goodJobRecord = goodJob.getJobRecord();
+        Mockito.doThrow(new IllegalStateException("write failed")).when(badJob).writeTo(Mockito.any(JobRecord.class));
+
+        // Act.
+        this.journal.record(badJob);
+        this.journal.record(goodJob);
+        boolean flushed = this.journal.flush();
+
+        // Assert.
+        assertFalse("The failing entry should not have been written.", flushed);
+        Mockito.verify(this.em).merge(goodJobRecord);
+        Mockito.verify(this.em, Mockito.never()).merge(badJobRecord);
+        assertEquals("The failing entry should have been requeued.", 1, this.journal.getQueueDepth());
+        assertEquals(0, this.journal.getRecordsDropped());
+    }
+
+    @Test
+    public void testFlush_WithEntryFailingRepeatedly_EntryDroppedAfterMaxAttempts() {
+        // Arrange.
+        Job badJob = createJob();
+        Mockito.doThrow(new IllegalStateException("write failed")).when(badJob).writeTo(Mockito.any(JobRecord.class));
+        this.journal.record(badJob);
+
+        // Act.
+        for (int attempt = 0; attempt < JobStateJournal.MAX_WRITE_ATTEMPTS; attempt++) {
+            this.journal.flush();
+        }
+
+        // Assert.
+        assertEquals("The failing entry should have been dropped.", 0, this.journal.getQueueDepth());
+        assertEquals(1, this.journal.getRecordsDropped());
+        Mockito.verify(badJob, Mockito.atMost(2 * JobStateJournal.MAX_WRITE_ATTEMPTS))
+                .writeTo(Mockito.any(JobRecord.class));
+    }
+
+    @Test
+    public void testFlushEntry_WithTransientFailure_RetriesUntilWritten() {
+        // Arrange.
+        Job job = createJob();
+        JobRecord jobRecord = job.getJobRecord();
+        Mockito.doThrow(new IllegalStateException("write failed")).doNothing().when(job)
+                .writeTo(Mockito.any(JobRecord.class));
+
+        // Act.
+        this.journal.record(job);
+        boolean written = this.journal.flush(job);
+
+        // Assert.
+        assertTrue("The final state should have been written.", written);
+        Mockito.verify(this.em).merge(jobRecord);
+        assertEquals(0, this.journal.getQueueDepth());
+    }
+
+    @Test
+    public void testFlushEntry_WithPermanentFailure_ReturnsFalse() {
+        // Arrange.
+        Job job = createJob();
+        Mockito.doThrow(new IllegalStateException("write failed")).when(job).writeTo(Mockito.any(JobRecord.class));
+
+        // Act.
+        this.journal.record(job);
+        boolean written = this.journal.flush(job);
+
+        // Assert.
+        assertFalse("The final state should have been given up.", written);
+        assertEquals(1, this.journal.getRecordsDropped());
+    }
+
+    private Job createJob() {
+        JobRecord jobRecord = new JobRecord();
+        jobRecord.setId(this.nextJobId++);
+        Mockito.when(this.em.find(JobRecord.class, jobRecord.getId())).thenReturn(jobRecord);
+
+        Job job = Mockito.mock(Job.class);
+        Mockito.when(job.getJobRecord()).thenReturn(jobRecord);
+        return job;
+    }
+}
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.job;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class JobTest {
+
+    @Test
+    public void testAllocateDependencyOrders_WithinGap_SpacesEvenly() {
+        assertArrayEquals(new long[] { 1280L, 1536L, 1792L },
+                Job.allocateDependencyOrders(1024L, 2048L, 3));
+    }
+
+    @Test
+    public void testAllocateDependencyOrders_WithoutUpperBound_UsesDefaultGap() {
+        assertArrayEquals(new long[] { 2048L, 3072L },
+                Job.allocateDependencyOrders(1024L, null, 2));
+    }
+
+    @Test
+    public void testAllocateDependencyOrders_GapExhausted_ReturnsNull() {
+        assertNull(Job.allocateDependencyOrders(1024L, 1026L, 2));
+    }
+
+    @Test
+    public void testAllocateDependencyOrders_RepeatedMerges_StayBetweenBounds() {
+        long lower = Job.DEPENDENCY_ORDER_GAP;
+        long upper = 2 * Job.DEPENDENCY_ORDER_GAP;
+
+        // Each merge lands right after the previously merged meta task
+        for (int merge = 0; merge < 10; merge++) {
+            long[] orders = Job.allocateDependencyOrders(lower, upper, 1);
+            assertArrayEquals(new long[] { lower + (upper - lower) / 2 }, orders);
+            lower = orders[0];
+        }
+
+        assertNull(Job.allocateDependencyOrders(lower, upper, 1));
+    }
+}
@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.job.lock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.osc.core.broker.job.lock.LockObjectReference.ObjectType;
+import org.osc.core.broker.job.lock.LockRequest.LockType;
+import org.osc.core.broker.service.tasks.conformance.UnlockObjectTask;
+
+public class LockManagerTest {
+
+    private static final String OWNER_A = "Job-A";
+    private static final String OWNER_B = "Job-B";
+
+    private final LockManager lockManager = LockManager.getLockManager();
+
+    private final LockObjectReference objectX = new LockObjectReference(1L, "X", ObjectType.DISTRIBUTED_APPLIANCE);
+    private final LockObjectReference objectY = new LockObjectReference(2L, "Y", ObjectType.DISTRIBUTED_APPLIANCE);
+
+    @After
+    public void tearDown() {
+        this.lockManager.setCurrentOwner(null);
+        this.lockManager.setDeadlockHandler(null);
+    }
+
+    @Test
+    public void testAcquireLock_WaitForCycle_ResolvesDeadlock() throws Exception {
+        // Arrange.
+        LockRequest aHoldsX = writeLock(this.objectX);
+        LockRequest bHoldsY = writeLock(this.objectY);
+        LockRequest aWantsY = writeLock(this.objectY);
+        LockRequest bWantsX = writeLock(this.objectX);
+
+        this.lockManager.setCurrentOwner(OWNER_A);
+        assertTrue(this.lockManager.tryAcquireLock(aHoldsX));
+        this.lockManager.setCurrentOwner(OWNER_B);
+        assertTrue(this.lockManager.tryAcquireLock(bHoldsY));
+
+        List<Set<Object>> cycles = new ArrayList<>();
+        this.lockManager.setDeadlockHandler(new TestDeadlockHandler() {
+            @Override
+            public void resolve(Set<Object> cycle) {
+                // Abort A by releasing its lock
+                cycles.add(cycle);
+                LockManagerTest.this.lockManager.releaseLock(aHoldsX);
+            }
+        });
+
+        AtomicBoolean aGainedY = new AtomicBoolean();
+        Thread ownerAThread = new Thread(() -> {
+            this.lockManager.setCurrentOwner(OWNER_A);
+            try {
+                aGainedY.set(this.lockManager.acquireLock(aWantsY, 10000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        ownerAThread.start();
+        waitForWriter(this.objectY);
+
+        // Act.
+        boolean bGainedX = this.lockManager.acquireLock(bWantsX, 10000);
+
+        // Assert.
+        assertTrue(bGainedX);
+        assertEquals(1, cycles.size());
+        assertEquals(listOf(OWNER_B, OWNER_A), new ArrayList<Object>(cycles.get(0)));
+
+        this.lockManager.releaseLock(bWantsX);
+        this.lockManager.releaseLock(bHoldsY);
+        ownerAThread.join(10000);
+        assertTrue(aGainedY.get());
+        this.lockManager.releaseLock(aWantsY);
+    }
+
+    @Test
+    public void testFindDeadlock_QueuedOwnerHoldingLockOfRunningOwner_ReturnsCycle() throws Exception {
+        // Arrange.
+        LockRequest bHoldsX = writeLock(this.objectX);
+        LockRequest aWantsX = writeLock(this.objectX);
+
+        // B placed its lock before being queued, like a service does before submitting a job
+        assertTrue(this.lockManager.tryAcquireLock(bHoldsX));
+        this.lockManager.assignOwner(bHoldsX.getUnlockTask(), OWNER_B);
+
+        this.lockManager.setDeadlockHandler(new TestDeadlockHandler() {
+            @Override
+            public boolean isWaitingForExecution(Object owner) {
+                return OWNER_B.equals(owner);
+            }
+
+            @Override
+            public Collection<?> getRunningOwners() {
+                return Collections.singleton(OWNER_A);
+            }
+        });
+
+        Thread ownerAThread = new Thread(() -> {
+            this.lockManager.setCurrentOwner(OWNER_A);
+            try {
+                this.lockManager.acquireLock(aWantsX, 10000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        ownerAThread.start();
+        waitForWriter(this.objectX);
+
+        // Act.
+        Set<Object> cycle = this.lockManager.findDeadlock(OWNER_B);
+
+        // Assert.
+        assertEquals(listOf(OWNER_B, OWNER_A), new ArrayList<Object>(cycle));
+
+        this.lockManager.releaseLock(bHoldsX);
+        ownerAThread.join(10000);
+        this.lockManager.releaseLock(aWantsX);
+    }
+
+    @Test
+    public void testFindDeadlock_NoWaits_ReturnsEmpty() throws Exception {
+        LockRequest aHoldsX = writeLock(this.objectX);
+        this.lockManager.setCurrentOwner(OWNER_A);
+        assertTrue(this.lockManager.tryAcquireLock(aHoldsX));
+
+        assertTrue(this.lockManager.findDeadlock(OWNER_A).isEmpty());
+
+        this.lockManager.releaseLock(aHoldsX);
+    }
+
+    @Test
+    public void testAcquireLock_ConcurrentLockAndRelease_KeepsExclusionAndDiscardsRecord() throws Exception {
+        // Arrange.
+        int threadCount = 16;
+        int iterations = 500;
+        AtomicInteger holders = new AtomicInteger();
+        AtomicInteger violations = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < iterations; j++) {
+                    LockRequest lockRequest = writeLock(this.objectX);
+                    try {
+                        this.lockManager.acquireLock(lockRequest, 10000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    if (holders.incrementAndGet() != 1) {
+                        violations.incrementAndGet();
+                    }
+                    holders.decrementAndGet();
+                    this.lockManager.releaseLock(lockRequest);
+                }
+            }));
+        }
+
+        // Act.
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join(60000);
+        }
+
+        // Assert.
+        assertEquals(0, violations.get());
+        assertFalse(this.lockManager.getLockInformation().containsKey(this.objectX));
+    }
+
+    @Test
+    public void testTryAcquireLock_Conflicting_DoesNotLeakRecord() throws Exception {
+        LockRequest holdsX = writeLock(this.objectX);
+        LockRequest wantsX = writeLock(this.objectX);
+        assertTrue(this.lockManager.tryAcquireLock(holdsX));
+
+        assertFalse(this.lockManager.tryAcquireLock(wantsX));
+        this.lockManager.releaseLock(holdsX);
+
+        assertFalse(this.lockManager.getLockInformation().containsKey(this.objectX));
+    }
+
+    private LockRequest writeLock(LockObjectReference objectRef) {
+        return new LockRequest(new UnlockObjectTask(objectRef, LockType.WRITE_LOCK));
+    }
+
+    private void waitForWriter(LockObjectReference objectRef) throws InterruptedException {
+        for (int i = 0; i < 1000; i++) {
+            ReadWriteLockRecord lockRecord = this.lockManager.getLockInformation().get(objectRef);
+            if (lockRecord != null && lockRecord.getWaitingWriters() > 0) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static List<Object> listOf(Object... owners) {
+        List<Object> list = new ArrayList<>();
+        Collections.addAll(list, owners);
+        return list;
+    }
+
+    private static class TestDeadlockHandler implements DeadlockHandler {
+
+        @Override
+        public boolean isWaitingForExecution(Object owner) {
+            return false;
+        }
+
+        @Override
+        public Collection<?> getRunningOwners() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void resolve(Set<Object> cycle) {
+        }
+    }
+}
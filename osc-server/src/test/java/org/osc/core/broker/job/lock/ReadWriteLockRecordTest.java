@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.job.lock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+import org.osc.core.broker.job.lock.LockObjectReference.ObjectType;
+import org.osc.core.broker.job.lock.LockRequest.LockType;
+import org.osc.core.broker.service.tasks.conformance.UnlockObjectTask;
+
+public class ReadWriteLockRecordTest {
+
+    private final LockObjectReference objectRef = new LockObjectReference(1L, "X", ObjectType.VIRTUALIZATION_CONNECTOR);
+
+    private final ReadWriteLockRecord lockRecord = new ReadWriteLockRecord();
+
+    @Test
+    public void testLock_ReaderArrivingAfterQueuedWriter_WaitsForWriter() throws Exception {
+        // Arrange.
+        LockRequest firstReader = lockRequest(LockType.READ_LOCK);
+        LockRequest writer = lockRequest(LockType.WRITE_LOCK);
+        LockRequest secondReader = lockRequest(LockType.READ_LOCK);
+        assertTrue(this.lockRecord.tryLock(firstReader));
+
+        Thread writerThread = lockInBackground(writer, new AtomicBoolean());
+        waitFor(() -> this.lockRecord.getWaitingWriters() == 1);
+
+        // Act.
+        AtomicBoolean secondReaderLocked = new AtomicBoolean();
+        Thread readerThread = lockInBackground(secondReader, secondReaderLocked);
+        waitFor(() -> this.lockRecord.getWaitingReaders() == 1);
+
+        // Assert.
+        assertFalse(secondReaderLocked.get());
+        assertEquals(1, this.lockRecord.getReadLockCount());
+
+        assertTrue(this.lockRecord.unlock(firstReader));
+        writerThread.join(10000);
+        assertTrue(this.lockRecord.isWriteLocked());
+        assertFalse(secondReaderLocked.get());
+
+        assertTrue(this.lockRecord.unlock(writer));
+        readerThread.join(10000);
+        assertTrue(secondReaderLocked.get());
+        assertEquals(LockType.READ_LOCK, this.lockRecord.getLockType());
+    }
+
+    @Test
+    public void testDowngradeLock_WithQueuedReaders_LetsReadersIn() throws Exception {
+        // Arrange.
+        LockRequest writer = lockRequest(LockType.WRITE_LOCK);
+        LockRequest reader = lockRequest(LockType.READ_LOCK);
+        assertTrue(this.lockRecord.tryLock(writer));
+
+        AtomicBoolean readerLocked = new AtomicBoolean();
+        Thread readerThread = lockInBackground(reader, readerLocked);
+        waitFor(() -> this.lockRecord.getWaitingReaders() == 1);
+
+        // Act.
+        boolean downgraded = this.lockRecord.downgradeLock(writer);
+
+        // Assert.
+        assertTrue(downgraded);
+        readerThread.join(10000);
+        assertTrue(readerLocked.get());
+        assertEquals(2, this.lockRecord.getReadLockCount());
+        assertEquals(LockType.READ_LOCK, writer.getLockType());
+    }
+
+    @Test
+    public void testUpgradeLockWithWait_OnlyReader_UpgradesInPlace() throws Exception {
+        LockRequest reader = lockRequest(LockType.READ_LOCK);
+        assertTrue(this.lockRecord.tryLock(reader));
+
+        assertTrue(this.lockRecord.upgradeLockWithWait(reader));
+
+        assertTrue(this.lockRecord.isWriteLocked());
+        assertTrue(this.lockRecord.holds(reader));
+    }
+
+    @Test
+    public void testUnlock_Twice_ReleasesOnce() throws Exception {
+        LockRequest firstReader = lockRequest(LockType.READ_LOCK);
+        LockRequest secondReader = lockRequest(LockType.READ_LOCK);
+        assertTrue(this.lockRecord.tryLock(firstReader));
+        assertTrue(this.lockRecord.tryLock(secondReader));
+
+        assertTrue(this.lockRecord.unlock(firstReader));
+        assertFalse(this.lockRecord.unlock(firstReader));
+
+        assertEquals(1, this.lockRecord.getReadLockCount());
+    }
+
+    @Test
+    public void testTryLock_WriteLocked_Fails() throws Exception {
+        assertTrue(this.lockRecord.tryLock(lockRequest(LockType.WRITE_LOCK)));
+
+        assertFalse(this.lockRecord.tryLock(lockRequest(LockType.READ_LOCK)));
+        assertFalse(this.lockRecord.tryLock(lockRequest(LockType.WRITE_LOCK)));
+        assertEquals(0, this.lockRecord.getWaitingWriters());
+    }
+
+    @Test
+    public void testTryLock_ReaderArrivingAfterQueuedWriter_DoesNotOvertakeWriter() throws Exception {
+        // Arrange.
+        LockRequest firstReader = lockRequest(LockType.READ_LOCK);
+        LockRequest writer = lockRequest(LockType.WRITE_LOCK);
+        assertTrue(this.lockRecord.tryLock(firstReader));
+
+        AtomicBoolean writerLocked = new AtomicBoolean();
+        Thread writerThread = lockInBackground(writer, writerLocked);
+        waitFor(() -> this.lockRecord.getWaitingWriters() == 1);
+
+        // Act.
+        boolean secondReaderLocked = this.lockRecord.tryLock(lockRequest(LockType.READ_LOCK));
+
+        // Assert.
+        assertFalse(secondReaderLocked);
+        assertEquals(1, this.lockRecord.getReadLockCount());
+
+        assertTrue(this.lockRecord.unlock(firstReader));
+        writerThread.join(10000);
+        assertTrue(writerLocked.get());
+        assertTrue(this.lockRecord.isWriteLocked());
+    }
+
+    private LockRequest lockRequest(LockType lockType) {
+        return new LockRequest(new UnlockObjectTask(this.objectRef, lockType));
+    }
+
+    private Thread lockInBackground(LockRequest lockRequest, AtomicBoolean locked) {
+        Thread thread = new Thread(() -> {
+            try {
+                locked.set(this.lockRecord.lock(lockRequest, 10000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private interface Condition {
+        boolean isMet();
+    }
+
+    private static void waitFor(Condition condition) throws InterruptedException {
+        for (int i = 0; i < 1000 && !condition.isMet(); i++) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.model.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.osc.core.broker.model.entities.management.ApplianceManagerConnector;
+import org.osc.core.broker.service.api.server.EncryptionApi;
+import org.osc.core.broker.service.broadcast.BroadcastMessage;
+import org.osc.core.broker.service.broadcast.EventType;
+import org.osc.core.broker.util.ServerUtil;
+import org.osc.core.server.installer.InstallableManager;
+import org.osc.sdk.manager.element.ApplianceManagerConnectorElement;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ApiFactoryServiceImplTest {
+
+    private static final String ENCRYPTED_PASSWORD = "encrypted";
+    private static final String PASSWORD = "password";
+
+    @Mock
+    private InstallableManager installableManager;
+
+    @Mock
+    private EncryptionApi encrypter;
+
+    @InjectMocks
+    private ApiFactoryServiceImpl apiFactoryService;
+
+    private ApplianceManagerConnector mc;
+
+    @Before
+    public void setUp() throws Exception {
+        ServerUtil.setServerIP("10.0.0.1");
+        Mockito.when(this.encrypter.decryptAESCTR(Mockito.anyString())).thenAnswer(
+                invocation -> ENCRYPTED_PASSWORD.equals(invocation.getArguments()[0]) ? PASSWORD : "other");
+
+        this.mc = new ApplianceManagerConnector();
+        this.mc.setId(1L);
+        this.mc.setVersion(1L);
+        this.mc.setName("mc");
+        this.mc.setIpAddress("10.0.0.2");
+        this.mc.setPassword(ENCRYPTED_PASSWORD);
+    }
+
+    @After
+    public void tearDown() {
+        ServerUtil.setServerIP(null);
+    }
+
+    @Test
+    public void testGetApplianceManagerConnectorElement_ManyCallsForSameMc_BuildsElementOnce() throws Exception {
+        // Act.
+        ApplianceManagerConnectorElement first = this.apiFactoryService.getApplianceManagerConnectorElement(this.mc);
+        for (int i = 0; i < 999; i++) {
+            assertSame(first, this.apiFactoryService.getApplianceManagerConnectorElement(this.mc));
+        }
+
+        // Assert.
+        assertEquals(PASSWORD, first.getPassword());
+        assertEquals("10.0.0.1", first.getClientIpAddress());
+        Mockito.verify(this.encrypter, Mockito.times(1)).decryptAESCTR(ENCRYPTED_PASSWORD);
+    }
+
+    @Test
+    public void testGetApplianceManagerConnectorElement_McChangedInMemory_RebuildsElement() throws Exception {
+        // Arrange.
+        this.apiFactoryService.getApplianceManagerConnectorElement(this.mc);
+
+        // Act.
+        this.mc.setPassword("newEncrypted");
+        ApplianceManagerConnectorElement element = this.apiFactoryService.getApplianceManagerConnectorElement(this.mc);
+
+        // Assert.
+        assertEquals("other", element.getPassword());
+    }
+
+    @Test
+    public void testGetApplianceManagerConnectorElement_NewVersion_RebuildsElement() throws Exception {
+        // Arrange.
+        ApplianceManagerConnectorElement first = this.apiFactoryService.getApplianceManagerConnectorElement(this.mc);
+
+        // Act.
+        this.mc.setVersion(2L);
+        this.apiFactoryService.getApplianceManagerConnectorElement(this.mc);
+
+        // Assert.
+        Mockito.verify(this.encrypter, Mockito.times(2)).decryptAESCTR(ENCRYPTED_PASSWORD);
+        assertEquals(PASSWORD, first.getPassword());
+    }
+
+    @Test
+    public void testReceiveBroadcast_McUpdated_RebuildsElement() throws Exception {
+        // Arrange.
+        this.apiFactoryService.getApplianceManagerConnectorElement(this.mc);
+
+        // Act.
+        this.apiFactoryService.receiveBroadcast(new BroadcastMessage(2L, "ApplianceManagerConnector", EventType.UPDATED));
+        this.apiFactoryService.getApplianceManagerConnectorElement(this.mc);
+        this.apiFactoryService.receiveBroadcast(new BroadcastMessage(1L, "ApplianceManagerConnector", EventType.UPDATED));
+        this.apiFactoryService.getApplianceManagerConnectorElement(this.mc);
+
+        // Assert.
+        Mockito.verify(this.encrypter, Mockito.times(2)).decryptAESCTR(ENCRYPTED_PASSWORD);
+    }
+
+    @Test
+    public void testInvalidateConnectorElements_ServerIpChanged_RebuildsElementWithNewIp() throws Exception {
+        // Arrange.
+        this.apiFactoryService.getApplianceManagerConnectorElement(this.mc);
+
+        // Act.
+        ServerUtil.setServerIP("10.0.0.3");
+        this.apiFactoryService.invalidateConnectorElements();
+        ApplianceManagerConnectorElement element = this.apiFactoryService.getApplianceManagerConnectorElement(this.mc);
+
+        // Assert.
+        assertEquals("10.0.0.3", element.getClientIpAddress());
+    }
+
+    @Test
+    public void testGetApplianceManagerConnectorElement_UnsavedMc_IsNotCached() throws Exception {
+        // Arrange.
+        this.mc.setId(null);
+
+        // Act.
+        this.apiFactoryService.getApplianceManagerConnectorElement(this.mc);
+        this.apiFactoryService.getApplianceManagerConnectorElement(this.mc);
+
+        // Assert.
+        Mockito.verify(this.encrypter, Mockito.times(2)).decryptAESCTR(ENCRYPTED_PASSWORD);
+    }
+}
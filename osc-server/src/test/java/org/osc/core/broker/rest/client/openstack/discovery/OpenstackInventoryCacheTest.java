@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.rest.client.openstack.discovery;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstack4j.model.compute.InterfaceAttachment;
+import org.openstack4j.model.compute.Server;
+import org.openstack4j.model.network.Network;
+import org.osc.core.broker.model.entities.virtualization.VirtualizationConnector;
+
+public class OpenstackInventoryCacheTest {
+
+    private static final String PROJECT = "admin";
+    private static final String REGION = "RegionOne";
+
+    private static final int SECURITY_GROUP_COUNT = 500;
+
+    private OpenstackInventoryCache.Loader loader;
+    private OpenstackInventoryCache cache;
+
+    private VirtualizationConnector vc;
+    private VirtualizationConnector otherVc;
+
+    @Before
+    public void testInitialize() throws Exception {
+        this.loader = mock(OpenstackInventoryCache.Loader.class);
+        this.cache = new OpenstackInventoryCache(this.loader);
+
+        this.vc = new VirtualizationConnector();
+        this.vc.setId(1L);
+        this.otherVc = new VirtualizationConnector();
+        this.otherVc.setId(2L);
+
+        Server server = mock(Server.class);
+        doReturn(server).when(this.loader).getServer(any(VirtualizationConnector.class), anyString(), anyString(),
+                eq("vm-1"));
+        doReturn(Arrays.asList(server)).when(this.loader).listServers(any(VirtualizationConnector.class),
+                anyString(), anyString());
+
+        InterfaceAttachment attachment = mock(InterfaceAttachment.class);
+        when(attachment.getPortId()).thenReturn("port-1");
+        when(attachment.getNetId()).thenReturn("net-1");
+        doReturn(Arrays.asList(attachment)).when(this.loader).getServerInterfaces(any(VirtualizationConnector.class),
+                anyString(), anyString(), eq("vm-1"));
+
+        doReturn(mock(Network.class)).when(this.loader).getNetwork(any(VirtualizationConnector.class), anyString(),
+                anyString(), eq("net-1"));
+    }
+
+    @After
+    public void testTearDown() {
+        OpenstackInventoryCache.setTtl(String.valueOf(OpenstackInventoryCache.DEFAULT_TTL_MS));
+    }
+
+    @Test
+    public void testListServers_FromConcurrentSecurityGroupSyncs_ListsServersOnce() throws Exception {
+        // Arrange.
+        ExecutorService executor = Executors.newFixedThreadPool(20);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<? extends Server>>> results = new ArrayList<>();
+
+        // Act.
+        try {
+            for (int i = 0; i < SECURITY_GROUP_COUNT; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return this.cache.listServers(this.vc, PROJECT, REGION);
+                }));
+            }
+            start.countDown();
+            for (Future<List<? extends Server>> result : results) {
+                assertEquals(1, result.get().size());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Assert.
+        verify(this.loader, times(1)).listServers(this.vc, PROJECT, REGION);
+        assertEquals(1, this.cache.getMisses());
+        assertEquals(SECURITY_GROUP_COUNT - 1, this.cache.getHits());
+    }
+
+    @Test
+    public void testGetServer_WithOtherVcOrProject_ReadsAgain() throws Exception {
+        // Act.
+        this.cache.getServer(this.vc, PROJECT, REGION, "vm-1");
+        this.cache.getServer(this.vc, PROJECT, REGION, "vm-1");
+        this.cache.getServer(this.vc, "project-1", REGION, "vm-1");
+        this.cache.getServer(this.otherVc, PROJECT, REGION, "vm-1");
+
+        // Assert.
+        verify(this.loader, times(3)).getServer(any(VirtualizationConnector.class), anyString(), anyString(),
+                eq("vm-1"));
+    }
+
+    @Test
+    public void testGetServer_WhenNotFound_IsNotCached() throws Exception {
+        // Act.
+        Server first = this.cache.getServer(this.vc, PROJECT, REGION, "vm-2");
+        Server second = this.cache.getServer(this.vc, PROJECT, REGION, "vm-2");
+
+        // Assert.
+        assertNull(first);
+        assertNull(second);
+        verify(this.loader, times(2)).getServer(this.vc, PROJECT, REGION, "vm-2");
+    }
+
+    @Test
+    public void testGetServer_AfterTtl_ReadsAgain() throws Exception {
+        // Arrange.
+        OpenstackInventoryCache.setTtl("50");
+        this.cache.getServer(this.vc, PROJECT, REGION, "vm-1");
+
+        // Act.
+        Thread.sleep(100);
+        this.cache.getServer(this.vc, PROJECT, REGION, "vm-1");
+
+        // Assert.
+        verify(this.loader, times(2)).getServer(this.vc, PROJECT, REGION, "vm-1");
+    }
+
+    @Test
+    public void testInvalidate_WithVmNotification_DropsServerAndServerLists() throws Exception {
+        // Arrange.
+        this.cache.getServer(this.vc, PROJECT, REGION, "vm-1");
+        this.cache.listServers(this.vc, PROJECT, REGION);
+        this.cache.listServers(this.otherVc, PROJECT, REGION);
+        this.cache.getNetwork(this.vc, PROJECT, REGION, "net-1");
+
+        // Act.
+        this.cache.invalidate(this.vc.getId(), Collections.singleton("vm-1"), true);
+        this.cache.getServer(this.vc, PROJECT, REGION, "vm-1");
+        this.cache.listServers(this.vc, PROJECT, REGION);
+        this.cache.listServers(this.otherVc, PROJECT, REGION);
+        this.cache.getNetwork(this.vc, PROJECT, REGION, "net-1");
+
+        // Assert.
+        verify(this.loader, times(2)).getServer(this.vc, PROJECT, REGION, "vm-1");
+        verify(this.loader, times(2)).listServers(this.vc, PROJECT, REGION);
+        verify(this.loader, times(1)).listServers(this.otherVc, PROJECT, REGION);
+        verify(this.loader, times(1)).getNetwork(this.vc, PROJECT, REGION, "net-1");
+    }
+
+    @Test
+    public void testInvalidate_WithPortNotification_DropsInterfacesOfAttachedServer() throws Exception {
+        // Arrange.
+        this.cache.getServer(this.vc, PROJECT, REGION, "vm-1");
+        this.cache.getServerInterfaces(this.vc, PROJECT, REGION, "vm-1");
+
+        // Act.
+        this.cache.invalidate(this.vc.getId(), Collections.singleton("port-1"), false);
+        this.cache.getServer(this.vc, PROJECT, REGION, "vm-1");
+        this.cache.getServerInterfaces(this.vc, PROJECT, REGION, "vm-1");
+
+        // Assert.
+        verify(this.loader, times(1)).getServer(this.vc, PROJECT, REGION, "vm-1");
+        verify(this.loader, times(2)).getServerInterfaces(this.vc, PROJECT, REGION, "vm-1");
+        assertEquals(1, this.cache.getInvalidations());
+    }
+
+    @Test
+    public void testInvalidate_WithNetworkNotificationOfOtherVc_KeepsInterfaces() throws Exception {
+        // Arrange.
+        this.cache.getServerInterfaces(this.vc, PROJECT, REGION, "vm-1");
+        this.cache.getServerInterfaces(this.otherVc, PROJECT, REGION, "vm-1");
+
+        // Act.
+        this.cache.invalidate(this.otherVc.getId(), Collections.singleton("net-1"), false);
+        this.cache.getServerInterfaces(this.vc, PROJECT, REGION, "vm-1");
+        this.cache.getServerInterfaces(this.otherVc, PROJECT, REGION, "vm-1");
+
+        // Assert.
+        verify(this.loader, times(1)).getServerInterfaces(this.vc, PROJECT, REGION, "vm-1");
+        verify(this.loader, times(2)).getServerInterfaces(this.otherVc, PROJECT, REGION, "vm-1");
+    }
+
+    @Test
+    public void testInvalidate_WithUnknownObject_DropsNothing() throws Exception {
+        // Arrange.
+        this.cache.getServer(this.vc, PROJECT, REGION, "vm-1");
+        this.cache.getServerInterfaces(this.vc, PROJECT, REGION, "vm-1");
+
+        // Act.
+        this.cache.invalidate(this.vc.getId(), Collections.singleton("port-2"), false);
+
+        // Assert.
+        assertEquals(2, this.cache.getSize());
+        assertEquals(0, this.cache.getInvalidations());
+    }
+
+    @Test
+    public void testGetServer_BeyondMaxSize_DropsOldestEntries() throws Exception {
+        // Act.
+        for (int i = 0; i <= OpenstackInventoryCache.MAX_SIZE; i++) {
+            this.cache.getServer(this.vc, PROJECT, REGION, "vm-" + i);
+        }
+        this.cache.getNetwork(this.vc, PROJECT, REGION, "net-1");
+        this.cache.getNetwork(this.vc, PROJECT, REGION, "net-1");
+
+        // Assert.
+        assertTrue(this.cache.getSize() <= OpenstackInventoryCache.MAX_SIZE);
+        verify(this.loader, times(1)).getNetwork(this.vc, PROJECT, REGION, "net-1");
+    }
+
+    @Test
+    public void testInvalidate_WithVc_DropsAllObjectsOfVc() throws Exception {
+        // Arrange.
+        this.cache.getServer(this.vc, PROJECT, REGION, "vm-1");
+        this.cache.getNetwork(this.vc, PROJECT, REGION, "net-1");
+        this.cache.getServer(this.otherVc, PROJECT, REGION, "vm-1");
+
+        // Act.
+        this.cache.invalidate(this.vc.getId());
+
+        // Assert.
+        assertEquals(1, this.cache.getSize());
+    }
+}
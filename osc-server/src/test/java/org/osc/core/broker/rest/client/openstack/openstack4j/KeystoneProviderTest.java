@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.rest.client.openstack.openstack4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstack4j.model.identity.v3.Token;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class KeystoneProviderTest {
+
+    private static final int TASK_COUNT = 100;
+    private static final int THREAD_COUNT = 8;
+
+    /*
+     * Keystone stand-in answering password authentications
+     */
+    private HttpServer keystone;
+    private final AtomicInteger authentications = new AtomicInteger();
+    private volatile long tokenLifetimeMs = TimeUnit.HOURS.toMillis(1);
+    private volatile long authenticationDelayMs;
+
+    private KeystoneProvider provider;
+    private ExecutorService executor;
+
+    @Before
+    public void testInitialize() throws IOException {
+        this.keystone = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.keystone.createContext("/v3/auth/tokens", this::authenticate);
+        this.keystone.setExecutor(Executors.newCachedThreadPool());
+        this.keystone.start();
+
+        this.provider = new KeystoneProvider(this.keystone.getAddress().getPort());
+        this.executor = Executors.newFixedThreadPool(THREAD_COUNT);
+    }
+
+    @After
+    public void testTearDown() {
+        this.executor.shutdownNow();
+        this.keystone.stop(0);
+    }
+
+    @Test
+    public void testGetOs_WithManyTasks_AuthenticatesOncePerEndpoint() throws Exception {
+        // Arrange.
+        List<Endpoint> endpoints = new ArrayList<>();
+        endpoints.add(createEndpoint("admin"));
+        endpoints.add(createEndpoint("tenant"));
+
+        // Act.
+        List<Callable<Token>> tasks = new ArrayList<>();
+        for (int i = 0; i < TASK_COUNT; i++) {
+            Endpoint endpoint = endpoints.get(i % endpoints.size());
+            tasks.add(() -> getProjectToken(endpoint));
+        }
+        for (Future<Token> result : this.executor.invokeAll(tasks)) {
+            result.get();
+        }
+
+        // Assert.
+        assertEquals(endpoints.size(), this.authentications.get());
+        assertEquals(endpoints.size(), this.provider.getMisses());
+        assertEquals(TASK_COUNT - endpoints.size(), this.provider.getHits());
+    }
+
+    @Test
+    public void testGetOs_WithConcurrentCallers_WaitForSingleAuthentication() throws Exception {
+        // Arrange.
+        this.authenticationDelayMs = 500;
+        Endpoint endpoint = createEndpoint("admin");
+
+        // Act.
+        List<Callable<Token>> tasks = new ArrayList<>();
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            tasks.add(() -> getProjectToken(endpoint));
+        }
+        List<String> tokenIds = new ArrayList<>();
+        for (Future<Token> result : this.executor.invokeAll(tasks)) {
+            tokenIds.add(result.get().getId());
+        }
+
+        // Assert.
+        assertEquals(1, this.authentications.get());
+        assertEquals(1, tokenIds.stream().distinct().count());
+    }
+
+    @Test
+    public void testGetOs_WithTokenAboutToExpire_RefreshesToken() throws Exception {
+        // Arrange.
+        this.tokenLifetimeMs = 1000;
+        Endpoint endpoint = createEndpoint("admin");
+        Token first = getProjectToken(endpoint);
+
+        // Act.
+        Thread.sleep(this.tokenLifetimeMs / 2 + 100);
+        Token second = getProjectToken(endpoint);
+
+        // Assert.
+        assertNotEquals(first.getId(), second.getId());
+        assertEquals(2, this.authentications.get());
+        assertEquals(1, this.provider.getRefreshes());
+    }
+
+    @Test
+    public void testGetOs_AfterTokenRejected_AuthenticatesAgain() throws Exception {
+        // Arrange.
+        Endpoint endpoint = createEndpoint("admin");
+        Token rejected = getProjectToken(endpoint);
+        Token reauthenticated = mock(Token.class);
+        when(reauthenticated.getId()).thenReturn("reauthenticated");
+
+        // Act.
+        this.provider.sessionClosed(endpoint, rejected, reauthenticated);
+        Token token = getProjectToken(endpoint);
+
+        // Assert.
+        assertNotEquals(rejected.getId(), token.getId());
+        assertEquals(2, this.authentications.get());
+        assertEquals(1, this.provider.getInvalidations());
+    }
+
+    private Token getProjectToken(Endpoint endpoint) throws IOException {
+        try (Openstack4jAuthentication authentication = new Openstack4jAuthentication(endpoint)) {
+            authentication.keystoneProvider = this.provider;
+            return authentication.getProjectToken();
+        }
+    }
+
+    private Endpoint createEndpoint(String project) {
+        return new Endpoint("127.0.0.1", "default", project, "admin", "password", false, null);
+    }
+
+    private void authenticate(HttpExchange exchange) throws IOException {
+        int tokenNumber = this.authentications.incrementAndGet();
+        try {
+            Thread.sleep(this.authenticationDelayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        long now = System.currentTimeMillis();
+        String body = "{\"token\": {\"methods\": [\"password\"], \"expires_at\": \""
+                + format.format(new Date(now + this.tokenLifetimeMs)) + "\", \"issued_at\": \""
+                + format.format(new Date(now)) + "\", \"user\": {\"id\": \"user\", \"name\": \"admin\", \"domain\": "
+                + "{\"id\": \"default\", \"name\": \"Default\"}}, \"project\": {\"id\": \"project\", \"name\": \"admin\", "
+                + "\"domain\": {\"id\": \"default\", \"name\": \"Default\"}}, \"roles\": [], \"catalog\": []}}";
+        byte[] response = body.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().add("X-Subject-Token", "token-" + tokenNumber);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(201, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+}
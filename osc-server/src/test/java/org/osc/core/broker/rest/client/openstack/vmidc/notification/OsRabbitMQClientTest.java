@@ -0,0 +1,462 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.rest.client.openstack.vmidc.notification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+import static org.osc.core.common.virtualization.VirtualizationConnectorProperties.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.osc.core.broker.job.lock.LockObjectReference;
+import org.osc.core.broker.job.lock.LockObjectReference.ObjectType;
+import org.osc.core.broker.model.entities.virtualization.VirtualizationConnector;
+import org.osc.core.broker.rest.client.openstack.vmidc.notification.listener.NotificationListener;
+import org.osc.core.broker.service.api.server.EncryptionApi;
+import org.osc.core.broker.util.StaticRegistry;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.Envelope;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ StaticRegistry.class })
+public class OsRabbitMQClientTest {
+
+    private static final Logger log = LoggerFactory.getLogger(OsRabbitMQClientTest.class);
+
+    private static final int LISTENER_COUNT = 500;
+    private static final int MESSAGE_COUNT = 200;
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private OsRabbitMQClient client;
+
+    private VirtualizationConnector vc;
+
+    /*
+     * In process stand-in for the Rabbit MQ server
+     */
+    private Channel channel;
+    private Consumer consumer;
+
+    @Before
+    public void testInitialize() throws Exception {
+        EncryptionApi encrypter = mock(EncryptionApi.class);
+        when(encrypter.decryptAESCTR(anyString())).thenReturn("password");
+        PowerMockito.mockStatic(StaticRegistry.class);
+        when(StaticRegistry.encryptionApi()).thenReturn(encrypter);
+
+        this.vc = new VirtualizationConnector();
+        this.vc.setName("vc");
+        this.vc.setProviderIpAddress("127.0.0.1");
+        this.vc.getProviderAttributes().put(ATTRIBUTE_KEY_RABBITMQ_PORT, "5672");
+        this.vc.getProviderAttributes().put(ATTRIBUTE_KEY_RABBITMQ_USER, "guest");
+        this.vc.getProviderAttributes().put(ATTRIBUTE_KEY_RABBITMQ_USER_PASSWORD, "encrypted");
+
+        this.client = new OsRabbitMQClient(this.vc);
+    }
+
+    @After
+    public void testTearDown() {
+        this.client.destroy();
+    }
+
+    @Test
+    public void testParse_WithPortMessage_ExtractsAllObjectIds() {
+        // Arrange.
+        String message = portCreateMessage("port-1", "net-1", "vm-1", "subnet-1", "project-1");
+
+        // Act.
+        OsNotificationMessage notification = OsNotificationMessage.parse(message);
+
+        // Assert.
+        assertEquals("port.create.end", notification.getEventType());
+        assertEquals("net-1", notification.getProperty(OsNotificationKeyType.NETWORK_ID));
+        assertEquals("vm-1", notification.getProperty(OsNotificationKeyType.DEVICE_ID));
+        assertEquals("subnet-1", notification.getProperty(OsNotificationKeyType.SUBNET_ID));
+        assertEquals("project-1", notification.getProperty(OsNotificationKeyType.PROJECT_ID));
+        assertEquals(null, notification.getProperty(OsNotificationKeyType.AGGREGRATE_ID));
+        assertTrue(notification.getObjectIds().containsAll(Arrays.asList("port-1", "net-1", "vm-1", "subnet-1",
+                "project-1")));
+        for (OsNotificationKeyType key : OsNotificationKeyType.values()) {
+            if (key != OsNotificationKeyType.FIXED_IPS) {
+                assertEquals(key.toString(), OsNotificationUtil.getPropertyFromNotificationMessage(message, key.toString()),
+                        notification.getProperty(key));
+            }
+        }
+    }
+
+    @Test
+    public void testParse_WithMalformedMessage_HasNoObjectIds() {
+        // Act.
+        OsNotificationMessage notification = OsNotificationMessage
+                .parse("{\"event_type\": \"compute.instance.delete.end\", \"payload\": {\"instance_id\": ");
+
+        // Assert.
+        assertEquals("compute.instance.delete.end", notification.getEventType());
+        assertTrue(notification.getObjectIds().isEmpty());
+    }
+
+    @Test
+    public void testGetListeners_WithRelevantMessage_ReturnsOnlyListenersOfItsIds() {
+        // Arrange.
+        NotificationListener vm1Listener = listener("vm-1");
+        NotificationListener vm2Listener = listener("vm-2", "vm-3");
+        NotificationListener networkListener = listener("vm-1");
+        this.client.registerListener(vm1Listener, OsNotificationObjectType.VM);
+        this.client.registerListener(vm2Listener, OsNotificationObjectType.VM);
+        this.client.registerListener(networkListener, OsNotificationObjectType.NETWORK);
+
+        // Act.
+        Set<NotificationListener> listeners = this.client
+                .getListeners(OsNotificationMessage.parse(instanceDeleteMessage("vm-3")), OsNotificationObjectType.VM);
+
+        // Assert.
+        assertEquals(Collections.singleton(vm2Listener), listeners);
+    }
+
+    @Test
+    public void testGetListeners_AfterListenerIdsChanged_RoutesToNewIds() {
+        // Arrange.
+        List<String> oldIds = Arrays.asList("vm-1");
+        NotificationListener listener = listener("vm-1");
+        this.client.registerListener(listener, OsNotificationObjectType.VM);
+        when(listener.getObjectIdList()).thenReturn(Arrays.asList("vm-2"));
+
+        // Act.
+        this.client.reindexListener(listener, OsNotificationObjectType.VM, oldIds);
+
+        // Assert.
+        assertTrue(this.client.getListeners(OsNotificationMessage.parse(instanceDeleteMessage("vm-1")),
+                OsNotificationObjectType.VM).isEmpty());
+        assertEquals(Collections.singleton(listener), this.client
+                .getListeners(OsNotificationMessage.parse(instanceDeleteMessage("vm-2")), OsNotificationObjectType.VM));
+    }
+
+    @Test
+    public void testGetListeners_AfterListenerRemoved_ReturnsNoListener() {
+        // Arrange.
+        NotificationListener listener = listener("vm-1");
+        this.client.registerListener(listener, OsNotificationObjectType.VM);
+
+        // Act.
+        this.client.removeListener(listener, OsNotificationObjectType.VM);
+
+        // Assert.
+        assertTrue(this.client.getListeners(OsNotificationMessage.parse(instanceDeleteMessage("vm-1")),
+                OsNotificationObjectType.VM).isEmpty());
+    }
+
+    /**
+     * Compares routing recorded instance messages through the listener index with the previous behaviour of having
+     * every registered listener parse every message.
+     */
+    @Test
+    public void testGetListeners_WithManyListeners_RoutesFasterThanParsingPerListener() {
+        // Arrange.
+        List<NotificationListener> registered = new ArrayList<>();
+        for (int i = 0; i < LISTENER_COUNT; i++) {
+            NotificationListener listener = listener("vm-" + i);
+            registered.add(listener);
+            this.client.registerListener(listener, OsNotificationObjectType.VM);
+        }
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            messages.add(instanceDeleteMessage("vm-" + i * 7 % (LISTENER_COUNT * 2)));
+        }
+
+        // Act.
+        List<Set<NotificationListener>> perListenerRouted = new ArrayList<>();
+        long start = System.nanoTime();
+        for (String message : messages) {
+            Set<NotificationListener> listeners = new LinkedHashSet<>();
+            for (NotificationListener listener : registered) {
+                if (OsNotificationUtil.isMessageRelevant(message, listener.getObjectIdList(),
+                        OsNotificationKeyType.INSTANCE_ID.toString()) != null) {
+                    listeners.add(listener);
+                }
+            }
+            perListenerRouted.add(listeners);
+        }
+        long perListenerNanos = System.nanoTime() - start;
+
+        List<Set<NotificationListener>> indexRouted = new ArrayList<>();
+        start = System.nanoTime();
+        for (String message : messages) {
+            indexRouted.add(this.client.getListeners(OsNotificationMessage.parse(message), OsNotificationObjectType.VM));
+        }
+        long indexNanos = System.nanoTime() - start;
+
+        // Assert.
+        log.info(String.format("Routed %d messages to %d listeners: per listener parsing %.0f msg/s, indexed %.0f msg/s",
+                MESSAGE_COUNT, LISTENER_COUNT, MESSAGE_COUNT * 1e9 / perListenerNanos, MESSAGE_COUNT * 1e9 / indexNanos));
+        assertEquals(perListenerRouted, indexRouted);
+        assertTrue("Indexed routing should beat parsing the message per listener", indexNanos < perListenerNanos);
+    }
+
+    @Test
+    public void testConnect_ConsumesWithManualAcksAndBoundedPrefetch() throws Exception {
+        // Act.
+        connect();
+
+        // Assert.
+        verify(this.channel).basicQos(RabbitMQClient.DEFAULT_PREFETCH_COUNT);
+        verify(this.channel).basicConsume(eq(RabbitMQClient.QUEUE_NAME), eq(false), any(Consumer.class));
+    }
+
+    @Test
+    public void testReceiveMessage_WithRelevantMessage_AcknowledgesAfterListenerProcessedIt() throws Exception {
+        // Arrange.
+        connect();
+        NotificationListener listener = listener("vm-1");
+        this.client.registerListener(listener, OsNotificationObjectType.VM);
+
+        // Act.
+        deliver(7, instanceDeleteMessage("vm-1"));
+
+        // Assert.
+        verify(this.channel, timeout(TIMEOUT_MS)).basicAck(7, false);
+        InOrder inOrder = inOrder(listener, this.channel);
+        inOrder.verify(listener).onMessage(any(OsNotificationMessage.class));
+        inOrder.verify(this.channel).basicAck(7, false);
+        assertEquals(0, this.client.getMessagesInProgress());
+    }
+
+    @Test
+    public void testReceiveMessage_WithIrrelevantMessage_AcknowledgesIt() throws Exception {
+        // Arrange.
+        connect();
+        NotificationListener listener = listener("vm-1");
+        this.client.registerListener(listener, OsNotificationObjectType.VM);
+
+        // Act.
+        deliver(1, instanceDeleteMessage("vm-2"));
+        deliver(2, "{\"event_type\": \"unknown.event\", \"payload\": {}}");
+
+        // Assert.
+        verify(this.channel, timeout(TIMEOUT_MS)).basicAck(1, false);
+        verify(this.channel, timeout(TIMEOUT_MS)).basicAck(2, false);
+        verify(listener, never()).onMessage(any(OsNotificationMessage.class));
+    }
+
+    @Test
+    public void testReceiveMessage_WithSlowListener_KeepsObjectOrderWithoutBlockingOtherObjects() throws Exception {
+        // Arrange.
+        connect();
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> slowReceived = new CopyOnWriteArrayList<>();
+        LockObjectReference slowSg = securityGroup(1L);
+        LockObjectReference otherSg = securityGroup(2L);
+        for (long id = 3; OsRabbitMQClient.getPartition(otherSg, OsRabbitMQClient.DEFAULT_WORKER_COUNT) == OsRabbitMQClient
+                .getPartition(slowSg, OsRabbitMQClient.DEFAULT_WORKER_COUNT); id++) {
+            otherSg = securityGroup(id);
+        }
+        NotificationListener slowListener = listener(slowSg, "vm-1");
+        doAnswer(invocation -> {
+            release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            slowReceived.add(invocation.getArguments()[0].toString());
+            return null;
+        }).when(slowListener).onMessage(any(OsNotificationMessage.class));
+        NotificationListener otherListener = listener(otherSg, "vm-2");
+        this.client.registerListener(slowListener, OsNotificationObjectType.VM);
+        this.client.registerListener(otherListener, OsNotificationObjectType.VM);
+        String first = instanceDeleteMessage("vm-1");
+        String second = first.replace("compute.instance.delete.end", "compute.instance.power_off.end");
+
+        // Act.
+        deliver(1, first);
+        deliver(2, second);
+        deliver(3, instanceDeleteMessage("vm-2"));
+
+        // Assert.
+        verify(this.channel, timeout(TIMEOUT_MS)).basicAck(3, false);
+        verify(this.channel, never()).basicAck(1, false);
+        assertEquals(2, this.client.getMessagesInProgress());
+
+        release.countDown();
+        verify(this.channel, timeout(TIMEOUT_MS)).basicAck(2, false);
+        verify(this.channel).basicAck(1, false);
+        assertEquals(Arrays.asList(first, second), slowReceived);
+        assertEquals(3, this.client.getMessagesReceived());
+    }
+
+    @Test
+    public void testGetPartition_WithSameObject_RoutesToSamePartition() {
+        // Arrange.
+        LockObjectReference sg = securityGroup(1L);
+        LockObjectReference sameSg = securityGroup(1L);
+
+        // Act.
+        int partition = OsRabbitMQClient.getPartition(sg, OsRabbitMQClient.DEFAULT_WORKER_COUNT);
+
+        // Assert.
+        assertEquals(partition, OsRabbitMQClient.getPartition(sameSg, OsRabbitMQClient.DEFAULT_WORKER_COUNT));
+        assertTrue(partition >= 0 && partition < OsRabbitMQClient.DEFAULT_WORKER_COUNT);
+        assertEquals(0, OsRabbitMQClient.getPartition(null, OsRabbitMQClient.DEFAULT_WORKER_COUNT));
+    }
+
+    @Test
+    public void testGetPartition_WithDifferentObjects_SpreadsOverPartitions() {
+        // Arrange.
+        Set<Integer> partitions = new LinkedHashSet<>();
+
+        // Act.
+        for (long id = 1; id <= 100; id++) {
+            partitions.add(OsRabbitMQClient.getPartition(securityGroup(id), OsRabbitMQClient.DEFAULT_WORKER_COUNT));
+        }
+
+        // Assert.
+        assertEquals(OsRabbitMQClient.DEFAULT_WORKER_COUNT, partitions.size());
+    }
+
+    @Test
+    public void testReceiveMessage_WithListenersOfSameObject_DeliversOneAtATime() throws Exception {
+        // Arrange.
+        connect();
+        CountDownLatch release = new CountDownLatch(1);
+        LockObjectReference sg = securityGroup(1L);
+        NotificationListener vmListener = listener(sg, "vm-1");
+        doAnswer(invocation -> {
+            release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            return null;
+        }).when(vmListener).onMessage(any(OsNotificationMessage.class));
+        NotificationListener otherVmListener = listener(securityGroup(1L), "vm-2");
+        this.client.registerListener(vmListener, OsNotificationObjectType.VM);
+        this.client.registerListener(otherVmListener, OsNotificationObjectType.VM);
+
+        // Act.
+        deliver(1, instanceDeleteMessage("vm-1"));
+        deliver(2, instanceDeleteMessage("vm-2"));
+
+        // Assert.
+        verify(vmListener, timeout(TIMEOUT_MS)).onMessage(any(OsNotificationMessage.class));
+        Thread.sleep(200);
+        verify(otherVmListener, never()).onMessage(any(OsNotificationMessage.class));
+
+        release.countDown();
+        verify(this.channel, timeout(TIMEOUT_MS)).basicAck(2, false);
+        verify(otherVmListener).onMessage(any(OsNotificationMessage.class));
+    }
+
+    @Test
+    public void testReceiveMessage_AfterChannelClosed_DropsAcknowledgement() throws Exception {
+        // Arrange.
+        connect();
+        CountDownLatch release = new CountDownLatch(1);
+        NotificationListener listener = listener("vm-1");
+        doAnswer(invocation -> {
+            release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            return null;
+        }).when(listener).onMessage(any(OsNotificationMessage.class));
+        this.client.registerListener(listener, OsNotificationObjectType.VM);
+        deliver(1, instanceDeleteMessage("vm-1"));
+        verify(listener, timeout(TIMEOUT_MS)).onMessage(any(OsNotificationMessage.class));
+
+        // Act.
+        when(this.channel.isOpen()).thenReturn(false);
+        release.countDown();
+
+        // Assert.
+        Thread.sleep(500);
+        verify(this.channel, never()).basicAck(anyLong(), anyBoolean());
+        assertEquals(0, this.client.getMessagesInProgress());
+    }
+
+    private void connect() throws Exception {
+        this.channel = mock(Channel.class);
+        when(this.channel.isOpen()).thenReturn(true);
+        Connection connection = mock(Connection.class);
+        when(connection.isOpen()).thenReturn(true);
+        when(connection.createChannel()).thenReturn(this.channel);
+        ConnectionFactory factory = mock(ConnectionFactory.class);
+        when(factory.newConnection()).thenReturn(connection);
+
+        this.client.destroy();
+        this.client = new OsRabbitMQClient(this.vc) {
+            @Override
+            ConnectionFactory newConnectionFactory() {
+                return factory;
+            }
+        };
+        this.client.connect();
+
+        ArgumentCaptor<Consumer> consumerCaptor = ArgumentCaptor.forClass(Consumer.class);
+        verify(this.channel).basicConsume(anyString(), eq(false), consumerCaptor.capture());
+        this.consumer = consumerCaptor.getValue();
+    }
+
+    private void deliver(long deliveryTag, String message) throws Exception {
+        this.consumer.handleDelivery("consumer", new Envelope(deliveryTag, false, "nova", "notifications.info"), null,
+                message.getBytes());
+    }
+
+    private NotificationListener listener(String... objectIds) {
+        return listener(null, objectIds);
+    }
+
+    private NotificationListener listener(LockObjectReference objectReference, String... objectIds) {
+        NotificationListener listener = mock(NotificationListener.class);
+        when(listener.getObjectIdList()).thenReturn(Arrays.asList(objectIds));
+        when(listener.getObjectReference()).thenReturn(objectReference);
+        return listener;
+    }
+
+    private static LockObjectReference securityGroup(Long id) {
+        return new LockObjectReference(id, "sg-" + id, ObjectType.SECURITY_GROUP);
+    }
+
+    private static String instanceDeleteMessage(String instanceId) {
+        return "{\"event_type\": \"compute.instance.delete.end\", \"payload\": {\"instance_id\": \"" + instanceId
+                + "\", \"tenant_id\": \"project-1\", \"state\": \"deleted\", \"host\": \"compute-1\"},"
+                + " \"_context_tenant_id\": \"project-1\", \"priority\": \"INFO\"}";
+    }
+
+    private static String portCreateMessage(String portId, String networkId, String deviceId, String subnetId,
+            String projectId) {
+        return "{\"event_type\": \"port.create.end\", \"payload\": {\"port\": {\"id\": \"" + portId
+                + "\", \"port_id\": \"" + portId + "\", \"network_id\": \"" + networkId + "\", \"device_id\": \""
+                + deviceId + "\", \"tenant_id\": \"" + projectId + "\", \"fixed_ips\": [{\"subnet_id\": \"" + subnetId
+                + "\", \"ip_address\": \"10.0.0.5\"}]}}, \"_context_tenant_id\": \"" + projectId
+                + "\", \"priority\": \"INFO\"}";
+    }
+}
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.service;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.osc.core.broker.model.entities.job.JobRecord;
+import org.osc.core.broker.service.dto.JobRecordDto;
+import org.osc.core.broker.service.exceptions.VmidcBrokerValidationException;
+import org.osc.core.broker.service.request.ListJobRequest;
+import org.osc.core.broker.service.request.PageRequest;
+import org.osc.core.broker.service.response.PageResponse;
+import org.osc.core.broker.service.test.InMemDB;
+import org.osc.core.common.job.JobState;
+import org.osc.core.common.job.JobStatus;
+
+public class ListJobServiceTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private EntityManager em;
+
+    private ListJobService service = new ListJobService();
+
+    private List<Long> jobIds = new ArrayList<>();
+
+    @Before
+    public void testInitialize() {
+        this.em = InMemDB.getEntityManagerFactory().createEntityManager();
+
+        this.em.getTransaction().begin();
+        persistJob("b", JobState.COMPLETED);
+        persistJob("a", JobState.RUNNING);
+        persistJob("b", JobState.COMPLETED);
+        persistJob("a", JobState.NOT_RUNNING);
+        persistJob("c", JobState.COMPLETED);
+        this.em.getTransaction().commit();
+    }
+
+    @After
+    public void testTearDown() {
+        InMemDB.shutdown();
+    }
+
+    private void persistJob(String name, JobState state) {
+        JobRecord job = new JobRecord();
+        job.setName(name);
+        job.setState(state);
+        job.setStatus(JobStatus.PASSED);
+        this.em.persist(job);
+        this.jobIds.add(job.getId());
+    }
+
+    @Test
+    public void testExec_WithoutPage_ListsAllJobsNewestFirst() throws Exception {
+        // Act.
+        PageResponse<JobRecordDto> response = this.service.exec(new ListJobRequest(), this.em);
+
+        // Assert.
+        assertEquals(ids(4, 3, 2, 1, 0), getIds(response));
+        assertEquals(5, response.getTotalCount());
+    }
+
+    @Test
+    public void testExec_WithPages_ListsJobsNewestFirstPageByPage() throws Exception {
+        // Arrange.
+        PageRequest page = new PageRequest();
+        page.setPageSize(2);
+
+        // Act.
+        PageResponse<JobRecordDto> first = this.service.exec(request(page), this.em);
+        page.setAfterId(this.jobIds.get(3));
+        PageResponse<JobRecordDto> second = this.service.exec(request(page), this.em);
+        page.setAfterId(this.jobIds.get(1));
+        PageResponse<JobRecordDto> last = this.service.exec(request(page), this.em);
+
+        // Assert.
+        assertEquals(ids(4, 3), getIds(first));
+        assertEquals(ids(2, 1), getIds(second));
+        assertEquals(ids(0), getIds(last));
+        assertEquals(5, last.getTotalCount());
+    }
+
+    @Test
+    public void testExec_SortedByName_BreaksTiesById() throws Exception {
+        // Arrange.
+        PageRequest page = new PageRequest();
+        page.setPageSize(3);
+        page.setSortBy("name");
+        page.setAscending(true);
+
+        // Act.
+        PageResponse<JobRecordDto> first = this.service.exec(request(page), this.em);
+        page.setAfterId(this.jobIds.get(0));
+        PageResponse<JobRecordDto> second = this.service.exec(request(page), this.em);
+
+        // Assert.
+        assertEquals(ids(1, 3, 0), getIds(first));
+        assertEquals(ids(2, 4), getIds(second));
+    }
+
+    @Test
+    public void testExec_FilteredByState_CountsMatchingJobsOnly() throws Exception {
+        // Arrange.
+        PageRequest page = new PageRequest();
+        page.setPageSize(2);
+        page.getFilters().put("state", "run");
+
+        // Act.
+        PageResponse<JobRecordDto> response = this.service.exec(request(page), this.em);
+
+        // Assert.
+        assertEquals(ids(3, 1), getIds(response));
+        assertEquals(2, response.getTotalCount());
+    }
+
+    @Test
+    public void testExec_WithExactStateFilter_MatchesThatStateOnly() throws Exception {
+        // Arrange.
+        PageRequest page = new PageRequest();
+        page.setPageSize(5);
+        page.getEquals().put("state", JobState.RUNNING.name());
+
+        // Act.
+        PageResponse<JobRecordDto> response = this.service.exec(request(page), this.em);
+
+        // Assert.
+        assertEquals(ids(1), getIds(response));
+        assertEquals(1, response.getTotalCount());
+    }
+
+    @Test
+    public void testExec_WithExactFilterOnUnsupportedProperty_ThrowsValidationException() throws Exception {
+        // Arrange.
+        PageRequest page = new PageRequest();
+        page.setPageSize(2);
+        page.getEquals().put("failureReason", "timeout");
+
+        this.exception.expect(VmidcBrokerValidationException.class);
+
+        // Act.
+        this.service.exec(request(page), this.em);
+    }
+
+    @Test
+    public void testExec_SortedByUnsupportedProperty_ThrowsValidationException() throws Exception {
+        // Arrange.
+        PageRequest page = new PageRequest();
+        page.setPageSize(2);
+        page.setSortBy("failureReason");
+
+        this.exception.expect(VmidcBrokerValidationException.class);
+
+        // Act.
+        this.service.exec(request(page), this.em);
+    }
+
+    private static ListJobRequest request(PageRequest page) {
+        ListJobRequest request = new ListJobRequest();
+        request.setPage(page);
+        return request;
+    }
+
+    private List<Long> ids(int... indexes) {
+        List<Long> ids = new ArrayList<>();
+        for (int index : indexes) {
+            ids.add(this.jobIds.get(index));
+        }
+        return ids;
+    }
+
+    private static List<Long> getIds(PageResponse<JobRecordDto> response) {
+        return response.getList().stream().map(JobRecordDto::getId).collect(Collectors.toList());
+    }
+}
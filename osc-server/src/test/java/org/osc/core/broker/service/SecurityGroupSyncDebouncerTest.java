@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Answers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.osc.core.broker.model.entities.virtualization.SecurityGroup;
+import org.osc.core.broker.service.alert.AlertGenerator;
+import org.osc.core.broker.util.db.DBConnectionManager;
+import org.osc.core.test.util.TestTransactionControl;
+
+public class SecurityGroupSyncDebouncerTest {
+
+    private static final long QUIET_WINDOW_MS = 100;
+    private static final long MAX_DELAY_MS = 300;
+
+    @Mock
+    private SecurityGroupConformJobFactory sgConformJobFactory;
+
+    @Mock
+    private AlertGenerator alertGenerator;
+
+    @Mock
+    private DBConnectionManager dbMgr;
+
+    @Mock
+    private EntityManager em;
+
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
+    private TestTransactionControl txControl;
+
+    @InjectMocks
+    private SecurityGroupSyncDebouncer debouncer;
+
+    @Before
+    public void testInitialize() {
+        MockitoAnnotations.initMocks(this);
+        when(this.em.getTransaction()).thenReturn(mock(EntityTransaction.class));
+        this.txControl.setEntityManager(this.em);
+        when(this.dbMgr.getTransactionalEntityManager()).thenReturn(this.em);
+        when(this.dbMgr.getTransactionControl()).thenReturn(this.txControl);
+        SecurityGroupSyncDebouncer.setQuietWindow(String.valueOf(QUIET_WINDOW_MS));
+        SecurityGroupSyncDebouncer.setMaxDelay(String.valueOf(MAX_DELAY_MS));
+        this.debouncer.activate();
+    }
+
+    @After
+    public void testTearDown() {
+        this.debouncer.deactivate();
+        SecurityGroupSyncDebouncer.setQuietWindow(String.valueOf(SecurityGroupSyncDebouncer.DEFAULT_QUIET_WINDOW_MS));
+        SecurityGroupSyncDebouncer.setMaxDelay(String.valueOf(SecurityGroupSyncDebouncer.DEFAULT_MAX_DELAY_MS));
+    }
+
+    @Test
+    public void testRequestSync_WithBurstOfEvents_TriggersSingleSync() throws Exception {
+        // Arrange.
+        SecurityGroup sg = createSecurityGroup(1L);
+
+        // Act.
+        for (int i = 0; i < 50; i++) {
+            this.debouncer.requestSync(sg);
+        }
+
+        // Assert.
+        verify(this.sgConformJobFactory, timeout(2000)).startSecurityGroupConformanceJob(sg);
+        Thread.sleep(QUIET_WINDOW_MS * 3);
+        verify(this.sgConformJobFactory, times(1)).startSecurityGroupConformanceJob(any(SecurityGroup.class));
+        assertEquals(50, this.debouncer.getEventsReceived());
+        assertEquals(1, this.debouncer.getSyncsTriggered());
+        assertEquals(0, this.debouncer.getPendingSyncs());
+    }
+
+    @Test
+    public void testRequestSync_WithEventsForDifferentSecurityGroups_TriggersSyncPerSecurityGroup() throws Exception {
+        // Arrange.
+        SecurityGroup sg1 = createSecurityGroup(1L);
+        SecurityGroup sg2 = createSecurityGroup(2L);
+
+        // Act.
+        this.debouncer.requestSync(sg1);
+        this.debouncer.requestSync(sg2);
+        this.debouncer.requestSync(sg1);
+
+        // Assert.
+        verify(this.sgConformJobFactory, timeout(2000)).startSecurityGroupConformanceJob(sg1);
+        verify(this.sgConformJobFactory, timeout(2000)).startSecurityGroupConformanceJob(sg2);
+        assertEquals(3, this.debouncer.getEventsReceived());
+    }
+
+    @Test
+    public void testRequestSync_WithContinuousEvents_TriggersSyncWithinMaxDelay() throws Exception {
+        // Arrange.
+        SecurityGroup sg = createSecurityGroup(1L);
+        long start = System.currentTimeMillis();
+
+        // Act.
+        while (System.currentTimeMillis() - start < MAX_DELAY_MS * 2) {
+            this.debouncer.requestSync(sg);
+            Thread.sleep(QUIET_WINDOW_MS / 4);
+        }
+
+        // Assert.
+        verify(this.sgConformJobFactory, atLeast(1)).startSecurityGroupConformanceJob(sg);
+    }
+
+    @Test
+    public void testRequestSync_WithFailingSync_RaisesAlert() throws Exception {
+        // Arrange.
+        SecurityGroup sg = createSecurityGroup(1L);
+        doThrow(new IllegalStateException("locked")).when(this.sgConformJobFactory).startSecurityGroupConformanceJob(sg);
+
+        // Act.
+        this.debouncer.requestSync(sg);
+
+        // Assert.
+        verify(this.alertGenerator, timeout(2000)).processSystemFailureEvent(any(), any(), any());
+        assertEquals(0, this.debouncer.getSyncsTriggered());
+    }
+
+    @Test
+    public void testRequestSync_WithDetachedSecurityGroup_SyncsSecurityGroupLoadedInTransaction() throws Exception {
+        // Arrange.
+        SecurityGroup detachedSg = new SecurityGroup(null, "project", "project");
+        detachedSg.setId(1L);
+        detachedSg.setName("sg-1");
+        SecurityGroup loadedSg = createSecurityGroup(1L);
+
+        // Act.
+        this.debouncer.requestSync(detachedSg);
+
+        // Assert.
+        verify(this.sgConformJobFactory, timeout(2000)).startSecurityGroupConformanceJob(same(loadedSg));
+        verify(this.sgConformJobFactory, never()).startSecurityGroupConformanceJob(same(detachedSg));
+    }
+
+    private SecurityGroup createSecurityGroup(Long id) {
+        SecurityGroup sg = new SecurityGroup(null, "project", "project");
+        sg.setId(id);
+        sg.setName("sg-" + id);
+        when(this.em.find(SecurityGroup.class, id)).thenReturn(sg);
+        return sg;
+    }
+}
@@ -17,6 +17,7 @@
 package org.osc.core.broker.service;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -24,12 +25,17 @@ import java.util.List;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
 
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Answers;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.osc.core.broker.service.api.server.UserContextApi;
 import org.osc.core.broker.service.exceptions.VmidcException;
+import org.osc.core.broker.service.metrics.ServiceMetrics;
+import org.osc.core.broker.service.metrics.ServiceMetricsRegistry;
 import org.osc.core.broker.service.request.Request;
 import org.osc.core.broker.service.response.Response;
 import org.osc.core.test.util.TestTransactionControl;
@@ -122,6 +128,48 @@ public class ServiceDispatcherTest {
         Mockito.verify(this.mockedTransaction, Mockito.times(3)).commit();
     }
 
+    @Test
+    public void testExecuteReadOnlyRequest() throws Exception {
+        ServiceDispatcher<?, ?> mockServiceDispatcher = readOnlyDispatcher();
+        ServiceMetrics metrics = ServiceMetricsRegistry.getRegistry()
+                .getMetrics(mockServiceDispatcher.getClass().getSimpleName());
+        long count = metrics.getCount();
+
+        mockServiceDispatcher.dispatch(null);
+
+        Mockito.verify(this.mockedTxControl).supports(Mockito.any());
+        Mockito.verify(this.mockedTransaction, Mockito.never()).begin();
+        assertEquals(count + 1, metrics.getCount());
+    }
+
+    @Test
+    public void testExecuteReadOnlyRequest_SessionSettingsRestored() throws Exception {
+        Session session = Mockito.mock(Session.class);
+        Mockito.when(session.getHibernateFlushMode()).thenReturn(FlushMode.AUTO);
+        Mockito.when(this.mockEM.unwrap(Session.class)).thenReturn(session);
+
+        readOnlyDispatcher().dispatch(null);
+
+        InOrder inOrder = Mockito.inOrder(session);
+        inOrder.verify(session).setHibernateFlushMode(FlushMode.MANUAL);
+        inOrder.verify(session).setDefaultReadOnly(true);
+        inOrder.verify(session).setHibernateFlushMode(FlushMode.AUTO);
+        inOrder.verify(session).setDefaultReadOnly(false);
+    }
+
+    @Test
+    public void testExecuteReadOnlyRequest_WithinTransaction_SessionUnchanged() throws Exception {
+        Session session = Mockito.mock(Session.class);
+        Mockito.when(this.mockEM.unwrap(Session.class)).thenReturn(session);
+        ServiceDispatcher<Request, Response> readOnlyDispatcher = readOnlyDispatcher();
+
+        this.mockedTxControl.required(() -> readOnlyDispatcher.dispatch(null));
+
+        Mockito.verify(session, Mockito.never()).setHibernateFlushMode(Mockito.any(FlushMode.class));
+        Mockito.verify(session, Mockito.never()).setDefaultReadOnly(Mockito.anyBoolean());
+        Mockito.verify(this.mockedTransaction).commit();
+    }
+
     @Test(expected = Exception.class)
     public void testExecuteInvalidRequest() throws Exception {
         ServiceDispatcher<?, ?> mockServiceDispatcher = new ServiceDispatcher<Request, Response>() {
@@ -150,4 +198,32 @@ public class ServiceDispatcherTest {
         Mockito.verify(this.mockedTransaction).rollback();
     }
 
+    private ServiceDispatcher<Request, Response> readOnlyDispatcher() {
+        return new ServiceDispatcher<Request, Response>() {
+
+            {
+                this.userContext = Mockito.mock(UserContextApi.class);
+            }
+
+            @Override
+            protected boolean isReadOnly() {
+                return true;
+            }
+
+            @Override
+            public Response exec(Request request, EntityManager em) throws Exception {
+                return null;
+            }
+
+            @Override
+            protected EntityManager getEntityManager() {
+                return ServiceDispatcherTest.this.mockEM;
+            }
+
+            @Override
+            protected TransactionControl getTransactionControl() throws InterruptedException, VmidcException {
+                return ServiceDispatcherTest.this.mockedTxControl;
+            }
+        };
+    }
 }
@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.persistence.EntityManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openstack4j.model.compute.Server;
+import org.openstack4j.model.network.Port;
+import org.osc.core.broker.model.entities.appliance.DistributedApplianceInstance;
+import org.osc.core.broker.model.entities.appliance.VirtualSystem;
+import org.osc.core.broker.model.entities.virtualization.VirtualizationConnector;
+import org.osc.core.broker.model.entities.virtualization.openstack.DeploymentSpec;
+import org.osc.core.broker.model.entities.virtualization.openstack.VM;
+import org.osc.core.broker.rest.client.openstack.discovery.OpenstackInventoryCache;
+import org.osc.core.broker.rest.client.openstack.openstack4j.Endpoint;
+import org.osc.core.broker.rest.client.openstack.openstack4j.Openstack4JNeutron;
+import org.osc.core.broker.service.exceptions.VmidcBrokerValidationException;
+import org.osc.core.broker.service.persistence.VMPortEntityManager;
+import org.osc.core.broker.service.response.QueryVmInfoResponse.VmInfo;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ VMPortEntityManager.class, OpenstackInventoryCache.class, VmInfoResolver.class })
+public class VmInfoResolverTest {
+
+    private static final String REGION = "region";
+    private static final String PROJECT = "admin";
+
+    private EntityManager em;
+    private DistributedApplianceInstance dai;
+    private VirtualizationConnector vc;
+    private OpenstackInventoryCache inventory;
+    private ExecutorService executor;
+
+    private VmInfoResolver resolver;
+
+    @Before
+    public void testInitialize() {
+        this.em = mock(EntityManager.class);
+        this.vc = mock(VirtualizationConnector.class);
+        when(this.vc.getId()).thenReturn(1L);
+        when(this.vc.getProviderAdminProjectName()).thenReturn(PROJECT);
+        VirtualSystem vs = mock(VirtualSystem.class);
+        when(vs.getVirtualizationConnector()).thenReturn(this.vc);
+        DeploymentSpec ds = mock(DeploymentSpec.class);
+        when(ds.getRegion()).thenReturn(REGION);
+        this.dai = mock(DistributedApplianceInstance.class);
+        when(this.dai.getVirtualSystem()).thenReturn(vs);
+        when(this.dai.getDeploymentSpec()).thenReturn(ds);
+
+        PowerMockito.mockStatic(VMPortEntityManager.class);
+        this.inventory = PowerMockito.mock(OpenstackInventoryCache.class);
+        PowerMockito.mockStatic(OpenstackInventoryCache.class);
+        when(OpenstackInventoryCache.getCache()).thenReturn(this.inventory);
+
+        this.executor = Executors.newFixedThreadPool(4);
+        this.resolver = new VmInfoResolver(this.em, this.dai, this.executor);
+    }
+
+    @After
+    public void testTearDown() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void testResolveIpAddresses_WithKnownAndUnknownIps_QueriesDatabaseOnce() {
+        // Arrange.
+        List<String> ips = Arrays.asList("10.0.0.1", "10.0.0.2", "10.0.0.3");
+        Map<String, VM> vms = new HashMap<>();
+        vms.put("10.0.0.1", newVm(1L, "vm-1"));
+        vms.put("10.0.0.3", newVm(3L, "vm-3"));
+        when(VMPortEntityManager.findByIpAddresses(this.em, this.dai, ips)).thenReturn(vms);
+
+        // Act.
+        Map<String, VmInfo> vmInfos = this.resolver.resolveIpAddresses(ips);
+
+        // Assert.
+        assertEquals(ips, Arrays.asList(vmInfos.keySet().toArray()));
+        assertEquals("vm-1", vmInfos.get("10.0.0.1").vmUuid);
+        assertEquals("10.0.0.1", vmInfos.get("10.0.0.1").vmIpAddress);
+        assertNull(vmInfos.get("10.0.0.2"));
+        assertEquals("vm-3", vmInfos.get("10.0.0.3").vmUuid);
+        PowerMockito.verifyStatic(times(1));
+        VMPortEntityManager.findByIpAddresses(this.em, this.dai, ips);
+    }
+
+    @Test
+    public void testResolveMacAddresses_WithAllMacsInDatabase_DoesNotReachOpenstack() throws Exception {
+        // Arrange.
+        List<String> macs = Arrays.asList("fa:16:3e:00:00:01", "fa:16:3e:00:00:02");
+        Map<String, VM> vms = new HashMap<>();
+        vms.put("fa:16:3e:00:00:01", newVm(1L, "vm-1"));
+        vms.put("fa:16:3e:00:00:02", newVm(2L, "vm-2"));
+        when(VMPortEntityManager.findByMacAddresses(this.em, macs)).thenReturn(vms);
+
+        // Act.
+        Map<String, VmInfo> vmInfos = this.resolver.resolveMacAddresses(macs);
+
+        // Assert.
+        assertEquals("vm-1", vmInfos.get("fa:16:3e:00:00:01").vmUuid);
+        assertEquals("fa:16:3e:00:00:02", vmInfos.get("fa:16:3e:00:00:02").vmMacAddress);
+        verifyZeroInteractions(this.inventory);
+    }
+
+    @Test
+    public void testResolveMacAddresses_WithManyMacsNotInDatabase_QueriesPortsByMac() throws Exception {
+        // Arrange.
+        List<String> macs = new ArrayList<>();
+        for (int i = 10; i < 30; i++) {
+            macs.add("fa:16:3e:00:01:" + i);
+        }
+        when(VMPortEntityManager.findByMacAddresses(this.em, macs)).thenReturn(new HashMap<>());
+        Openstack4JNeutron neutron = PowerMockito.mock(Openstack4JNeutron.class);
+        PowerMockito.whenNew(Endpoint.class).withAnyArguments().thenReturn(mock(Endpoint.class));
+        PowerMockito.whenNew(Openstack4JNeutron.class).withAnyArguments().thenReturn(neutron);
+        when(neutron.getVmIdByMacAddress(eq(REGION), anyString())).thenReturn("server-b");
+        Server server = newServer("server-b");
+        when(this.inventory.getServer(this.vc, PROJECT, REGION, "server-b")).thenReturn(server);
+
+        // Act.
+        Map<String, VmInfo> vmInfos = this.resolver.resolveMacAddresses(macs);
+
+        // Assert.
+        assertEquals(macs, Arrays.asList(vmInfos.keySet().toArray()));
+        for (String mac : macs) {
+            assertEquals("server-b", vmInfos.get(mac).vmUuid);
+            verify(neutron).getVmIdByMacAddress(REGION, mac);
+        }
+    }
+
+    @Test
+    public void testResolvePortIds_WithPortsOfSameServer_ReadsServerOnce() throws Exception {
+        // Arrange.
+        List<String> portIds = Arrays.asList("port-a1", "port-a2", "port-a3");
+        for (String portId : portIds) {
+            Port port = newComputePort("server-a");
+            when(this.inventory.getPort(this.vc, PROJECT, REGION, portId)).thenReturn(port);
+        }
+        Server server = newServer("server-a");
+        when(this.inventory.getServer(this.vc, PROJECT, REGION, "server-a")).thenReturn(server);
+
+        // Act.
+        Map<String, VmInfo> vmInfos = this.resolver.resolvePortIds(portIds);
+
+        // Assert.
+        assertEquals(3, vmInfos.size());
+        for (String portId : portIds) {
+            assertEquals("server-a", vmInfos.get(portId).vmUuid);
+        }
+        verify(this.inventory, times(1)).getServer(this.vc, PROJECT, REGION, "server-a");
+    }
+
+    @Test
+    public void testResolvePortIds_WithUnknownPort_DoesNotQueryOpenstackAgain() throws Exception {
+        // Arrange.
+        when(this.inventory.getPort(this.vc, PROJECT, REGION, "port-unknown")).thenReturn(null);
+
+        // Act.
+        for (int i = 0; i < 3; i++) {
+            try {
+                this.resolver.resolvePortIds(Collections.singletonList("port-unknown"));
+                fail("Expected the unknown port to fail the lookup");
+            } catch (VmidcBrokerValidationException e) {
+                // Assert.
+                assertEquals("Unable to find Server attached to the port: port-unknown", e.getMessage());
+            }
+        }
+        verify(this.inventory, times(1)).getPort(any(VirtualizationConnector.class), anyString(), anyString(),
+                eq("port-unknown"));
+    }
+
+    private VM newVm(Long id, String openstackId) {
+        VM vm = mock(VM.class);
+        when(vm.getId()).thenReturn(id);
+        when(vm.getOpenstackId()).thenReturn(openstackId);
+        when(vm.getName()).thenReturn("name-" + openstackId);
+        return vm;
+    }
+
+    private Port newComputePort(String deviceId) {
+        Port port = mock(Port.class);
+        when(port.getDeviceOwner()).thenReturn("compute:nova");
+        when(port.getDeviceId()).thenReturn(deviceId);
+        return port;
+    }
+
+    private Server newServer(String id) {
+        Server server = mock(Server.class);
+        when(server.getId()).thenReturn(id);
+        when(server.getName()).thenReturn("name-" + id);
+        return server;
+    }
+}
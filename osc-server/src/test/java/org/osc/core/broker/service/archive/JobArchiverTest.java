@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.service.archive;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import javax.persistence.EntityManager;
+
+import org.apache.commons.lang.time.DateUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.osc.core.broker.model.entities.archive.JobsArchive;
+import org.osc.core.broker.model.entities.job.JobRecord;
+import org.osc.core.broker.model.entities.job.TaskRecord;
+import org.osc.core.broker.service.test.InMemDB;
+import org.osc.core.common.job.TaskGuard;
+import org.osc.core.test.util.TestTransactionControl;
+
+public class JobArchiverTest {
+
+    private static final int BATCH_SIZE = 2;
+
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
+    private TestTransactionControl txControl;
+
+    private EntityManager em;
+
+    private List<Long> oldJobIds;
+    private Long recentJobId;
+
+    @Before
+    public void testInitialize() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        this.em = InMemDB.getEntityManagerFactory().createEntityManager();
+        this.txControl.setEntityManager(this.em);
+
+        this.txControl.required(() -> {
+            this.em.createNativeQuery("MERGE INTO JOBS_ARCHIVE (id, version, auto_schedule, frequency, "
+                    + "threshold_value, threshold_unit) KEY (id) VALUES (1, 0, false, 'WEEKLY', 1, 'YEARS')")
+            .executeUpdate();
+            this.em.createNativeQuery("MERGE INTO RELEASE_INFO (id, version, db_version) KEY (id) VALUES (1, 0, 96)")
+            .executeUpdate();
+
+            this.oldJobIds = new ArrayList<>();
+            Date twoYearsAgo = DateUtils.addYears(new Date(), -2);
+            for (int i = 0; i < 5; i++) {
+                this.oldJobIds.add(persistJob("old-job-" + i, twoYearsAgo));
+            }
+            this.recentJobId = persistJob("recent-job", new Date());
+            return null;
+        });
+    }
+
+    @After
+    public void testTearDown() {
+        this.em.close();
+    }
+
+    @Test
+    public void testArchive_WithOldJobs_ArchivesAndDeletesThemInBatches() throws Exception {
+        // Arrange.
+        JobArchiver archiver = new JobArchiver(this.txControl, this.em, BATCH_SIZE);
+
+        // Act.
+        File zipFile = archiver.archive(oneYearAgo(), this.testFolder.getRoot().getPath());
+
+        // Assert.
+        List<String> entries = readEntries(zipFile);
+        assertTrue(entries.contains("release_info.csv"));
+        assertTrue(entries.contains("job-00001.csv"));
+        assertTrue(entries.contains("task_predecessor-00003.csv"));
+        assertEquals(5, archiver.getJobsArchived());
+        assertTrue(archiver.getBytesWritten() > 0);
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            assertEquals("The zip central directory should have been written.", entries.size(), zip.size());
+        }
+
+        this.txControl.required(() -> {
+            for (Long jobId : this.oldJobIds) {
+                assertNull(this.em.find(JobRecord.class, jobId));
+            }
+            assertNotNull(this.em.find(JobRecord.class, this.recentJobId));
+
+            JobsArchive jobsArchive = this.em.find(JobsArchive.class, 1L);
+            assertNull(jobsArchive.getArchiveThresholdTimestamp());
+            assertNull(jobsArchive.getLastArchivedJobId());
+            return null;
+        });
+    }
+
+    @Test
+    public void testArchive_WithInterruptedRun_ResumesAfterHighWaterMark() throws Exception {
+        // Arrange.
+        Timestamp interruptedThreshold = oneYearAgo();
+        this.txControl.required(() -> {
+            JobsArchive jobsArchive = this.em.find(JobsArchive.class, 1L);
+            jobsArchive.setArchiveThresholdTimestamp(interruptedThreshold);
+            jobsArchive.setLastArchivedJobId(this.oldJobIds.get(2));
+            jobsArchive.setLastArchivedAlertId(0L);
+            return null;
+        });
+        JobArchiver archiver = new JobArchiver(this.txControl, this.em, BATCH_SIZE);
+
+        // Act.
+        archiver.archive(new Timestamp(System.currentTimeMillis()), this.testFolder.getRoot().getPath());
+
+        // Assert.
+        assertEquals(2, archiver.getJobsArchived());
+        this.txControl.required(() -> {
+            // Jobs before the mark were archived by the interrupted run, not this one
+            assertNotNull(this.em.find(JobRecord.class, this.oldJobIds.get(0)));
+            assertNull(this.em.find(JobRecord.class, this.oldJobIds.get(3)));
+            assertNull(this.em.find(JobRecord.class, this.oldJobIds.get(4)));
+            // The threshold of the interrupted run applies, not the requested one
+            assertNotNull(this.em.find(JobRecord.class, this.recentJobId));
+            return null;
+        });
+
+        // The next run starts afresh
+        JobArchiver nextArchiver = new JobArchiver(this.txControl, this.em, BATCH_SIZE);
+        nextArchiver.archive(oneYearAgo(), this.testFolder.getRoot().getPath());
+        assertEquals(3, nextArchiver.getJobsArchived());
+    }
+
+    @Test
+    public void testArchive_WithFailureWhileWritingZip_DeletesNoRows() throws Exception {
+        // Arrange.
+        AtomicInteger newTransactions = new AtomicInteger();
+        Mockito.doAnswer(i -> {
+            // Fail the second job batch, after the first one was written to the zip
+            if (newTransactions.incrementAndGet() == 3) {
+                throw new IllegalStateException("Disk full");
+            }
+            return i.callRealMethod();
+        }).when(this.txControl).requiresNew(Mockito.<Callable<Object>>any());
+        JobArchiver archiver = new JobArchiver(this.txControl, this.em, BATCH_SIZE);
+
+        // Act.
+        try {
+            archiver.archive(oneYearAgo(), this.testFolder.getRoot().getPath());
+            fail("The archiving should have failed.");
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+
+        // Assert.
+        this.txControl.required(() -> {
+            for (Long jobId : this.oldJobIds) {
+                assertNotNull(this.em.find(JobRecord.class, jobId));
+            }
+            assertEquals(Long.valueOf(0L), this.em.find(JobsArchive.class, 1L).getLastArchivedJobId());
+            return null;
+        });
+
+        // The next run archives and deletes them all
+        Mockito.doCallRealMethod().when(this.txControl).requiresNew(Mockito.<Callable<Object>>any());
+        JobArchiver nextArchiver = new JobArchiver(this.txControl, this.em, BATCH_SIZE);
+        nextArchiver.archive(oneYearAgo(), this.testFolder.getRoot().getPath());
+        assertEquals(5, nextArchiver.getJobsArchived());
+        this.txControl.required(() -> {
+            for (Long jobId : this.oldJobIds) {
+                assertNull(this.em.find(JobRecord.class, jobId));
+            }
+            return null;
+        });
+    }
+
+    private Long persistJob(String name, Date completedTimestamp) {
+        JobRecord job = new JobRecord();
+        job.setName(name);
+        job.setCompletedTimestamp(completedTimestamp);
+        this.em.persist(job);
+
+        TaskRecord first = newTask(job, "first", 0L);
+        TaskRecord second = newTask(job, "second", 1L);
+        second.addPredecessor(first);
+        this.em.persist(first);
+        this.em.persist(second);
+        return job.getId();
+    }
+
+    private TaskRecord newTask(JobRecord job, String name, Long order) {
+        TaskRecord task = new TaskRecord(job);
+        task.setName(name);
+        task.setTaskGaurd(TaskGuard.ALL_PREDECESSORS_COMPLETED);
+        task.setDependencyOrder(order);
+        return task;
+    }
+
+    private static Timestamp oneYearAgo() {
+        return new Timestamp(DateUtils.addYears(new Date(), -1).getTime());
+    }
+
+    private static List<String> readEntries(File zipFile) throws Exception {
+        List<String> entries = new ArrayList<>();
+        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(zipFile))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                entries.add(entry.getName());
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.service.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ServiceMetricsTest {
+
+    @After
+    public void tearDown() {
+        ServiceMetricsRegistry.getRegistry().reset();
+    }
+
+    @Test
+    public void testRecord_WithLatenciesAndErrors_ComputesPercentiles() {
+        // Arrange.
+        ServiceMetrics metrics = ServiceMetricsRegistry.getRegistry().getMetrics("TestService");
+
+        // Act.
+        for (int i = 0; i < 90; i++) {
+            metrics.record(3, false);
+        }
+        for (int i = 0; i < 9; i++) {
+            metrics.record(40, false);
+        }
+        metrics.record(700, true);
+
+        // Assert.
+        assertEquals(100, metrics.getCount());
+        assertEquals(1, metrics.getErrors());
+        assertEquals(700, metrics.getMaxLatencyMs());
+        assertEquals(5, metrics.getLatencyPercentileMs(50));
+        assertEquals(50, metrics.getLatencyPercentileMs(95));
+        assertEquals(50, metrics.getLatencyPercentileMs(99));
+        assertEquals(700, metrics.getLatencyPercentileMs(100));
+        assertEquals((90 * 3 + 9 * 40 + 700) / 100.0, metrics.getAverageLatencyMs(), 0.001);
+    }
+
+    @Test
+    public void testRecord_AboveLastBucket_ReportsMaxLatency() {
+        // Arrange.
+        ServiceMetrics metrics = ServiceMetricsRegistry.getRegistry().getMetrics("SlowService");
+
+        // Act.
+        metrics.record(45000, false);
+
+        // Assert.
+        assertEquals(45000, metrics.getLatencyPercentileMs(50));
+    }
+
+    @Test
+    public void testGetMetrics_SameService_ReturnsSameInstance() {
+        // Arrange.
+        ServiceMetricsRegistry registry = ServiceMetricsRegistry.getRegistry();
+
+        // Act.
+        registry.getMetrics("B").record(1, false);
+        registry.getMetrics("A").record(1, false);
+        registry.getMetrics("B").record(1, false);
+
+        // Assert.
+        assertEquals(2, registry.getAllMetrics().size());
+        assertEquals("A", registry.getAllMetrics().get(0).getName());
+        assertEquals(2, registry.getMetrics("B").getCount());
+    }
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.service.persistence;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.osc.core.broker.job.lock.LockObjectReference;
+import org.osc.core.broker.model.entities.appliance.DistributedAppliance;
+import org.osc.core.broker.model.entities.appliance.DistributedApplianceInstance;
+import org.osc.core.broker.model.entities.appliance.VirtualSystem;
+import org.osc.core.broker.model.entities.virtualization.SecurityGroup;
+import org.osc.core.broker.model.entities.virtualization.SecurityGroupMember;
+import org.osc.core.broker.model.entities.virtualization.SecurityGroupMemberType;
+import org.osc.core.broker.model.entities.virtualization.VirtualizationConnector;
+import org.osc.core.broker.model.entities.virtualization.openstack.VM;
+import org.osc.core.broker.model.entities.virtualization.openstack.VMPort;
+import org.osgi.service.transaction.control.TransactionContext;
+import org.osgi.service.transaction.control.TransactionStatus;
+
+public class EntityChangeTrackerTest {
+
+    // The tracker is shared, use ids no other test syncs
+    private static final AtomicLong nextId = new AtomicLong(1000);
+
+    private final EntityChangeTracker tracker = EntityChangeTracker.getTracker();
+
+    private DistributedAppliance da;
+    private VirtualSystem vs;
+    private SecurityGroup sg;
+
+    @Before
+    public void setUp() {
+        this.da = new DistributedAppliance();
+        this.da.setId(nextId.incrementAndGet());
+        this.vs = new VirtualSystem(this.da);
+        this.vs.setId(nextId.incrementAndGet());
+        this.sg = new SecurityGroup(null, null, null);
+        this.sg.setId(nextId.incrementAndGet());
+    }
+
+    @Test
+    public void testIsDirty_NeverSynced_ReturnsTrue() {
+        assertTrue(this.tracker.isDirty(new LockObjectReference(this.da)));
+    }
+
+    @Test
+    public void testIsDirty_SyncedWithoutChange_ReturnsFalse() {
+        // Arrange.
+        this.tracker.markChanged(this.da);
+
+        // Act.
+        syncAll();
+
+        // Assert.
+        assertFalse(this.tracker.isDirty(new LockObjectReference(this.da)));
+        assertFalse(this.tracker.isDirty(new LockObjectReference(this.sg)));
+    }
+
+    @Test
+    public void testMarkChanged_ChildEntity_MarksOwningDaAndSgDirty() {
+        // Arrange.
+        syncAll();
+
+        // Act.
+        this.tracker.markChanged(new DistributedApplianceInstance(this.vs));
+        this.tracker.markChanged(new SecurityGroupMember(this.sg, SecurityGroupMemberType.IP, "10.0.0.1"));
+
+        // Assert.
+        assertTrue(this.tracker.isDirty(new LockObjectReference(this.da)));
+        assertTrue(this.tracker.isDirty(new LockObjectReference(this.sg)));
+    }
+
+    @Test
+    public void testMarkChanged_Connector_MarksEverythingDirty() {
+        // Arrange.
+        syncAll();
+
+        // Act.
+        this.tracker.markChanged(new VirtualizationConnector());
+
+        // Assert.
+        assertTrue(this.tracker.isDirty(new LockObjectReference(this.da)));
+        assertTrue(this.tracker.isDirty(new LockObjectReference(this.sg)));
+    }
+
+    @Test
+    public void testMarkChanged_ChangeBeforeSyncedVersion_NotDirty() {
+        // Arrange.
+        this.tracker.markChanged(this.vs);
+        long version = this.tracker.getCurrentVersion();
+
+        // Act.
+        this.tracker.markSynced(new LockObjectReference(this.da), version);
+
+        // Assert.
+        assertFalse(this.tracker.isDirty(new LockObjectReference(this.da)));
+    }
+
+    @Test
+    public void testMarkChanged_TrackingDisabled_ChangeIgnored() {
+        // Arrange.
+        syncAll();
+        boolean wasTracking = this.tracker.setTrackingEnabled(false);
+
+        // Act.
+        try {
+            this.tracker.markChanged(this.vs);
+            this.tracker.markChanged(this.sg);
+        } finally {
+            this.tracker.setTrackingEnabled(wasTracking);
+        }
+
+        // Assert.
+        assertTrue(wasTracking);
+        assertFalse(this.tracker.isDirty(new LockObjectReference(this.da)));
+        assertFalse(this.tracker.isDirty(new LockObjectReference(this.sg)));
+    }
+
+    @Test
+    public void testMarkChanged_VmPort_MarksMemberSgAndProtectingDaDirty() {
+        // Arrange.
+        syncAll();
+        VM vm = new VM("region", "os-vm", "vm");
+        vm.addSecurityGroupMember(new SecurityGroupMember(this.sg, vm));
+        VMPort port = new VMPort(vm, "mac", "os-net", "os-port", new ArrayList<>());
+        port.addDai(new DistributedApplianceInstance(this.vs));
+
+        // Act.
+        this.tracker.markChanged(port);
+
+        // Assert.
+        assertTrue(this.tracker.isDirty(new LockObjectReference(this.da)));
+        assertTrue(this.tracker.isDirty(new LockObjectReference(this.sg)));
+    }
+
+    @Test
+    public void testMarkChanged_InTransaction_RecordedOnceCommitted() {
+        // Arrange.
+        syncAll();
+        TransactionContext transaction = mock(TransactionContext.class);
+
+        // Act.
+        this.tracker.markChanged(this.vs, transaction);
+        boolean dirtyBeforeCommit = this.tracker.isDirty(new LockObjectReference(this.da));
+        completion(transaction).accept(TransactionStatus.COMMITTED);
+
+        // Assert.
+        assertFalse(dirtyBeforeCommit);
+        assertTrue(this.tracker.isDirty(new LockObjectReference(this.da)));
+    }
+
+    @Test
+    public void testMarkChanged_InRolledBackTransaction_ChangeIgnored() {
+        // Arrange.
+        syncAll();
+        TransactionContext transaction = mock(TransactionContext.class);
+
+        // Act.
+        this.tracker.markChanged(this.sg, transaction);
+        completion(transaction).accept(TransactionStatus.ROLLED_BACK);
+
+        // Assert.
+        assertFalse(this.tracker.isDirty(new LockObjectReference(this.sg)));
+    }
+
+    @Test
+    public void testForget_DeletedDa_DirtyAgain() {
+        // Arrange.
+        syncAll();
+
+        // Act.
+        this.tracker.forget(this.da);
+
+        // Assert.
+        assertTrue(this.tracker.isDirty(new LockObjectReference(this.da)));
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Consumer<TransactionStatus> completion(TransactionContext transaction) {
+        ArgumentCaptor<Consumer<TransactionStatus>> captor = ArgumentCaptor.forClass((Class) Consumer.class);
+        verify(transaction).postCompletion(captor.capture());
+        return captor.getValue();
+    }
+
+    private void syncAll() {
+        long version = this.tracker.getCurrentVersion();
+        this.tracker.markSynced(new LockObjectReference(this.da), version);
+        this.tracker.markSynced(new LockObjectReference(this.sg), version);
+    }
+}
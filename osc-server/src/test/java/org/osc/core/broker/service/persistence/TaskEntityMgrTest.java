@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.service.persistence;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osc.core.broker.model.entities.job.JobRecord;
+import org.osc.core.broker.model.entities.job.TaskRecord;
+import org.osc.core.broker.service.dto.TaskRecordDto;
+import org.osc.core.broker.service.test.InMemDB;
+import org.osc.core.common.job.TaskGuard;
+import org.osc.core.common.job.TaskState;
+import org.osc.core.common.job.TaskStatus;
+
+public class TaskEntityMgrTest {
+
+    private EntityManager em;
+    private JobRecord job;
+
+    @Before
+    public void setUp() {
+        this.em = InMemDB.getEntityManagerFactory().createEntityManager();
+        this.em.getTransaction().begin();
+        this.job = new JobRecord();
+        this.job.setName("job");
+        this.em.persist(this.job);
+    }
+
+    @After
+    public void tearDown() {
+        this.em.getTransaction().rollback();
+        this.em.close();
+    }
+
+    @Test
+    public void testFromEntity_WithSpacedDependencyOrders_ExposesTheirRank() {
+        // Arrange.
+        TaskRecord first = newTask(1024L);
+        TaskRecord merged = newTask(1280L);
+        TaskRecord last = newTask(2048L);
+        merged.addPredecessor(first);
+        last.addPredecessor(first);
+        last.addPredecessor(merged);
+        this.em.flush();
+
+        // Act.
+        TaskRecordDto firstDto = TaskEntityMgr.fromEntity(first, this.em);
+        TaskRecordDto mergedDto = TaskEntityMgr.fromEntity(merged, this.em);
+        TaskRecordDto lastDto = TaskEntityMgr.fromEntity(last, this.em);
+
+        // Assert.
+        assertEquals(Long.valueOf(1L), firstDto.getDependencyOrder());
+        assertEquals(Long.valueOf(2L), mergedDto.getDependencyOrder());
+        assertEquals(Long.valueOf(3L), lastDto.getDependencyOrder());
+        assertEquals("[1]", mergedDto.getPredecessors());
+    }
+
+    @Test
+    public void testFromEntity_WithChildTasks_ExposesTheirRank() {
+        // Arrange.
+        TaskRecord metaTask = newTask(1024L);
+        TaskRecord child = newTask(1536L);
+        newTask(2048L);
+        metaTask.addChild(child);
+        this.em.flush();
+
+        // Act.
+        TaskRecordDto dto = TaskEntityMgr.fromEntity(metaTask, this.em);
+
+        // Assert.
+        assertEquals(Long.valueOf(2L), dto.getChildren().get(0).getDependencyOrder());
+        assertEquals("[]", dto.getPredecessors());
+    }
+
+    @Test
+    public void testGetDependencyRanks_WithSpacedDependencyOrders_MatchesSingleTaskRanks() {
+        // Arrange.
+        TaskRecord first = newTask(1024L);
+        TaskRecord merged = newTask(1280L);
+        TaskRecord last = newTask(2048L);
+        this.em.flush();
+
+        // Act.
+        Map<Long, Long> ranks = TaskEntityMgr.getDependencyRanks(this.em, this.job.getId());
+        TaskRecordDto lastDto = new TaskRecordDto();
+        TaskEntityMgr.fromEntity(last, lastDto, ranks);
+
+        // Assert.
+        assertEquals(3, ranks.size());
+        assertEquals(Long.valueOf(1L), ranks.get(first.getDependencyOrder()));
+        assertEquals(Long.valueOf(2L), ranks.get(merged.getDependencyOrder()));
+        assertEquals(TaskEntityMgr.fromEntity(last, this.em).getDependencyOrder(), lastDto.getDependencyOrder());
+    }
+
+    private TaskRecord newTask(Long dependencyOrder) {
+        TaskRecord task = new TaskRecord(this.job);
+        task.setName("task-" + dependencyOrder);
+        task.setState(TaskState.NOT_RUNNING);
+        task.setStatus(TaskStatus.PASSED);
+        task.setTaskGaurd(TaskGuard.ALL_PREDECESSORS_COMPLETED);
+        task.setDependencyOrder(dependencyOrder);
+        this.em.persist(task);
+        return task;
+    }
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.service.tasks.conformance.openstack.securitygroup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.osc.core.broker.model.entities.virtualization.SecurityGroupMember;
+import org.osc.core.broker.model.entities.virtualization.SecurityGroupMemberType;
+import org.osc.core.broker.model.entities.virtualization.openstack.Network;
+import org.osc.core.broker.model.entities.virtualization.openstack.VM;
+import org.osc.core.broker.service.dto.SecurityGroupMemberItemDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ProtectAllMemberDiffTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ProtectAllMemberDiffTest.class);
+
+    private static final String REGION = "RegionOne";
+
+    /**
+     * Largest project the quadratic legacy loop is timed on
+     */
+    private static final int LEGACY_MAX_SERVERS = 10000;
+
+    @Test
+    public void testCompute_WithChangedServers_ReturnsOnlyTheDelta() {
+        // Arrange.
+        SecurityGroupMember unchanged = vmMember("vm-1", false);
+        SecurityGroupMember restored = vmMember("vm-2", true);
+        SecurityGroupMember removed = vmMember("vm-3", false);
+        SecurityGroupMember alreadyRemoved = vmMember("vm-4", true);
+        SecurityGroupMember network = new SecurityGroupMember(new Network(REGION, "net-1", "net-1"));
+
+        Map<String, SecurityGroupMemberItemDto> servers = servers("vm-1", "vm-2", "vm-5");
+
+        // Act.
+        ProtectAllMemberDiff diff = ProtectAllMemberDiff.compute(
+                Arrays.asList(unchanged, restored, removed, alreadyRemoved, network), servers);
+
+        // Assert.
+        assertEquals(1, diff.getAddedServers().size());
+        assertEquals("vm-5", diff.getAddedServers().get(0).getOpenstackId());
+        assertEquals(1, diff.getRestoredServers().size());
+        assertEquals("vm-2", diff.getRestoredServers().get(0).getOpenstackId());
+        assertEquals(Arrays.asList(network, removed), diff.getRemovedMembers());
+        assertEquals(1, diff.getUnchangedCount());
+    }
+
+    @Test
+    public void testCompute_WithUnchangedServers_WritesNothing() {
+        // Arrange.
+        List<SecurityGroupMember> members = Arrays.asList(vmMember("vm-1", false), vmMember("vm-2", false));
+
+        // Act.
+        ProtectAllMemberDiff diff = ProtectAllMemberDiff.compute(members, servers("vm-2", "vm-1"));
+
+        // Assert.
+        assertTrue(diff.getAddedServers().isEmpty());
+        assertTrue(diff.getRestoredServers().isEmpty());
+        assertTrue(diff.getRemovedMembers().isEmpty());
+        assertEquals(2, diff.getUnchangedCount());
+    }
+
+    /**
+     * Compares the diff to marking every member deleted then adding every
+     * server back, while checking a growing list of already added servers.
+     * Each project has 1% new servers and 1% deleted ones. The legacy loop is
+     * quadratic, so it is only timed up to {@link #LEGACY_MAX_SERVERS}.
+     */
+    @Test
+    public void testCompute_WithLargeProjects_Benchmark() {
+        for (int serverCount : new int[] { 1000, 10000, 50000 }) {
+            // Arrange.
+            int churn = serverCount / 100;
+            List<SecurityGroupMember> members = new ArrayList<>();
+            for (int i = 0; i < serverCount; i++) {
+                members.add(vmMember("vm-" + i, false));
+            }
+            Map<String, SecurityGroupMemberItemDto> servers = new LinkedHashMap<>();
+            for (int i = churn; i < serverCount + churn; i++) {
+                servers.put("vm-" + i, server("vm-" + i));
+            }
+
+            // Act.
+            long start = System.nanoTime();
+            ProtectAllMemberDiff diff = ProtectAllMemberDiff.compute(members, servers);
+            long diffNanos = System.nanoTime() - start;
+            int diffWrites = diff.getAddedServers().size() + diff.getRestoredServers().size()
+                    + diff.getRemovedMembers().size();
+
+            // Assert.
+            assertEquals(churn, diff.getAddedServers().size());
+            assertEquals(churn, diff.getRemovedMembers().size());
+            assertEquals(serverCount - churn, diff.getUnchangedCount());
+
+            if (serverCount > LEGACY_MAX_SERVERS) {
+                log.info(String.format("%d servers: diff %.1fms (%d member writes)", serverCount, diffNanos / 1e6,
+                        diffWrites));
+                continue;
+            }
+
+            start = System.nanoTime();
+            int legacyWrites = legacySync(members, servers);
+            long legacyNanos = System.nanoTime() - start;
+
+            assertEquals(2 * serverCount, legacyWrites);
+
+            log.info(String.format(
+                    "%d servers: mark all and add back %.1fms (%d member writes), diff %.1fms (%d member writes)",
+                    serverCount, legacyNanos / 1e6, legacyWrites, diffNanos / 1e6, diffWrites));
+        }
+    }
+
+    /**
+     * The member reconciliation done before the diff, without the database,
+     * returning the number of member rows it writes.
+     */
+    private int legacySync(List<SecurityGroupMember> members, Map<String, SecurityGroupMemberItemDto> servers) {
+        // Every member is marked deleted first
+        int writes = members.size();
+
+        List<String> excludedMembers = new ArrayList<>();
+        for (SecurityGroupMemberItemDto server : servers.values()) {
+            if (!excludedMembers.contains(server.getOpenstackId())) {
+                writes++;
+                excludedMembers.add(server.getOpenstackId());
+            }
+        }
+        return writes;
+    }
+
+    private static SecurityGroupMember vmMember(String openstackId, boolean markedForDeletion) {
+        SecurityGroupMember sgm = new SecurityGroupMember(new VM(REGION, openstackId, openstackId));
+        sgm.setMarkedForDeletion(markedForDeletion);
+        return sgm;
+    }
+
+    private static Map<String, SecurityGroupMemberItemDto> servers(String... openstackIds) {
+        Map<String, SecurityGroupMemberItemDto> servers = new LinkedHashMap<>();
+        for (String openstackId : openstackIds) {
+            servers.put(openstackId, server(openstackId));
+        }
+        return servers;
+    }
+
+    private static SecurityGroupMemberItemDto server(String openstackId) {
+        return new SecurityGroupMemberItemDto(REGION, openstackId, openstackId, SecurityGroupMemberType.VM.toString(),
+                false);
+    }
+}
@@ -18,20 +18,29 @@ package org.osc.core.broker.util.crypto;
 
 import static org.junit.Assert.*;
 
+import java.security.KeyStore;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.osc.core.broker.service.api.server.EncryptionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class EncryptionUtilTest {
+    private static final Logger log = LoggerFactory.getLogger(EncryptionUtilTest.class);
+    private static final int BENCHMARK_DECRYPTS = 200;
+
     // AES-CTR test data
     private String unEncryptedMessage = "helloworld";
     private String aesCtrEncryptedMessage = "af5b59f52f5c3f0a77c6ba3bae08c1fe:26255b1fabfecfc469af";
@@ -137,6 +146,82 @@ public class EncryptionUtilTest {
         assertTrue(new EncryptionUtil().validateAESCTR(this.unEncryptedMessage, encryption));
     }
 
+    @Test
+    public void testDecryptAesCtr_RepeatedDecrypts_LoadsKeyOnce() throws EncryptionException {
+        // Arrange.
+        CountingKeyProvider keyProvider = new CountingKeyProvider();
+        AESCTREncryption.setKeyProvider(keyProvider);
+        String otherEncryptedMessage = new EncryptionUtil().encryptAESCTR("otherMessage");
+
+        // Act.
+        for (int i = 0; i < 10; i++) {
+            assertEquals(this.unEncryptedMessage, new EncryptionUtil().decryptAESCTR(this.aesCtrEncryptedMessage));
+            assertEquals("otherMessage", new EncryptionUtil().decryptAESCTR(otherEncryptedMessage));
+        }
+
+        // Assert.
+        assertEquals(1, keyProvider.keyLoads.get());
+    }
+
+    @Test
+    public void testUpdateAESCTRKey_AfterDecrypt_ReloadsKeyAndDropsDecryptedValues() throws EncryptionException {
+        // Arrange.
+        CountingKeyProvider keyProvider = new CountingKeyProvider();
+        AESCTREncryption.setKeyProvider(keyProvider);
+        assertEquals(this.unEncryptedMessage, new EncryptionUtil().decryptAESCTR(this.aesCtrEncryptedMessage));
+
+        // Act.
+        new AESCTREncryption().updateAESCTRKey("abcdef1234567890abcdef1234567890");
+        String decryption = new EncryptionUtil().decryptAESCTR(this.aesCtrEncryptedMessage);
+
+        // Assert.
+        assertEquals(2, keyProvider.keyLoads.get());
+        assertNotEquals(this.unEncryptedMessage, decryption);
+    }
+
+    /**
+     * Logs AES-CTR decrypt throughput when the key is recovered from a PKCS#12
+     * keystore on every call, as before key caching, against the cached path.
+     */
+    @Test
+    public void testBenchmark_DecryptAesCtr() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        KeyStore.PasswordProtection entryPassword = new KeyStore.PasswordProtection("entryPassword".toCharArray());
+        SecretKeyFactory pbeFactory = SecretKeyFactory.getInstance("PBE");
+        keyStore.setEntry("AesCtrKey", new KeyStore.SecretKeyEntry(
+                pbeFactory.generateSecret(new PBEKeySpec("1234567890abcdef1234567890abcdef".toCharArray()))),
+                entryPassword);
+        AESCTREncryption.KeyProvider keystoreKeyProvider = new CountingKeyProvider() {
+            @Override
+            public String getKeyHex() throws EncryptionException {
+                try {
+                    SecretKey secret = ((KeyStore.SecretKeyEntry) keyStore.getEntry("AesCtrKey", entryPassword))
+                            .getSecretKey();
+                    return new String(((PBEKeySpec) pbeFactory.getKeySpec(secret, PBEKeySpec.class)).getPassword());
+                } catch (Exception e) {
+                    throw new EncryptionException("Failed to recover key", e);
+                }
+            }
+        };
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_DECRYPTS; i++) {
+            AESCTREncryption.setKeyProvider(keystoreKeyProvider);
+            assertEquals(this.unEncryptedMessage, new EncryptionUtil().decryptAESCTR(this.aesCtrEncryptedMessage));
+        }
+        double uncachedRate = BENCHMARK_DECRYPTS / ((System.nanoTime() - start) / 1e9);
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_DECRYPTS; i++) {
+            assertEquals(this.unEncryptedMessage, new EncryptionUtil().decryptAESCTR(this.aesCtrEncryptedMessage));
+        }
+        double cachedRate = BENCHMARK_DECRYPTS / ((System.nanoTime() - start) / 1e9);
+
+        log.info(String.format("%d AES-CTR decrypts: key recovered per call %.0f/s, cached %.0f/s",
+                BENCHMARK_DECRYPTS, uncachedRate, cachedRate));
+    }
+
     @Test
     public void testEncryptAESGCM_withValidInputParameters_encryptionSucceeds() throws EncryptionException {
         // Arrange.
@@ -260,6 +345,22 @@ public class EncryptionUtilTest {
         new EncryptionUtil().decryptAESGCM(encrypted, this.invalidKey, this.iv, invalidAAD);
     }
 
+    private static class CountingKeyProvider implements AESCTREncryption.KeyProvider {
+        private final AtomicInteger keyLoads = new AtomicInteger();
+        private String keyHex = "1234567890abcdef1234567890abcdef";
+
+        @Override
+        public String getKeyHex() throws EncryptionException {
+            this.keyLoads.incrementAndGet();
+            return this.keyHex;
+        }
+
+        @Override
+        public void updateKey(String keyHex) throws EncryptionException {
+            this.keyHex = keyHex;
+        }
+    }
+
     private SecretKey generateTestAESGCMKey() {
         try {
             KeyGenerator keyGen = KeyGenerator.getInstance("AES");
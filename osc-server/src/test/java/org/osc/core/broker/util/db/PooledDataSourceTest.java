@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.util.db;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class PooledDataSourceTest {
+
+    private static final Logger log = LoggerFactory.getLogger(PooledDataSourceTest.class);
+
+    private static final int JOB_COUNT = 8;
+    private static final int COMMITS_PER_JOB = 250;
+
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
+    private PooledDataSource pool;
+
+    @Before
+    public void testInitialize() {
+        this.pool = new PooledDataSource(newH2DataSource("jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1"), 2, 0, 100, 0);
+    }
+
+    @After
+    public void testTearDown() {
+        this.pool.close();
+    }
+
+    @Test
+    public void testGetConnection_AfterClose_ReusesPhysicalConnection() throws Exception {
+        // Act.
+        try (Connection connection = this.pool.getConnection()) {
+            assertEquals(1, this.pool.getActiveCount());
+        }
+        try (Connection connection = this.pool.getConnection()) {
+            assertEquals(0, this.pool.getIdleCount());
+        }
+
+        // Assert.
+        assertEquals(0, this.pool.getActiveCount());
+        assertEquals(1, this.pool.getIdleCount());
+        assertTrue(this.pool.toString().contains("opened: 1"));
+    }
+
+    @Test
+    public void testGetConnection_WithAllConnectionsInUse_TimesOut() throws Exception {
+        // Arrange.
+        try (Connection first = this.pool.getConnection(); Connection second = this.pool.getConnection()) {
+            // Act.
+            try {
+                this.pool.getConnection();
+                fail("Expected the exhausted pool to time out");
+            } catch (SQLTimeoutException e) {
+                // Assert.
+                assertTrue(e.getMessage().contains("all 2 connections are in use"));
+            }
+        }
+    }
+
+    @Test
+    public void testHousekeep_WithExpiredIdleConnection_ClosesIt() throws Exception {
+        // Arrange.
+        this.pool.close();
+        this.pool = new PooledDataSource(newH2DataSource("jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1"), 2, 1, 100, 0);
+        this.pool.getConnection().close();
+        Thread.sleep(5);
+
+        // Act.
+        this.pool.housekeep();
+
+        // Assert.
+        assertEquals(0, this.pool.getIdleCount());
+        this.pool.getConnection().close();
+        assertTrue(this.pool.toString().contains("opened: 2"));
+    }
+
+    @Test
+    public void testHousekeep_WithConnectionHeldPastThreshold_ReportsLeakOnce() throws Exception {
+        // Arrange.
+        this.pool.close();
+        this.pool = new PooledDataSource(newH2DataSource("jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1"), 2, 0, 100, 1);
+
+        try (Connection connection = this.pool.getConnection()) {
+            Thread.sleep(5);
+
+            // Act.
+            this.pool.housekeep();
+            this.pool.housekeep();
+        }
+
+        // Assert.
+        assertEquals(1, this.pool.getLeakCount());
+    }
+
+    @Test
+    public void testClose_WithConnectionInUse_ClosesItWhenReturned() throws Exception {
+        // Arrange.
+        Connection connection = this.pool.getConnection();
+
+        // Act.
+        this.pool.close();
+        connection.close();
+
+        // Assert.
+        assertEquals(0, this.pool.getActiveCount());
+        assertEquals(0, this.pool.getIdleCount());
+        try {
+            this.pool.getConnection();
+            fail("Expected the closed pool to refuse connections");
+        } catch (SQLException e) {
+            assertEquals("The database connection pool is closed", e.getMessage());
+        }
+    }
+
+    /**
+     * Commit throughput of concurrent jobs each committing small transactions,
+     * the way job and task state changes are persisted, with and without
+     * pooling on both H2 storage engines.
+     */
+    @Test
+    public void testBenchmark_ConcurrentJobCommits() throws Exception {
+        for (boolean mvStore : new boolean[] { false, true }) {
+            String url = "jdbc:h2:" + new File(this.testFolder.getRoot(), "bench-" + mvStore).getAbsolutePath()
+                    + ";LOCK_TIMEOUT=10000;MV_STORE=" + (mvStore ? "TRUE" : "FALSE") + ";MVCC=TRUE";
+            JdbcDataSource unpooled = newH2DataSource(url);
+            try (Connection connection = unpooled.getConnection(); Statement stmt = connection.createStatement()) {
+                stmt.execute("CREATE TABLE TASK (id BIGINT AUTO_INCREMENT PRIMARY KEY, job_id BIGINT, state VARCHAR(32))");
+            }
+
+            // Keep the database open across unpooled connections, as the server does
+            try (Connection keepOpen = unpooled.getConnection()) {
+                double unpooledRate = runJobs(unpooled);
+                PooledDataSource pooled = new PooledDataSource(newH2DataSource(url), JOB_COUNT, 0, 10000, 0);
+                double pooledRate;
+                try {
+                    pooledRate = runJobs(pooled);
+                } finally {
+                    pooled.close();
+                }
+                log.info(String.format("%s, %d jobs x %d commits: unpooled %.0f commits/s, pooled %.0f commits/s",
+                        mvStore ? "MVStore" : "PageStore", JOB_COUNT, COMMITS_PER_JOB, unpooledRate, pooledRate));
+            }
+        }
+    }
+
+    private double runJobs(DataSource dataSource) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(JOB_COUNT);
+        AtomicLong commits = new AtomicLong();
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> jobs = new ArrayList<>();
+            for (int i = 0; i < JOB_COUNT; i++) {
+                long jobId = i;
+                jobs.add(executor.submit(() -> {
+                    for (int j = 0; j < COMMITS_PER_JOB; j++) {
+                        try (Connection connection = dataSource.getConnection();
+                                PreparedStatement insert = connection
+                                        .prepareStatement("INSERT INTO TASK (job_id, state) VALUES (?, ?)")) {
+                            connection.setAutoCommit(false);
+                            insert.setLong(1, jobId);
+                            insert.setString(2, "RUNNING");
+                            insert.executeUpdate();
+                            connection.commit();
+                            commits.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> job : jobs) {
+                job.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(JOB_COUNT * COMMITS_PER_JOB, commits.get());
+        return commits.get() / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static JdbcDataSource newH2DataSource(String url) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(url);
+        dataSource.setUser("admin");
+        dataSource.setPassword("admin");
+        return dataSource;
+    }
+}
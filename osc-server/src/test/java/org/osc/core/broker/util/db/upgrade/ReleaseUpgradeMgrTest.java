@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.util.db.upgrade;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.h2.Driver;
+import org.h2.jdbcx.JdbcDataSource;
+import org.h2.util.OsgiDataSourceFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReleaseUpgradeMgrTest {
+
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
+    @Test
+    public void testWithMVStore_ReplacesOrAddsSetting() {
+        assertEquals("jdbc:h2:./data/vmiDCDB;MVCC=TRUE;MV_STORE=TRUE;AUTO_SERVER=TRUE;",
+                ReleaseUpgradeMgr.withMVStore("jdbc:h2:./data/vmiDCDB;MVCC=TRUE;MV_STORE=FALSE;AUTO_SERVER=TRUE;", true));
+        assertEquals("jdbc:h2:./data/vmiDCDB;MV_STORE=FALSE;",
+                ReleaseUpgradeMgr.withMVStore("jdbc:h2:./data/vmiDCDB", false));
+        assertEquals("jdbc:h2:./data/vmiDCDB;MV_STORE=TRUE;",
+                ReleaseUpgradeMgr.withMVStore("jdbc:h2:./data/vmiDCDB;MV_STORE=TRUE;", true));
+    }
+
+    @Test
+    public void testMigrateToMVStore_WithPageStoreDatabase_CopiesDataAndKeepsBackup() throws Exception {
+        // Arrange.
+        String dbPath = new File(this.testFolder.getRoot(), "vmiDCDB").getAbsolutePath();
+        String url = "jdbc:h2:" + dbPath + ";MVCC=TRUE;LOCK_TIMEOUT=10000;MV_STORE=FALSE;";
+        JdbcDataSource pageStore = new JdbcDataSource();
+        pageStore.setURL(url);
+        pageStore.setUser("admin");
+        pageStore.setPassword("admin");
+        try (Connection connection = pageStore.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE RELEASE_INFO (id BIGINT PRIMARY KEY, db_version INT)");
+            stmt.execute("INSERT INTO RELEASE_INFO VALUES (1, 95)");
+        }
+
+        // Act.
+        String mvStoreUrl = ReleaseUpgradeMgr.migrateToMVStore(new OsgiDataSourceFactory(new Driver()), url,
+                "admin", "admin");
+
+        // Assert.
+        assertEquals(ReleaseUpgradeMgr.withMVStore(url, true), mvStoreUrl);
+        assertTrue(new File(dbPath + ".mv.db").exists());
+        assertFalse(new File(dbPath + ".h2.db").exists());
+        assertTrue(new File(dbPath + ".h2.db.migrated").exists());
+        assertFalse(new File(dbPath + ".migration.sql").exists());
+
+        JdbcDataSource mvStore = new JdbcDataSource();
+        mvStore.setURL(mvStoreUrl);
+        mvStore.setUser("admin");
+        mvStore.setPassword("admin");
+        try (Connection connection = mvStore.getConnection();
+                Statement stmt = connection.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT db_version FROM RELEASE_INFO WHERE id = 1")) {
+            assertTrue(rs.next());
+            assertEquals(95, rs.getInt(1));
+        }
+
+        // Migrating again is a no-op
+        assertEquals(mvStoreUrl, ReleaseUpgradeMgr.migrateToMVStore(new OsgiDataSourceFactory(new Driver()), url,
+                "admin", "admin"));
+    }
+
+    @Test
+    public void testWithExistingStore_OnlyMVStoreDatabase_OpensMVStore() throws Exception {
+        // Arrange.
+        String dbPath = new File(this.testFolder.getRoot(), "vmiDCDB").getAbsolutePath();
+        String url = "jdbc:h2:" + dbPath + ";MVCC=TRUE;MV_STORE=FALSE;";
+        assertEquals(url, ReleaseUpgradeMgr.withExistingStore(url));
+        assertTrue(new File(dbPath + ".mv.db").createNewFile());
+
+        // Act.
+        String existingStoreUrl = ReleaseUpgradeMgr.withExistingStore(url);
+
+        // Assert.
+        assertEquals(ReleaseUpgradeMgr.withMVStore(url, true), existingStoreUrl);
+    }
+
+    @Test
+    public void testWithExistingStore_PageStoreDatabase_KeepsUrl() throws Exception {
+        // Arrange.
+        String dbPath = new File(this.testFolder.getRoot(), "vmiDCDB").getAbsolutePath();
+        String url = "jdbc:h2:" + dbPath + ";MVCC=TRUE;MV_STORE=FALSE;";
+        assertTrue(new File(dbPath + ".h2.db").createNewFile());
+        assertTrue(new File(dbPath + ".mv.db").createNewFile());
+
+        // Act.
+        String existingStoreUrl = ReleaseUpgradeMgr.withExistingStore(url);
+
+        // Assert.
+        assertEquals(url, existingStoreUrl);
+        assertEquals("jdbc:h2:mem:vmiDCDB;MV_STORE=FALSE;",
+                ReleaseUpgradeMgr.withExistingStore("jdbc:h2:mem:vmiDCDB;MV_STORE=FALSE;"));
+    }
+}
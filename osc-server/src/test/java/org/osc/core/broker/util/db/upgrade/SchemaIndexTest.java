@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.util.db.upgrade;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osc.core.broker.util.db.DBConnectionManager;
+
+/**
+ * Loads a synthetic dataset into a freshly created schema and checks that the query plans of the hot lookups use the
+ * index expected to serve them, so that dropping or altering one of the {@link Schema} secondary indexes does not
+ * silently send them back to the primary key or to a full table scan.
+ */
+public class SchemaIndexTest {
+
+    private static final int JOB_COUNT = 2000;
+    private static final int TASKS_PER_JOB = 10;
+    private static final int ALERT_COUNT = 10000;
+    private static final int PORT_COUNT = 2000;
+    private static final int IPS_PER_PORT = 2;
+
+    private static final long START_TIME = Timestamp.valueOf("2016-01-01 00:00:00").getTime();
+
+    // H2 renders a plan step which has no index condition as "PUBLIC.<TABLE>.tableScan" in a comment
+    private static final Pattern FULL_TABLE_SCAN = Pattern.compile("\\.tableScan\\s*\\*/");
+
+    /*
+     * SQL equivalents of the hot queries issued by the entity managers and the job archiver
+     */
+    private static final Map<String, String> HOT_QUERIES = new LinkedHashMap<>();
+
+    /*
+     * Index or constraint expected to serve each hot query. H2 names the index backing a constraint after the
+     * constraint, followed by a generated suffix.
+     */
+    private static final Map<String, String> EXPECTED_INDEXES = new LinkedHashMap<>();
+
+    static {
+        HOT_QUERIES.put("JobArchiver jobs",
+                "SELECT COUNT(*) FROM JOB WHERE completed_timestamp <= TIMESTAMP '2016-01-05 00:00:00' AND id > 10");
+        EXPECTED_INDEXES.put("JobArchiver jobs", "IDX_JOB_COMPLETED_TIMESTAMP");
+        HOT_QUERIES.put("JobArchiver alerts",
+                "SELECT COUNT(*) FROM ALERT WHERE created_timestamp <= TIMESTAMP '2016-01-05 00:00:00' AND id > 10");
+        EXPECTED_INDEXES.put("JobArchiver alerts", "IDX_ALERT_CREATED_TIMESTAMP");
+        HOT_QUERIES.put("TaskEntityMgr.getTasksByJobId",
+                "SELECT * FROM TASK WHERE job_fk = 42 ORDER BY dependency_order");
+        EXPECTED_INDEXES.put("TaskEntityMgr.getTasksByJobId", "FK_TASK_JOB");
+        HOT_QUERIES.put("VMPortEntityManager.findByOpenstackId",
+                "SELECT * FROM VM_PORT WHERE os_port_id = 'os-port-42'");
+        EXPECTED_INDEXES.put("VMPortEntityManager.findByOpenstackId", "UK_VMP_ID");
+        HOT_QUERIES.put("VMPortEntityManager.findByMacAddress",
+                "SELECT vm.* FROM VM vm JOIN VM_PORT port ON port.vm_fk = vm.id WHERE port.mac_address = 'mac-42'");
+        EXPECTED_INDEXES.put("VMPortEntityManager.findByMacAddress", "UK_VM_PORT_MAC");
+        HOT_QUERIES.put("VMPortEntityManager.findByIpAddress",
+                "SELECT vm.* FROM VM vm JOIN VM_PORT port ON port.vm_fk = vm.id "
+                        + "JOIN VM_PORT_IP_ADDRESS ip ON ip.vm_port_fk = port.id WHERE ip.ip_address = '10.0.42.1'");
+        EXPECTED_INDEXES.put("VMPortEntityManager.findByIpAddress", "IDX_VM_PORT_IP_ADDRESS");
+    }
+
+    private JdbcDataSource ds;
+
+    @Before
+    public void testInitialize() throws Exception {
+        this.ds = new JdbcDataSource();
+        this.ds.setURL("jdbc:h2:mem:schemaIndex;DB_CLOSE_DELAY=-1");
+        this.ds.setUser("admin");
+        this.ds.setPassword("admin");
+
+        DBConnectionManager dbMgr = mock(DBConnectionManager.class);
+        when(dbMgr.getSQLConnection()).thenAnswer(invocation -> this.ds.getConnection());
+        Schema.createSchema(dbMgr);
+
+        try (Connection connection = this.ds.getConnection()) {
+            loadDataset(connection);
+        }
+    }
+
+    @After
+    public void testTearDown() throws SQLException {
+        try (Connection connection = this.ds.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    @Test
+    public void testHotQueries_WithSchemaIndexes_UseExpectedIndexes() throws SQLException {
+        // Arrange.
+        List<String> regressions = new ArrayList<>();
+
+        // Act.
+        for (Map.Entry<String, String> hotQuery : HOT_QUERIES.entrySet()) {
+            String plan = explain(hotQuery.getValue());
+            if (FULL_TABLE_SCAN.matcher(plan).find() || !usesIndex(plan, EXPECTED_INDEXES.get(hotQuery.getKey()))) {
+                regressions.add(hotQuery.getKey() + " expected " + EXPECTED_INDEXES.get(hotQuery.getKey()) + ":\n"
+                        + plan);
+            }
+        }
+
+        // Assert.
+        assertTrue("Hot queries no longer use their index:\n" + String.join("\n\n", regressions),
+                regressions.isEmpty());
+    }
+
+    @Test
+    public void testHotQueries_WithoutJobCompletedTimestampIndex_DetectsMissingIndex() throws SQLException {
+        assertIndexNotUsedOnceDropped("IDX_JOB_COMPLETED_TIMESTAMP", "JobArchiver jobs");
+    }
+
+    @Test
+    public void testHotQueries_WithoutAlertCreatedTimestampIndex_DetectsMissingIndex() throws SQLException {
+        assertIndexNotUsedOnceDropped("IDX_ALERT_CREATED_TIMESTAMP", "JobArchiver alerts");
+    }
+
+    @Test
+    public void testHotQueries_WithoutIpAddressIndex_DetectsFullTableScan() throws SQLException {
+        String plan = assertIndexNotUsedOnceDropped("IDX_VM_PORT_IP_ADDRESS", "VMPortEntityManager.findByIpAddress");
+
+        assertTrue("Expected a full table scan in:\n" + plan, FULL_TABLE_SCAN.matcher(plan).find());
+    }
+
+    @Test
+    public void testGetIndexStatements_EachIndex_HasNegativeCase() {
+        // Arrange.
+        List<String> indexNames = new ArrayList<>();
+
+        // Act.
+        for (String statement : Schema.getIndexStatements()) {
+            indexNames.add(statement.split("\\s+")[5]);
+        }
+
+        // Assert.
+        assertEquals("Add a hot query and a test dropping each new index",
+                Arrays.asList("IDX_JOB_COMPLETED_TIMESTAMP", "IDX_ALERT_CREATED_TIMESTAMP", "IDX_VM_PORT_IP_ADDRESS"),
+                indexNames);
+    }
+
+    @Test
+    public void testGetIndexStatements_AfterFreshInstall_AllIndexesExist() throws SQLException {
+        // Arrange.
+        List<String> indexNames = new ArrayList<>();
+        try (Connection connection = this.ds.getConnection();
+                Statement stmt = connection.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT DISTINCT INDEX_NAME FROM INFORMATION_SCHEMA.INDEXES")) {
+            while (rs.next()) {
+                indexNames.add(rs.getString(1));
+            }
+        }
+
+        // Act.
+        List<String> statements = Schema.getIndexStatements();
+
+        // Assert.
+        assertFalse(statements.isEmpty());
+        for (String statement : statements) {
+            String indexName = statement.split("\\s+")[5];
+            assertTrue("Missing index " + indexName, indexNames.contains(indexName));
+        }
+    }
+
+    private String assertIndexNotUsedOnceDropped(String indexName, String hotQuery) throws SQLException {
+        // Arrange.
+        String query = HOT_QUERIES.get(hotQuery);
+        assertTrue("Expected " + indexName + " in:\n" + explain(query), usesIndex(explain(query), indexName));
+        try (Connection connection = this.ds.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP INDEX " + indexName);
+        }
+
+        // Act.
+        String plan = explain(query);
+
+        // Assert.
+        assertFalse("Expected no " + indexName + " in:\n" + plan, usesIndex(plan, indexName));
+        return plan;
+    }
+
+    private static boolean usesIndex(String plan, String indexName) {
+        // Plan steps read "/* PUBLIC.<INDEX>: <condition> */"
+        return plan.contains("/* PUBLIC." + indexName);
+    }
+
+    private String explain(String query) throws SQLException {
+        try (Connection connection = this.ds.getConnection();
+                Statement stmt = connection.createStatement();
+                ResultSet rs = stmt.executeQuery("EXPLAIN " + query)) {
+            assertTrue(rs.next());
+            return rs.getString(1);
+        }
+    }
+
+    private void loadDataset(Connection connection) throws SQLException {
+        connection.setAutoCommit(false);
+
+        try (PreparedStatement job = connection.prepareStatement(
+                "INSERT INTO JOB (id, name, state, status, completed_timestamp) VALUES (?, ?, 'COMPLETED', 'PASSED', ?)");
+                PreparedStatement task = connection.prepareStatement(
+                        "INSERT INTO TASK (name, task_gaurd, dependency_order, job_fk) VALUES (?, 'ALL_PREDECESSORS_COMPLETED', ?, ?)")) {
+            for (long jobId = 1; jobId <= JOB_COUNT; jobId++) {
+                job.setLong(1, jobId);
+                job.setString(2, "job-" + jobId);
+                job.setTimestamp(3, new Timestamp(START_TIME + TimeUnit.HOURS.toMillis(jobId)));
+                job.addBatch();
+
+                for (int order = 0; order < TASKS_PER_JOB; order++) {
+                    task.setString(1, "task-" + jobId + "-" + order);
+                    task.setLong(2, order);
+                    task.setLong(3, jobId);
+                    task.addBatch();
+                }
+            }
+            job.executeBatch();
+            task.executeBatch();
+        }
+
+        try (PreparedStatement alert = connection.prepareStatement(
+                "INSERT INTO ALERT (name, event_type, severity, acknowledgement_status, created_timestamp) "
+                        + "VALUES (?, 'JOB_FAILURE', 'HIGH', 'PENDING_ACKNOWLEDGEMENT', ?)")) {
+            for (int i = 1; i <= ALERT_COUNT; i++) {
+                alert.setString(1, "alert-" + i);
+                alert.setTimestamp(2, new Timestamp(START_TIME + TimeUnit.MINUTES.toMillis(10 * i)));
+                alert.addBatch();
+            }
+            alert.executeBatch();
+        }
+
+        try (PreparedStatement vm = connection.prepareStatement(
+                "INSERT INTO VM (id, vm_id, region, name) VALUES (?, ?, 'RegionOne', ?)");
+                PreparedStatement port = connection.prepareStatement(
+                        "INSERT INTO VM_PORT (id, os_network_id, os_port_id, mac_address, vm_fk) VALUES (?, 'os-net', ?, ?, ?)");
+                PreparedStatement ip = connection.prepareStatement(
+                        "INSERT INTO VM_PORT_IP_ADDRESS (vm_port_fk, ip_address) VALUES (?, ?)")) {
+            for (long id = 1; id <= PORT_COUNT; id++) {
+                vm.setLong(1, id);
+                vm.setString(2, "os-vm-" + id);
+                vm.setString(3, "vm-" + id);
+                vm.addBatch();
+
+                port.setLong(1, id);
+                port.setString(2, "os-port-" + id);
+                port.setString(3, "mac-" + id);
+                port.setLong(4, id);
+                port.addBatch();
+
+                for (int i = 1; i <= IPS_PER_PORT; i++) {
+                    ip.setLong(1, id);
+                    ip.setString(2, "10.0." + id + "." + i);
+                    ip.addBatch();
+                }
+            }
+            vm.executeBatch();
+            port.executeBatch();
+            ip.executeBatch();
+        }
+
+        connection.commit();
+
+        try (Statement stmt = connection.createStatement()) {
+            // Refresh the column selectivity the optimizer costs the plans with
+            stmt.execute("ANALYZE");
+        }
+    }
+}
@@ -70,6 +70,24 @@ public abstract class TestTransactionControl implements TransactionControl, Tran
         }
     }
 
+    @Override
+    public <T> T supports(Callable<T> arg0) throws TransactionException, ScopedWorkException {
+        if(this.txActive.get()) {
+            return required(arg0);
+        }
+        try {
+            return arg0.call();
+        } catch (Exception e) {
+            if(e instanceof ScopedWorkException) {
+                throw (ScopedWorkException) e;
+            }
+            throw new ScopedWorkException("The work failed", e, getCurrentContext());
+        } finally {
+            this.context.clear();
+            this.em.clear();
+        }
+    }
+
     private <T> T runInTran(Callable<T> arg0) {
         EntityTransaction tx = this.em.getTransaction();
         try {
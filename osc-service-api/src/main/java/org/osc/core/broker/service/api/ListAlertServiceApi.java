@@ -17,10 +17,9 @@
 package org.osc.core.broker.service.api;
 
 import org.osc.core.broker.service.dto.AlertDto;
-import org.osc.core.broker.service.dto.BaseDto;
-import org.osc.core.broker.service.request.BaseRequest;
-import org.osc.core.broker.service.response.ListResponse;
+import org.osc.core.broker.service.request.ListAlertRequest;
+import org.osc.core.broker.service.response.PageResponse;
 
 public interface ListAlertServiceApi
-        extends ServiceDispatcherApi<BaseRequest<BaseDto>, ListResponse<AlertDto>> {
+        extends ServiceDispatcherApi<ListAlertRequest, PageResponse<AlertDto>> {
 }
@@ -18,10 +18,10 @@ package org.osc.core.broker.service.api;
 
 import org.osc.core.broker.service.dto.JobRecordDto;
 import org.osc.core.broker.service.request.ListJobRequest;
-import org.osc.core.broker.service.response.ListResponse;
+import org.osc.core.broker.service.response.PageResponse;
 
 public interface ListJobServiceApi
-        extends ServiceDispatcherApi<ListJobRequest, ListResponse<JobRecordDto>> {
+        extends ServiceDispatcherApi<ListJobRequest, PageResponse<JobRecordDto>> {
 
     void abortJob(Long jobId, String reason);
 }
@@ -18,8 +18,8 @@ package org.osc.core.broker.service.api;
 
 import org.osc.core.broker.service.dto.TaskRecordDto;
 import org.osc.core.broker.service.request.ListTaskRequest;
-import org.osc.core.broker.service.response.ListResponse;
+import org.osc.core.broker.service.response.PageResponse;
 
 public interface ListTaskServiceApi
-        extends ServiceDispatcherApi<ListTaskRequest, ListResponse<TaskRecordDto>> {
+        extends ServiceDispatcherApi<ListTaskRequest, PageResponse<TaskRecordDto>> {
 }
@@ -36,6 +36,7 @@ import io.swagger.annotations.ApiModelProperty;
 @XmlAccessorType(XmlAccessType.FIELD)
 public class TaskRecordDto extends BaseDto {
 
+    @ApiModelProperty(value = "The position of the task in the dependency order of its job, starting at 1")
     private Long dependencyOrder;
     private String name;
     private String state;
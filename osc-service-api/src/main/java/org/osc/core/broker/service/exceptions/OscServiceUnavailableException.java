@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.service.exceptions;
+
+import java.util.Arrays;
+
+import javax.ws.rs.ServiceUnavailableException;
+
+public class OscServiceUnavailableException extends ServiceUnavailableException {
+
+    private static final long serialVersionUID = 1L;
+    private ErrorCodeDto errorCodeDto;
+
+    public OscServiceUnavailableException(String errorMessege, Long errorCode, Long retryAfterSeconds){
+        super(retryAfterSeconds);
+        this.errorCodeDto = new ErrorCodeDto(errorCode, Arrays.asList(errorMessege));
+    }
+
+    public ErrorCodeDto getErrorCodeDto() {
+        return this.errorCodeDto;
+    }
+}
@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.service.exceptions;
+
+/**
+ * Thrown when a request cannot be accepted right now because the server is
+ * saturated, for example when too many jobs are already queued. The request
+ * can be retried later.
+ */
+public class VmidcBrokerBusyException extends VmidcException {
+
+    private static final long serialVersionUID = 1L;
+
+    public VmidcBrokerBusyException(String s) {
+        super(s);
+    }
+}
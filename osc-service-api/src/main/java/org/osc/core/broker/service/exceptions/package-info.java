@@ -15,5 +15,5 @@
  * limitations under the License.
  *******************************************************************************/
 
-@org.osgi.annotation.versioning.Version("1.0.0")
+@org.osgi.annotation.versioning.Version("1.1.0")
 package org.osc.core.broker.service.exceptions;
\ No newline at end of file
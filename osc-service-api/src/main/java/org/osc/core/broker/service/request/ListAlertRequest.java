@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.service.request;
+
+import org.osc.core.broker.service.dto.BaseDto;
+
+public class ListAlertRequest extends BaseRequest<BaseDto> {
+
+    private PageRequest page;
+
+    public ListAlertRequest() {
+    }
+
+    public ListAlertRequest(boolean isApi) {
+        super(isApi);
+    }
+
+    /**
+     * @return the page of alerts to list, null to list all of them
+     */
+    public PageRequest getPage() {
+        return this.page;
+    }
+
+    public void setPage(PageRequest page) {
+        this.page = page;
+    }
+}
@@ -18,4 +18,16 @@ package org.osc.core.broker.service.request;
 
 public class ListJobRequest implements Request {
 
+    private PageRequest page;
+
+    /**
+     * @return the page of jobs to list, null to list all of them
+     */
+    public PageRequest getPage() {
+        return this.page;
+    }
+
+    public void setPage(PageRequest page) {
+        this.page = page;
+    }
 }
@@ -18,6 +18,7 @@ package org.osc.core.broker.service.request;
 
 public class ListTaskRequest implements Request {
     private long jobId;
+    private PageRequest page;
 
     public long getJobId() {
         return jobId;
@@ -27,4 +28,15 @@ public class ListTaskRequest implements Request {
         this.jobId = jobId;
     }
 
+    /**
+     * @return the page of tasks to list, null to list all of them
+     */
+    public PageRequest getPage() {
+        return this.page;
+    }
+
+    public void setPage(PageRequest page) {
+        this.page = page;
+    }
+
 }
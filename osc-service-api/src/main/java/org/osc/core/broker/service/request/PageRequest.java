@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.service.request;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Paging, sorting and filtering of a list request.
+ * <p>
+ * Pages are addressed by keyset rather than by offset: a page starts right
+ * after the item whose id is {@link #getAfterId()}, in the requested order.
+ * The database seeks directly to that item instead of reading and skipping all
+ * the items of the previous pages.
+ */
+public class PageRequest {
+
+    private Long afterId;
+    private int pageSize;
+    private String sortBy;
+    private boolean ascending;
+    private Map<String, String> filters = new HashMap<>();
+    private Map<String, String> equals = new HashMap<>();
+
+    /**
+     * @return the id of the last item of the previous page, null for the first
+     *         page
+     */
+    public Long getAfterId() {
+        return this.afterId;
+    }
+
+    public void setAfterId(Long afterId) {
+        this.afterId = afterId;
+    }
+
+    public int getPageSize() {
+        return this.pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @return the dto property the items are sorted by, ties being broken by
+     *         id. Items are sorted by id when null.
+     */
+    public String getSortBy() {
+        return this.sortBy;
+    }
+
+    public void setSortBy(String sortBy) {
+        this.sortBy = sortBy;
+    }
+
+    public boolean isAscending() {
+        return this.ascending;
+    }
+
+    public void setAscending(boolean ascending) {
+        this.ascending = ascending;
+    }
+
+    /**
+     * @return the text each dto property must contain, ignoring case. Enum
+     *         properties are matched against the constant names.
+     */
+    public Map<String, String> getFilters() {
+        return this.filters;
+    }
+
+    public void setFilters(Map<String, String> filters) {
+        this.filters = filters;
+    }
+
+    /**
+     * @return the value each dto property must be equal to. Enum properties
+     *         are matched against the constant names.
+     */
+    public Map<String, String> getEquals() {
+        return this.equals;
+    }
+
+    public void setEquals(Map<String, String> equals) {
+        this.equals = equals;
+    }
+
+    @Override
+    public String toString() {
+        return "PageRequest [afterId=" + this.afterId + ", pageSize=" + this.pageSize + ", sortBy=" + this.sortBy
+                + ", ascending=" + this.ascending + ", filters=" + this.filters + ", equals=" + this.equals + "]";
+    }
+}
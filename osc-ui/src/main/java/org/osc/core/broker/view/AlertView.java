@@ -17,7 +17,6 @@
 package org.osc.core.broker.view;
 
 import java.util.Arrays;
-import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
@@ -28,11 +27,15 @@ import org.osc.core.broker.service.api.server.ServerApi;
 import org.osc.core.broker.service.dto.AlertDto;
 import org.osc.core.broker.service.dto.BaseDto;
 import org.osc.core.broker.service.request.AlertRequest;
-import org.osc.core.broker.service.request.BaseRequest;
-import org.osc.core.broker.service.response.ListResponse;
+import org.osc.core.broker.service.request.ListAlertRequest;
+import org.osc.core.broker.service.request.PageRequest;
+import org.osc.core.broker.service.response.PageResponse;
+import org.osc.core.broker.view.util.PageNavigationBar;
+import org.osc.core.broker.view.util.PagedBeanContainer;
 import org.osc.core.broker.view.util.ToolbarButtons;
 import org.osc.core.broker.view.util.ViewUtil;
 import org.osc.core.broker.window.delete.DeleteWindowUtil;
+import org.osc.core.common.job.AcknowledgementStatus;
 import org.slf4j.LoggerFactory;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -40,7 +43,6 @@ import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ServiceScope;
 import org.slf4j.Logger;
 
-import com.vaadin.data.util.BeanContainer;
 import com.vaadin.data.util.BeanItem;
 import com.vaadin.navigator.ViewChangeListener;
 import com.vaadin.ui.Button.ClickEvent;
@@ -51,8 +53,6 @@ import com.vaadin.ui.Notification;
 @Component(service={AlertView.class}, scope=ServiceScope.PROTOTYPE)
 public class AlertView extends CRUDBaseView<AlertDto, BaseDto> {
 
-    private static final String ACKNOWLEDGEMENT_PENDING = "Pending Acknowledgement";
-
     private static final String ALERT_ID_COLUMN = "id";
     private static final String ALERT_NAME_COLUMN_ID = "name";
     private static final String ALERT_OBJECTS_COLUMN_ID = "object";
@@ -66,6 +66,7 @@ public class AlertView extends CRUDBaseView<AlertDto, BaseDto> {
     private static final Logger log = LoggerFactory.getLogger(AlertView.class);
 
     private static final long serialVersionUID = 1L;
+    private static final int PAGE_SIZE = 100;
     private static final String ALERT_HELP_GUID = "GUID-977FE812-0813-41D0-A6A4-28A9E18CD8F6.html";
 
     @Reference
@@ -80,17 +81,26 @@ public class AlertView extends CRUDBaseView<AlertDto, BaseDto> {
     @Reference
     ServerApi server;
 
+    private PagedBeanContainer<AlertDto> alertContainer;
+
     @Activate
     private void activate() {
         createView("Alerts", Arrays.asList(ToolbarButtons.ACKNOWLEDGE_ALERT, ToolbarButtons.UNACKNOWLEDGE_ALERT,
                 ToolbarButtons.DELETE, ToolbarButtons.SHOW_PENDING_ACKNOWLEDGE_ALERTS, ToolbarButtons.SHOW_ALL_ALERTS),
                 true);
+        this.parentContainerLayout.addComponent(new PageNavigationBar(this.alertContainer));
     }
 
     @SuppressWarnings("serial")
     @Override
     public void initParentTable() {
-        this.parentContainer = new BeanContainer<Long, AlertDto>(AlertDto.class);
+        this.alertContainer = new PagedBeanContainer<AlertDto>(AlertDto.class, PAGE_SIZE, this::listAlerts);
+        this.alertContainer.setSort(ALERT_TIME_CREATED_COLUMN_ID, false);
+        this.alertContainer.setSortableProperties(ALERT_NAME_COLUMN_ID, ALERT_SEVERITY_COLUMN_ID,
+                ALERT_TIME_CREATED_COLUMN_ID);
+        this.alertContainer.setFilterableProperties(ALERT_NAME_COLUMN_ID, ALERT_SEVERITY_COLUMN_ID,
+                ALERT_MESSAGE_COLUMN, ALERT_STATUS_COLUMN_ID, ALERT_USER_ACKNOWLEDGED_COLUMN_ID);
+        this.parentContainer = this.alertContainer;
 
         this.parentTable.setContainerDataSource(this.parentContainer);
         this.parentTable.setVisibleColumns(ALERT_ID_COLUMN, ALERT_NAME_COLUMN_ID, ALERT_OBJECTS_COLUMN_ID,
@@ -121,16 +131,8 @@ public class AlertView extends CRUDBaseView<AlertDto, BaseDto> {
 
     @Override
     public void populateParentTable() {
-
-        this.parentContainer.removeAllItems();
-
         try {
-            ListResponse<AlertDto> res = this.listAlertService.dispatch(new BaseRequest<>());
-            List<AlertDto> listResponse = res.getList();
-            for (AlertDto dto : listResponse) {
-                this.parentContainer.addItem(dto.getId(), dto);
-            }
-
+            this.alertContainer.refresh();
         } catch (Exception e) {
             log.error("Failed to populate Alert table", e);
             ViewUtil.iscNotification("Failed to populate Alert table (" + e.getMessage() + ")",
@@ -141,6 +143,12 @@ public class AlertView extends CRUDBaseView<AlertDto, BaseDto> {
         showPendingAcknowledgeAlerts();
     }
 
+    private PageResponse<AlertDto> listAlerts(PageRequest page) throws Exception {
+        ListAlertRequest listRequest = new ListAlertRequest();
+        listRequest.setPage(page);
+        return this.listAlertService.dispatch(listRequest);
+    }
+
     @Override
     public void initChildTable() {
     }
@@ -184,7 +192,7 @@ public class AlertView extends CRUDBaseView<AlertDto, BaseDto> {
 
     private void showPendingAcknowledgeAlerts() {
         this.parentTable.resetFilters();
-        this.parentTable.setFilterFieldValue(ALERT_STATUS_COLUMN_ID, ACKNOWLEDGEMENT_PENDING);
+        this.parentTable.setFilterFieldValue(ALERT_STATUS_COLUMN_ID, AcknowledgementStatus.PENDING_ACKNOWLEDGEMENT);
     }
 
     private void showAllAlerts() {
@@ -678,6 +678,29 @@ public abstract class CRUDBaseView<P extends BaseDto, C extends BaseDto> extends
         return null;
     }
 
+    /**
+     * Reloads the tables of the view and of its open sub views, after changes
+     * were dropped instead of being delivered.
+     */
+    public void refreshTables() {
+        if (this.parentTable != null) {
+            populateParentTable();
+        }
+        if (this.childTable != null && getParentItem() != null) {
+            populateChildTable(getParentItem());
+        }
+        for (Map<String, CRUDBaseSubView<?, ?>> subViews : Arrays.asList(this.parentSubViewMap, this.childSubViewMap)) {
+            if (subViews == null) {
+                continue;
+            }
+            for (CRUDBaseSubView<?, ?> subView : subViews.values()) {
+                if (subView != null && subView.table != null) {
+                    subView.populateTable();
+                }
+            }
+        }
+    }
+
     public boolean isDtoChangeRelevantToParentView(String dto) {
         return this.parentTable != null && getParentContainer() != null && getParentContainer().getBeanType() != null
                 && getParentContainer().getBeanType().getSimpleName().equals(dto);
@@ -43,9 +43,12 @@ import org.osc.core.broker.service.dto.JobRecordDto;
 import org.osc.core.broker.service.dto.TaskRecordDto;
 import org.osc.core.broker.service.request.ListJobRequest;
 import org.osc.core.broker.service.request.ListTaskRequest;
-import org.osc.core.broker.service.response.ListResponse;
+import org.osc.core.broker.service.request.PageRequest;
+import org.osc.core.broker.service.response.PageResponse;
 import org.osc.core.broker.view.common.VmidcMessages;
 import org.osc.core.broker.view.common.VmidcMessages_;
+import org.osc.core.broker.view.util.PageNavigationBar;
+import org.osc.core.broker.view.util.PagedBeanContainer;
 import org.osc.core.broker.view.util.ToolbarButtons;
 import org.osc.core.broker.view.util.ViewUtil;
 import org.slf4j.LoggerFactory;
@@ -54,7 +57,6 @@ import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ServiceScope;
 import org.slf4j.Logger;
 
-import com.vaadin.data.util.BeanContainer;
 import com.vaadin.data.util.BeanItem;
 import com.vaadin.event.ShortcutAction;
 import com.vaadin.navigator.ViewChangeListener;
@@ -93,6 +95,8 @@ public class JobView extends CRUDBaseView<JobRecordDto, TaskRecordDto> {
     private static final String JOB_ID_COLUMN_ID = "id";
     private static final String JOB_SUBMITTED_BY_COLUMN_ID = "submittedBy";
 
+    private static final int PAGE_SIZE = 100;
+
     private static final String JOB_HELP_GUID = "GUID-005C8EBC-FABB-4F94-B82A-8F760EFDE69F.html";
 
     private static final Logger log = LoggerFactory.getLogger(JobView.class);
@@ -102,6 +106,9 @@ public class JobView extends CRUDBaseView<JobRecordDto, TaskRecordDto> {
     private File dotFile;
     private Embedded embeddedImage;
 
+    private PagedBeanContainer<JobRecordDto> jobContainer;
+    private PagedBeanContainer<TaskRecordDto> taskContainer;
+
     @Reference
     private ListJobServiceApi listJobService;
 
@@ -120,6 +127,8 @@ public class JobView extends CRUDBaseView<JobRecordDto, TaskRecordDto> {
     @Activate
     private void activate() {
         createView("Jobs", Arrays.asList(ToolbarButtons.JOB_VIEW, ToolbarButtons.JOB_ABORT), "Tasks", null);
+        this.parentContainerLayout.addComponent(new PageNavigationBar(this.jobContainer));
+        this.childContainerLayout.addComponent(new PageNavigationBar(this.taskContainer));
     }
 
     @Override
@@ -135,7 +144,11 @@ public class JobView extends CRUDBaseView<JobRecordDto, TaskRecordDto> {
     @SuppressWarnings("serial")
     @Override
     public void initParentTable() {
-        this.parentContainer = new BeanContainer<Long, JobRecordDto>(JobRecordDto.class);
+        this.jobContainer = new PagedBeanContainer<JobRecordDto>(JobRecordDto.class, PAGE_SIZE, this::listJobs);
+        this.jobContainer.setSortableProperties(JOB_NAME_COLUMN_ID);
+        this.jobContainer.setFilterableProperties(JOB_NAME_COLUMN_ID, JOB_STATE_COLUMN_ID, JOB_STATUS_COLUMN_ID,
+                JOB_SUBMITTED_BY_COLUMN_ID);
+        this.parentContainer = this.jobContainer;
         this.parentTable.setContainerDataSource(this.parentContainer);
         this.parentTable.setVisibleColumns(JOB_ID_COLUMN_ID, JOB_NAME_COLUMN_ID, JOB_OBJECTS_COLUMN_ID,
                 JOB_STATE_COLUMN_ID, JOB_STATUS_COLUMN_ID, JOB_STARTED_COLUMN_ID, JOB_COMPLETED_COLUMN_ID,
@@ -182,18 +195,8 @@ public class JobView extends CRUDBaseView<JobRecordDto, TaskRecordDto> {
 
     @Override
     public void populateParentTable() {
-
-        ListJobRequest listRequest = null;
-        ListResponse<JobRecordDto> res;
         try {
-            res = this.listJobService.dispatch(listRequest);
-            List<JobRecordDto> listResponse = res.getList();
-            this.parentContainer.removeAllItems();
-            // creating table with list of jobs
-            for (JobRecordDto j : listResponse) {
-                this.parentContainer.addItem(j.getId(), j);
-            }
-
+            this.jobContainer.refresh();
         } catch (Exception e) {
             log.error("Fail to populate Jobs table", e);
             ViewUtil.iscNotification("Fail to populate Job table (" + e.getMessage() + ")",
@@ -202,6 +205,12 @@ public class JobView extends CRUDBaseView<JobRecordDto, TaskRecordDto> {
 
     }
 
+    private PageResponse<JobRecordDto> listJobs(PageRequest page) throws Exception {
+        ListJobRequest listRequest = new ListJobRequest();
+        listRequest.setPage(page);
+        return this.listJobService.dispatch(listRequest);
+    }
+
     @Override
     public void parentTableClicked(long parentItemId) {
         super.parentTableClicked(parentItemId);
@@ -237,7 +246,11 @@ public class JobView extends CRUDBaseView<JobRecordDto, TaskRecordDto> {
     @SuppressWarnings("serial")
     @Override
     public void initChildTable() {
-        this.childContainer = new BeanContainer<Long, TaskRecordDto>(TaskRecordDto.class);
+        this.taskContainer = new PagedBeanContainer<TaskRecordDto>(TaskRecordDto.class, PAGE_SIZE, this::listTasks);
+        this.taskContainer.setSort(TASK_DEPENDENCY_ORDER_COLUMN_ID, true);
+        this.taskContainer.setSortableProperties(TASK_DEPENDENCY_ORDER_COLUMN_ID, JOB_NAME_COLUMN_ID);
+        this.taskContainer.setFilterableProperties(JOB_NAME_COLUMN_ID, JOB_STATE_COLUMN_ID, JOB_STATUS_COLUMN_ID);
+        this.childContainer = this.taskContainer;
         this.childTable.setContainerDataSource(this.childContainer);
         this.childTable.setVisibleColumns(TASK_DEPENDENCY_ORDER_COLUMN_ID, JOB_NAME_COLUMN_ID, JOB_OBJECTS_COLUMN_ID,
                 JOB_STATE_COLUMN_ID, JOB_STATUS_COLUMN_ID, JOB_STARTED_COLUMN_ID, JOB_COMPLETED_COLUMN_ID,
@@ -284,26 +297,25 @@ public class JobView extends CRUDBaseView<JobRecordDto, TaskRecordDto> {
     public void populateChildTable(BeanItem<JobRecordDto> parentItem) {
         if (parentItem != null) {
             try {
-                ListTaskRequest listRequest = new ListTaskRequest();
-                listRequest.setJobId(getParentItemId());
-                ListResponse<TaskRecordDto> res = this.listTaskService.dispatch(listRequest);
-
-                this.childContainer.removeAllItems();
-                for (TaskRecordDto task : res.getList()) {
-                    this.childContainer.addItem(task.getId(), task);
-                }
-
+                this.taskContainer.firstPage();
             } catch (Exception e) {
                 log.error("Fail to populate Task Table", e);
                 ViewUtil.iscNotification("Fail to populate Task table (" + e.getMessage() + ")",
                         Notification.Type.ERROR_MESSAGE);
             }
         } else {
-            this.childContainer.removeAllItems();
+            this.taskContainer.clear();
             ViewUtil.setButtonsEnabled(false, this.childToolbar);
         }
     }
 
+    private PageResponse<TaskRecordDto> listTasks(PageRequest page) throws Exception {
+        ListTaskRequest listRequest = new ListTaskRequest();
+        listRequest.setJobId(getParentItemId());
+        listRequest.setPage(page);
+        return this.listTaskService.dispatch(listRequest);
+    }
+
     private void refreshGraph() throws Exception {
         StreamResource imageResource = buildImageResource();
         this.embeddedImage.setIcon(imageResource);
@@ -537,10 +549,15 @@ public class JobView extends CRUDBaseView<JobRecordDto, TaskRecordDto> {
             try {
                 Long jobId = Long.parseLong(paramMap.get(ViewUtil.JOB_ID_PARAM_KEY));
                 log.info("Entered Job View with Id:" + jobId);
+                if (!getParentContainer().containsId(jobId) && this.jobContainer.hasPreviousPage()) {
+                    this.jobContainer.firstPage();
+                }
                 this.parentTable.select(jobId);
                 this.parentTable.setCurrentPageFirstItemIndex(getParentContainer().indexOfId(jobId));
             } catch (NumberFormatException ne) {
                 log.warn("Invalid Parameters for Job View. " + parameters);
+            } catch (Exception e) {
+                log.error("Fail to load the first page of jobs", e);
             }
         }
     }
@@ -17,23 +17,24 @@
 package org.osc.core.broker.view;
 
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import org.apache.commons.lang.StringUtils;
 import org.osc.core.broker.service.api.GetDtoFromEntityServiceFactoryApi;
 import org.osc.core.broker.service.api.LoginServiceApi;
 import org.osc.core.broker.service.api.server.ServerApi;
-import org.osc.core.broker.service.broadcast.BroadcastListener;
 import org.osc.core.broker.service.broadcast.BroadcastMessage;
 import org.osc.core.broker.service.request.LoginRequest;
 import org.osc.core.broker.service.response.LoginResponse;
 import org.osc.core.broker.view.alarm.AlarmView;
 import org.osc.core.broker.view.util.ViewUtil;
 import org.osc.core.broker.view.vc.VirtualizationConnectorView;
+import org.osc.core.ui.UiBroadcastDispatcher;
+import org.osc.core.ui.UiBroadcastListener;
 import org.slf4j.LoggerFactory;
-import org.osgi.framework.BundleContext;
-import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.ComponentServiceObjects;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Reference;
@@ -78,6 +79,7 @@ import com.vaadin.ui.Notification;
 import com.vaadin.ui.PasswordField;
 import com.vaadin.ui.TextField;
 import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
 import com.vaadin.ui.VerticalLayout;
 import com.vaadin.ui.themes.Reindeer;
 
@@ -87,7 +89,7 @@ import com.vaadin.ui.themes.Reindeer;
 @Push(value = PushMode.AUTOMATIC, transport = Transport.WEBSOCKET)
 @org.osgi.service.component.annotations.Component(service=MainUI.class,
         scope=ServiceScope.PROTOTYPE)
-public class MainUI extends UI implements BroadcastListener {
+public class MainUI extends UI implements UiBroadcastListener {
 
     private static final int SESSION_EXPIRE_TIME_OUT_IN_SECS = 1800;
     // Status View
@@ -111,7 +113,7 @@ public class MainUI extends UI implements BroadcastListener {
 
     private static final Logger log = LoggerFactory.getLogger(MainUI.class);
 
-    private CRUDBaseView<?, ?> currentView;
+    private volatile CRUDBaseView<?, ?> currentView;
 
     // accordion used as side navigation
     private final Accordion accordion = new Accordion();
@@ -170,6 +172,9 @@ public class MainUI extends UI implements BroadcastListener {
     @Reference
     GetDtoFromEntityServiceFactoryApi getDtoFromEntityServiceFactory;
 
+    @Reference
+    private UiBroadcastDispatcher broadcastDispatcher;
+
     Set<OSCViewProvider<?>> statusViews = new LinkedHashSet<>();
 
     Set<OSCViewProvider<?>> setupViews = new LinkedHashSet<>();
@@ -178,9 +183,6 @@ public class MainUI extends UI implements BroadcastListener {
 
     private Navigator nav;
 
-    private ServiceRegistration<BroadcastListener> registration;
-
-    private BundleContext ctx;
     private AlertView alertView;
 
     public void setCurrentView(CRUDBaseView<?, ?> view) {
@@ -188,9 +190,7 @@ public class MainUI extends UI implements BroadcastListener {
     }
 
     @Activate
-    private void start(BundleContext ctx) {
-
-        this.ctx = ctx;
+    private void start() {
 
         this.statusViews.add(new OSCViewProvider<>(VIEW_FRAGMENT_ALERTS, AlertView.class, this.alertViewFactory));
         this.statusViews.add(new OSCViewProvider<>(VIEW_FRAGMENT_APPLIANCE_INSTANCES,
@@ -381,7 +381,7 @@ public class MainUI extends UI implements BroadcastListener {
         buildMainLayout();
         this.root.setExpandRatio(this.mainLayout, 1);
 
-        this.registration = this.ctx.registerService(BroadcastListener.class, this, null);
+        this.broadcastDispatcher.addListener(this);
 
         // adding view change listener to navigator
         addViewChangeListener();
@@ -552,46 +552,58 @@ public class MainUI extends UI implements BroadcastListener {
     }
 
     @Override
-    public void receiveBroadcast(final BroadcastMessage msg) {
-        access(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    if (MainUI.this.currentView == null) {
-                        return;
-                    }
-                    if (msg.getEntityId() == Long.MIN_VALUE) {
-                        return;
-                    }
-                    String dto = msg.getReceiver() + "Dto";
-                    if (MainUI.this.currentView.isDtoChangeRelevantToParentView(dto)) {
-                        MainUI.this.currentView.syncTables(msg, false, MainUI.this.getDtoFromEntityServiceFactory);
-                    } else if (MainUI.this.currentView.isDtoChangeRelevantToChildView(dto)) {
-                        MainUI.this.currentView.syncTables(msg, true, MainUI.this.getDtoFromEntityServiceFactory);
-                    } else if (MainUI.this.currentView.isDtoRelevantToParentSubView(dto)) {
-                        MainUI.this.currentView.delegateBroadcastMessagetoSubView(msg, false, MainUI.this.getDtoFromEntityServiceFactory);
-                    } else if (MainUI.this.currentView.isDtoRelevantToChildSubView(dto)) {
-                        MainUI.this.currentView.delegateBroadcastMessagetoSubView(msg, true, MainUI.this.getDtoFromEntityServiceFactory);
-                    }
-                } catch (Exception e) {
-                    log.error("Fail to receive DTO broadcast", e);
-                }
+    public boolean isInterestedIn(BroadcastMessage msg) {
+        CRUDBaseView<?, ?> view = this.currentView;
+        if (view == null || msg.getEntityId() == Long.MIN_VALUE) {
+            return false;
+        }
+
+        String dto = msg.getReceiver() + "Dto";
+        return view.isDtoChangeRelevantToParentView(dto) || view.isDtoChangeRelevantToChildView(dto)
+                || view.isDtoRelevantToParentSubView(dto) || view.isDtoRelevantToChildSubView(dto);
+    }
+
+    @Override
+    public void broadcastsPending(Supplier<List<BroadcastMessage>> drain) {
+        try {
+            access(() -> drain.get().forEach(this::syncView));
+        } catch (UIDetachedException e) {
+            log.debug("Broadcast received after UI was detached");
+        }
+    }
+
+    private void syncView(BroadcastMessage msg) {
+        try {
+            if (this.currentView == null) {
+                return;
             }
-        });
+            if (msg == UiBroadcastDispatcher.REFRESH_ALL) {
+                this.currentView.refreshTables();
+                return;
+            }
+            if (msg.getEntityId() == Long.MIN_VALUE) {
+                return;
+            }
+            String dto = msg.getReceiver() + "Dto";
+            if (this.currentView.isDtoChangeRelevantToParentView(dto)) {
+                this.currentView.syncTables(msg, false, this.getDtoFromEntityServiceFactory);
+            } else if (this.currentView.isDtoChangeRelevantToChildView(dto)) {
+                this.currentView.syncTables(msg, true, this.getDtoFromEntityServiceFactory);
+            } else if (this.currentView.isDtoRelevantToParentSubView(dto)) {
+                this.currentView.delegateBroadcastMessagetoSubView(msg, false, this.getDtoFromEntityServiceFactory);
+            } else if (this.currentView.isDtoRelevantToChildSubView(dto)) {
+                this.currentView.delegateBroadcastMessagetoSubView(msg, true, this.getDtoFromEntityServiceFactory);
+            }
+        } catch (Exception e) {
+            log.error("Fail to receive DTO broadcast", e);
+        }
     }
 
     @Override
     public void detach() {
         try {
             // unregister before closing
-            if(this.registration != null) {
-                try {
-                    this.registration.unregister();
-                } catch (IllegalStateException ise) {
-                    // The listener was already unregistered,
-                    // so no problems here.
-                }
-            }
+            this.broadcastDispatcher.removeListener(this);
             log.info("MainUI.detach() called");
             super.detach();
         } catch (Exception e) {
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.view.util;
+
+import java.io.Serializable;
+
+import org.osc.core.broker.view.common.StyleConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vaadin.ui.Alignment;
+import com.vaadin.ui.Button;
+import com.vaadin.ui.Button.ClickEvent;
+import com.vaadin.ui.Button.ClickListener;
+import com.vaadin.ui.HorizontalLayout;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.Notification;
+import com.vaadin.ui.themes.ValoTheme;
+
+/**
+ * Toolbar moving a {@link PagedBeanContainer} across its pages and showing
+ * which items are displayed.
+ */
+@SuppressWarnings("serial")
+public class PageNavigationBar extends HorizontalLayout implements PagedBeanContainer.PageChangeListener {
+
+    private static final Logger log = LoggerFactory.getLogger(PageNavigationBar.class);
+
+    private interface PageAction extends Serializable {
+        void run() throws Exception;
+    }
+
+    private final Label itemsLabel = new Label();
+    private final Button firstButton;
+    private final Button previousButton;
+    private final Button nextButton;
+
+    public PageNavigationBar(PagedBeanContainer<?> container) {
+        addStyleName(StyleConstants.BUTTON_TOOLBAR);
+        setWidth("100%");
+        setSpacing(true);
+
+        this.firstButton = createButton("First", container::firstPage);
+        this.previousButton = createButton("Previous", container::previousPage);
+        this.nextButton = createButton("Next", container::nextPage);
+
+        addComponent(this.itemsLabel);
+        setExpandRatio(this.itemsLabel, 1.0f);
+        setComponentAlignment(this.itemsLabel, Alignment.MIDDLE_LEFT);
+        addComponent(this.firstButton);
+        addComponent(this.previousButton);
+        addComponent(this.nextButton);
+
+        container.addPageChangeListener(this);
+        pageChanged(container);
+    }
+
+    private Button createButton(String caption, PageAction action) {
+        Button button = new Button(caption);
+        button.addStyleName(ValoTheme.BUTTON_SMALL);
+        button.addClickListener(new ClickListener() {
+            @Override
+            public void buttonClick(ClickEvent event) {
+                try {
+                    action.run();
+                } catch (Exception e) {
+                    log.error("Fail to load page", e);
+                    ViewUtil.iscNotification("Fail to load page (" + e.getMessage() + ")",
+                            Notification.Type.ERROR_MESSAGE);
+                }
+            }
+        });
+        return button;
+    }
+
+    @Override
+    public void pageChanged(PagedBeanContainer<?> container) {
+        int count = container.getPageItemCount();
+        if (count == 0) {
+            this.itemsLabel.setValue(String.format("%,d items", container.getTotalCount()));
+        } else {
+            long first = container.getPageOffset() + 1;
+            this.itemsLabel.setValue(String.format("%,d - %,d of %,d items", first, first + count - 1,
+                    container.getTotalCount()));
+        }
+        this.firstButton.setEnabled(container.hasPreviousPage());
+        this.previousButton.setEnabled(container.hasPreviousPage());
+        this.nextButton.setEnabled(container.hasNextPage());
+    }
+}
@@ -0,0 +1,417 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.broker.view.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.osc.core.broker.service.dto.BaseDto;
+import org.osc.core.broker.service.request.PageRequest;
+import org.osc.core.broker.service.response.PageResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vaadin.data.Container.Filter;
+import com.vaadin.data.util.BeanContainer;
+import com.vaadin.data.util.BeanItem;
+import com.vaadin.data.util.filter.Compare;
+import com.vaadin.data.util.filter.SimpleStringFilter;
+import com.vaadin.ui.Notification;
+
+/**
+ * Bean container holding a single page of items, fetched from the server one
+ * page at a time.
+ * <p>
+ * Sorting and filtering on the properties the server supports are applied by
+ * the server to all items and bring the container back to the first page.
+ * Other sorts and filters only apply to the items of the current page.
+ * Text filters are matched by the server as contained text, compare filters
+ * as exact values.
+ * <p>
+ * Items added by broadcasts are only kept if they match the server side
+ * filters and belong to the current page, that is the first page for items
+ * added at the top and the last page for items added at the bottom.
+ *
+ * @param <T>
+ *            the type of the dto
+ */
+@SuppressWarnings("serial")
+public class PagedBeanContainer<T extends BaseDto> extends BeanContainer<Long, T> {
+
+    private static final Logger log = LoggerFactory.getLogger(PagedBeanContainer.class);
+
+    private static final String ID_PROPERTY = "id";
+
+    public interface PageLoader<T> extends Serializable {
+        PageResponse<T> load(PageRequest page) throws Exception;
+    }
+
+    public interface PageChangeListener extends Serializable {
+        void pageChanged(PagedBeanContainer<?> container);
+    }
+
+    private final PageLoader<T> loader;
+    private final int pageSize;
+
+    private final Set<String> sortableProperties = new HashSet<>();
+    private final Set<String> filterableProperties = new HashSet<>();
+    private final List<Filter> serverFilters = new ArrayList<>();
+    private final List<PageChangeListener> listeners = new ArrayList<>();
+
+    /*
+     * Cursors of the pages before the current one, the closest first
+     */
+    private final LinkedList<Long> previousCursors = new LinkedList<>();
+    private Long cursor;
+    private Long lastItemId;
+    private boolean hasNextPage;
+    private long totalCount;
+
+    /*
+     * Ids of the items which belong to the current page
+     */
+    private final Set<Long> pageItemIds = new HashSet<>();
+
+    /*
+     * Last item removed from the page. Items are updated by removing them and
+     * adding them back (see ViewUtil.updateTableContainer), the item is then
+     * still on the page.
+     */
+    private Object removedItemId;
+
+    private String sortBy;
+    private boolean ascending;
+
+    public PagedBeanContainer(Class<T> type, int pageSize, PageLoader<T> loader) {
+        super(type);
+        setBeanIdProperty(ID_PROPERTY);
+        this.pageSize = pageSize;
+        this.loader = loader;
+    }
+
+    public void setSortableProperties(String... propertyIds) {
+        this.sortableProperties.addAll(Arrays.asList(propertyIds));
+    }
+
+    public void setFilterableProperties(String... propertyIds) {
+        this.filterableProperties.addAll(Arrays.asList(propertyIds));
+    }
+
+    /**
+     * Sets the server side sort order without reloading the page.
+     *
+     * @param propertyId
+     *            the property to sort by, null to sort by id
+     */
+    public void setSort(String propertyId, boolean ascending) {
+        this.sortBy = propertyId;
+        this.ascending = ascending;
+    }
+
+    public void addPageChangeListener(PageChangeListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Reloads the current page.
+     */
+    public void refresh() throws Exception {
+        load();
+    }
+
+    public void firstPage() throws Exception {
+        this.previousCursors.clear();
+        this.cursor = null;
+        load();
+    }
+
+    public void nextPage() throws Exception {
+        if (!this.hasNextPage) {
+            return;
+        }
+        this.previousCursors.push(this.cursor);
+        this.cursor = this.lastItemId;
+        load();
+    }
+
+    public void previousPage() throws Exception {
+        if (this.previousCursors.isEmpty()) {
+            return;
+        }
+        this.cursor = this.previousCursors.pop();
+        load();
+    }
+
+    /**
+     * Empties the container without querying the server.
+     */
+    public void clear() {
+        this.previousCursors.clear();
+        this.cursor = null;
+        this.lastItemId = null;
+        this.hasNextPage = false;
+        this.totalCount = 0;
+        this.pageItemIds.clear();
+        this.removedItemId = null;
+        removeAllItems();
+        firePageChanged();
+    }
+
+    public boolean hasNextPage() {
+        return this.hasNextPage;
+    }
+
+    public boolean hasPreviousPage() {
+        return !this.previousCursors.isEmpty();
+    }
+
+    /**
+     * @return the position of the first item of the current page among all
+     *         the items matching the server side filters
+     */
+    public long getPageOffset() {
+        return (long) this.previousCursors.size() * this.pageSize;
+    }
+
+    /**
+     * @return the number of items in the current page, including the ones
+     *         hidden by filters which only apply to the page
+     */
+    public int getPageItemCount() {
+        return getAllItemIds().size();
+    }
+
+    /**
+     * @return the number of items matching the server side filters
+     */
+    public long getTotalCount() {
+        return this.totalCount;
+    }
+
+    private void load() throws Exception {
+        PageRequest page = new PageRequest();
+        page.setAfterId(this.cursor);
+        // One more item tells whether there is a next page
+        page.setPageSize(this.pageSize + 1);
+        page.setSortBy(this.sortBy);
+        page.setAscending(this.ascending);
+        page.setFilters(getServerFilterValues(SimpleStringFilter.class));
+        page.setEquals(getServerFilterValues(Compare.Equal.class));
+
+        PageResponse<T> response = this.loader.load(page);
+        List<T> items = response.getList();
+        this.hasNextPage = items.size() > this.pageSize;
+        if (this.hasNextPage) {
+            items = items.subList(0, this.pageSize);
+        }
+        this.totalCount = response.getTotalCount();
+        this.lastItemId = items.isEmpty() ? null : items.get(items.size() - 1).getId();
+
+        this.pageItemIds.clear();
+        this.removedItemId = null;
+        for (T item : items) {
+            this.pageItemIds.add(item.getId());
+        }
+        removeAllItems();
+        addAll(items);
+        firePageChanged();
+    }
+
+    private void reload() {
+        try {
+            firstPage();
+        } catch (Exception e) {
+            log.error("Fail to load page", e);
+            ViewUtil.iscNotification("Fail to load page (" + e.getMessage() + ")", Notification.Type.ERROR_MESSAGE);
+        }
+    }
+
+    private void firePageChanged() {
+        for (PageChangeListener listener : this.listeners) {
+            listener.pageChanged(this);
+        }
+    }
+
+    @Override
+    public void sort(Object[] propertyId, boolean[] ascending) {
+        if (propertyId.length > 0
+                && (ID_PROPERTY.equals(propertyId[0]) || this.sortableProperties.contains(propertyId[0]))) {
+            this.sortBy = ID_PROPERTY.equals(propertyId[0]) ? null : (String) propertyId[0];
+            this.ascending = ascending[0];
+            reload();
+        } else {
+            super.sort(propertyId, ascending);
+        }
+    }
+
+    @Override
+    public void addContainerFilter(Filter filter) {
+        if (getServerFilterProperty(filter) != null) {
+            this.serverFilters.add(filter);
+            reload();
+        } else {
+            super.addContainerFilter(filter);
+        }
+    }
+
+    @Override
+    public void removeContainerFilter(Filter filter) {
+        if (this.serverFilters.remove(filter)) {
+            reload();
+        } else {
+            super.removeContainerFilter(filter);
+        }
+    }
+
+    @Override
+    public void removeAllContainerFilters() {
+        boolean hadServerFilters = !this.serverFilters.isEmpty();
+        this.serverFilters.clear();
+        super.removeAllContainerFilters();
+        if (hadServerFilters) {
+            reload();
+        }
+    }
+
+    private String getServerFilterProperty(Filter filter) {
+        Object propertyId = null;
+        if (filter instanceof SimpleStringFilter) {
+            propertyId = ((SimpleStringFilter) filter).getPropertyId();
+        } else if (filter instanceof Compare.Equal) {
+            propertyId = ((Compare.Equal) filter).getPropertyId();
+        }
+        return this.filterableProperties.contains(propertyId) ? (String) propertyId : null;
+    }
+
+    /*
+     * Text filters are sent as contains matches, compare filters as exact ones
+     */
+    private Map<String, String> getServerFilterValues(Class<? extends Filter> filterType) {
+        Map<String, String> values = new HashMap<>();
+        for (Filter filter : this.serverFilters) {
+            if (!filterType.isInstance(filter)) {
+                continue;
+            }
+            Object value;
+            if (filter instanceof SimpleStringFilter) {
+                value = ((SimpleStringFilter) filter).getFilterString();
+            } else {
+                value = ((Compare.Equal) filter).getValue();
+            }
+            if (value != null) {
+                values.put(getServerFilterProperty(filter), value instanceof Enum ? ((Enum<?>) value).name()
+                        : value.toString());
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public BeanItem<T> addItem(Long itemId, T bean) {
+        if (!acceptItem(itemId, bean, !this.hasNextPage)) {
+            return null;
+        }
+        BeanItem<T> item = super.addItem(itemId, bean);
+        trimPage();
+        return item;
+    }
+
+    @Override
+    public BeanItem<T> addItemAt(int index, Long newItemId, T bean) {
+        if (!acceptItem(newItemId, bean, index > 0 || this.previousCursors.isEmpty())) {
+            return null;
+        }
+        BeanItem<T> item = super.addItemAt(index, newItemId, bean);
+        trimPage();
+        return item;
+    }
+
+    /**
+     * Removes the item from the page and from the total count. Items which are
+     * not on the current page are unknown, the count is only corrected on the
+     * next load.
+     */
+    @Override
+    public boolean removeItem(Object itemId) {
+        if (!super.removeItem(itemId)) {
+            return false;
+        }
+        if (this.pageItemIds.remove(itemId)) {
+            this.removedItemId = itemId;
+            this.totalCount--;
+            firePageChanged();
+        }
+        return true;
+    }
+
+    /*
+     * Items of the page are updated in place as long as they still match the
+     * server side filters. New items are counted and added only if they land
+     * on the current page.
+     */
+    private boolean acceptItem(Long itemId, T bean, boolean landsOnPage) {
+        if (itemId.equals(this.removedItemId)) {
+            // Added back by an update
+            this.pageItemIds.add(itemId);
+            this.totalCount++;
+            firePageChanged();
+        }
+        this.removedItemId = null;
+
+        boolean onPage = this.pageItemIds.contains(itemId);
+        BeanItem<T> item = new BeanItem<>(bean);
+        for (Filter filter : this.serverFilters) {
+            if (!filter.passesFilter(itemId, item)) {
+                if (onPage) {
+                    this.pageItemIds.remove(itemId);
+                    this.totalCount--;
+                    firePageChanged();
+                }
+                return false;
+            }
+        }
+        if (onPage) {
+            return true;
+        }
+
+        this.totalCount++;
+        if (landsOnPage) {
+            this.pageItemIds.add(itemId);
+        }
+        firePageChanged();
+        return landsOnPage;
+    }
+
+    private void trimPage() {
+        List<Long> itemIds = getAllItemIds();
+        while (itemIds.size() > this.pageSize) {
+            Long itemId = itemIds.get(itemIds.size() - 1);
+            // The item moves to the next page, it still counts
+            super.removeItem(itemId);
+            this.pageItemIds.remove(itemId);
+            this.lastItemId = itemIds.get(itemIds.size() - 1);
+            this.hasNextPage = true;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.ui;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.osc.core.broker.service.api.GetDtoFromEntityServiceFactoryApi;
+import org.osc.core.broker.service.broadcast.BroadcastListener;
+import org.osc.core.broker.service.broadcast.BroadcastMessage;
+import org.osc.core.broker.service.broadcast.EventType;
+import org.osc.core.broker.service.dto.BaseDto;
+import org.osc.core.broker.service.request.GetDtoFromEntityRequest;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fans entity change broadcasts out to all UI sessions.
+ * <p>
+ * Broadcasts are collected for {@link #BATCH_WINDOW_MS}, repeated changes to
+ * the same entity being coalesced into the latest one, an addition staying an
+ * addition. Each change is then queued for every session. Sessions drain their
+ * queue from their UI thread, where they pick the changes they display; the
+ * DTO of a changed entity is looked up once, by the first session displaying
+ * it, and shared with the others. Session queues hold at most
+ * {@link #MAX_SESSION_QUEUE} entities; a session whose queue overflows drops
+ * its queued changes and receives {@link #REFRESH_ALL} instead.
+ */
+@Component(service = { UiBroadcastDispatcher.class, BroadcastListener.class })
+public class UiBroadcastDispatcher implements BroadcastListener {
+
+    private static final Logger log = LoggerFactory.getLogger(UiBroadcastDispatcher.class);
+
+    static final long BATCH_WINDOW_MS = 250;
+    static final int MAX_SESSION_QUEUE = 500;
+
+    /**
+     * Delivered in place of the changes a session could not keep up with: the
+     * session has to reload whatever it displays.
+     */
+    public static final BroadcastMessage REFRESH_ALL = new BroadcastMessage(null, null, null);
+
+    @Reference
+    private GetDtoFromEntityServiceFactoryApi getDtoFromEntityServiceFactory;
+
+    private final Map<UiBroadcastListener, SessionQueue> sessions = new ConcurrentHashMap<>();
+
+    /*
+     * Changes received since the last flush, keyed by entity
+     */
+    private final Map<String, BroadcastMessage> pending = new LinkedHashMap<>();
+
+    private boolean flushScheduled;
+
+    private ScheduledExecutorService executor;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong dtoLookups = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    @Activate
+    void activate() {
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "isc-ui-broadcast");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Deactivate
+    void deactivate() {
+        this.executor.shutdownNow();
+        this.sessions.clear();
+    }
+
+    public void addListener(UiBroadcastListener listener) {
+        this.sessions.put(listener, new SessionQueue(listener));
+    }
+
+    public void removeListener(UiBroadcastListener listener) {
+        this.sessions.remove(listener);
+    }
+
+    @Override
+    public void receiveBroadcast(BroadcastMessage msg) {
+        this.received.incrementAndGet();
+        synchronized (this) {
+            BroadcastMessage older = this.pending.remove(keyOf(msg));
+            if (older != null) {
+                this.coalesced.incrementAndGet();
+            }
+            this.pending.put(keyOf(msg), merge(older, msg));
+
+            if (!this.flushScheduled) {
+                this.flushScheduled = true;
+                this.executor.schedule(this::flushQuietly, BATCH_WINDOW_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Throwable t) {
+            log.error("Fail to dispatch UI broadcasts", t);
+        }
+    }
+
+    private void flush() {
+        List<BroadcastMessage> batch;
+        synchronized (this) {
+            batch = new ArrayList<>(this.pending.values());
+            this.pending.clear();
+            this.flushScheduled = false;
+        }
+
+        for (BroadcastMessage msg : batch) {
+            Change change = new Change(msg);
+            for (SessionQueue session : this.sessions.values()) {
+                session.offer(change);
+            }
+        }
+    }
+
+    /**
+     * @return the message carrying the entity DTO, or null if the entity could
+     *         not be loaded
+     */
+    private BroadcastMessage withDto(BroadcastMessage msg) {
+        if (msg.getDto() != null || msg.getEventType() == EventType.DELETED) {
+            return msg;
+        }
+
+        GetDtoFromEntityRequest req = new GetDtoFromEntityRequest();
+        req.setEntityId(msg.getEntityId());
+        req.setEntityName(msg.getReceiver());
+        try {
+            this.dtoLookups.incrementAndGet();
+            BaseDto dto = this.getDtoFromEntityServiceFactory.getService(BaseDto.class).dispatch(req).getDto();
+            return dto == null ? msg : new BroadcastMessage(msg.getEntityId(), msg.getReceiver(), msg.getEventType(), dto);
+        } catch (Exception e) {
+            // Most likely deleted in the meantime, the delete broadcast follows
+            log.warn("Fail to load " + msg.getReceiver() + " " + msg.getEntityId() + " for UI broadcast: "
+                    + e.getMessage());
+            return null;
+        }
+    }
+
+    private static String keyOf(BroadcastMessage msg) {
+        return msg.getReceiver() + ":" + msg.getEntityId();
+    }
+
+    /**
+     * @return the change replacing the older change to the same entity, an
+     *         update to an entity not displayed yet still adding it
+     */
+    private static BroadcastMessage merge(BroadcastMessage older, BroadcastMessage newer) {
+        if (older != null && older.getEventType() == EventType.ADDED && newer.getEventType() == EventType.UPDATED) {
+            return new BroadcastMessage(newer.getEntityId(), newer.getReceiver(), EventType.ADDED, newer.getDto());
+        }
+        return newer;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[ui broadcast] sessions: %d, received: %d, coalesced: %d, dto-lookups: %d, delivered: %d, dropped: %d",
+                this.sessions.size(), this.received.get(), this.coalesced.get(), this.dtoLookups.get(),
+                this.delivered.get(), this.dropped.get());
+    }
+
+    /**
+     * A change queued for the sessions. Its DTO is looked up by the first
+     * session displaying the entity.
+     */
+    private final class Change {
+        private final BroadcastMessage msg;
+        private BroadcastMessage resolved;
+        private boolean lookedUp;
+
+        Change(BroadcastMessage msg) {
+            this.msg = msg;
+        }
+
+        /**
+         * @return the message carrying the entity DTO, or null if the entity
+         *         could not be loaded
+         */
+        synchronized BroadcastMessage resolve() {
+            if (!this.lookedUp) {
+                this.resolved = withDto(this.msg);
+                this.lookedUp = true;
+            }
+            return this.resolved;
+        }
+    }
+
+    private final class SessionQueue {
+        private final UiBroadcastListener listener;
+        private final Map<String, Change> queued = new LinkedHashMap<>();
+        private boolean overflowed;
+        private boolean drainPending;
+
+        SessionQueue(UiBroadcastListener listener) {
+            this.listener = listener;
+        }
+
+        void offer(Change change) {
+            boolean notify;
+            synchronized (this) {
+                if (this.overflowed) {
+                    // The session reloads everything anyway
+                    UiBroadcastDispatcher.this.dropped.incrementAndGet();
+                    return;
+                }
+
+                String key = keyOf(change.msg);
+                Change older = this.queued.remove(key);
+                if (older != null) {
+                    UiBroadcastDispatcher.this.coalesced.incrementAndGet();
+                    BroadcastMessage merged = merge(older.msg, change.msg);
+                    if (merged != change.msg) {
+                        change = new Change(merged);
+                    }
+                }
+                this.queued.put(key, change);
+
+                if (this.queued.size() > MAX_SESSION_QUEUE) {
+                    UiBroadcastDispatcher.this.dropped.addAndGet(this.queued.size());
+                    this.queued.clear();
+                    this.overflowed = true;
+                }
+
+                notify = !this.drainPending;
+                this.drainPending = true;
+            }
+
+            if (notify) {
+                this.listener.broadcastsPending(this::drain);
+            }
+        }
+
+        /*
+         * Called from the session's UI thread
+         */
+        List<BroadcastMessage> drain() {
+            List<Change> changes;
+            synchronized (this) {
+                changes = new ArrayList<>(this.queued.values());
+                this.queued.clear();
+                this.drainPending = false;
+                if (this.overflowed) {
+                    this.overflowed = false;
+                    return Collections.singletonList(REFRESH_ALL);
+                }
+            }
+
+            List<BroadcastMessage> messages = new ArrayList<>();
+            for (Change change : changes) {
+                if (this.listener.isInterestedIn(change.msg)) {
+                    BroadcastMessage msg = change.resolve();
+                    if (msg != null) {
+                        messages.add(msg);
+                    }
+                }
+            }
+            UiBroadcastDispatcher.this.delivered.addAndGet(messages.size());
+            return messages;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.core.ui;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.osc.core.broker.service.broadcast.BroadcastMessage;
+
+/**
+ * A UI session receiving entity change broadcasts through the
+ * {@link UiBroadcastDispatcher}.
+ */
+public interface UiBroadcastListener {
+
+    /**
+     * Called from the session's UI thread while draining, with the session
+     * locked.
+     *
+     * @return true if the session currently displays the entity the message
+     *         is about, in which case its DTO is resolved and delivered to the
+     *         session
+     */
+    boolean isInterestedIn(BroadcastMessage msg);
+
+    /**
+     * Called from the dispatcher thread when messages were queued for the
+     * session and no earlier notification is still waiting to be drained.
+     *
+     * @param drain
+     *            returns the queued messages the session is interested in and
+     *            clears the queue, to be called from the session's UI thread.
+     *            Returns {@link UiBroadcastDispatcher#REFRESH_ALL} alone when
+     *            messages were dropped. The DTOs carried by the messages are
+     *            shared between sessions and must not be modified.
+     */
+    void broadcastsPending(Supplier<List<BroadcastMessage>> drain);
+}